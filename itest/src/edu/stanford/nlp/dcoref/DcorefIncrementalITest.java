@@ -0,0 +1,142 @@
+package edu.stanford.nlp.dcoref;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.TreeCoreAnnotations;
+import edu.stanford.nlp.util.CoreMap;
+
+import junit.framework.TestCase;
+
+/**
+ * Feeds a document to {@link SieveCoreferenceSystem#corefNewSentences} one
+ * sentence at a time, with and without a window, after resolving its first
+ * two sentences with {@link SieveCoreferenceSystem#coref(Document)}.
+ */
+public class DcorefIncrementalITest extends TestCase {
+
+  private SieveCoreferenceSystem corefSystem;
+  private MentionExtractor mentionExtractor;
+
+  private void setUp(Properties props) throws Exception {
+    corefSystem = new SieveCoreferenceSystem(props);
+    mentionExtractor = new MentionExtractor(corefSystem.dictionaries(), corefSystem.semantics());
+  }
+
+  /**
+   * Finds and orders the mentions of the given sentences, as
+   * DeterministicCorefAnnotator does.  Their IDs start from 1 for every
+   * chunk, so the document must renumber the mentions it adds.
+   */
+  private List<List<Mention>> mentions(List<CoreMap> sentences) throws Exception {
+    List<List<CoreLabel>> words = new ArrayList<List<CoreLabel>>();
+    List<Tree> trees = new ArrayList<Tree>();
+    for (CoreMap sentence : sentences) {
+      List<CoreLabel> tokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
+      Tree tree = sentence.get(TreeCoreAnnotations.TreeAnnotation.class);
+      MentionExtractor.mergeLabels(tree, tokens);
+      MentionExtractor.initializeUtterance(tokens);
+      words.add(tokens);
+      trees.add(tree);
+    }
+    Annotation chunk = new Annotation("");
+    chunk.set(CoreAnnotations.SentencesAnnotation.class, sentences);
+    List<List<Mention>> unordered = new RuleBasedCorefMentionFinder().extractPredictedMentions(chunk, 0, corefSystem.dictionaries());
+    return mentionExtractor.arrange(chunk, words, trees, unordered, false);
+  }
+
+  /** Resolves the first two sentences of the text, then adds the others one at a time. */
+  private Document corefIncrementally(String text) throws Exception {
+    List<CoreMap> allSentences = DcorefMentionIndexSlowITest.annotate(text).get(CoreAnnotations.SentencesAnnotation.class);
+    List<CoreMap> sentences = new ArrayList<CoreMap>(allSentences.subList(0, 2));
+    Annotation annotation = new Annotation(text);
+    annotation.set(CoreAnnotations.SentencesAnnotation.class, sentences);
+    Document document = new Document(annotation, mentions(new ArrayList<CoreMap>(sentences)), null, corefSystem.dictionaries());
+    corefSystem.coref(document);
+
+    for (CoreMap sentence : allSentences.subList(2, allSentences.size())) {
+      sentences.add(sentence);
+      List<CoreMap> newSentences = new ArrayList<CoreMap>();
+      newSentences.add(sentence);
+      List<List<Mention>> newMentions = mentions(newSentences);
+      Map<Integer, CorefChain> chains = corefSystem.corefNewSentences(document, newMentions);
+
+      // every chain returned has a new mention, or is one merged away
+      for (Map.Entry<Integer, CorefChain> entry : chains.entrySet()) {
+        if (entry.getValue() == null) {
+          assertFalse(document.corefClusters.containsKey(entry.getKey()));
+          continue;
+        }
+        boolean hasNewMention = false;
+        for (CorefChain.CorefMention m : entry.getValue().getMentionsInTextualOrder()) {
+          hasNewMention |= (m.sentNum == sentences.size());
+        }
+        assertTrue(hasNewMention);
+      }
+    }
+    assertEquals(allSentences.size(), document.numSentences);
+    return document;
+  }
+
+  private static CorefCluster clusterOf(Document document, int sentNum, String span) {
+    for (Mention m : document.getOrderedMentions().get(sentNum)) {
+      if (m.spanToString().equals(span)) {
+        return document.corefClusters.get(m.corefClusterID);
+      }
+    }
+    throw new AssertionError("No mention " + span + " in sentence " + sentNum);
+  }
+
+  public void testIncremental() throws Exception {
+    setUp(new Properties());
+    Document document = corefIncrementally(DcorefMentionIndexSlowITest.longDocument(8));
+
+    // John Smith of the third sentence is linked to John Smith of the first
+    CorefCluster johnSmith = clusterOf(document, 2, "John Smith");
+    boolean linked = false;
+    for (Mention m : johnSmith.getCorefMentions()) {
+      linked |= (m.sentNum == 0);
+    }
+    assertTrue(linked);
+
+    // the same mentions are found as when resolving the whole document at once
+    int numMentions = 0;
+    for (CorefCluster c : document.corefClusters.values()) {
+      numMentions += c.getCorefMentions().size();
+    }
+    int expected = 0;
+    for (CorefChain chain : DcorefMentionIndexSlowITest.coref(DcorefMentionIndexSlowITest.annotate(DcorefMentionIndexSlowITest.longDocument(8)), true, new double[1]).values()) {
+      expected += chain.getMentionsInTextualOrder().size();
+    }
+    assertEquals(expected, numMentions);
+    // and every mention has an ID of its own
+    assertEquals(numMentions, document.allPredictedMentions.size());
+  }
+
+  public void testWindow() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(Constants.WINDOW_PROP, "2");
+    setUp(props);
+    Document document = corefIncrementally(DcorefMentionIndexSlowITest.longDocument(8));
+
+    assertEquals(document.numSentences - 2, document.firstKeptSentence);
+    for (int i = 0; i < document.firstKeptSentence; i++) {
+      assertTrue(document.getOrderedMentions().get(i).isEmpty());
+    }
+    for (CorefCluster c : document.corefClusters.values()) {
+      boolean kept = false;
+      for (Mention m : c.getCorefMentions()) {
+        kept |= (m.sentNum >= document.firstKeptSentence);
+        assertTrue(document.allPredictedMentions.containsKey(m.mentionID));
+      }
+      assertTrue(kept);
+    }
+  }
+
+}
@@ -0,0 +1,76 @@
+package edu.stanford.nlp.dcoref;
+
+import java.util.Map;
+import java.util.Properties;
+
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.DeterministicCorefAnnotator;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+
+import junit.framework.TestCase;
+
+/**
+ * Runs dcoref on a long document with and without looking up the
+ * antecedents of the string and head match sieves in a
+ * {@link MentionIndex}, checks that the chains are the same, and reports
+ * how long each took.  Run its main method to see just the timings.
+ */
+public class DcorefMentionIndexSlowITest extends TestCase {
+
+  private static final String[] PARAGRAPHS = {
+    "John Smith joined Acme Corp. in Boston last year. The company hired him as an engineer, and he said that he liked the work.",
+    "Mary Jones met John Smith at a conference in Chicago. She told him about her plans for a new company in the city.",
+    "Acme Corp. announced that its profits rose. The announcement surprised analysts, who had expected the company to report a loss.",
+    "Mr. Bickford, an 18-year mediation veteran, spoke to the workers. Mr. Bickford said the union and Acme would reach a deal.",
+  };
+
+  /** A document of about the given number of sentences, in which the same people and companies come up again and again. */
+  static String longDocument(int numSentences) {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < numSentences / 2; i++) {
+      text.append(PARAGRAPHS[i % PARAGRAPHS.length]).append(' ');
+    }
+    return text.toString();
+  }
+
+  static Annotation annotate(String text) {
+    Properties props = new Properties();
+    props.setProperty("annotators", "tokenize, ssplit, pos, lemma, ner, parse");
+    Annotation annotation = new Annotation(text);
+    new StanfordCoreNLP(props).annotate(annotation);
+    return annotation;
+  }
+
+  /** Runs dcoref on the document and returns the chains and the seconds taken. */
+  static Map<Integer, CorefChain> coref(Annotation annotation, boolean useMentionIndex, double[] seconds) {
+    Properties props = new Properties();
+    props.setProperty(Constants.MENTION_INDEX_PROP, Boolean.toString(useMentionIndex));
+    DeterministicCorefAnnotator dcoref = new DeterministicCorefAnnotator(props);
+    long start = System.nanoTime();
+    dcoref.annotate(annotation);
+    seconds[0] = (System.nanoTime() - start) / 1e9;
+    return annotation.get(CorefCoreAnnotations.CorefChainAnnotation.class);
+  }
+
+  public void testSameChains() {
+    String text = longDocument(200);
+    double[] seconds = new double[1];
+    Map<Integer, CorefChain> expected = coref(annotate(text), false, seconds);
+    Map<Integer, CorefChain> actual = coref(annotate(text), true, seconds);
+    assertTrue(expected.size() > 10);
+    assertEquals(expected, actual);
+  }
+
+  public static void main(String[] args) {
+    int numSentences = (args.length > 0) ? Integer.parseInt(args[0]) : 400;
+    Annotation annotation = annotate(longDocument(numSentences));
+    double[] seconds = new double[1];
+    for (int iter = 0; iter < 3; iter++) {
+      for (boolean useMentionIndex : new boolean[] { false, true }) {
+        Map<Integer, CorefChain> chains = coref(annotation, useMentionIndex, seconds);
+        System.out.printf("mentionIndex=%b: %d chains in %.2f seconds%n", useMentionIndex, chains.size(), seconds[0]);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,48 @@
+package edu.stanford.nlp.dcoref;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.DeterministicCorefAnnotator;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that annotating documents on several threads with one
+ * {@link DeterministicCorefAnnotator} finds the same chains as annotating
+ * them one at a time.
+ */
+public class DcorefParallelITest extends TestCase {
+
+  private static List<Annotation> documents() {
+    List<Annotation> documents = new ArrayList<Annotation>();
+    for (int numSentences = 2; numSentences <= 24; numSentences += 2) {
+      documents.add(DcorefMentionIndexSlowITest.annotate(DcorefMentionIndexSlowITest.longDocument(numSentences)));
+    }
+    return documents;
+  }
+
+  private static List<Map<Integer, CorefChain>> chains(List<Annotation> documents) {
+    List<Map<Integer, CorefChain>> chains = new ArrayList<Map<Integer, CorefChain>>();
+    for (Annotation document : documents) {
+      chains.add(document.get(CorefCoreAnnotations.CorefChainAnnotation.class));
+    }
+    return chains;
+  }
+
+  public void testSameChains() {
+    List<Annotation> documents = documents();
+    new DeterministicCorefAnnotator(new Properties()).annotate(documents);
+    List<Map<Integer, CorefChain>> expected = chains(documents);
+
+    Properties props = new Properties();
+    props.setProperty(Constants.NTHREADS_PROP, "4");
+    List<Annotation> parallelDocuments = documents();
+    new DeterministicCorefAnnotator(props).annotate(parallelDocuments);
+    assertEquals(expected, chains(parallelDocuments));
+  }
+
+}
@@ -0,0 +1,86 @@
+package edu.stanford.nlp.dcoref;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.TreeCoreAnnotations;
+import edu.stanford.nlp.util.CoreMap;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks the per sieve stats of {@link SieveCoreferenceSystem}, and that
+ * the mention budget skips the sieves it should.
+ */
+public class DcorefSieveStatsITest extends TestCase {
+
+  /** Resolves the text as DeterministicCorefAnnotator does, returning the number of mentions and of chains. */
+  private static int[] coref(SieveCoreferenceSystem corefSystem, String text) throws Exception {
+    Annotation annotation = DcorefMentionIndexSlowITest.annotate(text);
+    List<List<CoreLabel>> words = new ArrayList<List<CoreLabel>>();
+    List<Tree> trees = new ArrayList<Tree>();
+    for (CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
+      List<CoreLabel> tokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
+      Tree tree = sentence.get(TreeCoreAnnotations.TreeAnnotation.class);
+      MentionExtractor.mergeLabels(tree, tokens);
+      MentionExtractor.initializeUtterance(tokens);
+      words.add(tokens);
+      trees.add(tree);
+    }
+    List<List<Mention>> mentions = new RuleBasedCorefMentionFinder().extractPredictedMentions(annotation, 0, corefSystem.dictionaries());
+    Document document = new MentionExtractor(corefSystem.dictionaries(), corefSystem.semantics()).arrange(annotation, words, trees, mentions);
+    int numMentions = document.allPredictedMentions.size();
+    Map<Integer, CorefChain> chains = corefSystem.coref(document);
+    return new int[] { numMentions, chains.size() };
+  }
+
+  public void testStats() throws Exception {
+    SieveCoreferenceSystem corefSystem = new SieveCoreferenceSystem(new Properties());
+    int[] counts = coref(corefSystem, DcorefMentionIndexSlowITest.longDocument(8));
+
+    List<SieveStats> stats = corefSystem.sieveStats();
+    String[] sieveNames = Constants.SIEVEPASSES.split(",\\s*");
+    assertEquals(sieveNames.length, stats.size());
+    long links = 0;
+    for (int i = 0; i < sieveNames.length; i++) {
+      SieveStats s = stats.get(i);
+      assertEquals(sieveNames[i], s.getSieveName());
+      assertEquals(1, s.getDocuments());
+      assertEquals(0, s.getSkippedDocuments());
+      assertTrue(s.getPairsTested() >= s.getLinks());
+      links += s.getLinks();
+    }
+    // each link merges two clusters
+    assertEquals(counts[0] - counts[1], links);
+    assertTrue(links > 0);
+
+    corefSystem.resetSieveStats();
+    assertEquals(0, corefSystem.sieveStats().get(0).getDocuments());
+  }
+
+  public void testBudget() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(Constants.BUDGET_MAX_MENTIONS_PROP, "10");
+    props.setProperty(Constants.BUDGET_SKIP_SIEVES_PROP, "RelaxedHeadMatch, PronounMatch");
+    SieveCoreferenceSystem corefSystem = new SieveCoreferenceSystem(props);
+    coref(corefSystem, "John Smith joined Acme Corp. He liked it.");
+    coref(corefSystem, DcorefMentionIndexSlowITest.longDocument(8));
+
+    for (SieveStats s : corefSystem.sieveStats()) {
+      if (s.getSieveName().equals("RelaxedHeadMatch") || s.getSieveName().equals("PronounMatch")) {
+        assertEquals(1, s.getDocuments());
+        assertEquals(1, s.getSkippedDocuments());
+      } else {
+        assertEquals(2, s.getDocuments());
+        assertEquals(0, s.getSkippedDocuments());
+      }
+    }
+  }
+
+}
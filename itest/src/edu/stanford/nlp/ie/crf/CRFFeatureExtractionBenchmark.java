@@ -0,0 +1,101 @@
+package edu.stanford.nlp.ie.crf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+
+/**
+ * Compares the test time throughput of a CRFClassifier when it finds the
+ * feature indices of a document directly with a FeatureIdLookup and when
+ * it looks up each feature string, and checks that both give the same
+ * features and labels.  It reports tokens per second for feature
+ * extraction alone and for classification.
+ * <br>
+ * Usage: <code>java edu.stanford.nlp.ie.crf.CRFFeatureExtractionBenchmark
+ * serializedClassifier testFile [iterations]</code>
+ * <br>
+ * The test file is read with the classifier's own reader, so it is
+ * usually CoNLL style, a word and its answer per line.
+ */
+public class CRFFeatureExtractionBenchmark {
+
+  private CRFFeatureExtractionBenchmark() {} // main method only
+
+  private static int numTokens(List<List<CoreLabel>> documents) {
+    int tokens = 0;
+    for (List<CoreLabel> document : documents) {
+      tokens += document.size();
+    }
+    return tokens;
+  }
+
+  private static List<int[][][]> extract(CRFClassifier<CoreLabel> crf, List<List<CoreLabel>> documents, int iterations, String name) {
+    List<int[][][]> data = new ArrayList<int[][][]>();
+    long start = System.nanoTime();
+    for (int iter = 0; iter < iterations; iter++) {
+      data.clear();
+      for (List<CoreLabel> document : documents) {
+        data.add(crf.documentToDataAndLabels(document).first());
+      }
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.printf("%-28s %8.2f s  %10.0f tokens/s%n", name + " features", seconds, iterations * numTokens(documents) / seconds);
+    return data;
+  }
+
+  private static List<String> classify(CRFClassifier<CoreLabel> crf, List<List<CoreLabel>> documents, int iterations, String name) {
+    List<String> answers = new ArrayList<String>();
+    long start = System.nanoTime();
+    for (int iter = 0; iter < iterations; iter++) {
+      answers.clear();
+      for (List<CoreLabel> document : documents) {
+        for (CoreLabel label : crf.classify(document)) {
+          answers.add(label.get(CoreAnnotations.AnswerAnnotation.class));
+        }
+      }
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.printf("%-28s %8.2f s  %10.0f tokens/s%n", name + " classify", seconds, iterations * numTokens(documents) / seconds);
+    return answers;
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 2) {
+      System.err.println("Usage: java " + CRFFeatureExtractionBenchmark.class.getName() + " serializedClassifier testFile [iterations]");
+      System.exit(1);
+    }
+    CRFClassifier<CoreLabel> crf = CRFClassifier.getClassifier(args[0]);
+    int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+    List<List<CoreLabel>> documents = new ArrayList<List<CoreLabel>>();
+    for (List<CoreLabel> document : crf.makeObjectBankFromFile(args[1], crf.defaultReaderAndWriter())) {
+      documents.add(document);
+    }
+    System.out.printf("%d documents, %d tokens, %d features%n", documents.size(), numTokens(documents), crf.featureIndex.size());
+
+    // warm up the JVM on both paths before timing either
+    crf.flags.stringFeatureLookup = true;
+    extract(crf, documents, 1, "warmup strings");
+    crf.flags.stringFeatureLookup = false;
+    extract(crf, documents, 1, "warmup ids");
+
+    crf.flags.stringFeatureLookup = true;
+    List<int[][][]> stringData = extract(crf, documents, iterations, "strings");
+    List<String> stringAnswers = classify(crf, documents, iterations, "strings");
+    crf.flags.stringFeatureLookup = false;
+    List<int[][][]> idData = extract(crf, documents, iterations, "ids");
+    List<String> idAnswers = classify(crf, documents, iterations, "ids");
+
+    int differentDocuments = 0;
+    for (int i = 0; i < stringData.size(); i++) {
+      if ( ! Arrays.deepEquals(stringData.get(i), idData.get(i))) {
+        differentDocuments++;
+      }
+    }
+    System.out.printf("Features differ in %d of %d documents; labels %s%n", differentDocuments, documents.size(),
+                      stringAnswers.equals(idAnswers) ? "are identical" : "DIFFER");
+  }
+
+}
@@ -0,0 +1,112 @@
+package edu.stanford.nlp.parser.lexparser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.parser.metrics.Evalb;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.TreeTransformer;
+import edu.stanford.nlp.trees.Treebank;
+
+/**
+ * Compares the speed and accuracy of coarse-to-fine pruned PCFG parsing
+ * with exhaustive parsing on a held-out treebank.  For each pruning
+ * threshold, and for no pruning at all, it parses every sentence of the
+ * treebank up to a maximum length and reports the time taken and the
+ * labeled bracketing F1, as well as how many parses differ from the
+ * exhaustive ones (which is the search error pruning introduces).
+ * <br>
+ * Usage: <code>java edu.stanford.nlp.parser.lexparser.CoarseToFineBenchmark
+ * model treebankPath [maxLength [threshold ...]]</code>
+ * <br>
+ * For example, with the English PCFG and section 23 of the WSJ:
+ * <code>englishPCFG.ser.gz /u/nlp/data/wsj/23 60 -5 -8 -10 -15</code>
+ */
+public class CoarseToFineBenchmark {
+
+  private CoarseToFineBenchmark() {} // main method only
+
+  private static List<String> parseAll(LexicalizedParser parser, List<List<? extends HasWord>> sentences, List<Tree> golds, TreeTransformer collinizer, String name) {
+    Evalb evalb = new Evalb(name, false);
+    List<String> parses = new ArrayList<String>();
+    ParserQuery query = parser.parserQuery();
+    int failures = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < sentences.size(); i++) {
+      Tree guess = null;
+      if (query.parse(sentences.get(i))) {
+        guess = query.getBestParse();
+      } else {
+        failures++;
+      }
+      parses.add(guess == null ? null : guess.toString());
+      if (guess != null) {
+        evalb.evaluate(collinizer.transformTree(guess), collinizer.transformTree(golds.get(i)), null);
+      }
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.printf("%-24s %8.2f s  %6.1f words/s  F1 %6.2f  failed %d%n", name, seconds,
+                      numWords(sentences) / seconds, evalb.getEvalbF1Percent(), failures);
+    return parses;
+  }
+
+  private static int numWords(List<List<? extends HasWord>> sentences) {
+    int words = 0;
+    for (List<? extends HasWord> sentence : sentences) {
+      words += sentence.size();
+    }
+    return words;
+  }
+
+  public static void main(String[] args) {
+    if (args.length < 2) {
+      System.err.println("Usage: java " + CoarseToFineBenchmark.class.getName() + " model treebankPath [maxLength [threshold ...]]");
+      System.exit(1);
+    }
+    LexicalizedParser parser = LexicalizedParser.loadModel(args[0]);
+    int maxLength = args.length > 2 ? Integer.parseInt(args[2]) : 60;
+    List<String> thresholds = new ArrayList<String>();
+    for (int i = 3; i < args.length; i++) {
+      thresholds.add(args[i]);
+    }
+    if (thresholds.isEmpty()) {
+      thresholds.add("-5");
+      thresholds.add("-10");
+      thresholds.add("-15");
+    }
+
+    Options op = parser.getOp();
+    Treebank treebank = op.tlpParams.memoryTreebank();
+    treebank.loadPath(args[1]);
+    List<List<? extends HasWord>> sentences = new ArrayList<List<? extends HasWord>>();
+    List<Tree> golds = new ArrayList<Tree>();
+    for (Tree tree : treebank) {
+      List<? extends HasWord> sentence = tree.yieldHasWord();
+      if (sentence.size() <= maxLength) {
+        sentences.add(sentence);
+        golds.add(tree);
+      }
+    }
+    System.out.printf("Parsing %d sentences (%d words) of at most %d words%n", sentences.size(), numWords(sentences), maxLength);
+    TreeTransformer collinizer = op.tlpParams.collinizer();
+
+    // a first pass to warm up the JVM, whose time means little
+    parser.setOptionFlags("-noCoarseToFine");
+    parseAll(parser, sentences.subList(0, Math.min(50, sentences.size())), golds, collinizer, "warmup");
+
+    List<String> exhaustive = parseAll(parser, sentences, golds, collinizer, "exhaustive");
+    for (String threshold : thresholds) {
+      parser.setOptionFlags("-coarseToFineThreshold", threshold);
+      List<String> pruned = parseAll(parser, sentences, golds, collinizer, "coarseToFine " + threshold);
+      int differ = 0;
+      for (int i = 0; i < pruned.size(); i++) {
+        if (pruned.get(i) == null ? exhaustive.get(i) != null : ! pruned.get(i).equals(exhaustive.get(i))) {
+          differ++;
+        }
+      }
+      System.out.printf("  %d of %d parses differ from exhaustive parsing%n", differ, pruned.size());
+    }
+  }
+
+}
@@ -151,6 +151,16 @@ public class ParserAnnotatorITest extends TestCase {
 
   }
 
+  /** A parse time limit keeps the parser off the parallel sentence path, which cannot apply it */
+  public void testMaxTimeNotIndependent() {
+    Properties props = new Properties();
+    assertTrue(new ParserAnnotator("parse", props).annotatesSentencesIndependently());
+    props.setProperty("parse.maxtime", "1000");
+    ParserAnnotator timed = new ParserAnnotator("parse", props);
+    assertFalse(timed.annotatesSentencesIndependently());
+    assertParseOK(timed);
+  }
+
   static final String text = "I saw him ordering them to saw. Jack 's father has n't played\ngolf since 20 years ago . I 'm going to the\nbookstore to return a book Jack and his friends bought me .";
 
   static final String[] answer = {
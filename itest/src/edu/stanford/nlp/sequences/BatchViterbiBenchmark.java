@@ -0,0 +1,175 @@
+package edu.stanford.nlp.sequences;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares decoding a batch of sentences one at a time with
+ * {@link ExactBestSequenceFinder} against decoding them together with a
+ * {@link BatchBestSequenceFinder} on one and on several threads, and
+ * checks that all give the same sequences.  The sentences are synthetic
+ * sequence models with precomputed random scores, so that the time is
+ * spent in the Viterbi search rather than in computing scores.  It
+ * reports sentences per second for each.
+ * <br>
+ * Usage: <code>java edu.stanford.nlp.sequences.BatchViterbiBenchmark
+ * [sentences [numTags [leftWindow [rightWindow [threads [iterations]]]]]]</code>
+ * <br>
+ * The defaults, 2000 sentences of 5 to 60 words with 9 tags and a left
+ * window of 1, are about the shape of decoding CoNLL NER.
+ */
+public class BatchViterbiBenchmark {
+
+  private BatchViterbiBenchmark() {} // main method only
+
+  /** A sequence model with a precomputed score for each tag given its window. */
+  private static class TableSequenceModel implements SequenceModel {
+
+    private final int length;
+    private final int leftWindow;
+    private final int rightWindow;
+    private final int numTags;
+    private final int[] tags;
+    private final int[] boundary;
+    // [pos][offset in window][windowTag * numTags + tag]
+    private final double[][][] weights;
+
+    TableSequenceModel(int length, int leftWindow, int rightWindow, int numTags, Random random) {
+      this.length = length;
+      this.leftWindow = leftWindow;
+      this.rightWindow = rightWindow;
+      this.numTags = numTags;
+      tags = new int[numTags];
+      for (int t = 0; t < numTags; t++) {
+        tags[t] = t;
+      }
+      boundary = new int[] { numTags };
+      weights = new double[leftWindow + length][leftWindow + rightWindow + 1][(numTags + 1) * numTags];
+      for (double[][] posWeights : weights) {
+        for (double[] offsetWeights : posWeights) {
+          for (int i = 0; i < offsetWeights.length; i++) {
+            offsetWeights[i] = random.nextGaussian();
+          }
+        }
+      }
+    }
+
+    @Override
+    public int length() {
+      return length;
+    }
+
+    @Override
+    public int leftWindow() {
+      return leftWindow;
+    }
+
+    @Override
+    public int rightWindow() {
+      return rightWindow;
+    }
+
+    @Override
+    public int[] getPossibleValues(int pos) {
+      return (pos < leftWindow || pos >= leftWindow + length) ? boundary : tags;
+    }
+
+    @Override
+    public double scoreOf(int[] sequence, int pos) {
+      double score = 0.0;
+      for (int k = 0; k < leftWindow + rightWindow + 1; k++) {
+        score += weights[pos][k][sequence[pos - leftWindow + k] * numTags + sequence[pos]];
+      }
+      return score;
+    }
+
+    @Override
+    public double[] scoresOf(int[] sequence, int pos) {
+      double[] scores = new double[numTags];
+      int tag = sequence[pos];
+      for (int t = 0; t < numTags; t++) {
+        sequence[pos] = t;
+        scores[t] = scoreOf(sequence, pos);
+      }
+      sequence[pos] = tag;
+      return scores;
+    }
+
+    @Override
+    public double scoreOf(int[] sequence) {
+      double score = 0.0;
+      for (int pos = leftWindow; pos < leftWindow + length; pos++) {
+        score += scoreOf(sequence, pos);
+      }
+      return score;
+    }
+
+  }
+
+  private static List<int[]> perSentence(List<SequenceModel> models, int iterations) {
+    List<int[]> sequences = null;
+    long start = System.nanoTime();
+    for (int iter = 0; iter < iterations; iter++) {
+      sequences = new ArrayList<int[]>(models.size());
+      for (SequenceModel model : models) {
+        sequences.add(new ExactBestSequenceFinder().bestSequence(model));
+      }
+    }
+    report("per sentence", models.size(), iterations, start);
+    return sequences;
+  }
+
+  private static List<int[]> batched(List<SequenceModel> models, int threads, int iterations) {
+    BatchBestSequenceFinder finder = new BatchBestSequenceFinder(threads);
+    List<int[]> sequences = null;
+    long start = System.nanoTime();
+    for (int iter = 0; iter < iterations; iter++) {
+      sequences = finder.bestSequences(models);
+    }
+    report("batch, " + threads + " thread" + (threads == 1 ? "" : "s"), models.size(), iterations, start);
+    return sequences;
+  }
+
+  private static void report(String name, int sentences, int iterations, long start) {
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.printf("%-20s %8.2f s  %10.0f sentences/s%n", name, seconds, iterations * sentences / seconds);
+  }
+
+  private static boolean same(List<int[]> a, List<int[]> b) {
+    for (int i = 0; i < a.size(); i++) {
+      if ( ! Arrays.equals(a.get(i), b.get(i))) {
+        return false;
+      }
+    }
+    return a.size() == b.size();
+  }
+
+  public static void main(String[] args) {
+    int sentences = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+    int numTags = args.length > 1 ? Integer.parseInt(args[1]) : 9;
+    int leftWindow = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+    int rightWindow = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+    int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+    int iterations = args.length > 5 ? Integer.parseInt(args[5]) : 10;
+
+    Random random = new Random(1);
+    List<SequenceModel> models = new ArrayList<SequenceModel>(sentences);
+    for (int i = 0; i < sentences; i++) {
+      models.add(new TableSequenceModel(5 + random.nextInt(56), leftWindow, rightWindow, numTags, random));
+    }
+    System.out.printf("%d sentences, %d tags, window %d+%d, %d iterations%n", sentences, numTags, leftWindow, rightWindow, iterations);
+
+    // warm up the JVM on every path before timing any
+    perSentence(models, 1);
+    batched(models, 1, 1);
+    batched(models, threads, 1);
+
+    List<int[]> expected = perSentence(models, iterations);
+    List<int[]> single = batched(models, 1, iterations);
+    List<int[]> multi = batched(models, threads, iterations);
+    System.out.println("Sequences " + (same(expected, single) && same(expected, multi) ? "are identical" : "DIFFER"));
+  }
+
+}
@@ -0,0 +1,233 @@
+package edu.stanford.nlp.util;
+
+import java.util.Random;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+
+/**
+ * Measures get and set throughput of {@link ArrayCoreMap} on token maps
+ * holding as many annotations as a token has after the full pipeline
+ * (or more, to see where the slot table pays off), and compares it
+ * against the plain linear array search ArrayCoreMap used before it had
+ * a slot table.
+ * <br>
+ * Usage: <code>java edu.stanford.nlp.util.ArrayCoreMapBenchmark [numKeys]</code>
+ * <br>
+ * Each round is timed separately after a warmup, and the median is
+ * reported, so the numbers are reasonably stable without a harness.
+ */
+public class ArrayCoreMapBenchmark {
+
+  private static final int NUM_TOKENS = 10000;
+  private static final int LOOKUPS_PER_TOKEN = 32;
+  private static final int WARMUP_ROUNDS = 10;
+  private static final int ROUNDS = 25;
+
+  /** The keys of a fully annotated token, roughly in the order they get set */
+  @SuppressWarnings("unchecked")
+  private static final Class<? extends TypesafeMap.Key<Object>>[] TOKEN_KEYS = new Class[] {
+    CoreAnnotations.TextAnnotation.class,
+    CoreAnnotations.ValueAnnotation.class,
+    CoreAnnotations.OriginalTextAnnotation.class,
+    CoreAnnotations.CharacterOffsetBeginAnnotation.class,
+    CoreAnnotations.CharacterOffsetEndAnnotation.class,
+    CoreAnnotations.BeforeAnnotation.class,
+    CoreAnnotations.AfterAnnotation.class,
+    CoreAnnotations.IndexAnnotation.class,
+    CoreAnnotations.SentenceIndexAnnotation.class,
+    CoreAnnotations.PartOfSpeechAnnotation.class,
+    CoreAnnotations.LemmaAnnotation.class,
+    CoreAnnotations.NamedEntityTagAnnotation.class,
+    CoreAnnotations.NormalizedNamedEntityTagAnnotation.class,
+    CoreAnnotations.ShapeAnnotation.class,
+    CoreAnnotations.UtteranceAnnotation.class,
+    CoreAnnotations.SpeakerAnnotation.class,
+    CoreAnnotations.AnswerAnnotation.class,
+    CoreAnnotations.GoldAnswerAnnotation.class,
+    CoreAnnotations.CategoryAnnotation.class,
+    CoreAnnotations.CopyAnnotation.class,
+    // only larger maps, such as sentences and documents, get this far
+    CoreAnnotations.TrueCaseTextAnnotation.class,
+    CoreAnnotations.StackedNamedEntityTagAnnotation.class,
+    CoreAnnotations.CoNLLDepTypeAnnotation.class,
+    CoreAnnotations.ProjectedCategoryAnnotation.class,
+    CoreAnnotations.ArgumentAnnotation.class,
+    CoreAnnotations.MarkingAnnotation.class,
+    CoreAnnotations.SemanticHeadWordAnnotation.class,
+    CoreAnnotations.SemanticHeadTagAnnotation.class,
+    CoreAnnotations.VerbSenseAnnotation.class,
+    CoreAnnotations.CategoryFunctionalTagAnnotation.class,
+    CoreAnnotations.NERIDAnnotation.class,
+    CoreAnnotations.ParentAnnotation.class,
+  };
+
+  /** Keys looked up but never set, as annotators often check for absent annotations */
+  @SuppressWarnings("unchecked")
+  private static final Class<? extends TypesafeMap.Key<Object>>[] ABSENT_KEYS = new Class[] {
+    CoreAnnotations.StemAnnotation.class,
+    CoreAnnotations.TrueCaseAnnotation.class,
+    CoreAnnotations.CoarseTagAnnotation.class,
+    CoreAnnotations.ParaPositionAnnotation.class,
+  };
+
+  private ArrayCoreMapBenchmark() {} // main method only
+
+  /** The get and set of ArrayCoreMap as it was, a linear search of two arrays */
+  private static class LinearSearchMap {
+    private Class<?>[] keys = new Class<?>[4];
+    private Object[] values = new Object[4];
+    private int size;
+
+    Object get(Class<?> key) {
+      for (int i = 0; i < size; i++) {
+        if (key == keys[i]) {
+          return values[i];
+        }
+      }
+      return null;
+    }
+
+    void set(Class<?> key, Object value) {
+      for (int i = 0; i < size; i++) {
+        if (keys[i] == key) {
+          values[i] = value;
+          return;
+        }
+      }
+      if (size >= keys.length) {
+        int capacity = keys.length + (keys.length < 16 ? 4: 8);
+        Class<?>[] newKeys = new Class<?>[capacity];
+        Object[] newValues = new Object[capacity];
+        System.arraycopy(keys, 0, newKeys, 0, size);
+        System.arraycopy(values, 0, newValues, 0, size);
+        keys = newKeys;
+        values = newValues;
+      }
+      keys[size] = key;
+      values[size] = value;
+      size++;
+    }
+  }
+
+  private interface Workload {
+    /** Runs one round and returns something depending on the work, so it is not optimized away */
+    int run();
+  }
+
+  private static double medianNanos(Workload workload, long operations) {
+    int sink = 0;
+    for (int i = 0; i < WARMUP_ROUNDS; i++) {
+      sink += workload.run();
+    }
+    double[] times = new double[ROUNDS];
+    for (int i = 0; i < ROUNDS; i++) {
+      long start = System.nanoTime();
+      sink += workload.run();
+      times[i] = (double) (System.nanoTime() - start) / operations;
+    }
+    if (sink == 42) {
+      System.out.print("");
+    }
+    java.util.Arrays.sort(times);
+    return times[ROUNDS / 2];
+  }
+
+  public static void main(String[] args) {
+    final int numKeys = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+    if (numKeys > TOKEN_KEYS.length) {
+      throw new IllegalArgumentException("At most " + TOKEN_KEYS.length + " keys");
+    }
+    Random random = new Random(1234);
+    final Object[] values = new Object[numKeys];
+    for (int i = 0; i < numKeys; i++) {
+      values[i] = "v" + i;
+    }
+    // lookups mostly of present keys, some of absent ones
+    final Class<?>[] lookups = new Class<?>[LOOKUPS_PER_TOKEN];
+    for (int i = 0; i < LOOKUPS_PER_TOKEN; i++) {
+      lookups[i] = (i % 8 == 7) ? ABSENT_KEYS[random.nextInt(ABSENT_KEYS.length)] : TOKEN_KEYS[random.nextInt(numKeys)];
+    }
+
+    final CoreLabel[] tokens = new CoreLabel[NUM_TOKENS];
+    final LinearSearchMap[] linearTokens = new LinearSearchMap[NUM_TOKENS];
+    for (int t = 0; t < NUM_TOKENS; t++) {
+      tokens[t] = new CoreLabel();
+      linearTokens[t] = new LinearSearchMap();
+      for (int k = 0; k < numKeys; k++) {
+        tokens[t].set(TOKEN_KEYS[k], values[k]);
+        linearTokens[t].set(TOKEN_KEYS[k], values[k]);
+      }
+    }
+
+    final long getOperations = (long) NUM_TOKENS * LOOKUPS_PER_TOKEN;
+    final long setOperations = (long) NUM_TOKENS * numKeys;
+
+    double linearGet = medianNanos(new Workload() {
+      @Override
+      @SuppressWarnings("unchecked")
+      public int run() {
+        int found = 0;
+        for (LinearSearchMap token : linearTokens) {
+          for (Class<?> key : lookups) {
+            if (token.get(key) != null) {
+              found++;
+            }
+          }
+        }
+        return found;
+      }
+    }, getOperations);
+
+    double slotGet = medianNanos(new Workload() {
+      @Override
+      @SuppressWarnings("unchecked")
+      public int run() {
+        int found = 0;
+        for (CoreLabel token : tokens) {
+          for (Class key : lookups) {
+            if (token.get(key) != null) {
+              found++;
+            }
+          }
+        }
+        return found;
+      }
+    }, getOperations);
+
+    double linearSet = medianNanos(new Workload() {
+      @Override
+      public int run() {
+        int total = 0;
+        for (int t = 0; t < NUM_TOKENS; t++) {
+          LinearSearchMap token = new LinearSearchMap();
+          for (int k = 0; k < numKeys; k++) {
+            token.set(TOKEN_KEYS[k], values[k]);
+          }
+          total += token.size;
+        }
+        return total;
+      }
+    }, setOperations);
+
+    double slotSet = medianNanos(new Workload() {
+      @Override
+      public int run() {
+        int total = 0;
+        for (int t = 0; t < NUM_TOKENS; t++) {
+          CoreLabel token = new CoreLabel();
+          for (int k = 0; k < numKeys; k++) {
+            token.set(TOKEN_KEYS[k], values[k]);
+          }
+          total += token.size();
+        }
+        return total;
+      }
+    }, setOperations);
+
+    System.out.printf("Token maps with %d keys (slot table above %d keys)%n", numKeys, ArrayCoreMap.LINEAR_SEARCH_MAX);
+    System.out.printf("get: linear search %.2f ns/op, ArrayCoreMap %.2f ns/op%n", linearGet, slotGet);
+    System.out.printf("set: linear search %.2f ns/op, ArrayCoreMap %.2f ns/op%n", linearSet, slotSet);
+  }
+
+}
@@ -54,6 +54,9 @@ public class Constants {
   /** Default sieve passes */
   public static final String SIEVEPASSES = "MarkRole, DiscourseMatch, ExactStringMatch, RelaxedExactStringMatch, PreciseConstructs, StrictHeadMatch1, StrictHeadMatch2, StrictHeadMatch3, StrictHeadMatch4, RelaxedHeadMatch, PronounMatch";
 
+  /** Sieves skipped for documents with more mentions than {@link #BUDGET_MAX_MENTIONS_PROP} allows */
+  public static final String BUDGET_SKIP_SIEVES = "LexicalChainMatch, AliasMatch, PronounMatch";
+
   /** Use animacy list (Bergsma and Lin, 2006; Ji and Lin, 2009) */
   public static final boolean USE_ANIMACY_LIST = true;
 
@@ -87,6 +90,11 @@ public class Constants {
   public static final String PARSER_MAXLEN_PROP = "parse.maxlen";
   public static final String POSTPROCESSING_PROP = "dcoref.postprocessing";
   public static final String MAXDIST_PROP = "dcoref.maxdist";
+  public static final String MENTION_INDEX_PROP = "dcoref.mentionIndex";
+  public static final String NTHREADS_PROP = "dcoref.nthreads";
+  public static final String WINDOW_PROP = "dcoref.window";
+  public static final String BUDGET_MAX_MENTIONS_PROP = "dcoref.budget.maxMentions";
+  public static final String BUDGET_SKIP_SIEVES_PROP = "dcoref.budget.skipSieves";
   public static final String REPLICATECONLL_PROP = "dcoref.replicate.conll";
   public static final String GENDER_NUMBER_PROP = "dcoref.big.gender.number";
   public static final String COUNTRIES_PROP = "dcoref.countries";
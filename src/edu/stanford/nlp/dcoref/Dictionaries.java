@@ -20,6 +20,12 @@ import edu.stanford.nlp.util.Generics;
 import edu.stanford.nlp.util.Pair;
 import edu.stanford.nlp.util.PropertiesUtils;
 
+/**
+ * The word lists and dictionaries used in coreference.  They are all
+ * loaded when the Dictionaries is constructed and only read afterwards,
+ * so one Dictionaries may be shared by threads resolving different
+ * documents.
+ */
 public class Dictionaries {
 
   public enum MentionType {
@@ -202,7 +208,8 @@ public class Dictionaries {
   public final Set<String> inanimateWords = Generics.newHashSet();
   public final Set<String> animateWords = Generics.newHashSet();
 
-  public final Map<List<String>, Gender> genderNumber = Generics.newHashMap();
+  /** Read-only if loaded from a {@link GenderNumberTable} */
+  public final Map<List<String>, Gender> genderNumber;
 
   public final ArrayList<Counter<Pair<String, String>>> corefDict = new ArrayList<Counter<Pair<String, String>>>(4);
   public final Counter<Pair<String, String>> corefDictPMI = new ClassicCounter<Pair<String, String>>();
@@ -369,13 +376,29 @@ public class Dictionaries {
   }
 
   /**
-   * Load Bergsma and Lin (2006) gender and number list.
-   *
+   * Load Bergsma and Lin (2006) gender and number list, either as text or
+   * as a {@link GenderNumberTable}, which is mapped rather than read into
+   * memory.
    */
-  // todo: This is a complete memory hog. It takes at least 600MB and probably does pretty little. Either store more efficiently or just eliminate?
-  private void loadGenderNumber(String file, String neutralWordsFile) {
+  private Map<List<String>, Gender> loadGenderNumber(String file, String neutralWordsFile) {
     try {
       getWordsFromFile(neutralWordsFile, neutralWords, false);
+    } catch (IOException e) {
+      throw new RuntimeIOException(e);
+    }
+    if (GenderNumberTable.isGenderNumberTable(file)) {
+      return GenderNumberTable.load(file);
+    }
+    return readGenderNumber(file);
+  }
+
+  /**
+   * Reads the gender of each phrase of the text gender and number list.
+   */
+  // todo: This is a complete memory hog. It takes at least 600MB and probably does pretty little. Convert it to a GenderNumberTable or just eliminate?
+  static Map<List<String>, Gender> readGenderNumber(String file) {
+    Map<List<String>, Gender> genderNumber = Generics.newHashMap();
+    try {
       BufferedReader reader = IOUtils.readerFromString(file);
       for (String line; (line = reader.readLine()) != null; ) {
         String[] split = line.split("\t");
@@ -407,6 +430,7 @@ public class Dictionaries {
     } catch (IOException e) {
       throw new RuntimeIOException(e);
     }
+    return genderNumber;
   }
 
   private static void loadCorefDict(String[] file,
@@ -566,7 +590,7 @@ public class Dictionaries {
     if(Constants.USE_ANIMACY_LIST) loadAnimacyLists(animateWords, inanimateWords);
     loadGenderLists(maleWords, neutralWords, femaleWords);
     loadNumberLists(pluralWords, singularWords);
-    loadGenderNumber(genderNumber, neutralWords);
+    this.genderNumber = loadGenderNumber(genderNumber, neutralWords);
     loadCountriesLists(countries);
     loadStatesLists(states);
     setPronouns();
@@ -30,6 +30,7 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -113,6 +114,12 @@ public class Document implements Serializable {
   public int numParagraph;
   public int numSentences;
 
+  /** The mentions of the sentences before this one have been evicted; see {@link #evictSentencesBefore} */
+  public int firstKeptSentence;
+
+  /** The highest mention ID the document has had, including evicted mentions; {@link #addSentences} numbers after it */
+  private int maxMentionID = -1;
+
   /** Set of incompatible clusters pairs */
   private Set<Pair<Integer, Integer>> incompatibles;
   private Set<Pair<Integer, Integer>> incompatibleClusters;
@@ -159,14 +166,122 @@ public class Document implements Serializable {
     printMentionDetection();
   }
 
+  /**
+   * Adds the mentions of sentences that have been appended to the
+   * annotation since the document was made, one list per sentence as
+   * {@link MentionExtractor#arrange} orders them.  Each new mention starts
+   * in a cluster of its own, and is given a new ID after all those the
+   * document has had, whatever ID it had before.  Discourse information is found for the new sentences
+   * only, except that speakers not marked in the text are looked for over
+   * the whole document again.
+   */
+  public void addSentences(List<List<Mention>> newMentions, Dictionaries dict) {
+    if (goldOrderedMentionsBySentence != null) {
+      throw new UnsupportedOperationException("Sentences cannot be added to a document with gold mentions");
+    }
+    int firstSentence = predictedOrderedMentionsBySentence.size();
+    int numAnnotated = annotation.get(CoreAnnotations.SentencesAnnotation.class).size();
+    if (firstSentence + newMentions.size() != numAnnotated) {
+      throw new IllegalArgumentException("The annotation has " + numAnnotated + " sentences, but the document has " +
+          firstSentence + " and " + newMentions.size() + " are added");
+    }
+
+    for (List<Mention> sentence : newMentions) {
+      for (Mention m : sentence) {
+        m.mentionID = ++maxMentionID;
+      }
+    }
+
+    predictedOrderedMentionsBySentence.addAll(newMentions);
+    numSentences = numAnnotated;
+    setParagraphAnnotation(firstSentence);
+    initializeCorefCluster(firstSentence);
+    for (List<Mention> sentence : newMentions) {
+      for (Mention m : sentence) {
+        allPositions.put(m, positions.get(m));
+      }
+    }
+    processDiscourse(dict, firstSentence);
+  }
+
+  /**
+   * Evicts the mentions of the sentences before the given one, so that
+   * they are no longer resolved or tried as antecedents.  A cluster that
+   * still has a mention in a later sentence keeps all of its mentions, and
+   * the other clusters are dropped along with their mentions.  The evicted
+   * sentences stay in the document with no mentions, so mention positions
+   * do not change.
+   */
+  public void evictSentencesBefore(int sentence) {
+    sentence = Math.min(sentence, predictedOrderedMentionsBySentence.size());
+    Set<Integer> evictedClusterIDs = Generics.newHashSet();
+    for (int i = firstKeptSentence; i < sentence; i++) {
+      for (Mention m : predictedOrderedMentionsBySentence.get(i)) {
+        evictedClusterIDs.add(m.corefClusterID);
+      }
+      predictedOrderedMentionsBySentence.set(i, new ArrayList<Mention>());
+    }
+    firstKeptSentence = Math.max(firstKeptSentence, sentence);
+
+    Set<Integer> droppedClusterIDs = Generics.newHashSet();
+    Set<Integer> droppedMentionIDs = Generics.newHashSet();
+    CLUSTERS:
+    for (int clusterID : evictedClusterIDs) {
+      CorefCluster c = corefClusters.get(clusterID);
+      if (c == null) continue;
+      for (Mention m : c.getCorefMentions()) {
+        if (m.sentNum >= firstKeptSentence) continue CLUSTERS;
+      }
+      corefClusters.remove(clusterID);
+      droppedClusterIDs.add(clusterID);
+      for (Mention m : c.getCorefMentions()) {
+        droppedMentionIDs.add(m.mentionID);
+        allPredictedMentions.remove(m.mentionID);
+        positions.remove(m);
+        allPositions.remove(m);
+        roleSet.remove(m);
+        IntTuple headPosition = new IntTuple(2);
+        headPosition.set(0, m.sentNum);
+        headPosition.set(1, m.headIndex);
+        mentionheadPositions.remove(headPosition);
+      }
+    }
+    if (droppedClusterIDs.isEmpty()) return;
+
+    removePairsWith(incompatibles, droppedMentionIDs);
+    removePairsWith(incompatibleClusters, droppedClusterIDs);
+    removePairsWith(acronymCache.keySet(), droppedClusterIDs);
+  }
+
+  private static void removePairsWith(Set<Pair<Integer, Integer>> pairs, Set<Integer> ids) {
+    for (Iterator<Pair<Integer, Integer>> it = pairs.iterator(); it.hasNext(); ) {
+      Pair<Integer, Integer> p = it.next();
+      if (ids.contains(p.first) || ids.contains(p.second)) it.remove();
+    }
+  }
+
   /** Process discourse information */
   protected void processDiscourse(Dictionaries dict) {
+    processDiscourse(dict, 0);
+  }
+
+  /** Process discourse information of the sentences from firstSentence on */
+  private void processDiscourse(Dictionaries dict, int firstSentence) {
+    List<CoreMap> sentences = this.annotation.get(CoreAnnotations.SentencesAnnotation.class);
     docType = findDocType(dict);
-    markQuotations(this.annotation.get(CoreAnnotations.SentencesAnnotation.class), false);
-    findSpeakers(dict);
+    markQuotations(sentences.subList(firstSentence, sentences.size()), false);
+    findSpeakers(dict, firstSentence);
+
+    Collection<Mention> mentions = allPredictedMentions.values();
+    if (firstSentence > 0) {
+      mentions = new ArrayList<Mention>();
+      for (List<Mention> l : predictedOrderedMentionsBySentence.subList(firstSentence, predictedOrderedMentionsBySentence.size())) {
+        mentions.addAll(l);
+      }
+    }
 
     // find 'speaker mention' for each mention
-    for(Mention m : allPredictedMentions.values()) {
+    for(Mention m : mentions) {
       int utter = m.headWord.get(CoreAnnotations.UtteranceAnnotation.class);
       String speaker = m.headWord.get(CoreAnnotations.SpeakerAnnotation.class);
       if (speaker != null) {
@@ -201,7 +316,7 @@ public class Document implements Serializable {
       }
     }
     // now that we have identified the speakers, first pass to check if mentions should cluster with the speakers
-    for(Mention m : allPredictedMentions.values()) {
+    for(Mention m : mentions) {
       if (m.speakerInfo == null) {
         for (SpeakerInfo speakerInfo: speakerInfoMap.values()) {
           if (speakerInfo.hasRealSpeakerName()) {
@@ -220,14 +335,14 @@ public class Document implements Serializable {
   /** Document initialize */
   protected void initialize() {
     if(goldOrderedMentionsBySentence==null) assignOriginalID();
-    setParagraphAnnotation();
-    initializeCorefCluster();
+    setParagraphAnnotation(0);
+    initializeCorefCluster(0);
     this.allPositions = Generics.newHashMap(this.positions);
   }
 
-  /** initialize positions and corefClusters (put each mention in each CorefCluster) */
-  private void initializeCorefCluster() {
-    for(int i = 0; i < predictedOrderedMentionsBySentence.size(); i ++){
+  /** initialize positions and corefClusters (put each mention in each CorefCluster) from firstSentence on */
+  private void initializeCorefCluster(int firstSentence) {
+    for(int i = firstSentence; i < predictedOrderedMentionsBySentence.size(); i ++){
       for(int j = 0; j < predictedOrderedMentionsBySentence.get(i).size(); j ++){
         Mention m = predictedOrderedMentionsBySentence.get(i).get(j);
         if (allPredictedMentions.containsKey(m.mentionID)) {
@@ -240,6 +355,7 @@ public class Document implements Serializable {
         }
         assert(!allPredictedMentions.containsKey(m.mentionID));
         allPredictedMentions.put(m.mentionID, m);
+        maxMentionID = Math.max(maxMentionID, m.mentionID);
 
         IntTuple pos = new IntTuple(2);
         pos.set(0, i);
@@ -420,11 +536,22 @@ public class Document implements Serializable {
     }
   }
 
-  /** Set paragraph index */
-  private void setParagraphAnnotation() {
-    int paragraphIndex = 0;
+  /** Set paragraph index from firstSentence on, continuing the paragraphs of the earlier sentences */
+  private void setParagraphAnnotation(int firstSentence) {
+    List<CoreMap> sentences = annotation.get(CoreAnnotations.SentencesAnnotation.class);
+    int paragraphIndex = numParagraph;
     int previousOffset = -10;
-    for(CoreMap sent : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
+    PREVIOUS:
+    for(int i = firstSentence - 1; i >= 0; i--) {
+      List<CoreLabel> words = sentences.get(i).get(CoreAnnotations.TokensAnnotation.class);
+      for(int j = words.size() - 1; j >= 0; j--) {
+        if(words.get(j).containsKey(CoreAnnotations.CharacterOffsetEndAnnotation.class)) {
+          previousOffset = words.get(j).get(CoreAnnotations.CharacterOffsetEndAnnotation.class);
+          break PREVIOUS;
+        }
+      }
+    }
+    for(CoreMap sent : sentences.subList(firstSentence, sentences.size())) {
       for(CoreLabel w : sent.get(CoreAnnotations.TokensAnnotation.class)) {
         if(w.containsKey(CoreAnnotations.CharacterOffsetBeginAnnotation.class)) {
           if(w.get(CoreAnnotations.CharacterOffsetBeginAnnotation.class) > previousOffset+2) paragraphIndex++;
@@ -435,7 +562,7 @@ public class Document implements Serializable {
         }
       }
     }
-    for(List<Mention> l : predictedOrderedMentionsBySentence) {
+    for(List<Mention> l : predictedOrderedMentionsBySentence.subList(firstSentence, predictedOrderedMentionsBySentence.size())) {
       for(Mention m : l){
         m.paragraph = m.headWord.get(CoreAnnotations.ParagraphAnnotation.class);
       }
@@ -618,12 +745,13 @@ public class Document implements Serializable {
     if(maxUtter==0 && !normalQuotationType) markQuotations(results, true);
   }
 
-  /** Speaker extraction */
-  private void findSpeakers(Dictionaries dict) {
+  /** Speaker extraction: marked speakers are read from firstSentence on, others are found in the whole document */
+  private void findSpeakers(Dictionaries dict, int firstSentence) {
     Boolean useMarkedDiscourseBoolean = annotation.get(CoreAnnotations.UseMarkedDiscourseAnnotation.class);
     boolean useMarkedDiscourse = (useMarkedDiscourseBoolean != null)? useMarkedDiscourseBoolean: false;
     if (Constants.USE_GOLD_SPEAKER_TAGS || useMarkedDiscourse) {
-      for(CoreMap sent : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
+      List<CoreMap> sentences = annotation.get(CoreAnnotations.SentencesAnnotation.class);
+      for(CoreMap sent : sentences.subList(firstSentence, sentences.size())) {
         for(CoreLabel w : sent.get(CoreAnnotations.TokensAnnotation.class)) {
           int utterIndex = w.get(CoreAnnotations.UtteranceAnnotation.class);
           speakers.put(utterIndex, w.get(CoreAnnotations.SpeakerAnnotation.class));
@@ -0,0 +1,388 @@
+package edu.stanford.nlp.dcoref;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import edu.stanford.nlp.dcoref.Dictionaries.Gender;
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.io.RuntimeIOException;
+import edu.stanford.nlp.util.Timing;
+
+/**
+ * The gender of each phrase in the Bergsma and Lin (2006) list, stored
+ * in a binary file which is memory mapped rather than read into a map of
+ * token lists.  The phrases are kept as one block of chars, their tokens
+ * joined by spaces, sorted and packed end to end, under an open
+ * addressing hash table.  Each slot of the table holds the hash of a
+ * phrase, where the phrase starts, and its length and gender, so a
+ * lookup reads one or two slots, and the chars of a phrase only when the
+ * hashes are the same.  It builds no string, and the table stays in the
+ * page cache rather than on the heap.
+ * <br>
+ * It is a read-only {@code Map<List<String>, Gender>}, so it stands in for
+ * the map {@link Dictionaries#genderNumber} is otherwise read into, and
+ * like it may be read by several threads at once.
+ * <br>
+ * The file is a header (magic number and version), the number of phrases
+ * and of slots, the slots, and the phrases.
+ * <br>
+ * Usage, to convert the text list:
+ * <code>java edu.stanford.nlp.dcoref.GenderNumberTable gender.data.gz gender.table</code>
+ */
+public class GenderNumberTable extends AbstractMap<List<String>, Gender> {
+
+  private static final int MAGIC = 0x44474E54; // "DGNT"
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 16;
+
+  // a slot is three ints: the hash of the phrase, the char offset where it
+  // starts, and its length plus one (0 for an empty slot) shifted left over its gender
+  private static final int SLOT_INTS = 3;
+  private static final int SLOT_BYTES = 4 * SLOT_INTS;
+  private static final int GENDER_BITS = 2;
+
+  private static final Gender[] GENDERS = Gender.values();
+
+  private final int size;
+  private final int numSlots;
+  private final IntBuffer slots;
+  private final CharBuffer phrases;
+
+  private GenderNumberTable(ByteBuffer data, String filename) {
+    if (data.getInt(0) != MAGIC) {
+      throw new IllegalArgumentException(filename + " is not a gender and number table");
+    }
+    int version = data.getInt(4);
+    if (version != VERSION) {
+      throw new IllegalArgumentException(filename + " has version " + version + " but only version " + VERSION + " is supported");
+    }
+    size = data.getInt(8);
+    numSlots = data.getInt(12);
+    // the slots and phrases are little endian, as most machines read them fastest
+    data.position(HEADER_BYTES);
+    slots = data.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    data.position(HEADER_BYTES + SLOT_BYTES * numSlots);
+    phrases = data.slice().order(ByteOrder.LITTLE_ENDIAN).asCharBuffer();
+  }
+
+  /**
+   * Returns true if the given path is a file in this format.
+   * URLs and classpath resources cannot be mapped, so they never are.
+   */
+  public static boolean isGenderNumberTable(String path) {
+    File file = new File(path);
+    if ( ! file.isFile() || file.length() < HEADER_BYTES) {
+      return false;
+    }
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new FileInputStream(file));
+      return in.readInt() == MAGIC;
+    } catch (IOException e) {
+      return false;
+    } finally {
+      IOUtils.closeIgnoringExceptions(in);
+    }
+  }
+
+  /**
+   * Maps the table in the given file.
+   *
+   * @throws RuntimeIOException If the file cannot be read
+   * @throws IllegalArgumentException If the file is not in this format
+   */
+  public static GenderNumberTable load(String filename) {
+    Timing tim = new Timing();
+    ByteBuffer data;
+    try {
+      RandomAccessFile raf = new RandomAccessFile(filename, "r");
+      try {
+        // the mapping stays valid after the channel is closed
+        data = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+      } finally {
+        raf.close();
+      }
+    } catch (IOException e) {
+      throw new RuntimeIOException(e);
+    }
+    GenderNumberTable table = new GenderNumberTable(data, filename);
+    SieveCoreferenceSystem.logger.fine("Mapped " + table.size + " genders from " + filename + " [" + tim.toSecondsString() + " sec]");
+    return table;
+  }
+
+  /**
+   * Writes the genders to the given file in this format.  Each phrase
+   * must be a nonempty list of tokens without spaces, as the phrases of
+   * the text list are.
+   *
+   * @throws RuntimeIOException If the file cannot be written
+   * @throws IllegalArgumentException If a phrase cannot be stored
+   */
+  public static void save(Map<List<String>, Gender> genders, String filename) {
+    int n = genders.size();
+    String[] phrases = new String[n];
+    int i = 0;
+    for (List<String> phrase : genders.keySet()) {
+      phrases[i] = join(phrase);
+      if (phrases[i] == null) {
+        throw new IllegalArgumentException("Cannot store the phrase " + phrase);
+      }
+      i++;
+    }
+    Arrays.sort(phrases);
+
+    // at least twice as many slots as phrases, so a lookup rarely reads more than two
+    int numSlots = Integer.highestOneBit(Math.max(2 * n - 1, 1)) << 1;
+    int numChars = 0;
+    for (String phrase : phrases) {
+      numChars += phrase.length();
+    }
+    ByteBuffer table = ByteBuffer.allocate(SLOT_BYTES * numSlots + 2 * numChars).order(ByteOrder.LITTLE_ENDIAN);
+    IntBuffer slots = table.asIntBuffer();
+    int start = 0;
+    for (i = 0; i < n; i++) {
+      int h = hash(split(phrases[i]));
+      int slot = h & (numSlots - 1);
+      while (slots.get(SLOT_INTS * slot + 2) != 0) {
+        slot = (slot + 1) & (numSlots - 1);
+      }
+      slots.put(SLOT_INTS * slot, h);
+      slots.put(SLOT_INTS * slot + 1, start);
+      slots.put(SLOT_INTS * slot + 2, ((phrases[i].length() + 1) << GENDER_BITS) | genders.get(split(phrases[i])).ordinal());
+      start += phrases[i].length();
+    }
+    table.position(SLOT_BYTES * numSlots);
+    CharBuffer chars = table.asCharBuffer();
+    for (String phrase : phrases) {
+      chars.put(phrase);
+    }
+
+    DataOutputStream out = null;
+    try {
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)));
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(n);
+      out.writeInt(numSlots);
+      out.write(table.array());
+      out.close();
+    } catch (IOException e) {
+      IOUtils.closeIgnoringExceptions(out);
+      throw new RuntimeIOException(e);
+    }
+  }
+
+  /** The tokens joined by spaces, or null if they cannot be, so that no other list joins to the same string. */
+  private static String join(List<?> tokens) {
+    if (tokens.isEmpty()) {
+      return null;
+    }
+    StringBuilder sb = new StringBuilder();
+    boolean first = true;
+    for (Object token : tokens) {
+      if ( ! (token instanceof String) || ((String) token).indexOf(' ') >= 0) {
+        return null;
+      }
+      if ( ! first) {
+        sb.append(' ');
+      }
+      sb.append((String) token);
+      first = false;
+    }
+    return sb.toString();
+  }
+
+  private static List<String> split(String phrase) {
+    return Arrays.asList(phrase.split(" ", -1));
+  }
+
+  /**
+   * The hash of the tokens, built from their own hash codes, which
+   * Strings keep once computed, as {@link List#hashCode} is, with the
+   * bits mixed so that the low bits make good slot numbers.  Returns 0
+   * for anything other than a nonempty list of Strings, which can't be in
+   * the table.
+   */
+  private static int hash(Object key) {
+    if ( ! (key instanceof List) || ((List<?>) key).isEmpty()) {
+      return 0;
+    }
+    int h = 1;
+    for (Object token : (List<?>) key) {
+      if ( ! (token instanceof String)) {
+        return 0;
+      }
+      h = 31 * h + token.hashCode();
+    }
+    // the finalizer of MurmurHash3
+    h ^= h >>> 16;
+    h *= 0x85EBCA6B;
+    h ^= h >>> 13;
+    h *= 0xC2B2AE35;
+    h ^= h >>> 16;
+    return (h == 0) ? 1 : h;
+  }
+
+  /**
+   * The position of the slot of the phrase, or -1 if it is not in the
+   * table.  The tokens are compared with the phrases as if joined,
+   * without joining them.
+   */
+  private int find(Object key) {
+    int h = hash(key);
+    if (h == 0) {
+      return -1;
+    }
+    List<?> tokens = (List<?>) key;
+    int length = -1;
+    for (Object token : tokens) {
+      length += ((String) token).length() + 1;
+    }
+
+    for (int slot = h & (numSlots - 1); ; slot = (slot + 1) & (numSlots - 1)) {
+      int position = SLOT_INTS * slot;
+      int lengthAndGender = slots.get(position + 2);
+      if (lengthAndGender == 0) {
+        return -1;
+      }
+      if (slots.get(position) == h && (lengthAndGender >>> GENDER_BITS) - 1 == length &&
+          matches(slots.get(position + 1), tokens)) {
+        return position;
+      }
+    }
+  }
+
+  private boolean matches(int start, List<?> tokens) {
+    int position = start;
+    boolean first = true;
+    for (Object token : tokens) {
+      String s = (String) token;
+      if ( ! first) {
+        // the space between tokens, where a phrase with fewer tokens has some other char
+        if (phrases.get(position) != ' ') {
+          return false;
+        }
+        position++;
+      }
+      first = false;
+      for (int j = 0; j < s.length(); j++, position++) {
+        char c = s.charAt(j);
+        // a token with a space is no phrase of the table, though joined it may look like one
+        if (c == ' ' || phrases.get(position) != c) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private Gender gender(int position) {
+    return GENDERS[slots.get(position + 2) & ((1 << GENDER_BITS) - 1)];
+  }
+
+  private List<String> phrase(int position) {
+    int start = slots.get(position + 1);
+    char[] chars = new char[(slots.get(position + 2) >>> GENDER_BITS) - 1];
+    for (int j = 0; j < chars.length; j++) {
+      chars[j] = phrases.get(start + j);
+    }
+    return Collections.unmodifiableList(split(new String(chars)));
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return find(key) >= 0;
+  }
+
+  @Override
+  public Gender get(Object key) {
+    int position = find(key);
+    return (position < 0) ? null : gender(position);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /** The phrases and their genders, in the order of their slots. */
+  @Override
+  public Set<Map.Entry<List<String>, Gender>> entrySet() {
+    return new AbstractSet<Map.Entry<List<String>, Gender>>() {
+      @Override
+      public Iterator<Map.Entry<List<String>, Gender>> iterator() {
+        return new Iterator<Map.Entry<List<String>, Gender>>() {
+          private int slot = nextFull(0);
+
+          private int nextFull(int slot) {
+            while (slot < numSlots && slots.get(SLOT_INTS * slot + 2) == 0) {
+              slot++;
+            }
+            return slot;
+          }
+
+          @Override
+          public boolean hasNext() {
+            return slot < numSlots;
+          }
+
+          @Override
+          public Map.Entry<List<String>, Gender> next() {
+            if ( ! hasNext()) {
+              throw new NoSuchElementException();
+            }
+            int position = SLOT_INTS * slot;
+            slot = nextFull(slot + 1);
+            return new SimpleImmutableEntry<List<String>, Gender>(phrase(position), gender(position));
+          }
+
+          @Override
+          public void remove() {
+            throw new UnsupportedOperationException();
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  /**
+   * Converts the Bergsma and Lin gender and number list to a table.
+   * <br>
+   * Usage: <code>java edu.stanford.nlp.dcoref.GenderNumberTable genderNumberList table</code>
+   */
+  public static void main(String[] args) {
+    if (args.length != 2) {
+      System.err.println("Usage: java " + GenderNumberTable.class.getName() + " genderNumberList table");
+      System.exit(1);
+    }
+    Map<List<String>, Gender> genders = Dictionaries.readGenderNumber(args[0]);
+    save(genders, args[1]);
+    System.err.println("Wrote " + genders.size() + " genders to " + args[1]);
+  }
+
+}
@@ -294,20 +294,22 @@ public class Mention implements CoreAnnotation<Mention>, Serializable {
         firstNameIdx--;
       }
 
+      // the map has no null genders, so one get() both tests and looks up
+      Gender gender;
       for(int i = 0 ; i <= firstNameIdx ; i++){
-        if(dict.genderNumber.containsKey(mStr.subList(i, len))) return dict.genderNumber.get(mStr.subList(i, len));
+        if((gender = dict.genderNumber.get(mStr.subList(i, len))) != null) return gender;
       }
 
       // find converted string with ! (e.g., "dr. martin luther king jr. boulevard" -> "dr. !")
       List<String> convertedStr = new ArrayList<String>(2);
       convertedStr.add(mStr.get(firstNameIdx));
       convertedStr.add("!");
-      if(dict.genderNumber.containsKey(convertedStr)) return dict.genderNumber.get(convertedStr);
+      if((gender = dict.genderNumber.get(convertedStr)) != null) return gender;
 
-      if(dict.genderNumber.containsKey(mStr.subList(firstNameIdx, firstNameIdx+1))) return dict.genderNumber.get(mStr.subList(firstNameIdx, firstNameIdx+1));
+      if((gender = dict.genderNumber.get(mStr.subList(firstNameIdx, firstNameIdx+1))) != null) return gender;
     }
 
-    if(mStr.size() > 0 && dict.genderNumber.containsKey(mStr.subList(len-1, len))) return dict.genderNumber.get(mStr.subList(len-1, len));
+    if(mStr.size() > 0) return dict.genderNumber.get(mStr.subList(len-1, len));
     return null;
   }
   private void setDiscourse() {
@@ -0,0 +1,129 @@
+package edu.stanford.nlp.dcoref;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import edu.stanford.nlp.util.Generics;
+
+/**
+ * Indexes the mentions of a document by the strings that the string and
+ * head match sieves compare, so that a sieve can find the few antecedents
+ * which could match a mention rather than testing every mention before it.
+ * The strings of a mention do not change during coreference, so one index
+ * serves all the sieves run on a document; which cluster a mention is in
+ * does change, and is looked up as needed.
+ *
+ * @see edu.stanford.nlp.dcoref.sievepasses.DeterministicCorefSieve#candidateAntecedents
+ */
+public class MentionIndex {
+
+  private final List<List<Mention>> orderedMentionsBySentence;
+
+  private final Map<Mention, Integer> sentenceOf = Generics.newIdentityHashMap();
+  private final Map<String, List<Mention>> bySpan = Generics.newHashMap();
+  private final Map<String, List<Mention>> byRelaxedSpan = Generics.newHashMap();
+  private final Map<Mention, String> relaxedSpans = Generics.newIdentityHashMap();
+  private final Map<String, List<Mention>> byHead = Generics.newHashMap();
+  private final Map<String, List<Mention>> byNer = Generics.newHashMap();
+
+  /**
+   * @param orderedMentionsBySentence The mentions of each sentence, as
+   *     given by {@link Document#getOrderedMentions()}
+   */
+  public MentionIndex(List<List<Mention>> orderedMentionsBySentence) {
+    this.orderedMentionsBySentence = orderedMentionsBySentence;
+    for (int sentence = 0; sentence < orderedMentionsBySentence.size(); sentence++) {
+      for (Mention m : orderedMentionsBySentence.get(sentence)) {
+        sentenceOf.put(m, sentence);
+        add(bySpan, m.lowercaseNormalizedSpanString(), m);
+        String relaxedSpan = m.removePhraseAfterHead();
+        relaxedSpans.put(m, relaxedSpan);
+        add(byRelaxedSpan, relaxedSpan, m);
+        add(byHead, m.headString, m);
+        if (m.nerString != null && ! m.nerString.equals("O")) {
+          add(byNer, m.nerString, m);
+        }
+      }
+    }
+  }
+
+  private static void add(Map<String, List<Mention>> index, String key, Mention m) {
+    List<Mention> mentions = index.get(key);
+    if (mentions == null) {
+      mentions = new ArrayList<Mention>(1);
+      index.put(key, mentions);
+    }
+    mentions.add(m);
+  }
+
+  private static List<Mention> get(Map<String, List<Mention>> index, String key) {
+    List<Mention> mentions = index.get(key);
+    return (mentions == null) ? Collections.<Mention>emptyList() : mentions;
+  }
+
+  /**
+   * The mentions whose strings, lowercased, are the same as span, or
+   * differ from it by a possessive " 's", as compared by
+   * {@link Rules#entityExactStringMatch}.
+   */
+  public List<Mention> withSpanOrPossessive(String span) {
+    return withStringOrPossessive(bySpan, span);
+  }
+
+  /**
+   * The mentions whose strings without any phrase after the head are the
+   * same as span, or differ from it by a possessive " 's", as compared by
+   * {@link Rules#entityRelaxedExactStringMatch}.
+   */
+  public List<Mention> withRelaxedSpanOrPossessive(String span) {
+    return withStringOrPossessive(byRelaxedSpan, span);
+  }
+
+  private static List<Mention> withStringOrPossessive(Map<String, List<Mention>> index, String s) {
+    List<Mention> mentions = new ArrayList<Mention>(get(index, s));
+    mentions.addAll(get(index, s + " 's"));
+    if (s.endsWith(" 's")) {
+      mentions.addAll(get(index, s.substring(0, s.length() - 3)));
+    }
+    return mentions;
+  }
+
+  /** The mention's string without any phrase after its head, as by {@link Mention#removePhraseAfterHead()}. */
+  public String relaxedSpan(Mention m) {
+    String span = relaxedSpans.get(m);
+    return (span == null) ? m.removePhraseAfterHead() : span;
+  }
+
+  /** The mentions with this head string. */
+  public List<Mention> withHead(String headString) {
+    return get(byHead, headString);
+  }
+
+  /** The mentions with this named entity type, none for "O". */
+  public List<Mention> withNer(String nerString) {
+    return get(byNer, nerString);
+  }
+
+  /** The mentions in the same sentence as m. */
+  public List<Mention> inSentenceOf(Mention m) {
+    Integer sentence = sentenceOf.get(m);
+    return (sentence == null) ? Collections.<Mention>emptyList() : orderedMentionsBySentence.get(sentence);
+  }
+
+  /** The positions in the document of the sentences which hold these mentions. */
+  public BitSet sentencesOf(Collection<Mention> mentions) {
+    BitSet sentences = new BitSet(orderedMentionsBySentence.size());
+    for (Mention m : mentions) {
+      Integer sentence = sentenceOf.get(m);
+      if (sentence != null) {
+        sentences.set(sentence);
+      }
+    }
+    return sentences;
+  }
+
+}
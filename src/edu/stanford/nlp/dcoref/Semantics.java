@@ -2,11 +2,17 @@ package edu.stanford.nlp.dcoref;
 
 import java.lang.reflect.Constructor;
 
-/** Semantic knowledge: currently WordNet is available */
+/**
+ * Semantic knowledge: currently WordNet is available.
+ * Only read once constructed, so one Semantics may be shared by threads
+ * resolving different documents.
+ */
 public class Semantics {
-  public Object wordnet;
+  public final Object wordnet;
   
-  public Semantics() {}
+  public Semantics() {
+    wordnet = null;
+  }
 
   public Semantics(Dictionaries dict) throws Exception{
     Constructor<?> wordnetConstructor = (Class.forName("edu.stanford.nlp.dcoref.WordNet")).getConstructor();
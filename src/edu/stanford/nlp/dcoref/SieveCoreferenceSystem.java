@@ -40,6 +40,7 @@ import java.io.StringWriter;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.LinkedHashSet;
@@ -74,8 +75,11 @@ import edu.stanford.nlp.util.CoreMap;
 import edu.stanford.nlp.util.Generics;
 import edu.stanford.nlp.util.IntTuple;
 import edu.stanford.nlp.util.Pair;
+import edu.stanford.nlp.util.PropertiesUtils;
 import edu.stanford.nlp.util.StringUtils;
 import edu.stanford.nlp.util.SystemUtils;
+import edu.stanford.nlp.util.concurrent.MulticoreWrapper;
+import edu.stanford.nlp.util.concurrent.ThreadsafeProcessor;
 import edu.stanford.nlp.util.logging.NewlineLogFormatter;
 
 
@@ -111,6 +115,29 @@ public class SieveCoreferenceSystem {
    */
   private final int maxSentDist;
 
+  /**
+   * If true, the string and head match sieves look up the antecedents
+   * which could match a mention in a {@link MentionIndex}, rather than
+   * testing every antecedent.  The links are the same either way.
+   */
+  private final boolean useMentionIndex;
+
+  /**
+   * The number of threads with which {@link #coref(List)} resolves
+   * documents; if 0 or less, the number of processors
+   */
+  private final int nThreads;
+
+  /** Number of sentences whose mentions {@link #corefNewSentences} keeps (-1: keep all) */
+  private final int window;
+
+  /** Documents with more mentions than this skip the sieves in budgetSkipSieves (-1: no budget) */
+  private final int budgetMaxMentions;
+  private final Set<String> budgetSkipSieves;
+
+  /** Time, pairs tested and links of each sieve, by sieve name */
+  private final Map<String, SieveStats> sieveStats = Generics.newHashMap();
+
   /**
    * automatically set by looking at sieves
    */
@@ -159,10 +186,8 @@ public class SieveCoreferenceSystem {
 
   private LogisticClassifier<String, String> singletonPredictor;
 
-  // Below are member variables used for scoring (not thread safe)
-
-  /** Current sieve index */
-  private int currentSieve;
+  // Below are member variables used for scoring.  They add up over
+  // documents, so scored documents are resolved one at a time.
 
   /** counter for links in passes (Pair<correct links, total links>)  */
   private List<Pair<Integer, Integer>> linksCountInPass;
@@ -179,9 +204,6 @@ public class SieveCoreferenceSystem {
   private int additionalLinksCount;
 
   public SieveCoreferenceSystem(Properties props) throws Exception {
-    // initialize required fields
-    currentSieve = -1;
-
     //
     // construct the sieve passes
     //
@@ -213,6 +235,28 @@ public class SieveCoreferenceSystem {
     //
     maxSentDist = Integer.parseInt(props.getProperty(Constants.MAXDIST_PROP, "-1"));
 
+    //
+    // setting whether sieves look up their candidate antecedents in an index
+    //
+    useMentionIndex = Boolean.parseBoolean(props.getProperty(Constants.MENTION_INDEX_PROP, "true"));
+
+    //
+    // setting the number of documents resolved at once by coref(List<Document>)
+    //
+    nThreads = PropertiesUtils.getInt(props, Constants.NTHREADS_PROP, PropertiesUtils.getInt(props, "nthreads", 1));
+
+    //
+    // setting the number of recent sentences kept by corefNewSentences (-1: keep all)
+    //
+    window = PropertiesUtils.getInt(props, Constants.WINDOW_PROP, -1);
+
+    //
+    // setting the sieves skipped for documents with too many mentions (-1: no limit)
+    //
+    budgetMaxMentions = PropertiesUtils.getInt(props, Constants.BUDGET_MAX_MENTIONS_PROP, -1);
+    budgetSkipSieves = Generics.newHashSet(Arrays.asList(
+        props.getProperty(Constants.BUDGET_SKIP_SIEVES_PROP, Constants.BUDGET_SKIP_SIEVES).trim().split(",\\s*")));
+
     //
     // set useWordNet
     //
@@ -332,6 +376,35 @@ public class SieveCoreferenceSystem {
   }
 
   public boolean doScore() { return doScore; }
+
+  /**
+   * The time spent in each sieve, the pairs of mentions it tested and the
+   * links it made over the documents resolved so far, and the number of
+   * documents it was skipped for by the mention budget, in sieve order.
+   */
+  public List<SieveStats> sieveStats() {
+    List<SieveStats> stats = new ArrayList<SieveStats>(sieveClassNames.length);
+    for (String sieveName : sieveClassNames) {
+      stats.add(statsFor(sieveName).copy());
+    }
+    return stats;
+  }
+
+  public void resetSieveStats() {
+    synchronized (sieveStats) {
+      sieveStats.clear();
+    }
+  }
+
+  private SieveStats statsFor(String sieveName) {
+    synchronized (sieveStats) {
+      SieveStats stats = sieveStats.get(sieveName);
+      if (stats == null) {
+        sieveStats.put(sieveName, stats = new SieveStats(sieveName));
+      }
+      return stats;
+    }
+  }
   public Dictionaries dictionaries() { return dictionaries; }
   public Semantics semantics() { return semantics; }
   public String sieveClassName(int sieveIndex)  {
@@ -438,6 +511,9 @@ public class SieveCoreferenceSystem {
                                         Properties props,
                                         String timeStamp) throws Exception
   {
+    // the sieve stats logged at the end are for this run only
+    corefSystem.resetSieveStats();
+
     // prepare conll output
     PrintWriter writerGold = null;
     PrintWriter writerPredicted = null;
@@ -565,6 +641,8 @@ public class SieveCoreferenceSystem {
       pw.close();
     }
 
+    logger.info("\nSIEVE STATS\n" + SieveStats.toString(corefSystem.sieveStats()));
+
     if (corefSystem.optimizeSieves) {
       logger.info("Final reported score for sieve optimization " + corefSystem.optimizeScoreType + " : " + finalScore);
     }
@@ -833,18 +911,120 @@ public class SieveCoreferenceSystem {
    * Extracts coreference clusters.
    * This is the main API entry point for coreference resolution.
    * Return a map from CorefChain ID to corresponding CorefChain.
+   * <br>
+   * Everything this changes belongs to the document, and the
+   * {@link Dictionaries} and {@link Semantics} are only read, so several
+   * threads may resolve different documents with one system at the same
+   * time.  When scoring, the scores add up over documents, and documents
+   * are resolved one at a time.
    * @throws Exception
    */
   public Map<Integer, CorefChain> coref(Document document) throws Exception {
+    if (doScore()) {
+      synchronized (this) {
+        return resolve(document);
+      }
+    }
+    return resolve(document);
+  }
 
-    // Multi-pass sieve coreference resolution
-    for (int i = 0; i < sieves.length ; i++){
-      currentSieve = i;
-      DeterministicCorefSieve sieve = sieves[i];
-      // Do coreference resolution using this pass
-      coreference(document, sieve);
+  /**
+   * Extracts the coreference clusters of each document, resolving as
+   * many documents at once as {@link Constants#NTHREADS_PROP} says.
+   * Returns the chains of each document, in the order of the documents.
+   * @throws Exception
+   */
+  public List<Map<Integer, CorefChain>> coref(List<Document> documents) throws Exception {
+    List<Map<Integer, CorefChain>> results = new ArrayList<Map<Integer, CorefChain>>(documents.size());
+    if (nThreads == 1 || documents.size() < 2) {
+      for (Document document : documents) {
+        results.add(coref(document));
+      }
+      return results;
+    }
+
+    MulticoreWrapper<Document, Map<Integer, CorefChain>> wrapper =
+        new MulticoreWrapper<Document, Map<Integer, CorefChain>>(nThreads, new CorefProcessor());
+    for (Document document : documents) {
+      wrapper.put(document);
+      while (wrapper.peek()) {
+        results.add(wrapper.poll());
+      }
+    }
+    wrapper.join();
+    while (wrapper.peek()) {
+      results.add(wrapper.poll());
+    }
+    return results;
+  }
+
+  /** Resolves documents on the threads of {@link #coref(List)}. */
+  private class CorefProcessor implements ThreadsafeProcessor<Document, Map<Integer, CorefChain>> {
+    @Override
+    public Map<Integer, CorefChain> process(Document document) {
+      try {
+        return coref(document);
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
     }
 
+    @Override
+    public ThreadsafeProcessor<Document, Map<Integer, CorefChain>> newInstance() {
+      return this;
+    }
+  }
+
+  /**
+   * Resolves the mentions of sentences appended to a document that has
+   * been through {@link #coref(Document)}, for text that arrives a few
+   * sentences at a time.  The new sentences must already be in the
+   * document's annotation, and their mentions are given one list per
+   * sentence as {@link MentionExtractor#arrange} orders them.  Each sieve
+   * in turn links the new mentions to earlier ones; links already made are
+   * kept, so the clusters may differ from resolving the whole document at
+   * once, and there is no post processing.  When {@link Constants#WINDOW_PROP}
+   * is set, the mentions of sentences further back than the window are
+   * evicted first (see {@link Document#evictSentencesBefore}).
+   * <br>
+   * Returns the chains of the clusters with a new mention, and maps the ID
+   * of each earlier chain that was merged into another one to null.
+   * @throws Exception
+   */
+  public Map<Integer, CorefChain> corefNewSentences(Document document, List<List<Mention>> newMentions) throws Exception {
+    int firstSentence = document.getOrderedMentions().size();
+    document.addSentences(newMentions, dictionaries);
+    if (window != -1) {
+      document.evictSentencesBefore(document.numSentences - window);
+    }
+    Set<Integer> previousClusterIDs = Generics.newHashSet(document.corefClusters.keySet());
+
+    runSieves(document, firstSentence);
+
+    Map<Integer, CorefChain> result = Generics.newHashMap();
+    for (List<Mention> sentence : newMentions) {
+      for (Mention m : sentence) {
+        CorefCluster c = document.corefClusters.get(m.corefClusterID);
+        if ( ! result.containsKey(c.clusterID)) {
+          result.put(c.clusterID, new CorefChain(c, document.positions));
+        }
+      }
+    }
+    for (int clusterID : previousClusterIDs) {
+      if ( ! document.corefClusters.containsKey(clusterID)) {
+        result.put(clusterID, null);
+      }
+    }
+    return result;
+  }
+
+  private Map<Integer, CorefChain> resolve(Document document) throws Exception {
+
+    // Multi-pass sieve coreference resolution
+    runSieves(document, 0);
+
     // post processing (e.g., removing singletons, appositions for conll)
     if((!Constants.USE_GOLD_MENTIONS && doPostProcessing) || replicateCoNLL) postProcessing(document);
 
@@ -857,14 +1037,44 @@ public class SieveCoreferenceSystem {
     return result;
   }
 
+  /**
+   * Runs each sieve in turn on the mentions from firstSentence on, skipping
+   * the sieves in budgetSkipSieves if the document has more mentions than
+   * budgetMaxMentions.
+   */
+  private void runSieves(Document document, int firstSentence) throws Exception {
+    MentionIndex mentionIndex = useMentionIndex ? new MentionIndex(document.getOrderedMentions()) : null;
+    boolean overBudget = budgetMaxMentions != -1 && document.allPredictedMentions.size() > budgetMaxMentions;
+    for (int i = 0; i < sieves.length ; i++){
+      SieveStats stats = statsFor(sieveClassNames[i]);
+      if (overBudget && budgetSkipSieves.contains(sieveClassNames[i])) {
+        stats.addSkipped();
+        continue;
+      }
+      // Do coreference resolution using this pass
+      coreference(document, i, sieves[i], mentionIndex, firstSentence, stats);
+    }
+  }
+
   /**
    * Do coreference resolution using one sieve pass
    * @param document - an extracted document
+   * @param currentSieve - the position of the sieve among the passes
+   * @param mentionIndex - the document's mentions indexed, or null to test every antecedent
+   * @param firstSentence - the first sentence whose mentions are resolved
+   * @param stats - where the time, pairs tested and links of this pass are added
    * @throws Exception
    */
   private void coreference(
       Document document,
-      DeterministicCorefSieve sieve) throws Exception {
+      int currentSieve,
+      DeterministicCorefSieve sieve,
+      MentionIndex mentionIndex,
+      int firstSentence,
+      SieveStats stats) throws Exception {
+    long startTime = System.nanoTime();
+    long pairsTested = 0;
+    long links = 0;
 
     //Redwood.forceTrack("Coreference: sieve " + sieve.getClass().getSimpleName());
     logger.finer("Coreference: sieve " + sieve.getClass().getSimpleName());
@@ -878,10 +1088,7 @@ public class SieveCoreferenceSystem {
     }
     logger.finest("-------------------------------------------------------");
 
-    additionalCorrectLinksCount = 0;
-    additionalLinksCount = 0;
-
-    for (int sentI = 0; sentI < orderedMentionsBySentence.size(); sentI++) {
+    for (int sentI = firstSentence; sentI < orderedMentionsBySentence.size(); sentI++) {
       List<Mention> orderedMentions = orderedMentionsBySentence.get(sentI);
 
       for (int mentionI = 0; mentionI < orderedMentions.size(); mentionI++) {
@@ -893,8 +1100,22 @@ public class SieveCoreferenceSystem {
           continue;
         }
 
+        // the only antecedents this sieve could link m1 to, if it can tell, and their sentences
+        Set<Mention> candidates = null;
+        BitSet candidateSentences = null;
+        if (mentionIndex != null) {
+          candidates = sieve.candidateAntecedents(mentionIndex, corefClusters.get(m1.corefClusterID), corefClusters);
+          if (candidates != null) {
+            candidateSentences = mentionIndex.sentencesOf(candidates);
+          }
+        }
+
         LOOP:
-          for (int sentJ = sentI; sentJ >= 0; sentJ--) {
+          for (int sentJ = sentI; sentJ >= document.firstKeptSentence; sentJ--) {
+            if (candidateSentences != null) {
+              sentJ = candidateSentences.previousSetBit(sentJ);
+              if (sentJ < document.firstKeptSentence) break;
+            }
             List<Mention> l = sieve.getOrderedAntecedents(sentJ, sentI, orderedMentions, orderedMentionsBySentence, m1, mentionI, corefClusters, dictionaries);
             if(maxSentDist != -1 && sentI - sentJ > maxSentDist) continue;
 
@@ -914,6 +1135,8 @@ public class SieveCoreferenceSystem {
             for (Mention m2 : l) {
               // m2 - antecedent of m1                   l
 
+              if (candidates != null && ! candidates.contains(m2)) continue;
+
               // Skip singletons according to the singleton predictor
               // (only for non-NE mentions)
               // Recasens, de Marneffe, and Potts (NAACL 2013)
@@ -927,6 +1150,7 @@ public class SieveCoreferenceSystem {
               assert(c1 != null);
               assert(c2 != null);
 
+              pairsTested++;
               if (sieve.useRoleSkip()) {
                 if (m1.isRoleAppositive(m2, dictionaries)) {
                   roleSet.add(m1);
@@ -943,6 +1167,7 @@ public class SieveCoreferenceSystem {
                   printLogs(c1, c2, m1, m2, document, currentSieve);
                 }
 
+                links++;
                 int removeID = c1.clusterID;
                 CorefCluster.mergeClusters(c2, c1);
                 document.mergeIncompatibles(c2, c1);
@@ -955,9 +1180,12 @@ public class SieveCoreferenceSystem {
           } // End of "LOOP"
       }
     }
+    stats.add(System.nanoTime() - startTime, pairsTested, links);
 
     // scoring
     if(doScore()){
+      additionalCorrectLinksCount = 0;
+      additionalLinksCount = 0;
       scoreMUC.get(currentSieve).calculateScore(document);
       scoreBcubed.get(currentSieve).calculateScore(document);
       scorePairwise.get(currentSieve).calculateScore(document);
@@ -976,7 +1204,7 @@ public class SieveCoreferenceSystem {
       linksCountInPass.get(currentSieve).setFirst(linksCountInPass.get(currentSieve).first() + additionalCorrectLinksCount);
       linksCountInPass.get(currentSieve).setSecond(linksCountInPass.get(currentSieve).second() + additionalLinksCount);
 
-      printSieveScore(document, sieve);
+      printSieveScore(document, currentSieve, sieve);
     }
     //Redwood.endTrack("Coreference: sieve " + sieve.getClass().getSimpleName());
   }
@@ -1189,7 +1417,7 @@ public class SieveCoreferenceSystem {
     scorePairwise.get(sieveClassNames.length - 1).printF1(logger, printF1First);
   }
 
-  private void printSieveScore(Document document, DeterministicCorefSieve sieve) {
+  private void printSieveScore(Document document, int currentSieve, DeterministicCorefSieve sieve) {
     logger.fine("===========================================");
     logger.fine("pass"+currentSieve+": "+ sieve.flagsToString());
     scoreMUC.get(currentSieve).printF1(logger);
@@ -0,0 +1,87 @@
+package edu.stanford.nlp.dcoref;
+
+import java.util.List;
+
+/**
+ * What one sieve of a {@link SieveCoreferenceSystem} has cost and found
+ * over the documents resolved so far: the time spent in it, the pairs of
+ * mentions it tested, the links it made, and the number of documents it
+ * ran on or was skipped for by the mention budget
+ * (see {@link Constants#BUDGET_MAX_MENTIONS_PROP}).
+ * Several threads may add to one SieveStats.
+ */
+public class SieveStats {
+
+  private final String sieveName;
+
+  private long nanos;
+  private long pairsTested;
+  private long links;
+  private int documents;
+  private int skippedDocuments;
+
+  public SieveStats(String sieveName) {
+    this.sieveName = sieveName;
+  }
+
+  /** Adds a run of the sieve over one document */
+  synchronized void add(long nanos, long pairsTested, long links) {
+    this.nanos += nanos;
+    this.pairsTested += pairsTested;
+    this.links += links;
+    documents++;
+  }
+
+  /** Adds a document the sieve was skipped for */
+  synchronized void addSkipped() {
+    skippedDocuments++;
+  }
+
+  synchronized SieveStats copy() {
+    SieveStats copy = new SieveStats(sieveName);
+    copy.nanos = nanos;
+    copy.pairsTested = pairsTested;
+    copy.links = links;
+    copy.documents = documents;
+    copy.skippedDocuments = skippedDocuments;
+    return copy;
+  }
+
+  public String getSieveName() { return sieveName; }
+
+  public synchronized long getNanos() { return nanos; }
+
+  public synchronized double getSeconds() { return nanos / 1e9; }
+
+  /** The number of times the sieve tested whether an antecedent corefers with a mention */
+  public synchronized long getPairsTested() { return pairsTested; }
+
+  /** The number of clusters the sieve merged */
+  public synchronized long getLinks() { return links; }
+
+  public synchronized int getDocuments() { return documents; }
+
+  public synchronized int getSkippedDocuments() { return skippedDocuments; }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("%s: %.3f sec, %d pairs tested, %d links, %d documents, %d skipped",
+        sieveName, getSeconds(), pairsTested, links, documents, skippedDocuments);
+  }
+
+  /** One line per sieve, with the share of the time each took */
+  public static String toString(List<SieveStats> stats) {
+    long totalNanos = 0;
+    for (SieveStats s : stats) {
+      totalNanos += s.getNanos();
+    }
+    StringBuilder sb = new StringBuilder();
+    for (SieveStats s : stats) {
+      sb.append(String.format("%-24s %9.3f sec %5.1f%% %12d pairs %8d links %6d docs %6d skipped%n",
+          s.getSieveName(), s.getSeconds(), (totalNanos == 0) ? 0.0 : 100.0 * s.getNanos() / totalNanos,
+          s.getPairsTested(), s.getLinks(), s.getDocuments(), s.getSkippedDocuments()));
+    }
+    return sb.toString();
+  }
+
+}
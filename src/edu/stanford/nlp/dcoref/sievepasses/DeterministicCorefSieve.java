@@ -43,12 +43,14 @@ import edu.stanford.nlp.dcoref.Dictionaries.Person;
 import edu.stanford.nlp.dcoref.Document;
 import edu.stanford.nlp.dcoref.Document.DocType;
 import edu.stanford.nlp.dcoref.Mention;
+import edu.stanford.nlp.dcoref.MentionIndex;
 import edu.stanford.nlp.dcoref.Rules;
 import edu.stanford.nlp.dcoref.Semantics;
 import edu.stanford.nlp.dcoref.SieveCoreferenceSystem;
 import edu.stanford.nlp.dcoref.SieveOptions;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.util.Generics;
 
 /**
  *  Base class for a Coref Sieve.
@@ -433,6 +435,90 @@ public abstract class DeterministicCorefSieve  {
     return ret;
   }
 
+  /**
+   * The antecedents which this sieve could find coreferent with a
+   * mention, looked up in the document's mention index, or null if it
+   * must test them all.  Only the string and head match sieves narrow
+   * their antecedents: every antecedent they leave out is one for which
+   * {@link #coreferent} returns false without recording anything, such
+   * as an incompatible pair, so the sieve makes the same links either
+   * way.  A sieve which overrides coreferent should override this too.
+   *
+   * @param mentionCluster The cluster of the mention whose antecedents are wanted
+   * @param corefClusters The document's clusters, by ID
+   */
+  public Set<Mention> candidateAntecedents(MentionIndex index, CorefCluster mentionCluster,
+                                           Map<Integer, CorefCluster> corefClusters) {
+    if ( ! usesMentionIndex()) {
+      return null;
+    }
+    Set<Mention> candidates = Generics.newHashSet();
+    Set<Integer> candidateClusters = Generics.newHashSet();
+    Mention mention = mentionCluster.getRepresentativeMention();
+    if (flags.USE_EXACTSTRINGMATCH) {
+      // any mention of one cluster may match any mention of the other
+      for (Mention m : mentionCluster.getCorefMentions()) {
+        addClusters(index.withSpanOrPossessive(m.lowercaseNormalizedSpanString()), corefClusters,
+                    candidateClusters, candidates);
+      }
+    }
+    if (flags.USE_RELAXED_EXACTSTRINGMATCH) {
+      String span = index.relaxedSpan(mention);
+      if ( ! span.equals("")) {
+        candidates.addAll(index.withRelaxedSpanOrPossessive(span));
+      }
+    }
+    if (flags.USE_INCLUSION_HEADMATCH) {
+      // the head of the mention may be the head of any mention of the antecedent's cluster
+      addClusters(index.withHead(mention.headString), corefClusters, candidateClusters, candidates);
+    }
+    if (flags.USE_RELAXED_HEADMATCH) {
+      candidates.addAll(index.withHead(mention.headString));
+      candidates.addAll(index.withNer(mention.nerString));
+    }
+    if (flags.USE_iwithini) {
+      // testing a nested mention records an incompatible pair, even when it does not match
+      candidates.addAll(index.inSentenceOf(mention));
+    }
+    return candidates;
+  }
+
+  /**
+   * Whether every link this sieve makes comes from a string or head match
+   * which the mention index finds, and it records nothing for the pairs
+   * which do not match.
+   */
+  private boolean usesMentionIndex() {
+    if (flags.DO_PRONOUN || flags.USE_DISCOURSEMATCH || flags.USE_NAME_MATCH || flags.USE_APPOSITION
+        || flags.USE_PREDICATENOMINATIVES || flags.USE_ACRONYM || flags.USE_RELATIVEPRONOUN || flags.USE_DEMONYM
+        || flags.USE_ROLEAPPOSITION || flags.USE_WN_HYPERNYM || flags.USE_WN_SYNONYM || flags.USE_ALIAS
+        || flags.USE_COREF_DICT || flags.USE_ROLE_SKIP) {
+      return false;
+    }
+    // the discourse constraints record incompatible pairs whether or not they match
+    if (Constants.USE_DISCOURSE_CONSTRAINTS && !flags.USE_EXACTSTRINGMATCH && !flags.USE_RELAXED_EXACTSTRINGMATCH
+        && !flags.USE_APPOSITION && !flags.USE_WORDS_INCLUSION) {
+      return false;
+    }
+    return flags.USE_EXACTSTRINGMATCH || flags.USE_RELAXED_EXACTSTRINGMATCH
+        || flags.USE_INCLUSION_HEADMATCH || flags.USE_RELAXED_HEADMATCH;
+  }
+
+  /** Adds all the mentions of the clusters of the given mentions. */
+  private static void addClusters(List<Mention> mentions, Map<Integer, CorefCluster> corefClusters,
+                                  Set<Integer> candidateClusters, Set<Mention> candidates) {
+    for (Mention m : mentions) {
+      if (candidateClusters.add(m.corefClusterID)) {
+        CorefCluster c = corefClusters.get(m.corefClusterID);
+        if (c != null) {
+          candidates.addAll(c.getCorefMentions());
+        } else {
+          candidates.add(m);
+        }
+      }
+    }
+  }
+
   /**
    * Orders the antecedents for the given mention (m1)
    * @param antecedentSentence
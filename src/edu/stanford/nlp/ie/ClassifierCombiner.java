@@ -1,6 +1,7 @@
 package edu.stanford.nlp.ie;
 
 import edu.stanford.nlp.ie.crf.CRFClassifier;
+import edu.stanford.nlp.ie.crf.CRFClassifierRegistry;
 import edu.stanford.nlp.ie.ner.CMMClassifier;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.HasWord;
@@ -170,7 +171,8 @@ public class ClassifierCombiner<IN extends CoreMap & HasWord> extends AbstractSe
   private void loadClassifiers(List<String> paths) throws FileNotFoundException {
     baseClassifiers = new ArrayList<AbstractSequenceClassifier<IN>>();
     for(String path: paths){
-      AbstractSequenceClassifier<IN> cls = loadClassifierFromPath(path);
+      // the base classifiers are only read, so they can be shared with other combiners
+      AbstractSequenceClassifier<IN> cls = loadClassifierFromPath(path, true);
       baseClassifiers.add(cls);
       if(DEBUG){
         System.err.printf("Successfully loaded classifier #%d from %s.\n", baseClassifiers.size(), path);
@@ -184,9 +186,20 @@ public class ClassifierCombiner<IN extends CoreMap & HasWord> extends AbstractSe
 
   public static <INN extends CoreMap & HasWord> AbstractSequenceClassifier<INN> loadClassifierFromPath(String path)
       throws FileNotFoundException {
+    return loadClassifierFromPath(path, false);
+  }
+
+  /**
+   * Loads a classifier from a path, as a CRFClassifier or else as a
+   * CMMClassifier.  If shared, a CRFClassifier comes from the
+   * {@link CRFClassifierRegistry}, so it is frozen and is the same instance
+   * as everyone else who loads it shared gets.
+   */
+  public static <INN extends CoreMap & HasWord> AbstractSequenceClassifier<INN> loadClassifierFromPath(String path, boolean shared)
+      throws FileNotFoundException {
     //try loading as a CRFClassifier
     try {
-       return ErasureUtils.uncheckedCast(CRFClassifier.getClassifier(path));
+       return ErasureUtils.uncheckedCast(shared ? CRFClassifierRegistry.getClassifier(path) : CRFClassifier.getClassifier(path));
     } catch (Exception e) {
       e.printStackTrace();
     }
@@ -50,6 +50,7 @@ import edu.stanford.nlp.process.WordShapeClassifier;
 import edu.stanford.nlp.sequences.Clique;
 import edu.stanford.nlp.sequences.CoNLLDocumentReaderAndWriter;
 import edu.stanford.nlp.sequences.FeatureFactory;
+import edu.stanford.nlp.sequences.FeatureIdLookup;
 import edu.stanford.nlp.sequences.SeqClassifierFlags;
 import edu.stanford.nlp.trees.TreeCoreAnnotations;
 import edu.stanford.nlp.trees.international.pennchinese.RadicalMap;
@@ -374,6 +375,8 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
   @Override
   public void init(SeqClassifierFlags flags) {
     super.init(flags);
+    // older serialized models have a HashMap
+    wordToSubstrings = Generics.newConcurrentHashMap();
     initGazette();
     if (flags.useDistSim) {
       initLexicon(flags);
@@ -389,6 +392,29 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
   @Override
   public Collection<String> getCliqueFeatures(PaddedList<IN> cInfo, int loc, Clique clique) {
     Collection<String> features = Generics.newHashSet();
+    cliqueFeatures(cInfo, loc, clique, features, null, null);
+    // System.err.println(StringUtils.join(features,"\n")+"\n");
+    return features;
+  }
+
+  /**
+   * Adds the indices of the features {@link #getCliqueFeatures} would
+   * extract, without making the suffixed feature strings.
+   */
+  @Override
+  public void addCliqueFeatureIds(PaddedList<IN> cInfo, int loc, Clique clique, FeatureIdLookup lookup, FeatureIdLookup.Ids ids) {
+    int start = ids.size();
+    cliqueFeatures(cInfo, loc, clique, null, lookup, ids);
+    // getCliqueFeatures returns a set
+    ids.removeDuplicatesFrom(start);
+  }
+
+  /**
+   * Extracts the features of a clique, either into a collection of
+   * features, or, if a lookup is given, as feature indices.
+   */
+  private void cliqueFeatures(PaddedList<IN> cInfo, int loc, Clique clique,
+                              Collection<String> features, FeatureIdLookup lookup, FeatureIdLookup.Ids ids) {
     String domain = cInfo.get(0).get(CoreAnnotations.DomainAnnotation.class);
     final boolean doFE = domain != null;
 
@@ -404,9 +430,9 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
     } else if (clique == cliqueCpC) {
       c = featuresCpC(cInfo, loc);
       suffix = "CpC";
-      addAllInterningAndSuffixing(features, c, suffix);
+      addSuffixed(features, lookup, ids, c, suffix);
       if (doFE) {
-        addAllInterningAndSuffixing(features, c, domain + '-' + suffix);
+        addSuffixed(features, lookup, ids, c, domain + '-' + suffix);
       }
       c = featuresCnC(cInfo, loc-1);
       suffix = "CnC";
@@ -425,9 +451,9 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
     } else if (clique == cliqueCpCp2C) {
       c = featuresCpCp2C(cInfo, loc);
       suffix = "CpCp2C";
-      addAllInterningAndSuffixing(features, c, suffix);
+      addSuffixed(features, lookup, ids, c, suffix);
       if (doFE) {
-        addAllInterningAndSuffixing(features, c, domain+ '-' + suffix);
+        addSuffixed(features, lookup, ids, c, domain+ '-' + suffix);
       }
       c = featuresCpCnC(cInfo, loc-1);
       suffix = "CpCnC";
@@ -441,13 +467,19 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
       throw new IllegalArgumentException("Unknown clique: " + clique);
     }
 
-    addAllInterningAndSuffixing(features, c, suffix);
+    addSuffixed(features, lookup, ids, c, suffix);
     if (doFE) {
-      addAllInterningAndSuffixing(features, c, domain + '-' + suffix);
+      addSuffixed(features, lookup, ids, c, domain + '-' + suffix);
     }
+  }
 
-    // System.err.println(StringUtils.join(features,"\n")+"\n");
-    return features;
+  private void addSuffixed(Collection<String> features, FeatureIdLookup lookup, FeatureIdLookup.Ids ids,
+                           Collection<String> addend, String suffix) {
+    if (lookup == null) {
+      addAllInterningAndSuffixing(features, addend, suffix);
+    } else {
+      addAllIds(lookup, ids, addend, suffix);
+    }
   }
 
 
@@ -516,10 +548,12 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
   }
 
 
-  private Map<String,Collection<String>> wordToSubstrings = Generics.newHashMap();
+  // a concurrent map, since this cache is filled in at test time and
+  // a classifier may be shared by many threads
+  private Map<String,Collection<String>> wordToSubstrings = Generics.newConcurrentHashMap();
 
   public void clearMemory() {
-    wordToSubstrings = Generics.newHashMap();
+    wordToSubstrings = Generics.newConcurrentHashMap();
     lexicon = null;
   }
 
@@ -719,22 +753,34 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
     }
   }
 
-  private Set<Class<? extends GenericAnnotation<?>>> genericAnnotationKeys; // = null; //cache which keys are generic annotations so we don't have to do too many instanceof checks
+  private volatile Set<Class<? extends GenericAnnotation<?>>> genericAnnotationKeys; // = null; //cache which keys are generic annotations so we don't have to do too many instanceof checks
 
   @SuppressWarnings({"unchecked", "SuspiciousMethodCalls"})
   private void makeGenericKeyCache(CoreLabel c) {
-    genericAnnotationKeys = Generics.newHashSet();
+    Set<Class<? extends GenericAnnotation<?>>> keys = Generics.newHashSet();
     for (Class<?> key : c.keySet()) {
       if (CoreLabel.genericValues.containsKey(key)) {
         Class<? extends GenericAnnotation<?>> genKey = (Class<? extends GenericAnnotation<?>>) key;
-        genericAnnotationKeys.add(genKey);
+        keys.add(genKey);
       }
     }
+    genericAnnotationKeys = keys;
   }
 
-  private Set<String> lastNames; // = null;
-  private Set<String> maleNames; // = null;
-  private Set<String> femaleNames; // = null;
+  // These are loaded when first needed, and only ever assigned complete
+  // sets, so that threads sharing the factory need no locking
+  private volatile Set<String> lastNames; // = null;
+  private volatile Set<String> maleNames; // = null;
+  private volatile Set<String> femaleNames; // = null;
+
+  private static Set<String> loadNameList(String file) {
+    Set<String> names = Generics.newHashSet();
+    for (String line : ObjectBank.getLineIterator(file)) {
+      String[] cols = line.split("\\s+");
+      names.add(cols[0]);
+    }
+    return names;
+  }
 
   private final Pattern titlePattern = Pattern.compile("(?:Mr|Ms|Mrs|Dr|Miss|Sen|Judge|Sir)\\.?"); // todo: should make static final and add more titles
 
@@ -827,26 +873,13 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
       if (flags.checkNameList) {
         try {
           if (lastNames == null) {
-            lastNames = Generics.newHashSet();
-
-            for (String line : ObjectBank.getLineIterator(flags.lastNameList)) {
-              String[] cols = line.split("\\s+");
-              lastNames.add(cols[0]);
-            }
+            lastNames = loadNameList(flags.lastNameList);
           }
           if (maleNames == null) {
-            maleNames = Generics.newHashSet();
-            for (String line : ObjectBank.getLineIterator(flags.maleNameList)) {
-              String[] cols = line.split("\\s+");
-              maleNames.add(cols[0]);
-            }
+            maleNames = loadNameList(flags.maleNameList);
           }
           if (femaleNames == null) {
-            femaleNames = Generics.newHashSet();
-            for (String line : ObjectBank.getLineIterator(flags.femaleNameList)) {
-              String[] cols = line.split("\\s+");
-              femaleNames.add(cols[0]);
-            }
+            femaleNames = loadNameList(flags.femaleNameList);
           }
 
           String name = cWord.toUpperCase();
@@ -1,6 +1,7 @@
 package edu.stanford.nlp.ie;
 
 import edu.stanford.nlp.ie.crf.CRFClassifier;
+import edu.stanford.nlp.ie.crf.CRFClassifierRegistry;
 import edu.stanford.nlp.util.StringUtils;
 import edu.stanford.nlp.io.EncodingPrintWriter;
 
@@ -321,7 +322,7 @@ public class NERServer {
     } else {
       AbstractSequenceClassifier asc;
       if (loadFile != null && ! loadFile.equals("")) {
-        asc = CRFClassifier.getClassifier(loadFile, props);
+        asc = CRFClassifierRegistry.getClassifier(loadFile, props);
       } else if (loadJarFile != null && ! loadJarFile.equals("")) {
         asc = CRFClassifier.getJarClassifier(loadJarFile, props);
       } else {
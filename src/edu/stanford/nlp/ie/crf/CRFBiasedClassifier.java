@@ -49,6 +49,12 @@ public class CRFBiasedClassifier<IN extends CoreMap> extends CRFClassifier<IN> {
     super(props);
   }
 
+  /** The datums made here have a bias feature at test time. */
+  @Override
+  protected boolean usesFeatureIdLookup() {
+    return false;
+  }
+
   @Override
   public CRFDatum<List<String>, CRFLabel> makeDatum(List<IN> info, int loc, FeatureFactory<IN> featureFactory) {
 
@@ -82,6 +88,7 @@ public class CRFBiasedClassifier<IN extends CoreMap> extends CRFClassifier<IN> {
   }
 
   void addBiasFeature() {
+    expandWeights();
     if(!featureIndex.contains(BIAS)) {
       featureIndex.add(BIAS);
       double[][] newWeights = new double[weights.length+1][];
@@ -40,6 +40,8 @@ import edu.stanford.nlp.sequences.*;
 import edu.stanford.nlp.stats.ClassicCounter;
 import edu.stanford.nlp.stats.Counter;
 import edu.stanford.nlp.util.*;
+import edu.stanford.nlp.util.concurrent.MulticoreWrapper;
+import edu.stanford.nlp.util.concurrent.ThreadsafeProcessor;
 
 import java.io.*;
 import java.lang.reflect.InvocationTargetException;
@@ -137,11 +139,17 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
 
   /** Parameter weights of the classifier. */
   double[][] weights;
+  /** The weights in a compact form for testing, if they have been compacted, in which case weights is null. */
+  CompactWeights compactWeights;
+  /** Whether the model can no longer be changed; see {@link #freeze()}. */
+  private volatile boolean frozen; // = false;
 
   /** index the features of CRF */
   Index<String> featureIndex;
   /** caches the featureIndex */
   int[] map;
+  /** finds feature indices at test time; made lazily from the featureIndex */
+  private volatile FeatureIdLookup featureIdLookup; // = null;
   Random random = new Random(2147483647L);
   Index<Integer> nodeFeatureIndicesMap;
   Index<Integer> edgeFeatureIndicesMap;
@@ -198,6 +206,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
       this.labelIndices = null;
     }
     this.cliquePotentialFunction = crf.cliquePotentialFunction;
+    this.compactWeights = crf.compactWeights;
   }
 
   /**
@@ -206,6 +215,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
    * @return number of weights
    */
   public int getNumWeights() {
+    if (compactWeights != null) return compactWeights.numWeights();
     if (weights == null) return 0;
     int numWeights = 0;
     for (double[] wts : weights) {
@@ -258,6 +268,8 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
    * @param scale The scale to multiply by
    */
   public void scaleWeights(double scale) {
+    checkNotFrozen();
+    expandWeights();
     for (int i = 0; i < weights.length; i++) {
       for (int j = 0; j < weights[i].length; j++) {
         weights[i][j] *= scale;
@@ -342,6 +354,9 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
    * @param weight
    */
   public void combine(CRFClassifier<IN> crf, double weight) {
+    checkNotFrozen();
+    expandWeights();
+    crf.expandWeights();
     Timing timer = new Timing();
 
     // Check the CRFClassifiers are compatible
@@ -386,6 +401,8 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
   }
 
   public void dropFeaturesBelowThreshold(double threshold) {
+    checkNotFrozen();
+    expandWeights();
     Index<String> newFeatureIndex = new HashIndex<String>();
     for (int i = 0; i < weights.length; i++) {
       double smallest = weights[i][0];
@@ -442,8 +459,74 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
       Collections.reverse(document);
     }
 
-    // System.err.println("docSize:"+docSize);
+    if (usesFeatureIdLookup()) {
+      documentToData(document, data);
+    } else {
+      documentToDataUsingStrings(document, data, featureVals);
+    }
     for (int j = 0; j < docSize; j++) {
+      IN wi = document.get(j);
+      labels[j] = classIndex.indexOf(wi.get(CoreAnnotations.AnswerAnnotation.class));
+    }
+
+    if (flags.useReverse) {
+      Collections.reverse(document);
+    }
+
+    return new Triple<int[][][], int[], double[][][]>(data, labels, featureVals);
+  }
+
+  /**
+   * Whether {@link #documentToDataAndLabels} can find the feature indices
+   * of a document with a {@link FeatureIdLookup}, rather than making a
+   * datum of feature strings with {@link #makeDatum} and looking up each
+   * string.  This gives the same data faster, but cannot be used when the
+   * datum has feature values or is printed, or when a subclass makes its
+   * datums differently.
+   */
+  protected boolean usesFeatureIdLookup() {
+    return ! flags.stringFeatureLookup && ! flags.useEmbedding && flags.printFeatures == null;
+  }
+
+  /**
+   * Fills in the feature indices of each clique of the document, with the
+   * same cliques as {@link #makeDatum}, but without making the features.
+   * The indices of each clique are sorted.
+   */
+  private void documentToData(List<IN> document, int[][][] data) {
+    FeatureIdLookup lookup = featureIdLookup();
+    PaddedList<IN> pInfo = new PaddedList<IN>(document, pad);
+    List<List<Clique>> cliques = new ArrayList<List<Clique>>(windowSize);
+    Collection<Clique> done = Generics.newHashSet();
+    for (int i = 0; i < windowSize; i++) {
+      List<Clique> windowCliques = FeatureFactory.getCliques(i, 0);
+      windowCliques.removeAll(done);
+      done.addAll(windowCliques);
+      cliques.add(windowCliques);
+    }
+    FeatureIdLookup.Ids ids = new FeatureIdLookup.Ids();
+    for (int j = 0, docSize = document.size(); j < docSize; j++) {
+      for (int k = 0; k < windowSize; k++) {
+        ids.clear();
+        for (Clique c : cliques.get(k)) {
+          featureFactory.addCliqueFeatureIds(pInfo, j, c, lookup, ids);
+        }
+        data[j][k] = ids.toSortedArray();
+      }
+    }
+  }
+
+  private FeatureIdLookup featureIdLookup() {
+    FeatureIdLookup lookup = featureIdLookup;
+    if (lookup == null || ! lookup.isLookupFor(featureIndex)) {
+      lookup = new FeatureIdLookup(featureIndex);
+      featureIdLookup = lookup;
+    }
+    return lookup;
+  }
+
+  private void documentToDataUsingStrings(List<IN> document, int[][][] data, double[][][] featureVals) {
+    for (int j = 0, docSize = document.size(); j < docSize; j++) {
       CRFDatum<List<String>, CRFLabel> d = makeDatum(document, j, featureFactory);
 
       List<List<String>> features = d.asFeatures();
@@ -475,17 +558,12 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
             featureVals[j][k] = fVal;
           }
         }
+        if (featureVals[j][k] == null) {
+          // in the same order as documentToData
+          Arrays.sort(data[j][k]);
+        }
       }
-
-      IN wi = document.get(j);
-      labels[j] = classIndex.indexOf(wi.get(CoreAnnotations.AnswerAnnotation.class));
     }
-
-    if (flags.useReverse) {
-      Collections.reverse(document);
-    }
-
-    return new Triple<int[][][], int[], double[][][]>(data, labels, featureVals);
   }
 
   private int[][][] transformDocData(int[][][] docData) {
@@ -521,6 +599,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
   }
 
   public void printLabelValue(List<IN> document) {
+    double[][] weights = readableWeights();
 
     if (flags.useReverse) {
       Collections.reverse(document);
@@ -616,13 +695,12 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
 
     int numDatums = 0;
 
-    for (List<IN> doc : documents) {
-      Triple<int[][][], int[], double[][][]> docTriple = documentToDataAndLabels(doc);
+    for (Triple<int[][][], int[], double[][][]> docTriple : documentsToTriples(documents)) {
       data.add(docTriple.first());
       labels.add(docTriple.second());
       if (flags.useEmbedding)
         featureVal.add(docTriple.third());
-      numDatums += doc.size();
+      numDatums += docTriple.second().length;
     }
 
     System.err.println("numClasses: " + classIndex.size() + ' ' + classIndex);
@@ -653,11 +731,9 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
   public List<Triple<int[][][], int[], double[][][]>> documentsToDataAndLabelsList(Collection<List<IN>> documents) {
     int numDatums = 0;
 
-    List<Triple<int[][][], int[], double[][][]>> docList = new ArrayList<Triple<int[][][], int[], double[][][]>>();
-    for (List<IN> doc : documents) {
-      Triple<int[][][], int[], double[][][]> docTriple = documentToDataAndLabels(doc);
-      docList.add(docTriple);
-      numDatums += doc.size();
+    List<Triple<int[][][], int[], double[][][]>> docList = documentsToTriples(documents);
+    for (Triple<int[][][], int[], double[][][]> docTriple : docList) {
+      numDatums += docTriple.second().length;
     }
 
     System.err.println("numClasses: " + classIndex.size() + ' ' + classIndex);
@@ -667,6 +743,50 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
     return docList;
   }
 
+  /**
+   * Converts each document with {@link #documentToDataAndLabels}, on
+   * {@code multiThreadFeatureExtraction} threads if there are several,
+   * keeping the documents in order.
+   */
+  private List<Triple<int[][][], int[], double[][][]>> documentsToTriples(Collection<List<IN>> documents) {
+    List<Triple<int[][][], int[], double[][][]>> docList = new ArrayList<Triple<int[][][], int[], double[][][]>>();
+    int nThreads = featureExtractionThreads();
+    if (nThreads <= 1) {
+      for (List<IN> doc : documents) {
+        docList.add(documentToDataAndLabels(doc));
+      }
+      return docList;
+    }
+
+    if (usesFeatureIdLookup()) {
+      featureIdLookup(); // made before the threads start, so they share it
+    }
+    MulticoreWrapper<List<IN>, Triple<int[][][], int[], double[][][]>> wrapper =
+        new MulticoreWrapper<List<IN>, Triple<int[][][], int[], double[][][]>>(nThreads,
+            new ThreadsafeProcessor<List<IN>, Triple<int[][][], int[], double[][][]>>() {
+              @Override
+              public Triple<int[][][], int[], double[][][]> process(List<IN> doc) {
+                return documentToDataAndLabels(doc);
+              }
+
+              @Override
+              public ThreadsafeProcessor<List<IN>, Triple<int[][][], int[], double[][][]>> newInstance() {
+                return this;
+              }
+            });
+    for (List<IN> doc : documents) {
+      wrapper.put(doc);
+      while (wrapper.peek()) {
+        docList.add(wrapper.poll());
+      }
+    }
+    wrapper.join();
+    while (wrapper.peek()) {
+      docList.add(wrapper.poll());
+    }
+    return docList;
+  }
+
   protected void printFeatures() {
     if (flags.printFeatures == null) {
       return;
@@ -735,94 +855,36 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
       this.labelDictionary = new LabelDictionary();
     }
 
-    for (List<IN> doc : ob) {
-      if (flags.useReverse) {
-        Collections.reverse(doc);
-      }
-
-      // create the full set of labels in classIndex
-      // note: update to use addAll later
-      for (IN token : doc) {
-        wordCount++;
-        String ans = token.get(CoreAnnotations.AnswerAnnotation.class);
-        if (ans == null || ans.equals("")) {
-          throw new IllegalArgumentException("Word " + wordCount + " (\"" + token.get(CoreAnnotations.TextAnnotation.class) + "\") has a blank answer");
-        }
-        classIndex.add(ans);
-        if (labelDictionary != null) {
-          String observation = token.get(CoreAnnotations.TextAnnotation.class);
-          labelDictionary.increment(observation, ans);
+    int nThreads = featureExtractionThreads();
+    if (nThreads > 1) {
+      // The datums of a document only refer to the classes of it and the
+      // documents before it, so with all the classes indexed first, the
+      // datums can be made in any order.  They are added to the features
+      // in document order, so the features are the same as when the
+      // datums are made one document at a time.
+      for (List<IN> doc : ob) {
+        wordCount = addAnswers(doc, wordCount);
+      }
+      MulticoreWrapper<List<IN>, List<CRFDatum<List<String>, CRFLabel>>> wrapper =
+          new MulticoreWrapper<List<IN>, List<CRFDatum<List<String>, CRFLabel>>>(nThreads, new DatumMaker());
+      Queue<List<IN>> pending = new ArrayDeque<List<IN>>();
+      for (List<IN> doc : ob) {
+        wrapper.put(doc);
+        pending.add(doc);
+        while (wrapper.peek()) {
+          addFeatures(pending.poll(), wrapper.poll(), labelIndex, featureIndices, featureCountIndices,
+                  seenBackgroundFeatures);
         }
       }
-
-      for (int j = 0, docSize = doc.size(); j < docSize; j++) {
-        CRFDatum<List<String>, CRFLabel> d = makeDatum(doc, j, featureFactory);
-        labelIndex.add(d.label());
-
-        List<List<String>> features = d.asFeatures();
-        for (int k = 0, fSize = features.size(); k < fSize; k++) {
-          Collection<String> cliqueFeatures = features.get(k);
-          if (k < 2 && flags.removeBackgroundSingletonFeatures) {
-            String ans = doc.get(j).get(CoreAnnotations.AnswerAnnotation.class);
-            boolean background = ans.equals(flags.backgroundSymbol);
-            if (k == 1 && j > 0 && background) {
-              ans = doc.get(j - 1).get(CoreAnnotations.AnswerAnnotation.class);
-              background = ans.equals(flags.backgroundSymbol);
-            }
-            if (background) {
-              for (String f : cliqueFeatures) {
-                if (useFeatureCountThresh) {
-                  if (!featureCountIndices[k].containsKey(f)) {
-                    if (seenBackgroundFeatures[k].contains(f)) {
-                      seenBackgroundFeatures[k].remove(f);
-                      featureCountIndices[k].put(f, 1);
-                    } else {
-                      seenBackgroundFeatures[k].add(f);
-                    }
-                  }
-                } else {
-                  if (!featureIndices[k].contains(f)) {
-                    if (seenBackgroundFeatures[k].contains(f)) {
-                      seenBackgroundFeatures[k].remove(f);
-                      featureIndices[k].add(f);
-                    } else {
-                      seenBackgroundFeatures[k].add(f);
-                    }
-                  }
-                }
-              }
-            } else {
-              seenBackgroundFeatures[k].removeAll(cliqueFeatures);
-              if (useFeatureCountThresh) {
-                Map<String, Integer> fCountIndex = featureCountIndices[k];
-                for (String f: cliqueFeatures) {
-                  if (fCountIndex.containsKey(f))
-                    fCountIndex.put(f, fCountIndex.get(f)+1);
-                  else
-                    fCountIndex.put(f, 1);
-                }
-              } else {
-                featureIndices[k].addAll(cliqueFeatures);
-              }
-            }
-          } else {
-            if (useFeatureCountThresh) {
-              Map<String, Integer> fCountIndex = featureCountIndices[k];
-              for (String f: cliqueFeatures) {
-                if (fCountIndex.containsKey(f))
-                  fCountIndex.put(f, fCountIndex.get(f)+1);
-                else
-                  fCountIndex.put(f, 1);
-              }
-            } else {
-              featureIndices[k].addAll(cliqueFeatures);
-            }
-          }
-        }
+      wrapper.join();
+      while (wrapper.peek()) {
+        addFeatures(pending.poll(), wrapper.poll(), labelIndex, featureIndices, featureCountIndices,
+                seenBackgroundFeatures);
       }
-
-      if (flags.useReverse) {
-        Collections.reverse(doc);
+    } else {
+      for (List<IN> doc : ob) {
+        wordCount = addAnswers(doc, wordCount);
+        addFeatures(doc, makeDatums(doc), labelIndex, featureIndices, featureCountIndices, seenBackgroundFeatures);
       }
     }
 
@@ -918,6 +980,162 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
     }
   }
 
+  /**
+   * The number of threads with which to extract features from training
+   * documents.  Features are printed as they are extracted, so then
+   * there is just one.
+   */
+  private int featureExtractionThreads() {
+    return flags.printFeatures == null ? flags.multiThreadFeatureExtraction : 1;
+  }
+
+  /**
+   * Adds the answers of a document to the {@code classIndex}, and to the
+   * {@code labelDictionary}, if there is one.
+   *
+   * @return The number of words seen so far, including this document
+   */
+  private int addAnswers(List<IN> doc, int wordCount) {
+    if (flags.useReverse) {
+      Collections.reverse(doc);
+    }
+
+    // create the full set of labels in classIndex
+    // note: update to use addAll later
+    for (IN token : doc) {
+      wordCount++;
+      String ans = token.get(CoreAnnotations.AnswerAnnotation.class);
+      if (ans == null || ans.equals("")) {
+        throw new IllegalArgumentException("Word " + wordCount + " (\"" + token.get(CoreAnnotations.TextAnnotation.class) + "\") has a blank answer");
+      }
+      classIndex.add(ans);
+      if (labelDictionary != null) {
+        String observation = token.get(CoreAnnotations.TextAnnotation.class);
+        labelDictionary.increment(observation, ans);
+      }
+    }
+
+    if (flags.useReverse) {
+      Collections.reverse(doc);
+    }
+    return wordCount;
+  }
+
+  /** Makes the datum at each position of a document, whose answers are all in the {@code classIndex}. */
+  private List<CRFDatum<List<String>, CRFLabel>> makeDatums(List<IN> doc) {
+    if (flags.useReverse) {
+      Collections.reverse(doc);
+    }
+    List<CRFDatum<List<String>, CRFLabel>> datums = new ArrayList<CRFDatum<List<String>, CRFLabel>>(doc.size());
+    for (int j = 0, docSize = doc.size(); j < docSize; j++) {
+      datums.add(makeDatum(doc, j, featureFactory));
+    }
+    if (flags.useReverse) {
+      Collections.reverse(doc);
+    }
+    return datums;
+  }
+
+  /** Makes the datums of documents on several threads, which share the feature factory. */
+  private class DatumMaker implements ThreadsafeProcessor<List<IN>, List<CRFDatum<List<String>, CRFLabel>>> {
+    @Override
+    public List<CRFDatum<List<String>, CRFLabel>> process(List<IN> doc) {
+      return makeDatums(doc);
+    }
+
+    @Override
+    public ThreadsafeProcessor<List<IN>, List<CRFDatum<List<String>, CRFLabel>>> newInstance() {
+      return this;
+    }
+  }
+
+  /**
+   * Adds the labels and features of the datums of a document, which must
+   * be added in document order, as whether a feature of background
+   * positions is kept depends on whether it has been seen before.
+   *
+   * @param featureCountIndices The count of each feature, when features
+   *          are thresholded by count, or else null
+   */
+  private void addFeatures(List<IN> doc, List<CRFDatum<List<String>, CRFLabel>> datums, Index<CRFLabel> labelIndex,
+                           Set<String>[] featureIndices, Map<String, Integer>[] featureCountIndices,
+                           Set<String>[] seenBackgroundFeatures) {
+    boolean useFeatureCountThresh = featureCountIndices != null;
+    if (flags.useReverse) {
+      Collections.reverse(doc);
+    }
+
+    for (int j = 0, docSize = doc.size(); j < docSize; j++) {
+      CRFDatum<List<String>, CRFLabel> d = datums.get(j);
+      labelIndex.add(d.label());
+
+      List<List<String>> features = d.asFeatures();
+      for (int k = 0, fSize = features.size(); k < fSize; k++) {
+        Collection<String> cliqueFeatures = features.get(k);
+        if (k < 2 && flags.removeBackgroundSingletonFeatures) {
+          String ans = doc.get(j).get(CoreAnnotations.AnswerAnnotation.class);
+          boolean background = ans.equals(flags.backgroundSymbol);
+          if (k == 1 && j > 0 && background) {
+            ans = doc.get(j - 1).get(CoreAnnotations.AnswerAnnotation.class);
+            background = ans.equals(flags.backgroundSymbol);
+          }
+          if (background) {
+            for (String f : cliqueFeatures) {
+              if (useFeatureCountThresh) {
+                if (!featureCountIndices[k].containsKey(f)) {
+                  if (seenBackgroundFeatures[k].contains(f)) {
+                    seenBackgroundFeatures[k].remove(f);
+                    featureCountIndices[k].put(f, 1);
+                  } else {
+                    seenBackgroundFeatures[k].add(f);
+                  }
+                }
+              } else {
+                if (!featureIndices[k].contains(f)) {
+                  if (seenBackgroundFeatures[k].contains(f)) {
+                    seenBackgroundFeatures[k].remove(f);
+                    featureIndices[k].add(f);
+                  } else {
+                    seenBackgroundFeatures[k].add(f);
+                  }
+                }
+              }
+            }
+          } else {
+            seenBackgroundFeatures[k].removeAll(cliqueFeatures);
+            if (useFeatureCountThresh) {
+              Map<String, Integer> fCountIndex = featureCountIndices[k];
+              for (String f: cliqueFeatures) {
+                if (fCountIndex.containsKey(f))
+                  fCountIndex.put(f, fCountIndex.get(f)+1);
+                else
+                  fCountIndex.put(f, 1);
+              }
+            } else {
+              featureIndices[k].addAll(cliqueFeatures);
+            }
+          }
+        } else {
+          if (useFeatureCountThresh) {
+            Map<String, Integer> fCountIndex = featureCountIndices[k];
+            for (String f: cliqueFeatures) {
+              if (fCountIndex.containsKey(f))
+                fCountIndex.put(f, fCountIndex.get(f)+1);
+              else
+                fCountIndex.put(f, 1);
+            }
+          } else {
+            featureIndices[k].addAll(cliqueFeatures);
+          }
+        }
+      }
+    }
+
+    if (flags.useReverse) {
+      Collections.reverse(doc);
+    }
+  }
+
   protected static Index<CRFLabel> allLabels(int window, Index<String> classIndex) {
     int[] label = new int[window];
     // cdm 2005: array initialization isn't necessary: JLS (3rd ed.) 4.12.5
@@ -1177,12 +1395,84 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
 
   protected CliquePotentialFunction getCliquePotentialFunctionForTest() {
     if (cliquePotentialFunction == null) {
-      cliquePotentialFunction = new LinearCliquePotentialFunction(weights);
+      if (compactWeights != null) {
+        cliquePotentialFunction = new LinearCliquePotentialFunction(compactWeights);
+      } else {
+        cliquePotentialFunction = new LinearCliquePotentialFunction(weights);
+      }
     }
     return cliquePotentialFunction;
   }
 
+  /**
+   * Replaces the weights with a {@link CompactWeights} of the given
+   * precision, which takes less memory and is faster to score with.  After
+   * this, the classifier can be used for testing and serialized as before,
+   * and the compact weights are saved with it.  Anything which changes the
+   * weights or needs them as a <code>double[][]</code>, such as combining
+   * classifiers, expands them again (with any precision lost).
+   */
+  public void compactWeights(CompactWeights.Precision precision) {
+    checkNotFrozen();
+    if (compactWeights != null && compactWeights.precision() == precision) {
+      return;
+    }
+    expandWeights();
+    if (weights != null) {
+      compactWeights = new CompactWeights(weights, precision);
+      weights = null;
+      cliquePotentialFunction = null;
+    }
+  }
+
+  /** Makes the <code>weights</code> array again if they have been compacted. */
+  void expandWeights() {
+    if (compactWeights != null) {
+      checkNotFrozen();
+      weights = compactWeights.toWeights();
+      compactWeights = null;
+      cliquePotentialFunction = null;
+    }
+  }
+
+  /**
+   * The weights as a <code>double[][]</code>, for reading only.  If they
+   * have been compacted, this is a new array made from the compact weights,
+   * which are kept.
+   */
+  private double[][] readableWeights() {
+    return compactWeights != null ? compactWeights.toWeights() : weights;
+  }
+
+  /**
+   * Makes this classifier read only, so that one instance can be shared by
+   * any number of threads and pipelines, as {@link CRFClassifierRegistry}
+   * does.  This builds the structures used at test time now rather than
+   * when first needed, and from then on, methods which would change the
+   * model (training, loading, combining, or changing the weights) throw an
+   * IllegalStateException.  Classifying is threadsafe for CRFClassifier
+   * itself with the NERFeatureFactory, though not for every subclass.
+   */
+  public void freeze() {
+    getCliquePotentialFunctionForTest();
+    if (featureIndex != null) {
+      featureIdLookup();
+    }
+    frozen = true;
+  }
+
+  public boolean isFrozen() {
+    return frozen;
+  }
+
+  private void checkNotFrozen() {
+    if (frozen) {
+      throw new IllegalStateException("This CRFClassifier is frozen, so its model cannot be changed");
+    }
+  }
+
   public void updateWeightsForTest(double[] x) {
+    checkNotFrozen();
     cliquePotentialFunction = cliquePotentialFunctionHelper.getCliquePotentialFunction(x);
   }
 
@@ -1212,25 +1502,38 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
   }
 
   private List<IN> classifyMaxEnt(List<IN> document, SequenceModel model) {
+    return classifyMaxEnt(document, model, inferenceType());
+  }
+
+  private List<IN> classifyMaxEnt(List<IN> document, SequenceModel model, String inferenceType) {
     if (document.isEmpty()) {
       return document;
     }
 
-    if (flags.inferenceType == null) {
-      flags.inferenceType = "Viterbi";
-    }
-
     BestSequenceFinder tagInference;
-    if (flags.inferenceType.equalsIgnoreCase("Viterbi")) {
+    if (inferenceType.equalsIgnoreCase("Viterbi")) {
       tagInference = new ExactBestSequenceFinder();
-    } else if (flags.inferenceType.equalsIgnoreCase("Beam")) {
+    } else if (inferenceType.equalsIgnoreCase("Beam")) {
       tagInference = new BeamBestSequenceFinder(flags.beamSize);
     } else {
-      throw new RuntimeException("Unknown inference type: " + flags.inferenceType + ". Your options are Viterbi|Beam.");
+      throw new RuntimeException("Unknown inference type: " + inferenceType + ". Your options are Viterbi|Beam.");
     }
 
     int[] bestSequence = tagInference.bestSequence(model);
+    setAnswers(document, bestSequence);
+    return document;
+  }
 
+  /**
+   * The inference type of the flags, Viterbi if none is set.  The flags
+   * are not changed, as a frozen classifier may be in use by other threads.
+   */
+  private String inferenceType() {
+    return (flags.inferenceType == null) ? "Viterbi" : flags.inferenceType;
+  }
+
+  /** Sets the answers of the document to the labels of the best sequence of its SequenceModel. */
+  private void setAnswers(List<IN> document, int[] bestSequence) {
     if (flags.useReverse) {
       Collections.reverse(document);
     }
@@ -1242,7 +1545,50 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
     if (flags.useReverse) {
       Collections.reverse(document);
     }
-    return document;
+  }
+
+  /**
+   * Classifies a batch of documents in place, giving each the labels that
+   * {@link #classify(List)} would.  With maxent Viterbi inference, the
+   * sequence models of all the documents are decoded together by a
+   * {@link BatchBestSequenceFinder}, which reuses its Viterbi lattices
+   * from one document to the next and can decode on several threads;
+   * other inference types classify the documents one at a time.
+   *
+   * @param documents The documents to classify.  They are modified.
+   * @param nThreads The number of threads to decode with
+   * @return The classified documents
+   */
+  public List<List<IN>> classifyBatch(List<List<IN>> documents, int nThreads) {
+    if (flags.doGibbs || ! flags.crfType.equalsIgnoreCase("maxent")) {
+      for (List<IN> document : documents) {
+        classify(document);
+      }
+      return documents;
+    }
+    String inferenceType = inferenceType();
+    if ( ! inferenceType.equalsIgnoreCase("Viterbi")) {
+      for (List<IN> document : documents) {
+        if ( ! document.isEmpty()) {
+          classifyMaxEnt(document, getSequenceModel(document), inferenceType);
+        }
+      }
+      return documents;
+    }
+
+    List<List<IN>> nonEmpty = new ArrayList<List<IN>>(documents.size());
+    List<SequenceModel> models = new ArrayList<SequenceModel>(documents.size());
+    for (List<IN> document : documents) {
+      if ( ! document.isEmpty()) {
+        nonEmpty.add(document);
+        models.add(getSequenceModel(document));
+      }
+    }
+    List<int[]> bestSequences = new BatchBestSequenceFinder(nThreads).bestSequences(models);
+    for (int i = 0; i < nonEmpty.size(); i++) {
+      setAnswers(nonEmpty.get(i), bestSequences.get(i));
+    }
+    return documents;
   }
 
   public List<IN> classifyGibbs(List<IN> document) throws ClassNotFoundException, SecurityException,
@@ -1560,6 +1906,12 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
   /** {@inheritDoc} */
   @Override
   public void train(Collection<List<IN>> objectBankWrapper, DocumentReaderAndWriter<IN> readerAndWriter) {
+    checkNotFrozen();
+    // a loaded classifier being retrained: drop what was made from its old weights and features,
+    // so that it neither tests with nor saves them
+    compactWeights = null;
+    cliquePotentialFunction = null;
+    featureIdLookup = null;
     Timing timer = new Timing();
     timer.start();
 
@@ -1738,6 +2090,158 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
         System.err.println("Removing features with weight below " + flags.featureDiffThresh + " and retraining...");
       }
     }
+
+    if (flags.compactWeights != null) {
+      compactWeights(CompactWeights.Precision.fromString(flags.compactWeights));
+    }
+  }
+
+  /**
+   * Updates a trained classifier with more annotated documents, rather
+   * than training a new one on all the data.  Training starts from the
+   * current weights, and new features in the documents are added to the
+   * end of the feature index with weights of zero, so the indices of the
+   * existing features do not change.  The documents are then passed over
+   * in mini-batches by AdaGrad: if useAdaGradFOBOS is set, with the
+   * minimizer which trains with it, and otherwise with the initRate,
+   * SGDPasses and stochasticBatchSize flags and no regularization beyond
+   * starting from the current weights.  Trained on only a few new
+   * documents, the classifier can forget some of what it learned from the
+   * old ones, so a sample of the old training documents can be passed in
+   * along with the new ones.
+   * <br>
+   * The documents may only use the classes the classifier already has,
+   * since new classes would change the layout of every weight.  New
+   * features are not filtered by featureCountThresh or
+   * removeBackgroundSingletonFeatures, and features are not pruned
+   * afterwards.
+   *
+   * @param docs Documents with their gold AnswerAnnotations
+   * @throws IllegalArgumentException If a document has a class, or with
+   *     useObservedSequencesOnly a sequence of classes, that the
+   *     classifier does not
+   */
+  public void trainOnline(Collection<List<IN>> docs) {
+    checkNotFrozen();
+    if (classIndex == null || (weights == null && compactWeights == null)) {
+      throw new IllegalStateException("Only a trained classifier can be trained online");
+    }
+    Timing timer = new Timing();
+    timer.start();
+    expandWeights();
+    List<List<IN>> documents = new ArrayList<List<IN>>(docs);
+
+    // map is not serialized, so after loading a classifier it is remade
+    int oldNumFeatures = featureIndex.size();
+    List<Integer> featureTypes = new ArrayList<Integer>(oldNumFeatures);
+    for (int i = 0; i < oldNumFeatures; i++) {
+      featureTypes.add((map != null && map.length == oldNumFeatures) ? map[i] : getFeatureTypeIndex(i));
+    }
+    // every document is checked and its new features found before any
+    // are added, so that a bad document leaves the classifier as it was
+    Map<String, Integer> newFeatures = new LinkedHashMap<String, Integer>();
+    Index<CRFLabel> labelIndex = labelIndices.get(windowSize - 1);
+    for (List<IN> doc : documents) {
+      for (IN token : doc) {
+        String answer = token.get(CoreAnnotations.AnswerAnnotation.class);
+        if (answer == null || ! classIndex.contains(answer)) {
+          throw new IllegalArgumentException("Word \"" + token.get(CoreAnnotations.TextAnnotation.class) +
+                                             "\" has the answer " + answer + ", which is not a class of this classifier");
+        }
+      }
+      if (flags.useReverse) {
+        Collections.reverse(doc);
+      }
+      try {
+        for (int j = 0, docSize = doc.size(); j < docSize; j++) {
+          CRFDatum<List<String>, CRFLabel> d = makeDatum(doc, j, featureFactory);
+          if (flags.useObservedSequencesOnly && ! labelIndex.contains(d.label())) {
+            throw new IllegalArgumentException("Word " + j + " of a document ends a sequence of classes " +
+                                               "which this classifier has not seen: " + d.label());
+          }
+          List<List<String>> features = d.asFeatures();
+          for (int k = 0, fSize = features.size(); k < fSize; k++) {
+            for (String feature : features.get(k)) {
+              if ( ! featureIndex.contains(feature) && ! newFeatures.containsKey(feature)) {
+                newFeatures.put(feature, k);
+              }
+            }
+          }
+        }
+      } finally {
+        if (flags.useReverse) {
+          Collections.reverse(doc);
+        }
+      }
+    }
+
+    boolean locked = featureIndex.isLocked();
+    featureIndex.unlock();
+    for (Map.Entry<String, Integer> feature : newFeatures.entrySet()) {
+      featureIndex.add(feature.getKey());
+      featureTypes.add(feature.getValue());
+      Index<Integer> featureIndexMap = (feature.getValue() == 0) ? nodeFeatureIndicesMap : edgeFeatureIndicesMap;
+      if (featureIndexMap != null) {
+        featureIndexMap.add(featureIndex.size() - 1);
+      }
+    }
+    if (locked) {
+      featureIndex.lock();
+    }
+    int numFeatures = featureIndex.size();
+    map = new int[numFeatures];
+    for (int i = 0; i < numFeatures; i++) {
+      map[i] = featureTypes.get(i);
+    }
+    double[][] newWeights = new double[numFeatures][];
+    System.arraycopy(weights, 0, newWeights, 0, oldNumFeatures);
+    for (int i = oldNumFeatures; i < numFeatures; i++) {
+      newWeights[i] = new double[labelIndices.get(map[i]).size()];
+    }
+    weights = newWeights;
+    cliquePotentialFunction = null;
+    featureIdLookup = null;
+    System.err.println("Online training added " + (numFeatures - oldNumFeatures) + " features to the " +
+                       oldNumFeatures + " of the classifier");
+
+    Triple<int[][][][], int[][], double[][][][]> dataAndLabels = documentsToDataAndLabels(documents);
+    CRFLogConditionalObjectiveFunction func = getObjectiveFunction(dataAndLabels.first(), dataAndLabels.second());
+    cliquePotentialFunctionHelper = func;
+
+    Minimizer<DiffFunction> minimizer;
+    if (flags.useAdaGradFOBOS) {
+      minimizer = getMinimizer();
+    } else {
+      minimizer = new SGDWithAdaGradAndFOBOS<DiffFunction>(flags.initRate, 0.0, flags.SGDPasses,
+          flags.stochasticBatchSize, "none", 1.0, false, false, flags.adaGradEps, flags.adaDeltaRho);
+    }
+    double[] initialWeights = new double[func.domainDimension()];
+    int index = 0;
+    for (double[] featureWeights : weights) {
+      System.arraycopy(featureWeights, 0, initialWeights, index, featureWeights.length);
+      index += featureWeights.length;
+    }
+    double[] oneDimWeights = minimizer.minimize(func, flags.tolerance, initialWeights);
+    weights = to2D(oneDimWeights, labelIndices, map);
+    cliquePotentialFunction = null;
+
+    System.err.println("Time to train online on " + documents.size() + " documents: " +
+                       Timing.toSecondsString(timer.stop()) + " seconds");
+    if (flags.compactWeights != null) {
+      compactWeights(CompactWeights.Precision.fromString(flags.compactWeights));
+    }
+  }
+
+  /**
+   * Updates a trained classifier with the annotated documents in a file.
+   * See {@link #trainOnline(Collection)}.
+   */
+  public void trainOnline(String filename, DocumentReaderAndWriter<IN> readerAndWriter) {
+    List<List<IN>> docs = new ArrayList<List<IN>>();
+    for (List<IN> doc : makeObjectBankFromFile(filename, readerAndWriter)) {
+      docs.add(doc);
+    }
+    trainOnline(docs);
   }
 
   public double[][] to2D(double[] weights, List<Index<CRFLabel>> labelIndices, int[] map) {
@@ -2324,6 +2828,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
 
   public void loadTextClassifier(String text, Properties props) throws ClassCastException, IOException,
       ClassNotFoundException, InstantiationException, IllegalAccessException {
+    checkNotFrozen();
     // System.err.println("DEBUG: in loadTextClassifier");
     System.err.println("Loading Text Classifier from " + text);
     try {
@@ -2339,6 +2844,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
   }
 
   protected void serializeTextClassifier(PrintWriter pw) throws Exception {
+    double[][] weights = readableWeights();
     pw.printf("labelIndices.length=\t%d%n", labelIndices.size());
     for (int i = 0; i < labelIndices.size(); i++) {
       pw.printf("labelIndices[%d].size()=\t%d%n", i, labelIndices.get(i).size());
@@ -2452,6 +2958,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
   }
 
   public void serializeWeights(String serializePath) {
+    double[][] weights = readableWeights();
     System.err.print("Serializing weights to " + serializePath + "...");
 
     ObjectOutputStream oos = null;
@@ -2559,7 +3066,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
         oos.writeObject(embeddings);
       oos.writeObject(featureFactory);
       oos.writeInt(windowSize);
-      oos.writeObject(weights);
+      oos.writeObject(compactWeights != null ? compactWeights : weights);
       // oos.writeObject(WordShapeClassifier.getKnownLowerCaseWords());
 
       oos.writeObject(knownLCWords);
@@ -2586,6 +3093,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
   // can't have right types in deserialization
   public void loadClassifier(ObjectInputStream ois, Properties props) throws ClassCastException, IOException,
       ClassNotFoundException {
+    checkNotFrozen();
     Object o = ois.readObject();
     // TODO: when we next break serialization, get rid of this fork and only read the List<Index>
     if (o instanceof List) {
@@ -2611,7 +3119,18 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
     reinit();
 
     windowSize = ois.readInt();
-    weights = (double[][]) ois.readObject();
+    Object weightsObject = ois.readObject();
+    if (weightsObject instanceof CompactWeights) {
+      compactWeights = (CompactWeights) weightsObject;
+      weights = null;
+    } else {
+      weights = (double[][]) weightsObject;
+      compactWeights = null;
+    }
+    cliquePotentialFunction = null;
+    if (flags.compactWeights != null) {
+      compactWeights(CompactWeights.Precision.fromString(flags.compactWeights));
+    }
 
     // WordShapeClassifier.setKnownLowerCaseWords((Set) ois.readObject());
     knownLCWords = (Set<String>) ois.readObject();
@@ -2873,6 +3392,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
     String loadTextPath = flags.loadTextClassifier;
     String serializeTo = flags.serializeTo;
     String serializeToText = flags.serializeToText;
+    String onlineTrainFile = flags.onlineTrainFile;
 
     if (crf.flags.useEmbedding && crf.flags.embeddingWords != null && crf.flags.embeddingVectors != null) {
       System.err.println("Reading Embedding Files");
@@ -2919,6 +3439,10 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
       crf.loadDefaultClassifier();
     }
 
+    if (onlineTrainFile != null) {
+      crf.trainOnline(onlineTrainFile, crf.makeReaderAndWriter());
+    }
+
     crf.loadTagIndex();
 
     if (serializeTo != null) {
@@ -2988,6 +3512,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
   }
 
   public void writeWeights(PrintStream p) {
+    double[][] weights = readableWeights();
     for (String feature : featureIndex) {
       int index = featureIndex.indexOf(feature);
       // line.add(feature+"["+(-p)+"]");
@@ -3004,6 +3529,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
   }
 
   public Map<String, Counter<String>> topWeights() {
+    double[][] weights = readableWeights();
     Map<String, Counter<String>> w = new HashMap<String, Counter<String>>();
     for (String feature : featureIndex) {
       int index = featureIndex.indexOf(feature);
@@ -0,0 +1,113 @@
+package edu.stanford.nlp.ie.crf;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.util.Generics;
+import edu.stanford.nlp.util.Pair;
+
+/**
+ * A process-wide cache of loaded CRF models, so that every annotator,
+ * classifier combiner, server and thread which loads the same model with
+ * the same properties shares one read only instance of it, rather than
+ * each loading its own copy.  The classifiers handed out are frozen (see
+ * {@link CRFClassifier#freeze()}), so they cannot be changed by one user
+ * under another, and are safe to classify with from many threads at once.
+ * <br>
+ * A model is loaded once however many threads ask for it at the same
+ * time.  Models stay loaded until {@link #remove} or {@link #clear} is
+ * called.
+ */
+public class CRFClassifierRegistry {
+
+  private static final ConcurrentMap<Pair<String, Properties>, FutureTask<CRFClassifier<CoreLabel>>> classifiers =
+      Generics.newConcurrentHashMap();
+
+  private CRFClassifierRegistry() {} // static methods only
+
+  private static Pair<String, Properties> key(String loadPath, Properties props) {
+    // copy the properties, including any defaults, so that the key cannot change
+    Properties copy = new Properties();
+    if (props != null) {
+      for (String name : props.stringPropertyNames()) {
+        copy.setProperty(name, props.getProperty(name));
+      }
+    }
+    return new Pair<String, Properties>(loadPath, copy);
+  }
+
+  /** The shared classifier loaded from the given path with no properties. */
+  public static CRFClassifier<CoreLabel> getClassifier(String loadPath) throws IOException, ClassNotFoundException {
+    return getClassifier(loadPath, null);
+  }
+
+  /**
+   * The shared classifier loaded from the given path (a file or a classpath
+   * resource), with props overriding the properties it was trained with,
+   * as in {@link CRFClassifier#getClassifier(String, Properties)}.  The
+   * classifier is frozen.
+   */
+  public static CRFClassifier<CoreLabel> getClassifier(final String loadPath, Properties props) throws IOException, ClassNotFoundException {
+    final Pair<String, Properties> key = key(loadPath, props);
+    FutureTask<CRFClassifier<CoreLabel>> task = classifiers.get(key);
+    if (task == null) {
+      FutureTask<CRFClassifier<CoreLabel>> newTask = new FutureTask<CRFClassifier<CoreLabel>>(new Callable<CRFClassifier<CoreLabel>>() {
+        @Override
+        public CRFClassifier<CoreLabel> call() throws Exception {
+          CRFClassifier<CoreLabel> crf = new CRFClassifier<CoreLabel>();
+          Properties props = key.second();
+          crf.loadClassifier(loadPath, props.isEmpty() ? null : props);
+          crf.freeze();
+          return crf;
+        }
+      });
+      task = classifiers.putIfAbsent(key, newTask);
+      if (task == null) {
+        task = newTask;
+        task.run();
+      }
+    }
+
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      // forget the failure, so that a later call can try again
+      classifiers.remove(key, task);
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof ClassNotFoundException) {
+        throw (ClassNotFoundException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+
+  /** Whether a classifier has been loaded (or is being loaded) from the path with these properties. */
+  public static boolean isLoaded(String loadPath, Properties props) {
+    return classifiers.containsKey(key(loadPath, props));
+  }
+
+  /** Forgets the classifier loaded from the path with these properties, so that it can be garbage collected once unused. */
+  public static void remove(String loadPath, Properties props) {
+    classifiers.remove(key(loadPath, props));
+  }
+
+  /** Forgets all the loaded classifiers. */
+  public static void clear() {
+    classifiers.clear();
+  }
+
+}
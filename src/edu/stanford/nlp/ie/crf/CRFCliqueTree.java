@@ -542,6 +542,71 @@ public class CRFCliqueTree<E> implements SequenceModel, SequenceListener {
 
 
 
+  /**
+   * The factor tables used while building a clique tree which are not part
+   * of the tree: the smaller tables of each position's cliques, and the
+   * messages passed between positions.  Each thread keeps one of these, so
+   * building clique trees makes only the tables which the tree keeps, and
+   * a model can be shared by many threads.
+   */
+  private static class Scratch {
+
+    private final int numClasses;
+    private final FactorTable[] partial; // by window size - 1
+    private final List<FactorTable> messages = new ArrayList<FactorTable>();
+    private FactorTable summedOut; // = null;
+
+    Scratch(int numClasses, int windowSize) {
+      this.numClasses = numClasses;
+      partial = new FactorTable[windowSize];
+    }
+
+    boolean fits(int numClasses, int windowSize) {
+      return this.numClasses == numClasses && partial.length >= windowSize;
+    }
+
+    /** A cleared table for the cliques of size windowSize, which is less than the full window. */
+    FactorTable partial(int windowSize) {
+      FactorTable ft = partial[windowSize - 1];
+      if (ft == null) {
+        ft = new FactorTable(numClasses, windowSize);
+        partial[windowSize - 1] = ft;
+      } else {
+        ft.clear();
+      }
+      return ft;
+    }
+
+    /** The table for the i-th message, which is one smaller than the window; its values are left as they were. */
+    FactorTable message(int i, int windowSize) {
+      while (messages.size() <= i) {
+        messages.add(new FactorTable(numClasses, windowSize - 1));
+      }
+      return messages.get(i);
+    }
+
+    FactorTable summedOut(int windowSize) {
+      if (summedOut == null || summedOut.windowSize() != windowSize - 1) {
+        summedOut = new FactorTable(numClasses, windowSize - 1);
+      }
+      return summedOut;
+    }
+
+  }
+
+  private static final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>();
+
+  private static Scratch scratch(int numClasses, int windowSize) {
+    Scratch s = scratch.get();
+    if (s == null || ! s.fits(numClasses, windowSize)) {
+      s = new Scratch(numClasses, windowSize);
+      scratch.set(s);
+    } else if (s.messages.size() > 0 && s.messages.get(0).windowSize() != windowSize - 1) {
+      s.messages.clear();
+    }
+    return s;
+  }
+
   //
   // JOINT CONDITIONAL PROBS
   //
@@ -551,6 +616,8 @@ public class CRFCliqueTree<E> implements SequenceModel, SequenceListener {
   public static <E> CRFCliqueTree<E> getCalibratedCliqueTree(int[][][] data, List<Index<CRFLabel>> labelIndices,
       int numClasses, Index<E> classIndex, E backgroundSymbol, CliquePotentialFunction cliquePotentialFunc, double[][][] featureVals) {
 
+    int windowSize = labelIndices.size();
+    Scratch scratch = scratch(numClasses, windowSize);
     FactorTable[] factorTables = new FactorTable[data.length];
     FactorTable[] messages = new FactorTable[data.length - 1];
 
@@ -558,12 +625,12 @@ public class CRFCliqueTree<E> implements SequenceModel, SequenceListener {
       double[][] featureValByCliqueSize = null;
       if (featureVals != null)
         featureValByCliqueSize = featureVals[i];
-      factorTables[i] = getFactorTable(data[i], labelIndices, numClasses, cliquePotentialFunc, featureValByCliqueSize, i);
+      factorTables[i] = getFactorTable(data[i], labelIndices, numClasses, cliquePotentialFunc, featureValByCliqueSize, i, scratch);
 
       // System.err.println("before calibration,FT["+i+"] = " + factorTables[i].toProbString());
 
       if (i > 0) {
-        messages[i - 1] = factorTables[i - 1].sumOutFront();
+        messages[i - 1] = factorTables[i - 1].sumOutFront(scratch.message(i - 1, windowSize));
         // System.err.println("forward message, message["+(i-1)+"] = " + messages[i-1].toProbString());
         factorTables[i].multiplyInFront(messages[i - 1]);
         // System.err.println("after forward calibration, FT["+i+"] = " + factorTables[i].toProbString());
@@ -571,7 +638,7 @@ public class CRFCliqueTree<E> implements SequenceModel, SequenceListener {
     }
 
     for (int i = factorTables.length - 2; i >= 0; i--) {
-      FactorTable summedOut = factorTables[i + 1].sumOutEnd();
+      FactorTable summedOut = factorTables[i + 1].sumOutEnd(scratch.summedOut(windowSize));
       summedOut.divideBy(messages[i]);
       // System.err.println("backward summedOut, summedOut= " + summedOut.toProbString());
       factorTables[i].multiplyInEnd(summedOut);
@@ -588,22 +655,24 @@ public class CRFCliqueTree<E> implements SequenceModel, SequenceListener {
   public static <E> CRFCliqueTree<E> getCalibratedCliqueTree(double[] weights, double wscale, int[][] weightIndices,
       int[][][] data, List<Index<CRFLabel>> labelIndices, int numClasses, Index<E> classIndex, E backgroundSymbol) {
 
+    int windowSize = labelIndices.size();
+    Scratch scratch = scratch(numClasses, windowSize);
     FactorTable[] factorTables = new FactorTable[data.length];
     FactorTable[] messages = new FactorTable[data.length - 1];
 
     for (int i = 0; i < data.length; i++) {
 
-      factorTables[i] = getFactorTable(weights, wscale, weightIndices, data[i], labelIndices, numClasses);
+      factorTables[i] = getFactorTable(weights, wscale, weightIndices, data[i], labelIndices, numClasses, scratch);
 
       if (i > 0) {
-        messages[i - 1] = factorTables[i - 1].sumOutFront();
+        messages[i - 1] = factorTables[i - 1].sumOutFront(scratch.message(i - 1, windowSize));
         factorTables[i].multiplyInFront(messages[i - 1]);
       }
     }
 
     for (int i = factorTables.length - 2; i >= 0; i--) {
 
-      FactorTable summedOut = factorTables[i + 1].sumOutEnd();
+      FactorTable summedOut = factorTables[i + 1].sumOutEnd(scratch.summedOut(windowSize));
       summedOut.divideBy(messages[i]);
       factorTables[i].multiplyInEnd(summedOut);
     }
@@ -612,13 +681,14 @@ public class CRFCliqueTree<E> implements SequenceModel, SequenceListener {
   }
 
   private static FactorTable getFactorTable(double[] weights, double wscale, int[][] weightIndices, int[][] data,
-      List<Index<CRFLabel>> labelIndices, int numClasses) {
+      List<Index<CRFLabel>> labelIndices, int numClasses, Scratch scratch) {
 
     FactorTable factorTable = null;
 
     for (int j = 0, sz = labelIndices.size(); j < sz; j++) {
       Index labelIndex = labelIndices.get(j);
-      FactorTable ft = new FactorTable(numClasses, j + 1);
+      // only the table of the whole window is kept
+      FactorTable ft = j + 1 < sz ? scratch.partial(j + 1) : new FactorTable(numClasses, j + 1);
 
       // ... and each possible labeling for that clique
       for (int k = 0, liSize = labelIndex.size(); k < liSize; k++) {
@@ -656,11 +726,18 @@ public class CRFCliqueTree<E> implements SequenceModel, SequenceListener {
 
   static FactorTable getFactorTable(int[][] data, List<Index<CRFLabel>> labelIndices, int numClasses,
       CliquePotentialFunction cliquePotentialFunc, double[][] featureValByCliqueSize, int posInSent) {
+    return getFactorTable(data, labelIndices, numClasses, cliquePotentialFunc, featureValByCliqueSize, posInSent,
+                          scratch(numClasses, labelIndices.size()));
+  }
+
+  private static FactorTable getFactorTable(int[][] data, List<Index<CRFLabel>> labelIndices, int numClasses,
+      CliquePotentialFunction cliquePotentialFunc, double[][] featureValByCliqueSize, int posInSent, Scratch scratch) {
     FactorTable factorTable = null;
 
     for (int j = 0, sz = labelIndices.size(); j < sz; j++) {
       Index labelIndex = labelIndices.get(j);
-      FactorTable ft = new FactorTable(numClasses, j + 1);
+      // only the table of the whole window is kept
+      FactorTable ft = j + 1 < sz ? scratch.partial(j + 1) : new FactorTable(numClasses, j + 1);
       double[] featureVal = null;
       if (featureValByCliqueSize != null)
         featureVal = featureValByCliqueSize[j];
@@ -0,0 +1,198 @@
+package edu.stanford.nlp.ie.crf;
+
+import java.io.Serializable;
+import java.util.Locale;
+
+/**
+ * The weights of a linear CRF in one contiguous array, with an offset
+ * table giving where the weights of each feature start.  The weights of
+ * feature <code>f</code> for clique label <code>l</code> is at
+ * <code>offsets[f] + l</code>.  This takes less memory than a
+ * <code>double[][]</code> (there is no array header or pointer per
+ * feature) and scoring a clique reads a single array.
+ * <br>
+ * The weights can be kept as doubles, as floats, or quantized to 16 or
+ * 8 bit integers with a scale per feature.  Only doubles give exactly
+ * the scores of the original weights; floats are within rounding of
+ * them, which almost never changes a labeling, and quantized weights
+ * are within half a step of the largest weight of their feature.
+ * <br>
+ * These weights are read only, so one instance can be shared by any
+ * number of threads.
+ */
+public class CompactWeights implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  public enum Precision {
+    DOUBLE, FLOAT, SHORT, BYTE;
+
+    /** Parses a precision name, in any case, such as "float". */
+    public static Precision fromString(String name) {
+      try {
+        return valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("Unknown weight precision " + name + "; use one of double, float, short or byte");
+      }
+    }
+  }
+
+  private final Precision precision;
+  private final int[] offsets; // numFeatures + 1 of them
+  private final double[] doubles;
+  private final float[] floats;
+  private final short[] shorts;
+  private final byte[] bytes;
+  private final float[] scales; // per feature, for the quantized precisions
+
+  public CompactWeights(double[][] weights, Precision precision) {
+    this.precision = precision;
+    offsets = new int[weights.length + 1];
+    for (int f = 0; f < weights.length; f++) {
+      offsets[f + 1] = offsets[f] + weights[f].length;
+    }
+    int size = offsets[weights.length];
+    doubles = precision == Precision.DOUBLE ? new double[size] : null;
+    floats = precision == Precision.FLOAT ? new float[size] : null;
+    shorts = precision == Precision.SHORT ? new short[size] : null;
+    bytes = precision == Precision.BYTE ? new byte[size] : null;
+    scales = (shorts != null || bytes != null) ? new float[weights.length] : null;
+
+    for (int f = 0; f < weights.length; f++) {
+      double[] row = weights[f];
+      int offset = offsets[f];
+      switch (precision) {
+      case DOUBLE:
+        System.arraycopy(row, 0, doubles, offset, row.length);
+        break;
+      case FLOAT:
+        for (int l = 0; l < row.length; l++) {
+          floats[offset + l] = (float) row[l];
+        }
+        break;
+      case SHORT:
+        scales[f] = scale(row, Short.MAX_VALUE);
+        for (int l = 0; l < row.length; l++) {
+          shorts[offset + l] = (short) Math.round(row[l] / scales[f]);
+        }
+        break;
+      case BYTE:
+        scales[f] = scale(row, Byte.MAX_VALUE);
+        for (int l = 0; l < row.length; l++) {
+          bytes[offset + l] = (byte) Math.round(row[l] / scales[f]);
+        }
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown precision " + precision);
+      }
+    }
+  }
+
+  /** The scale which maps the largest weight of a row to maxValue. */
+  private static float scale(double[] row, int maxValue) {
+    double max = 0.0;
+    for (double weight : row) {
+      max = Math.max(max, Math.abs(weight));
+    }
+    // a row of zeros can have any scale
+    float scale = (float) (max / maxValue);
+    return scale > 0.0f ? scale : 1.0f;
+  }
+
+  public Precision precision() {
+    return precision;
+  }
+
+  public int numFeatures() {
+    return offsets.length - 1;
+  }
+
+  /** The number of weights of a feature, which is the number of labels of its clique. */
+  public int numWeights(int feature) {
+    return offsets[feature + 1] - offsets[feature];
+  }
+
+  /** The total number of weights. */
+  public int numWeights() {
+    return offsets[offsets.length - 1];
+  }
+
+  public double get(int feature, int label) {
+    int i = offsets[feature] + label;
+    switch (precision) {
+    case DOUBLE:
+      return doubles[i];
+    case FLOAT:
+      return floats[i];
+    case SHORT:
+      return shorts[i] * scales[feature];
+    default:
+      return bytes[i] * scales[feature];
+    }
+  }
+
+  /**
+   * The sum of the weights of the given features for a clique label,
+   * each times its value if there are feature values.  With double
+   * precision this adds the weights in the same order as
+   * {@link LinearCliquePotentialFunction} adds those of a
+   * <code>double[][]</code>, so it gives exactly the same result.
+   */
+  public double dotProduct(int[] features, double[] featureVals, int label) {
+    double output = 0.0;
+    switch (precision) {
+    case DOUBLE:
+      for (int m = 0; m < features.length; m++) {
+        double dotProd = doubles[offsets[features[m]] + label];
+        if (featureVals != null) {
+          dotProd *= featureVals[m];
+        }
+        output += dotProd;
+      }
+      break;
+    case FLOAT:
+      for (int m = 0; m < features.length; m++) {
+        double dotProd = floats[offsets[features[m]] + label];
+        if (featureVals != null) {
+          dotProd *= featureVals[m];
+        }
+        output += dotProd;
+      }
+      break;
+    case SHORT:
+      for (int m = 0; m < features.length; m++) {
+        int f = features[m];
+        double dotProd = shorts[offsets[f] + label] * scales[f];
+        if (featureVals != null) {
+          dotProd *= featureVals[m];
+        }
+        output += dotProd;
+      }
+      break;
+    default:
+      for (int m = 0; m < features.length; m++) {
+        int f = features[m];
+        double dotProd = bytes[offsets[f] + label] * scales[f];
+        if (featureVals != null) {
+          dotProd *= featureVals[m];
+        }
+        output += dotProd;
+      }
+      break;
+    }
+    return output;
+  }
+
+  /** The weights as a <code>double[][]</code>, indexed by feature and then clique label. */
+  public double[][] toWeights() {
+    double[][] weights = new double[numFeatures()][];
+    for (int f = 0; f < weights.length; f++) {
+      weights[f] = new double[numWeights(f)];
+      for (int l = 0; l < weights[f].length; l++) {
+        weights[f][l] = get(f, l);
+      }
+    }
+    return weights;
+  }
+
+}
@@ -39,6 +39,11 @@ public class FactorTable {
     System.arraycopy(t.table, 0, table, 0, t.size());
   }
 
+  /** Sets every value to negative infinity, as in a new table, so that the table can be reused. */
+  void clear() {
+    Arrays.fill(table, Double.NEGATIVE_INFINITY);
+  }
+
   public boolean hasNaN() {
     return ArrayMath.hasNaN(table);
   }
@@ -460,7 +465,11 @@ public class FactorTable {
   }
 
   public FactorTable sumOutEnd() {
-    FactorTable ft = new FactorTable(numClasses, windowSize - 1);
+    return sumOutEnd(new FactorTable(numClasses, windowSize - 1));
+  }
+
+  /** Sums out the last element of the window into a table one smaller, whose values are all overwritten. */
+  FactorTable sumOutEnd(FactorTable ft) {
     for (int i = 0, sz = ft.size(); i < sz; i++) {
       ft.table[i] = ArrayMath.logSum(table, i * numClasses, (i+1) * numClasses);
     }
@@ -473,7 +482,11 @@ public class FactorTable {
   }
 
   public FactorTable sumOutFront() {
-    FactorTable ft = new FactorTable(numClasses, windowSize - 1);
+    return sumOutFront(new FactorTable(numClasses, windowSize - 1));
+  }
+
+  /** Sums out the first element of the window into a table one smaller, whose values are all overwritten. */
+  FactorTable sumOutFront(FactorTable ft) {
     int stride = ft.size();
     for (int i = 0; i < stride; i++) {
       ft.setValue(i, ArrayMath.logSum(table, i, table.length, stride));
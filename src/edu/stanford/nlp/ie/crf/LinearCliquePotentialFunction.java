@@ -7,14 +7,22 @@ package edu.stanford.nlp.ie.crf;
 public class LinearCliquePotentialFunction implements CliquePotentialFunction {
 
   double[][] weights;
+  CompactWeights compactWeights;
 
   LinearCliquePotentialFunction(double[][] weights) {
     this.weights = weights;
   }
 
+  LinearCliquePotentialFunction(CompactWeights compactWeights) {
+    this.compactWeights = compactWeights;
+  }
+
   @Override
   public double computeCliquePotential(int cliqueSize, int labelIndex,
       int[] cliqueFeatures, double[] featureVal, int posInSent) {
+    if (compactWeights != null) {
+      return compactWeights.dotProduct(cliqueFeatures, featureVal, labelIndex);
+    }
     double output = 0.0;
     double dotProd = 0;
     for (int m = 0; m < cliqueFeatures.length; m++) {
@@ -0,0 +1,575 @@
+package edu.stanford.nlp.ling;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.HashableCoreMap;
+
+/**
+ * A list of tokens which keeps the most common token annotations in
+ * columns, one array per annotation, rather than in a separate map per
+ * token.  Offsets and indices are stored as <code>int</code>s rather than
+ * boxed Integers, and the String annotations (word, value, tag, lemma,
+ * NER, whitespace) are interned per list, so that the many repeated words
+ * and tags of a large document share one String each.  Columns are only
+ * allocated once some token sets that annotation.
+ * <br>
+ * The elements of the list are {@link CoreLabel} views of a row of the
+ * columns.  A view is created the first time its token is asked for and
+ * is then kept, so the same token always comes back as the same object,
+ * which annotators relying on token identity need.  Getting and setting a
+ * column annotation through a view reads and writes the columns; any
+ * other annotation is kept in the view itself, as in a regular CoreLabel.
+ * <br>
+ * The list can be appended to and its elements replaced, which copies the
+ * annotations of the new label into the columns, but not otherwise
+ * structurally modified.  As with ArrayList, appending is not thread safe,
+ * but different threads may annotate different tokens concurrently.
+ * When serialized, the list and its tokens are written as an ArrayList
+ * of plain CoreLabels.
+ */
+public class CompactTokenList extends AbstractList<CoreLabel> implements RandomAccess, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  @SuppressWarnings("unchecked")
+  private static final Class<? extends CoreAnnotation<Integer>>[] INT_KEYS = new Class[] {
+    CoreAnnotations.CharacterOffsetBeginAnnotation.class,
+    CoreAnnotations.CharacterOffsetEndAnnotation.class,
+    CoreAnnotations.IndexAnnotation.class,
+    CoreAnnotations.SentenceIndexAnnotation.class,
+  };
+
+  @SuppressWarnings("unchecked")
+  private static final Class<? extends CoreAnnotation<String>>[] STRING_KEYS = new Class[] {
+    CoreAnnotations.TextAnnotation.class,
+    CoreAnnotations.ValueAnnotation.class,
+    CoreAnnotations.OriginalTextAnnotation.class,
+    CoreAnnotations.BeforeAnnotation.class,
+    CoreAnnotations.AfterAnnotation.class,
+    CoreAnnotations.PartOfSpeechAnnotation.class,
+    CoreAnnotations.LemmaAnnotation.class,
+    CoreAnnotations.NamedEntityTagAnnotation.class,
+  };
+
+  /** Marks an int annotation which is not set */
+  private static final int ABSENT = Integer.MIN_VALUE;
+
+  private static final int NUM_COLUMNS = INT_KEYS.length + STRING_KEYS.length;
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private int size; // = 0
+  private int capacity;
+
+  /** Indexed by column, then token.  A null column has no values set. */
+  private final int[][] intColumns = new int[INT_KEYS.length][];
+  private final String[][] stringColumns = new String[STRING_KEYS.length][];
+
+  private TokenView[] views;
+
+  private final ConcurrentHashMap<String, String> internedStrings = new ConcurrentHashMap<String, String>();
+
+  public CompactTokenList() {
+    this(INITIAL_CAPACITY);
+  }
+
+  public CompactTokenList(int capacity) {
+    this.capacity = Math.max(capacity, 1);
+    views = new TokenView[this.capacity];
+  }
+
+  /**
+   * Builds a compact list holding copies of the given tokens.  After this,
+   * the original tokens are no longer needed and should not be used to
+   * annotate the document.
+   */
+  public CompactTokenList(Collection<? extends CoreLabel> tokens) {
+    this(tokens.size());
+    for (CoreLabel token : tokens) {
+      add(token);
+    }
+  }
+
+  private static int intColumn(Class<?> key) {
+    for (int i = 0; i < INT_KEYS.length; i++) {
+      if (INT_KEYS[i] == key) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static int stringColumn(Class<?> key) {
+    for (int i = 0; i < STRING_KEYS.length; i++) {
+      if (STRING_KEYS[i] == key) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** Whether the given annotation is kept in a column rather than in the token views. */
+  public static boolean isColumnKey(Class<?> key) {
+    return intColumn(key) >= 0 || stringColumn(key) >= 0;
+  }
+
+  private static Class<?> columnKey(int column) {
+    return (column < INT_KEYS.length) ? INT_KEYS[column] : STRING_KEYS[column - INT_KEYS.length];
+  }
+
+  /** Whether toShortString should print the given key, as ArrayCoreMap decides it */
+  private static boolean included(Class<?> key, String... what) {
+    if (what.length == 0) {
+      return true;
+    }
+    String name = shortName(key);
+    for (String item : what) {
+      if (item.equals(name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String shortName(Class<?> key) {
+    String name = key.getSimpleName();
+    int annoIdx = name.lastIndexOf("Annotation");
+    return (annoIdx >= 0) ? name.substring(0, annoIdx) : name;
+  }
+
+  private String intern(String s) {
+    if (s == null) {
+      return null;
+    }
+    String previous = internedStrings.putIfAbsent(s, s);
+    return previous == null ? s : previous;
+  }
+
+  // Columns may be first set from several threads at once, each for its
+  // own tokens, so they are allocated under the lock
+  private synchronized int[] allocateIntColumn(int column) {
+    if (intColumns[column] == null) {
+      int[] values = new int[capacity];
+      Arrays.fill(values, ABSENT);
+      intColumns[column] = values;
+    }
+    return intColumns[column];
+  }
+
+  private synchronized String[] allocateStringColumn(int column) {
+    if (stringColumns[column] == null) {
+      stringColumns[column] = new String[capacity];
+    }
+    return stringColumns[column];
+  }
+
+  private void ensureCapacity(int minCapacity) {
+    if (minCapacity <= capacity) {
+      return;
+    }
+    int newCapacity = Math.max(minCapacity, capacity + (capacity >> 1));
+    synchronized (this) {
+      for (int i = 0; i < intColumns.length; i++) {
+        if (intColumns[i] != null) {
+          int[] values = Arrays.copyOf(intColumns[i], newCapacity);
+          Arrays.fill(values, capacity, newCapacity, ABSENT);
+          intColumns[i] = values;
+        }
+      }
+      for (int i = 0; i < stringColumns.length; i++) {
+        if (stringColumns[i] != null) {
+          stringColumns[i] = Arrays.copyOf(stringColumns[i], newCapacity);
+        }
+      }
+      views = Arrays.copyOf(views, newCapacity);
+      capacity = newCapacity;
+    }
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public CoreLabel get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    TokenView view = views[index];
+    if (view == null) {
+      synchronized (this) {
+        view = views[index];
+        if (view == null) {
+          view = new TokenView(index);
+          views[index] = view;
+        }
+      }
+    }
+    return view;
+  }
+
+  /**
+   * Replaces the contents of the token at the given position with
+   * those of the given label.  The token object itself is not replaced,
+   * so the label returned is the same object as the one now in the list.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public CoreLabel set(int index, CoreLabel label) {
+    CoreLabel token = get(index);
+    if (label == token) {
+      return token;
+    }
+    for (Class key : new ArrayList<Class<?>>(token.keySet())) {
+      token.remove(key);
+    }
+    for (Class key : label.keySet()) {
+      token.set(key, label.get(key));
+    }
+    return token;
+  }
+
+  /**
+   * Adds a copy of the given label at the end of the list.  Labels can
+   * only be added at the end.
+   */
+  @Override
+  public void add(int index, CoreLabel label) {
+    if (index != size) {
+      throw new UnsupportedOperationException("CompactTokenList can only be appended to");
+    }
+    ensureCapacity(size + 1);
+    size++;
+    modCount++;
+    set(index, label);
+  }
+
+  /**
+   * Returns the number of distinct Strings stored in the columns.
+   */
+  public int internedStringCount() {
+    return internedStrings.size();
+  }
+
+  private Object writeReplace() throws ObjectStreamException {
+    // The tokens themselves are replaced with regular CoreLabels
+    return new ArrayList<CoreLabel>(this);
+  }
+
+
+  /**
+   * A CoreLabel backed by one row of the columns, plus its own map for
+   * any annotation which does not have a column.
+   */
+  private class TokenView extends CoreLabel {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int index;
+
+    TokenView(int index) {
+      super(0);
+      this.index = index;
+    }
+
+    private int intValue(int column) {
+      int[] values = intColumns[column];
+      return values == null ? ABSENT : values[index];
+    }
+
+    private String stringValue(int column) {
+      String[] values = stringColumns[column];
+      return values == null ? null : values[index];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <VALUE> VALUE get(Class<? extends Key<VALUE>> key) {
+      int column = intColumn(key);
+      if (column >= 0) {
+        int value = intValue(column);
+        if (value != ABSENT) {
+          return (VALUE) Integer.valueOf(value);
+        }
+        return super.get(key);
+      }
+      column = stringColumn(key);
+      if (column >= 0) {
+        String value = stringValue(column);
+        if (value != null) {
+          return (VALUE) value;
+        }
+      }
+      return super.get(key);
+    }
+
+    @Override
+    public <VALUE> boolean has(Class<? extends Key<VALUE>> key) {
+      int column = intColumn(key);
+      if (column >= 0 && intValue(column) != ABSENT) {
+        return true;
+      }
+      column = stringColumn(key);
+      if (column >= 0 && stringValue(column) != null) {
+        return true;
+      }
+      return super.has(key);
+    }
+
+    @Override
+    public <VALUE> boolean containsKey(Class<? extends Key<VALUE>> key) {
+      return has(key);
+    }
+
+    /**
+     * Values which a column cannot represent (null, and for int columns
+     * the value used to mark absence) are kept in this view's own map.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <VALUE> VALUE set(Class<? extends Key<VALUE>> key, VALUE value) {
+      int column = intColumn(key);
+      if (column >= 0) {
+        VALUE old = get(key);
+        int[] values = intColumns[column];
+        if (value != null && (Integer) value != ABSENT) {
+          if (values == null) {
+            values = allocateIntColumn(column);
+          }
+          values[index] = (Integer) value;
+          super.remove(key);
+        } else {
+          if (values != null) {
+            values[index] = ABSENT;
+          }
+          super.set(key, value);
+        }
+        return old;
+      }
+      column = stringColumn(key);
+      if (column >= 0) {
+        VALUE old = get(key);
+        String[] values = stringColumns[column];
+        if (value != null) {
+          if (values == null) {
+            values = allocateStringColumn(column);
+          }
+          values[index] = intern((String) value);
+          super.remove(key);
+        } else {
+          if (values != null) {
+            values[index] = null;
+          }
+          super.set(key, value);
+        }
+        return old;
+      }
+      return super.set(key, value);
+    }
+
+    @Override
+    public <VALUE> VALUE remove(Class<? extends Key<VALUE>> key) {
+      VALUE old = get(key);
+      int column = intColumn(key);
+      if (column >= 0 && intColumns[column] != null) {
+        intColumns[column][index] = ABSENT;
+      }
+      column = stringColumn(key);
+      if (column >= 0 && stringColumns[column] != null) {
+        stringColumns[column][index] = null;
+      }
+      super.remove(key);
+      return old;
+    }
+
+    @Override
+    public Set<Class<?>> keySet() {
+      Set<Class<?>> keys = new LinkedHashSet<Class<?>>();
+      for (int i = 0; i < INT_KEYS.length; i++) {
+        if (intValue(i) != ABSENT) {
+          keys.add(INT_KEYS[i]);
+        }
+      }
+      for (int i = 0; i < STRING_KEYS.length; i++) {
+        if (stringValue(i) != null) {
+          keys.add(STRING_KEYS[i]);
+        }
+      }
+      keys.addAll(super.keySet());
+      return Collections.unmodifiableSet(keys);
+    }
+
+    @Override
+    public int size() {
+      int n = super.size();
+      for (int i = 0; i < INT_KEYS.length; i++) {
+        if (intValue(i) != ABSENT) {
+          n++;
+        }
+      }
+      for (int i = 0; i < STRING_KEYS.length; i++) {
+        if (stringValue(i) != null) {
+          n++;
+        }
+      }
+      return n;
+    }
+
+    /** A regular CoreLabel with the same contents as this one. */
+    private CoreLabel copy() {
+      return new CoreLabel((CoreMap) this);
+    }
+
+    // The methods below read the arrays of ArrayCoreMap directly, which
+    // only hold the non-column annotations here, so they go over the
+    // columns first and then the entries of this view's own map, in the
+    // order keySet() gives
+
+    /** The value of the given int or string column, or null if there is none */
+    private Object columnValue(int column) {
+      if (column < INT_KEYS.length) {
+        int value = intValue(column);
+        return (value == ABSENT) ? null : Integer.valueOf(value);
+      }
+      return stringValue(column - INT_KEYS.length);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public String toShorterString(String... what) {
+      StringBuilder s = new StringBuilder("[");
+      for (int c = 0; c < NUM_COLUMNS; c++) {
+        Object value = columnValue(c);
+        if (value != null && included(columnKey(c), what)) {
+          appendShorter(s, columnKey(c), value);
+        }
+      }
+      for (Class key : super.keySet()) {
+        if (included(key, what)) {
+          appendShorter(s, key, super.get(key));
+        }
+      }
+      s.append(']');
+      return s.toString();
+    }
+
+    private void appendShorter(StringBuilder s, Class<?> key, Object value) {
+      if (s.length() > 1) {
+        s.append(' ');
+      }
+      s.append(shortName(key)).append('=').append(value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public String toShortString(char separator, String... what) {
+      StringBuilder s = new StringBuilder();
+      for (int c = 0; c < NUM_COLUMNS; c++) {
+        Object value = columnValue(c);
+        if (value != null && included(columnKey(c), what)) {
+          if (s.length() > 0) {
+            s.append(separator);
+          }
+          s.append(value);
+        }
+      }
+      for (Class key : super.keySet()) {
+        if (included(key, what)) {
+          if (s.length() > 0) {
+            s.append(separator);
+          }
+          s.append(super.get(key));
+        }
+      }
+      String answer = s.toString();
+      return (answer.indexOf(' ') < 0) ? answer : '{' + answer + '}';
+    }
+
+    /** Two CoreMaps are equal iff all keys and values are .equal, as for any ArrayCoreMap */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean equals(Object obj) {
+      if (obj == this) {
+        return true;
+      }
+      if ( ! (obj instanceof CoreMap)) {
+        return false;
+      }
+      if (obj instanceof HashableCoreMap) {
+        return obj.equals(this);
+      }
+      CoreMap other = (CoreMap) obj;
+      if (size() != other.size()) {
+        return false;
+      }
+      for (int c = 0; c < NUM_COLUMNS; c++) {
+        Object value = columnValue(c);
+        if (value != null) {
+          Class key = columnKey(c);
+          if ( ! other.has(key) || ! value.equals(other.get(key))) {
+            return false;
+          }
+        }
+      }
+      for (Class key : super.keySet()) {
+        if ( ! other.has(key)) {
+          return false;
+        }
+        Object value = super.get(key);
+        Object otherValue = other.get(key);
+        if (value == null ? otherValue != null : ! value.equals(otherValue)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * The same hash code as a CoreLabel with the same contents:
+     * ArrayCoreMap sums the hash codes of the keys and of the values, so
+     * the columns are added to the sums for this view's own map.
+     */
+    @Override
+    public int hashCode() {
+      int keysCode = 0;
+      int valuesCode = 0;
+      for (int c = 0; c < NUM_COLUMNS; c++) {
+        Object value = columnValue(c);
+        if (value != null) {
+          keysCode += columnKey(c).hashCode();
+          valuesCode += value.hashCode();
+        }
+      }
+      return super.hashCode() + keysCode * 37 + valuesCode;
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+      return copy();
+    }
+  }
+
+  /**
+   * Makes a compact list from the given tokens, or returns the list
+   * itself if it already is one.
+   */
+  public static CompactTokenList compact(List<CoreLabel> tokens) {
+    if (tokens instanceof CompactTokenList) {
+      return (CompactTokenList) tokens;
+    }
+    return new CompactTokenList(tokens);
+  }
+
+}
@@ -0,0 +1,449 @@
+package edu.stanford.nlp.parser.lexparser;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.List;
+
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.io.RuntimeIOException;
+import edu.stanford.nlp.util.HashIndex;
+import edu.stanford.nlp.util.Index;
+import edu.stanford.nlp.util.Timing;
+
+/**
+ * Reads and writes a LexicalizedParser in a binary format which loads
+ * faster than a serialized model.  The state, word and tag indices and the
+ * unary and binary grammars, which make up most of a PCFG model, are
+ * stored as flat arrays of chars, ints and floats, so loading them needs
+ * no gunzipping or Java serialization; they are read into the usual
+ * index and grammar objects.  The Options, Lexicon, DependencyGrammar and
+ * Reranker are still Java serialized, in a section of their own, with
+ * their references to the indices stored as references to the index
+ * tables.
+ * <br>
+ * The file is a header (magic number and version) followed by sections,
+ * each of which is a type, a length in bytes, and then the data, which
+ * starts on an 8 byte boundary.
+ * <br>
+ * Usage, to convert a serialized or text model:
+ * <code>java edu.stanford.nlp.parser.lexparser.BinaryParserModel model.ser.gz model.bin</code>
+ */
+public class BinaryParserModel {
+
+  private static final int MAGIC = 0x4C504246; // "LPBF"
+  private static final int VERSION = 1;
+
+  private static final int STATE_INDEX = 1;
+  private static final int WORD_INDEX = 2;
+  private static final int TAG_INDEX = 3;
+  private static final int UNARY_GRAMMAR = 4;
+  private static final int BINARY_GRAMMAR = 5;
+  private static final int OBJECTS = 6;
+
+  private BinaryParserModel() {} // static methods only
+
+  /**
+   * Returns true if the given path is a file in this format.
+   * URLs and classpath resources are not checked, so they never are.
+   */
+  public static boolean isBinaryModel(String path) {
+    File file = new File(path);
+    if ( ! file.isFile() || file.length() < 8) {
+      return false;
+    }
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new FileInputStream(file));
+      return in.readInt() == MAGIC;
+    } catch (IOException e) {
+      return false;
+    } finally {
+      IOUtils.closeIgnoringExceptions(in);
+    }
+  }
+
+
+  // ---------- writing ----------
+
+  /** Counts the bytes written, so that sections can be aligned. */
+  private static class SectionWriter {
+    private final DataOutputStream out;
+    private long position; // = 0
+
+    SectionWriter(OutputStream out) {
+      this.out = new DataOutputStream(out);
+    }
+
+    void writeInt(int i) throws IOException {
+      out.writeInt(i);
+      position += 4;
+    }
+
+    void writeLong(long l) throws IOException {
+      out.writeLong(l);
+      position += 8;
+    }
+
+    void writeFloat(float f) throws IOException {
+      out.writeFloat(f);
+      position += 4;
+    }
+
+    void writeChar(char c) throws IOException {
+      out.writeChar(c);
+      position += 2;
+    }
+
+    void align() throws IOException {
+      while (position % 8 != 0) {
+        out.writeByte(0);
+        position++;
+      }
+    }
+
+    void writeSection(int type, byte[] data) throws IOException {
+      writeInt(type);
+      writeLong(data.length);
+      align();
+      out.write(data);
+      position += data.length;
+      align();
+    }
+
+    void close() throws IOException {
+      out.close();
+    }
+  }
+
+  private static byte[] indexBytes(Index<String> index) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    SectionWriter out = new SectionWriter(bytes);
+    int size = index.size();
+    out.writeInt(size);
+    out.writeInt(index.isLocked() ? 1 : 0);
+    int offset = 0;
+    out.writeInt(offset);
+    for (int i = 0; i < size; i++) {
+      String s = index.get(i);
+      // null entries are marked with a negative end offset
+      offset += (s == null ? 0 : s.length());
+      out.writeInt(s == null ? -offset - 1 : offset);
+    }
+    for (int i = 0; i < size; i++) {
+      String s = index.get(i);
+      if (s != null) {
+        for (int j = 0; j < s.length(); j++) {
+          out.writeChar(s.charAt(j));
+        }
+      }
+    }
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  /** Rules are stored column-wise: all parents, then the children, then the scores. */
+  private static byte[] unaryGrammarBytes(UnaryGrammar ug) throws IOException {
+    List<UnaryRule> rules = ug.rules();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    SectionWriter out = new SectionWriter(bytes);
+    out.writeInt(rules.size());
+    for (UnaryRule rule : rules) {
+      out.writeInt(rule.parent);
+    }
+    for (UnaryRule rule : rules) {
+      out.writeInt(rule.child);
+    }
+    for (UnaryRule rule : rules) {
+      out.writeFloat(rule.score);
+    }
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  private static byte[] binaryGrammarBytes(BinaryGrammar bg) throws IOException {
+    List<BinaryRule> rules = bg.rules();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    SectionWriter out = new SectionWriter(bytes);
+    out.writeInt(rules.size());
+    for (BinaryRule rule : rules) {
+      out.writeInt(rule.parent);
+    }
+    for (BinaryRule rule : rules) {
+      out.writeInt(rule.leftChild);
+    }
+    for (BinaryRule rule : rules) {
+      out.writeInt(rule.rightChild);
+    }
+    for (BinaryRule rule : rules) {
+      out.writeFloat(rule.score);
+    }
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  /** Stands in for one of the parser's indices in the serialized objects. */
+  private static class IndexReference implements Serializable {
+    private static final long serialVersionUID = 1L;
+    final int section;
+    IndexReference(int section) {
+      this.section = section;
+    }
+  }
+
+  private static byte[] objectBytes(final LexicalizedParser parser) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes) {
+      {
+        enableReplaceObject(true);
+      }
+      @Override
+      protected Object replaceObject(Object obj) {
+        if (obj == parser.stateIndex) {
+          return new IndexReference(STATE_INDEX);
+        } else if (obj == parser.wordIndex) {
+          return new IndexReference(WORD_INDEX);
+        } else if (obj == parser.tagIndex) {
+          return new IndexReference(TAG_INDEX);
+        }
+        return obj;
+      }
+    };
+    out.writeObject(parser.getOp());
+    out.writeObject(parser.lex);
+    out.writeObject(parser.dg);
+    out.writeObject(parser.reranker);
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Writes the parser to the given file in this format.
+   *
+   * @throws RuntimeIOException If the file cannot be written
+   */
+  public static void save(LexicalizedParser parser, String filename) {
+    try {
+      System.err.print("Writing parser in binary format to file " + filename + ' ');
+      SectionWriter out = new SectionWriter(new BufferedOutputStream(new FileOutputStream(filename)));
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeSection(STATE_INDEX, indexBytes(parser.stateIndex));
+      out.writeSection(WORD_INDEX, indexBytes(parser.wordIndex));
+      out.writeSection(TAG_INDEX, indexBytes(parser.tagIndex));
+      System.err.print(".");
+      out.writeSection(UNARY_GRAMMAR, unaryGrammarBytes(parser.ug));
+      out.writeSection(BINARY_GRAMMAR, binaryGrammarBytes(parser.bg));
+      System.err.print(".");
+      out.writeSection(OBJECTS, objectBytes(parser));
+      out.close();
+      System.err.println(" done.");
+    } catch (IOException e) {
+      throw new RuntimeIOException(e);
+    }
+  }
+
+
+  // ---------- reading ----------
+
+  private static ByteBuffer[] readSections(ByteBuffer file, String filename) {
+    if (file.getInt() != MAGIC) {
+      throw new IllegalArgumentException(filename + " is not a binary parser model");
+    }
+    int version = file.getInt();
+    if (version != VERSION) {
+      throw new IllegalArgumentException(filename + " has version " + version + " but only version " + VERSION + " is supported");
+    }
+    ByteBuffer[] sections = new ByteBuffer[OBJECTS + 1];
+    while (file.remaining() > 0) {
+      int type = file.getInt();
+      long length = file.getLong();
+      file.position((file.position() + 7) & ~7);
+      ByteBuffer section = file.slice();
+      section.limit((int) length);
+      if (type > 0 && type < sections.length) {
+        sections[type] = section;
+      } // else it is from a later version, and can be skipped
+      file.position((file.position() + (int) length + 7) & ~7);
+    }
+    for (int type = STATE_INDEX; type <= OBJECTS; type++) {
+      if (sections[type] == null) {
+        throw new IllegalArgumentException(filename + " is missing section " + type);
+      }
+    }
+    return sections;
+  }
+
+  private static Index<String> readIndex(ByteBuffer section) {
+    int size = section.getInt();
+    boolean locked = section.getInt() != 0;
+    IntBuffer offsets = section.asIntBuffer();
+    offsets.limit(size + 1);
+    int[] ends = new int[size + 1];
+    offsets.get(ends);
+    section.position(section.position() + 4 * (size + 1));
+    int numChars = ends[size] < 0 ? -ends[size] - 1 : ends[size];
+    char[] chars = new char[numChars];
+    section.asCharBuffer().get(chars);
+
+    HashIndex<String> index = new HashIndex<String>(size);
+    int start = 0;
+    for (int i = 0; i < size; i++) {
+      int end = ends[i + 1];
+      if (end < 0) {
+        index.add(null);
+        end = -end - 1;
+      } else {
+        index.add(new String(chars, start, end - start));
+      }
+      start = end;
+    }
+    if (locked) {
+      index.lock();
+    }
+    return index;
+  }
+
+  private static UnaryGrammar readUnaryGrammar(ByteBuffer section, Index<String> stateIndex) {
+    int n = section.getInt();
+    IntBuffer ints = section.asIntBuffer();
+    FloatBuffer scores = ((ByteBuffer) section.position(section.position() + 8 * n)).asFloatBuffer();
+    UnaryGrammar ug = new UnaryGrammar(stateIndex);
+    for (int i = 0; i < n; i++) {
+      UnaryRule rule = new UnaryRule(ints.get(i), ints.get(n + i));
+      rule.score = scores.get(i);
+      ug.addRule(rule);
+    }
+    ug.purgeRules();
+    return ug;
+  }
+
+  private static BinaryGrammar readBinaryGrammar(ByteBuffer section, Index<String> stateIndex) {
+    int n = section.getInt();
+    IntBuffer ints = section.asIntBuffer();
+    FloatBuffer scores = ((ByteBuffer) section.position(section.position() + 12 * n)).asFloatBuffer();
+    BinaryGrammar bg = new BinaryGrammar(stateIndex);
+    for (int i = 0; i < n; i++) {
+      BinaryRule rule = new BinaryRule(ints.get(i), ints.get(n + i), ints.get(2 * n + i));
+      rule.score = scores.get(i);
+      bg.addRule(rule);
+    }
+    bg.splitRules();
+    return bg;
+  }
+
+  /** An InputStream over the remaining bytes of a ByteBuffer. */
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? (buffer.get() & 0xff) : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if ( ! buffer.hasRemaining()) {
+        return -1;
+      }
+      len = Math.min(len, buffer.remaining());
+      buffer.get(b, off, len);
+      return len;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+
+  /**
+   * Loads a parser from the given file in this format.
+   *
+   * @throws RuntimeIOException If the file cannot be read
+   * @throws IllegalArgumentException If the file is not in this format
+   */
+  public static LexicalizedParser load(String filename) {
+    Timing tim = new Timing();
+    System.err.print("Loading parser from binary file " + filename + " ...");
+    ByteBuffer file;
+    DataInputStream data = null;
+    try {
+      File f = new File(filename);
+      byte[] bytes = new byte[(int) f.length()];
+      data = new DataInputStream(new FileInputStream(f));
+      data.readFully(bytes);
+      file = ByteBuffer.wrap(bytes);
+    } catch (IOException e) {
+      throw new RuntimeIOException(e);
+    } finally {
+      IOUtils.closeIgnoringExceptions(data);
+    }
+
+    ByteBuffer[] sections = readSections(file, filename);
+    final Index<String> stateIndex = readIndex(sections[STATE_INDEX]);
+    final Index<String> wordIndex = readIndex(sections[WORD_INDEX]);
+    final Index<String> tagIndex = readIndex(sections[TAG_INDEX]);
+    UnaryGrammar ug = readUnaryGrammar(sections[UNARY_GRAMMAR], stateIndex);
+    BinaryGrammar bg = readBinaryGrammar(sections[BINARY_GRAMMAR], stateIndex);
+
+    Options op;
+    Lexicon lex;
+    DependencyGrammar dg;
+    Reranker reranker;
+    try {
+      ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new ByteBufferInputStream(sections[OBJECTS]))) {
+        {
+          enableResolveObject(true);
+        }
+        @Override
+        protected Object resolveObject(Object obj) {
+          if (obj instanceof IndexReference) {
+            switch (((IndexReference) obj).section) {
+            case STATE_INDEX: return stateIndex;
+            case WORD_INDEX: return wordIndex;
+            case TAG_INDEX: return tagIndex;
+            default: throw new IllegalArgumentException("Unknown index " + ((IndexReference) obj).section);
+            }
+          }
+          return obj;
+        }
+      };
+      op = (Options) in.readObject();
+      lex = (Lexicon) in.readObject();
+      dg = (DependencyGrammar) in.readObject();
+      reranker = (Reranker) in.readObject();
+      in.close();
+    } catch (IOException e) {
+      throw new RuntimeIOException(e);
+    } catch (ClassNotFoundException e) {
+      throw new RuntimeException(e);
+    }
+
+    LexicalizedParser parser = new LexicalizedParser(lex, bg, ug, dg, stateIndex, wordIndex, tagIndex, op);
+    parser.reranker = reranker;
+    System.err.println(" done [" + tim.toSecondsString() + " sec].");
+    return parser;
+  }
+
+  /**
+   * Converts a parser model in any format LexicalizedParser can load to
+   * this format.
+   * <br>
+   * Usage: <code>java edu.stanford.nlp.parser.lexparser.BinaryParserModel inputModel outputModel</code>
+   */
+  public static void main(String[] args) {
+    if (args.length != 2) {
+      System.err.println("Usage: java " + BinaryParserModel.class.getName() + " inputModel outputModel");
+      System.exit(1);
+    }
+    LexicalizedParser parser = LexicalizedParser.loadModel(args[0]);
+    save(parser, args[1]);
+  }
+
+}
@@ -0,0 +1,158 @@
+package edu.stanford.nlp.parser.lexparser;
+
+import java.util.Map;
+
+import edu.stanford.nlp.trees.TreebankLanguagePack;
+import edu.stanford.nlp.util.Generics;
+import edu.stanford.nlp.util.HashIndex;
+import edu.stanford.nlp.util.Index;
+
+/** Projects a split grammar onto the basic categories of its states, so
+ *  that "NP^S", "NP^VP" and "NP-TMP" all become "NP", and "@NP|#DT" becomes
+ *  "@NP".  Each rule of the coarse grammar scores the maximum of the fine
+ *  rules which project onto it, so the Viterbi score of a coarse item is an
+ *  upper bound on the score of any fine item which projects onto it.  This
+ *  is what {@link CoarseToFinePruner} uses to prune the fine chart.
+ *  <br>
+ *  As well as the target grammars, the coarse rules are kept in flat
+ *  arrays, which is all the coarse parse needs.
+ */
+public class CoarseGrammarProjection implements GrammarProjection {
+
+  private final BinaryGrammar sourceBG;
+  private final UnaryGrammar sourceUG;
+  private final BinaryGrammar targetBG;
+  private final UnaryGrammar targetUG;
+
+  private final Index<String> coarseIndex;
+  private final int[] fineToCoarse;
+
+  // binary rules of the coarse grammar
+  final int[] binaryParent;
+  final int[] binaryLeft;
+  final int[] binaryRight;
+  final float[] binaryScore;
+
+  // closed unary rules of the coarse grammar, without the A -> A rules
+  final int[] unaryParent;
+  final int[] unaryChild;
+  final float[] unaryScore;
+
+  public CoarseGrammarProjection(BinaryGrammar bg, UnaryGrammar ug, Index<String> stateIndex, TreebankLanguagePack tlp) {
+    this.sourceBG = bg;
+    this.sourceUG = ug;
+
+    int numStates = stateIndex.size();
+    coarseIndex = new HashIndex<String>();
+    fineToCoarse = new int[numStates];
+    for (int state = 0; state < numStates; state++) {
+      String name = stateIndex.get(state);
+      String coarse = tlp.basicCategory(name);
+      if (coarse == null || coarse.isEmpty()) {
+        coarse = name;
+      }
+      fineToCoarse[state] = coarseIndex.indexOf(coarse, true);
+    }
+    coarseIndex.lock();
+
+    Map<BinaryRule,BinaryRule> binaries = Generics.newHashMap();
+    for (BinaryRule rule : bg) {
+      BinaryRule coarse = new BinaryRule(fineToCoarse[rule.parent], fineToCoarse[rule.leftChild], fineToCoarse[rule.rightChild], rule.score);
+      BinaryRule old = binaries.get(coarse);
+      if (old == null) {
+        binaries.put(coarse, coarse);
+      } else if (coarse.score > old.score) {
+        old.score = coarse.score;
+      }
+    }
+    targetBG = new BinaryGrammar(coarseIndex);
+    for (BinaryRule rule : binaries.keySet()) {
+      targetBG.addRule(rule);
+    }
+    targetBG.splitRules();
+
+    Map<UnaryRule,UnaryRule> unaries = Generics.newHashMap();
+    for (UnaryRule rule : ug) {
+      UnaryRule coarse = new UnaryRule(fineToCoarse[rule.parent], fineToCoarse[rule.child], rule.score);
+      if (coarse.parent == coarse.child) {
+        continue;
+      }
+      UnaryRule old = unaries.get(coarse);
+      if (old == null) {
+        unaries.put(coarse, coarse);
+      } else if (coarse.score > old.score) {
+        old.score = coarse.score;
+      }
+    }
+    targetUG = new UnaryGrammar(coarseIndex);
+    for (UnaryRule rule : unaries.keySet()) {
+      targetUG.addRule(rule);
+    }
+    targetUG.purgeRules();
+
+    int numBinaries = targetBG.numRules();
+    binaryParent = new int[numBinaries];
+    binaryLeft = new int[numBinaries];
+    binaryRight = new int[numBinaries];
+    binaryScore = new float[numBinaries];
+    int i = 0;
+    for (BinaryRule rule : targetBG) {
+      binaryParent[i] = rule.parent;
+      binaryLeft[i] = rule.leftChild;
+      binaryRight[i] = rule.rightChild;
+      binaryScore[i] = rule.score;
+      i++;
+    }
+
+    int numUnaries = 0;
+    for (int state = 0; state < coarseIndex.size(); state++) {
+      numUnaries += targetUG.closedRulesByChild(state).length;
+    }
+    unaryParent = new int[numUnaries];
+    unaryChild = new int[numUnaries];
+    unaryScore = new float[numUnaries];
+    i = 0;
+    for (int state = 0; state < coarseIndex.size(); state++) {
+      for (UnaryRule rule : targetUG.closedRulesByChild(state)) {
+        unaryParent[i] = rule.parent;
+        unaryChild[i] = rule.child;
+        unaryScore[i] = rule.score;
+        i++;
+      }
+    }
+  }
+
+  public int project(int state) {
+    return fineToCoarse[state];
+  }
+
+  /** The coarse state of each fine state, indexed by fine state. */
+  int[] projections() {
+    return fineToCoarse;
+  }
+
+  public Index<String> coarseStateIndex() {
+    return coarseIndex;
+  }
+
+  public int numCoarseStates() {
+    return coarseIndex.size();
+  }
+
+  public UnaryGrammar sourceUG() {
+    return sourceUG;
+  }
+
+  public BinaryGrammar sourceBG() {
+    return sourceBG;
+  }
+
+  public UnaryGrammar targetUG() {
+    return targetUG;
+  }
+
+  public BinaryGrammar targetBG() {
+    return targetBG;
+  }
+
+}
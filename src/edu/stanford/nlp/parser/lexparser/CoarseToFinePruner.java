@@ -0,0 +1,254 @@
+package edu.stanford.nlp.parser.lexparser;
+
+import java.util.Arrays;
+
+/** Decides which items of a fine PCFG chart are worth building, by first
+ *  parsing with a {@link CoarseGrammarProjection} of the grammar.  The
+ *  coarse chart is seeded from the span 1 cells of the fine chart, and a
+ *  coarse inside and outside pass then gives each coarse item the Viterbi
+ *  score of the best coarse parse through it.  A fine item is only built
+ *  if the score of its coarse projection is within the pruning threshold
+ *  of the best coarse parse.
+ *  <br>
+ *  Viterbi (max) scores are used rather than posteriors, since they are
+ *  what the rest of the parser computes and they need no normalization.
+ *  Because the coarse rules score the maximum of their fine rules, the
+ *  coarse score of an item is an upper bound on the best fine parse
+ *  through it, so a pruned item can only ever be on a fine parse scoring
+ *  at least <code>-threshold</code> below the best coarse parse.
+ *  <br>
+ *  Not threadsafe: each parser has its own pruner, and the charts are
+ *  reused from one sentence to the next.
+ */
+class CoarseToFinePruner {
+
+  private final CoarseGrammarProjection projection;
+  private final int[] fineToCoarse;
+  private final int numCoarseStates;
+  private final int coarseGoal;
+
+  private float[][][] iScore; // [start][end][coarse state]
+  private float[][][] oScore;
+  private boolean[][][] allowed; // [start][end][coarse state]; only meaningful where open
+  private boolean[][] open; // [start][end]: whether anything may be built over the span
+  private float[] scratch;
+  private int arraySize = 0;
+
+  private int length;
+
+  CoarseToFinePruner(CoarseGrammarProjection projection, int goal) {
+    this.projection = projection;
+    this.fineToCoarse = projection.projections();
+    this.numCoarseStates = projection.numCoarseStates();
+    this.coarseGoal = projection.project(goal);
+  }
+
+  private void createArrays(int length) {
+    iScore = new float[length][length + 1][];
+    oScore = new float[length][length + 1][];
+    allowed = new boolean[length][length + 1][];
+    open = new boolean[length][length + 1];
+    for (int start = 0; start < length; start++) {
+      for (int end = start + 1; end <= length; end++) {
+        iScore[start][end] = new float[numCoarseStates];
+        oScore[start][end] = new float[numCoarseStates];
+        allowed[start][end] = new boolean[numCoarseStates];
+      }
+    }
+    scratch = new float[numCoarseStates];
+    arraySize = length;
+  }
+
+  /** Runs the coarse parse of a sentence whose fine chart has its span 1
+   *  cells filled in, and works out which items may be built.
+   *
+   *  @param fineIScore The fine inside chart, with only span 1 cells filled
+   *  @param length The length of the sentence, including the boundary
+   *  @param threshold How far (in log probability, so &lt;= 0) below the best
+   *      coarse parse an item's coarse score may be for it to be kept
+   *  @return false if the coarse grammar cannot parse the sentence, in which
+   *      case nothing should be pruned
+   */
+  boolean prune(float[][][] fineIScore, int length, double threshold) {
+    if (length > arraySize) {
+      createArrays(length);
+    }
+    this.length = length;
+    for (int start = 0; start < length; start++) {
+      for (int end = start + 1; end <= length; end++) {
+        Arrays.fill(iScore[start][end], Float.NEGATIVE_INFINITY);
+        Arrays.fill(oScore[start][end], Float.NEGATIVE_INFINITY);
+      }
+    }
+
+    for (int start = 0; start < length; start++) {
+      float[] fine = fineIScore[start][start + 1];
+      float[] coarse = iScore[start][start + 1];
+      for (int state = 0; state < fine.length; state++) {
+        float score = fine[state];
+        int coarseState = fineToCoarse[state];
+        if (score > coarse[coarseState]) {
+          coarse[coarseState] = score;
+        }
+      }
+    }
+
+    // the same cells as the fine parse: the boundary only goes with the whole sentence
+    for (int diff = 2; diff <= length; diff++) {
+      for (int start = 0; start < ((diff == length) ? 1: length - diff); start++) {
+        doInsideCell(start, start + diff);
+      }
+    }
+    float best = iScore[0][length][coarseGoal];
+    if (best == Float.NEGATIVE_INFINITY) {
+      return false;
+    }
+
+    oScore[0][length][coarseGoal] = 0.0f;
+    for (int diff = length; diff >= 2; diff--) {
+      for (int start = 0; start < ((diff == length) ? 1: length - diff); start++) {
+        doOutsideCell(start, start + diff);
+      }
+    }
+    // the unaries over span 1 cells were applied with the fine grammar
+    for (int start = 0; start < length; start++) {
+      doOutsideUnaries(oScore[start][start + 1]);
+    }
+
+    float cutoff = (float) (best + threshold);
+    for (int start = 0; start < length; start++) {
+      for (int end = start + 1; end <= length; end++) {
+        float[] inside = iScore[start][end];
+        float[] outside = oScore[start][end];
+        boolean[] cell = allowed[start][end];
+        boolean any = false;
+        for (int state = 0; state < numCoarseStates; state++) {
+          cell[state] = inside[state] + outside[state] >= cutoff;
+          any |= cell[state];
+        }
+        open[start][end] = any;
+      }
+    }
+    return true;
+  }
+
+  private void doInsideCell(int start, int end) {
+    final int[] binaryParent = projection.binaryParent;
+    final int[] binaryLeft = projection.binaryLeft;
+    final int[] binaryRight = projection.binaryRight;
+    final float[] binaryScore = projection.binaryScore;
+    final float[] parentScores = iScore[start][end];
+    for (int rule = 0; rule < binaryParent.length; rule++) {
+      int left = binaryLeft[rule];
+      int right = binaryRight[rule];
+      float best = parentScores[binaryParent[rule]];
+      for (int split = start + 1; split < end; split++) {
+        float lS = iScore[start][split][left];
+        if (lS == Float.NEGATIVE_INFINITY) {
+          continue;
+        }
+        float rS = iScore[split][end][right];
+        if (rS == Float.NEGATIVE_INFINITY) {
+          continue;
+        }
+        float tot = binaryScore[rule] + lS + rS;
+        if (tot > best) {
+          best = tot;
+        }
+      }
+      parentScores[binaryParent[rule]] = best;
+    }
+
+    // closed unaries, so one pass suffices, but the scores must come
+    // from before the unaries
+    final float[] childScores = scratch;
+    System.arraycopy(parentScores, 0, childScores, 0, numCoarseStates);
+    final int[] unaryParent = projection.unaryParent;
+    final int[] unaryChild = projection.unaryChild;
+    final float[] unaryScore = projection.unaryScore;
+    for (int rule = 0; rule < unaryParent.length; rule++) {
+      float tot = childScores[unaryChild[rule]] + unaryScore[rule];
+      if (tot > parentScores[unaryParent[rule]]) {
+        parentScores[unaryParent[rule]] = tot;
+      }
+    }
+  }
+
+  private void doOutsideUnaries(float[] outside) {
+    final float[] parentScores = scratch;
+    System.arraycopy(outside, 0, parentScores, 0, numCoarseStates);
+    final int[] unaryParent = projection.unaryParent;
+    final int[] unaryChild = projection.unaryChild;
+    final float[] unaryScore = projection.unaryScore;
+    for (int rule = 0; rule < unaryParent.length; rule++) {
+      float tot = parentScores[unaryParent[rule]] + unaryScore[rule];
+      if (tot > outside[unaryChild[rule]]) {
+        outside[unaryChild[rule]] = tot;
+      }
+    }
+  }
+
+  private void doOutsideCell(int start, int end) {
+    float[] parentScores = oScore[start][end];
+    doOutsideUnaries(parentScores);
+    final int[] binaryParent = projection.binaryParent;
+    final int[] binaryLeft = projection.binaryLeft;
+    final int[] binaryRight = projection.binaryRight;
+    final float[] binaryScore = projection.binaryScore;
+    for (int rule = 0; rule < binaryParent.length; rule++) {
+      float oS = parentScores[binaryParent[rule]];
+      if (oS == Float.NEGATIVE_INFINITY) {
+        continue;
+      }
+      int left = binaryLeft[rule];
+      int right = binaryRight[rule];
+      float pS = binaryScore[rule];
+      for (int split = start + 1; split < end; split++) {
+        float lS = iScore[start][split][left];
+        if (lS == Float.NEGATIVE_INFINITY) {
+          continue;
+        }
+        float rS = iScore[split][end][right];
+        if (rS == Float.NEGATIVE_INFINITY) {
+          continue;
+        }
+        float totL = oS + pS + rS;
+        if (totL > oScore[start][split][left]) {
+          oScore[start][split][left] = totL;
+        }
+        float totR = oS + pS + lS;
+        if (totR > oScore[split][end][right]) {
+          oScore[split][end][right] = totR;
+        }
+      }
+    }
+  }
+
+  /** The coarse states which may be built over [start, end), indexed by
+   *  coarse state, or null if nothing at all may be built there.  Only
+   *  valid after a successful call to {@link #prune}.
+   */
+  boolean[] allowed(int start, int end) {
+    return open[start][end] ? allowed[start][end] : null;
+  }
+
+  /** The number of [start, end, coarse state] items kept by the last
+   *  prune, for reporting how much was pruned.
+   */
+  int numAllowed() {
+    int count = 0;
+    for (int start = 0; start < length; start++) {
+      for (int end = start + 1; end <= length; end++) {
+        if (open[start][end]) {
+          for (boolean keep : allowed[start][end]) {
+            if (keep) {
+              count++;
+            }
+          }
+        }
+      }
+    }
+    return count;
+  }
+
+}
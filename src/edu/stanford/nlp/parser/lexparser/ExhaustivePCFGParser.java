@@ -102,6 +102,19 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser {
   protected final int numStates;
   protected int arraySize = 0;
 
+  /**
+   * The chart only has arrays for the cells in which something has been
+   * built.  Every other cell of iScore and oScore is this one array of
+   * negative infinities, which must never be written to; use
+   * {@link #materializeCell} before writing to a cell.
+   */
+  private final float[] emptyCell;
+  /** The same for wordsInSpan, filled with ones */
+  private int[] emptyWordsCell; // = null;
+  /** Cell arrays no longer in use, kept for the cells of later sentences */
+  private final List<float[]> cellPool = new ArrayList<float[]>();
+  private final List<int[]> wordsCellPool = new ArrayList<int[]>();
+
   /**
    * When you want to force the parser to parse a particular
    * subsequence into a particular state.  Parses will only be made
@@ -117,6 +130,19 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser {
    */
   protected List<ParserConstraint> constraints = null;
 
+  /**
+   * The coarse grammar used to prune the chart when
+   * op.testOptions.coarseToFine is set.  Built on first use unless it
+   * is supplied with {@link #setCoarseGrammarProjection}, which lets
+   * the parsers of one grammar share it.
+   */
+  private CoarseGrammarProjection coarseProjection; // = null;
+  private CoarseToFinePruner pruner; // = null;
+  /** Set while the current sentence is being parsed with a pruned chart */
+  private boolean pruning; // = false;
+  /** Set while reparsing a sentence without pruning, after the pruned parse failed */
+  private boolean pruningFailed; // = false;
+
   private CoreLabel getCoreLabel(int labelIndex) {
     if (originalCoreLabels[labelIndex] != null) {
       CoreLabel terminalLabel = originalCoreLabels[labelIndex];
@@ -417,17 +443,7 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser {
     if (Thread.interrupted()) {
       throw new RuntimeInterruptedException();
     }
-    for (int start = 0; start < length; start++) {
-      for (int end = start + 1; end <= length; end++) {
-        Arrays.fill(iScore[start][end], Float.NEGATIVE_INFINITY);
-        if (op.doDep && ! op.testOptions.useFastFactored) {
-          Arrays.fill(oScore[start][end], Float.NEGATIVE_INFINITY);
-        }
-        if (op.testOptions.lengthNormalization) {
-          Arrays.fill(wordsInSpan[start][end], 1);
-        }
-      }
-    }
+    resetChart();
     if (Thread.interrupted()) {
       throw new RuntimeInterruptedException();
     }
@@ -457,6 +473,7 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser {
     initializeChart(sentence);
     //if (op.testOptions.outsideFilter)
     // buildOFilter();
+    pruning = op.testOptions.coarseToFine && ! pruningFailed && prune();
     if (op.testOptions.verbose) {
       Timing.tick("done.");
       System.err.print("Starting insides...");
@@ -470,6 +487,16 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser {
     }
     bestScore = iScore[0][length][goal];
     boolean succeeded = hasParse();
+    if (pruning && ! succeeded) {
+      // the parse pruned away every fine parse; do it again without pruning
+      pruning = false;
+      pruningFailed = true;
+      try {
+        return parse(sentence);
+      } finally {
+        pruningFailed = false;
+      }
+    }
     if (op.testOptions.doRecovery && !succeeded && !floodTags) {
       floodTags = true; // sentence will try to reparse
       // ms: disabled message. this is annoying and it doesn't really provide much information
@@ -483,6 +510,7 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser {
       System.err.print("Starting outsides...");
     }
     // outside scores
+    materializeCell(0, length);
     oScore[0][length][goal] = 0.0f;
     doOutsideScores();
     //System.out.println("State rate: "+((int)(1000*ohits/otries))/10.0);
@@ -529,6 +557,7 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser {
   }
 
   public boolean parse(Lattice lr) {
+    pruning = false;
     sentence = null; // better nullPointer exception than silent error
     if (lr != this.lr) {
       this.lr = lr;
@@ -580,12 +609,7 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser {
 //      words[i++] = wordNumberer.number(s);
 //    }
 
-    for (int start = 0; start < length; start++) {
-    	for (int end = start + 1; end <= length; end++) {
-    		Arrays.fill(iScore[start][end], Float.NEGATIVE_INFINITY);
-    		if (op.doDep) Arrays.fill(oScore[start][end], Float.NEGATIVE_INFINITY);
-    	}
-    }
+    resetChart();
 
     for (int loc = 0; loc <= length; loc++) {
       Arrays.fill(narrowLExtent[loc], -1); // the rightmost left with state s ending at i that we can get is the beginning
@@ -616,6 +640,7 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser {
       if(!succeeded) return false;
     }
 
+    materializeCell(0, length);
     oScore[0][length][goal] = 0.0f;
     doOutsideScores();
 
@@ -873,6 +898,25 @@ oScore[split][end][br.rightChild] = totR;
     float[][] iScore_start = iScore[start];
     float[] iScore_start_end = iScore_start[end];
 
+    // with coarse-to-fine pruning, only build states whose coarse projection survived
+    final boolean[] allowed;
+    final int[] coarseState;
+    if (pruning) {
+      allowed = pruner.allowed(start, end);
+      if (allowed == null) {
+        return;
+      }
+      coarseState = coarseProjection.projections();
+    } else {
+      allowed = null;
+      coarseState = null;
+    }
+    boolean newCell = iScore_start_end == emptyCell;
+    if (newCell) {
+      materializeCell(start, end);
+      iScore_start_end = iScore_start[end];
+    }
+
     for (int leftState = 0; leftState < numStates; leftState++) {
       int narrowR = narrowRExtent_start[leftState];
       if (narrowR >= end) {  // can this left constituent leave space for a right constituent?
@@ -881,6 +925,9 @@ oScore[split][end][br.rightChild] = totR;
       BinaryRule[] leftRules = bg.splitRulesWithLC(leftState);
       //      if (spillGuts) System.out.println("Found " + leftRules.length + " left rules for state " + stateIndex.get(leftState));
       for (BinaryRule rule : leftRules) {
+        if (allowed != null && ! allowed[coarseState[rule.parent]]) {
+          continue;
+        }
         int rightChild = rule.rightChild;
         int narrowL = narrowLExtent_end[rightChild];
         if (narrowL < narrowR) { // can this right constituent fit next to the left constituent?
@@ -1010,6 +1057,9 @@ oScore[split][end][br.rightChild] = totR;
       //      if (spillGuts) System.out.println("Found " + rightRules.length + " right rules for state " + stateIndex.get(rightState));
       for (BinaryRule rule : rightRules) {
         //      if (spillGuts) System.out.println("Considering rule for " + start + " to " + end + ": " + rightRules[i]);
+        if (allowed != null && ! allowed[coarseState[rule.parent]]) {
+          continue;
+        }
 
         int leftChild = rule.leftChild;
         int narrowR = narrowRExtent_start[leftChild];
@@ -1140,6 +1190,9 @@ oScore[split][end][br.rightChild] = totR;
 
       UnaryRule[] unaries = ug.closedRulesByChild(state);
       for (UnaryRule ur : unaries) {
+        if (allowed != null && ! allowed[coarseState[ur.parent]]) {
+          continue;
+        }
 
         if (constraints != null) {
           boolean skip = false;
@@ -1194,6 +1247,9 @@ oScore[split][end][br.rightChild] = totR;
         } // end if foundBetter
       } // for UnaryRule r
     } // for unary rules
+    if (newCell && isEmpty(iScore_start_end)) {
+      releaseCell(start, end);
+    }
   }
 
 
@@ -1202,6 +1258,7 @@ oScore[split][end][br.rightChild] = totR;
       int start = edge.start;
       int end = edge.end;
       String word = edge.word;
+      materializeCell(start, end);
 
       // Add pre-terminals, augmented with edge weights
       for (int state = 0; state < numStates; state++) {
@@ -1265,6 +1322,7 @@ oScore[split][end][br.rightChild] = totR;
     int boundary = wordIndex.indexOf(Lexicon.BOUNDARY);
 
     for (int start = 0; start < length; start++) {
+      materializeCell(start, start + 1);
       if (op.testOptions.maxSpanForTags > 1) { // only relevant for parsing single words as multiple input tokens.
         // todo [cdm 2012]: This case seems buggy in never doing unaries over span 1 items
         // note we don't look for "words" including the end symbol!
@@ -1279,6 +1337,7 @@ oScore[split][end][br.rightChild] = totR;
               word.append(sentence.get(i).toString());
             }
           }
+          materializeCell(start, end);
           for (int state = 0; state < numStates; state++) {
             float iS = iScore[start][end][state];
             if (iS == Float.NEGATIVE_INFINITY && isTag[state]) {
@@ -1487,6 +1546,37 @@ oScore[split][end][br.rightChild] = totR;
   } // end initializeChart(List sentence)
 
 
+  /** Runs the coarse parse over the chart initialized for the current
+   *  sentence, and sets up the pruner for the fine parse.
+   *
+   *  @return Whether the fine parse can be pruned
+   */
+  private boolean prune() {
+    if (pruner == null) {
+      if (coarseProjection == null) {
+        coarseProjection = new CoarseGrammarProjection(bg, ug, stateIndex, tlp);
+      }
+      pruner = new CoarseToFinePruner(coarseProjection, stateIndex.indexOf(goalStr));
+    }
+    boolean pruned = pruner.prune(iScore, length, op.testOptions.coarseToFineThreshold);
+    if (pruned && op.testOptions.verbose) {
+      System.err.println("Coarse-to-fine: kept " + pruner.numAllowed() + " coarse span items");
+    }
+    return pruned;
+  }
+
+  /** Supplies the coarse grammar used for coarse-to-fine pruning, so that
+   *  it need not be built again for each parser of the same grammar.
+   */
+  public void setCoarseGrammarProjection(CoarseGrammarProjection projection) {
+    if (projection.sourceBG() != bg || projection.sourceUG() != ug) {
+      throw new IllegalArgumentException("Coarse grammar is not a projection of this parser's grammar");
+    }
+    this.coarseProjection = projection;
+    this.pruner = null;
+  }
+
+
   @Override
   public boolean hasParse() {
     return getBestScore() > Double.NEGATIVE_INFINITY;
@@ -2152,6 +2242,8 @@ oScore[split][end][br.rightChild] = totR;
     tf = new LabeledScoredTreeFactory();
 
     numStates = stateIndex.size();
+    emptyCell = new float[numStates];
+    Arrays.fill(emptyCell, Float.NEGATIVE_INFINITY);
     isTag = new boolean[numStates];
     // tag index is smaller, so we fill by iterating over the tag index
     // rather than over the state index
@@ -2205,24 +2297,17 @@ oScore[split][end][br.rightChild] = totR;
 
     int numTags = tagIndex.size();
     // allocate just the parts of iScore and oScore used (end > start, etc.)
-    // todo: with some modifications to doInsideScores, we wouldn't need to allocate iScore[i,length] for i != 0 and i != length
-    //    System.out.println("initializing iScore arrays with length " + length + " and numStates " + numStates);
+    // The cells themselves are only allocated when something is built in
+    // them, by materializeCell, so until then they all share emptyCell.
     iScore = new float[length][length + 1][];
     for (int start = 0; start < length; start++) {
-      for (int end = start + 1; end <= length; end++) {
-        iScore[start][end] = new float[numStates];
-      }
+      Arrays.fill(iScore[start], start + 1, length + 1, emptyCell);
     }
-    //    System.out.println("finished initializing iScore arrays");
     if (op.doDep && !op.testOptions.useFastFactored) {
-      //      System.out.println("initializing oScore arrays with length " + length + " and numStates " + numStates);
       oScore = new float[length][length + 1][];
       for (int start = 0; start < length; start++) {
-        for (int end = start + 1; end <= length; end++) {
-          oScore[start][end] = new float[numStates];
-        }
+        Arrays.fill(oScore[start], start + 1, length + 1, emptyCell);
       }
-      // System.out.println("finished initializing oScore arrays");
     }
     narrowRExtent = new int[length][numStates];
     wideRExtent = new int[length][numStates];
@@ -2237,18 +2322,104 @@ oScore[split][end][br.rightChild] = totR;
     tags = new boolean[length][numTags];
 
     if (op.testOptions.lengthNormalization) {
+      if (emptyWordsCell == null) {
+        emptyWordsCell = new int[numStates];
+        Arrays.fill(emptyWordsCell, 1);
+      }
       wordsInSpan = new int[length][length + 1][];
       for (int start = 0; start < length; start++) {
-        for (int end = start + 1; end <= length; end++) {
-          wordsInSpan[start][end] = new int[numStates];
-        }
+        Arrays.fill(wordsInSpan[start], start + 1, length + 1, emptyWordsCell);
       }
     }
     //    System.out.println("ExhaustivePCFGParser constructor finished.");
   }
 
+  /** Makes sure the [start, end] cells of the chart have arrays of their
+   *  own, so that they can be written to.  Cells are reused from earlier
+   *  sentences where possible.
+   */
+  protected final void materializeCell(int start, int end) {
+    if (iScore[start][end] != emptyCell) {
+      return;
+    }
+    iScore[start][end] = acquireCell();
+    if (oScore != null) {
+      oScore[start][end] = acquireCell();
+    }
+    if (wordsInSpan != null) {
+      int[] cell = wordsCellPool.isEmpty() ? new int[numStates] : wordsCellPool.remove(wordsCellPool.size() - 1);
+      Arrays.fill(cell, 1);
+      wordsInSpan[start][end] = cell;
+    }
+  }
+
+  private float[] acquireCell() {
+    float[] cell = cellPool.isEmpty() ? new float[numStates] : cellPool.remove(cellPool.size() - 1);
+    Arrays.fill(cell, Float.NEGATIVE_INFINITY);
+    return cell;
+  }
+
+  /** Returns the arrays of the [start, end] cells to the pool, leaving the
+   *  cells empty.
+   */
+  private void releaseCell(int start, int end) {
+    cellPool.add(iScore[start][end]);
+    iScore[start][end] = emptyCell;
+    if (oScore != null && oScore[start][end] != emptyCell) {
+      cellPool.add(oScore[start][end]);
+      oScore[start][end] = emptyCell;
+    }
+    if (wordsInSpan != null && wordsInSpan[start][end] != emptyWordsCell) {
+      wordsCellPool.add(wordsInSpan[start][end]);
+      wordsInSpan[start][end] = emptyWordsCell;
+    }
+  }
+
+  private static boolean isEmpty(float[] cell) {
+    for (float score : cell) {
+      if (score != Float.NEGATIVE_INFINITY) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Empties every cell of the chart, including those used by longer
+   *  earlier sentences, keeping their arrays for reuse.
+   */
+  private void resetChart() {
+    for (int start = 0; start < iScore.length; start++) {
+      float[][] iScore_start = iScore[start];
+      for (int end = start + 1; end < iScore_start.length; end++) {
+        if (iScore_start[end] != emptyCell) {
+          releaseCell(start, end);
+        }
+      }
+    }
+  }
+
+  /** The number of cells of the chart which have arrays of their own,
+   *  which is what the chart's memory use is proportional to.
+   */
+  public int numMaterializedCells() {
+    int cells = 0;
+    if (iScore != null) {
+      for (int start = 0; start < iScore.length; start++) {
+        for (int end = start + 1; end < iScore[start].length; end++) {
+          if (iScore[start][end] != emptyCell) {
+            cells++;
+          }
+        }
+      }
+    }
+    return cells;
+  }
+
   private void clearArrays() {
     iScore = oScore = null;
+    wordsInSpan = null;
+    cellPool.clear();
+    wordsCellPool.clear();
     iPossibleByL = iPossibleByR = oPossibleByL = oPossibleByR = null;
     oFilteredEnd = oFilteredStart = null;
     tags = null;
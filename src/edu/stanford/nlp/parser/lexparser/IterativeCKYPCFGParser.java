@@ -63,6 +63,7 @@ public class IterativeCKYPCFGParser extends ExhaustivePCFGParser {
             continue;
           }
         }
+        materializeCell(start, end);
 
         for (int leftState = 0; leftState < numStates; leftState++) {
 
@@ -303,8 +303,16 @@ public class LexicalizedParser implements Function<List<? extends HasWord>, Tree
    * an X tree is returned instead of barfing.
    */
   public Tree parse(List<? extends HasWord> lst) {
+    return parse(parserQuery(), lst);
+  }
+
+  /**
+   * Parses the list of HasWord with the given query, so that a query
+   * (and its chart memory) can be used for many sentences.  If the parse
+   * fails for some reason, an X tree is returned.
+   */
+  private static Tree parse(ParserQuery pq, List<? extends HasWord> lst) {
     try {
-      ParserQuery pq = parserQuery();
       if (pq.parse(lst)) {
         Tree bestparse = pq.getBestParse();
         // -10000 denotes unknown words
@@ -329,40 +337,83 @@ public class LexicalizedParser implements Function<List<? extends HasWord>, Tree
     return lstf.newTreeNode("X", lst2);
   }
 
+  /**
+   * Parses each of the <code>sentences</code> in turn with one parser
+   * query, returning the parse trees in the same order.
+   */
   public List<Tree> parseMultiple(final List<? extends List<? extends HasWord>> sentences) {
+    ParserQuery pq = parserQuery();
     List<Tree> trees = new ArrayList<Tree>();
     for (List<? extends HasWord> sentence : sentences) {
-      trees.add(parse(sentence));
+      trees.add(parse(pq, sentence));
     }
     return trees;
   }
 
   /**
-   * Will launch multiple threads which calls <code>parse</code> on
-   * each of the <code>sentences</code> in order, returning the
-   * resulting parse trees in the same order.
+   * Will launch multiple threads which call <code>parse</code> on
+   * each of the <code>sentences</code>, returning the resulting parse
+   * trees in the same order as the sentences.
+   * <br>
+   * The sentences are not parsed in the order given, but longest
+   * first.  Parsing time grows much faster than sentence length, so
+   * this keeps a long sentence from being started last and leaving all
+   * the other threads idle while it finishes.  Each thread keeps one
+   * parser query for all its sentences, and as these get shorter, the
+   * query never has to grow its chart once it has parsed its first.
    */
   public List<Tree> parseMultiple(final List<? extends List<? extends HasWord>> sentences, final int nthreads) {
-    MulticoreWrapper<List<? extends HasWord>, Tree> wrapper = new MulticoreWrapper<List<? extends HasWord>, Tree>(nthreads, new ThreadsafeProcessor<List<? extends HasWord>, Tree>() {
-        public Tree process(List<? extends HasWord> sentence) {
-          return parse(sentence);
-        }
-        public ThreadsafeProcessor<List<? extends HasWord>, Tree> newInstance() {
-          return this;
+    Integer[] order = new Integer[sentences.size()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    // a stable sort, so sentences of the same length keep their order
+    Arrays.sort(order, new Comparator<Integer>() {
+        public int compare(Integer first, Integer second) {
+          return sentences.get(second).size() - sentences.get(first).size();
         }
       });
-    List<Tree> trees = new ArrayList<Tree>();
-    for (List<? extends HasWord> sentence : sentences) {
+
+    MulticoreWrapper<Integer, Pair<Integer, Tree>> wrapper = new MulticoreWrapper<Integer, Pair<Integer, Tree>>(nthreads, new BatchParsingProcessor(sentences), false);
+    Tree[] trees = new Tree[sentences.size()];
+    for (Integer sentence : order) {
       wrapper.put(sentence);
       while (wrapper.peek()) {
-        trees.add(wrapper.poll());
+        Pair<Integer, Tree> result = wrapper.poll();
+        trees[result.first()] = result.second();
       }
     }
     wrapper.join();
     while (wrapper.peek()) {
-      trees.add(wrapper.poll());
+      Pair<Integer, Tree> result = wrapper.poll();
+      trees[result.first()] = result.second();
+    }
+    return new ArrayList<Tree>(Arrays.asList(trees));
+  }
+
+  /**
+   * Parses sentences given by their position in a list, for
+   * parseMultiple.  Each instance keeps its own parser query, so each
+   * thread reuses its chart from one sentence to the next.
+   */
+  private class BatchParsingProcessor implements ThreadsafeProcessor<Integer, Pair<Integer, Tree>> {
+    private final List<? extends List<? extends HasWord>> sentences;
+    private ParserQuery pq; // = null; made when first needed
+
+    BatchParsingProcessor(List<? extends List<? extends HasWord>> sentences) {
+      this.sentences = sentences;
+    }
+
+    public Pair<Integer, Tree> process(Integer sentence) {
+      if (pq == null) {
+        pq = parserQuery();
+      }
+      return new Pair<Integer, Tree>(sentence, parse(pq, sentences.get(sentence)));
+    }
+
+    public ThreadsafeProcessor<Integer, Pair<Integer, Tree>> newInstance() {
+      return new BatchParsingProcessor(sentences);
     }
-    return trees;
   }
 
   /** Return a TreePrint for formatting parsed output trees.
@@ -405,6 +456,9 @@ public class LexicalizedParser implements Function<List<? extends HasWord>, Tree
   }
 
   public static LexicalizedParser getParserFromFile(String parserFileOrUrl, Options op) {
+    if (BinaryParserModel.isBinaryModel(parserFileOrUrl)) {
+      return BinaryParserModel.load(parserFileOrUrl);
+    }
     LexicalizedParser pd = getParserFromSerializedFile(parserFileOrUrl);
     if (pd == null) {
       pd = getParserFromTextFile(parserFileOrUrl, op);
@@ -443,6 +497,19 @@ public class LexicalizedParser implements Function<List<? extends HasWord>, Tree
     return lex;
   }
 
+  /** The coarse grammar for coarse-to-fine parsing, shared by all the
+   *  queries of this parser.  Built on first use, since most uses of the
+   *  parser never need it.
+   */
+  private transient CoarseGrammarProjection coarseProjection; // = null;
+
+  synchronized CoarseGrammarProjection coarseGrammarProjection() {
+    if (coarseProjection == null || coarseProjection.sourceBG() != bg || coarseProjection.sourceUG() != ug) {
+      coarseProjection = new CoarseGrammarProjection(bg, ug, stateIndex, op.langpack());
+    }
+    return coarseProjection;
+  }
+
   /**
    * Saves the parser defined by pd to the given filename.
    * If there is an error, a RuntimeIOException is thrown.
@@ -1055,7 +1122,10 @@ public class LexicalizedParser implements Function<List<? extends HasWord>, Tree
    * <code>java edu.stanford.nlp.parser.lexparser.LexicalizedParser
    * [-v] -train
    * trainFilesPath [fileRange] [-saveToSerializedFile grammarPath]
-   * [-saveToTextFile grammarPath]</code><p>
+   * [-saveToTextFile grammarPath] [-saveToBinaryFile grammarPath]</code><p>
+   * A grammar in the binary format (see {@link BinaryParserModel}) loads
+   * faster than a serialized one, and is recognized when loading with
+   * <code>-model</code>.<p>
    * If no files are supplied to parse, then a hardwired sentence
    * is parsed. <p>
    *
@@ -1189,6 +1259,7 @@ public class LexicalizedParser implements Function<List<? extends HasWord>, Tree
     boolean train = false;
     boolean saveToSerializedFile = false;
     boolean saveToTextFile = false;
+    String binaryOutputFile = null;
     String serializedInputFileOrUrl = null;
     String textInputFileOrUrl = null;
     String serializedOutputFileOrUrl = null;
@@ -1322,6 +1393,10 @@ public class LexicalizedParser implements Function<List<? extends HasWord>, Tree
         saveToTextFile = true;
         textOutputFileOrUrl = args[argIndex + 1];
         argIndex += 2;
+      } else if (args[argIndex].equalsIgnoreCase("-saveToBinaryFile")) {
+        // save the parser in the fast loading format of BinaryParserModel
+        binaryOutputFile = args[argIndex + 1];
+        argIndex += 2;
       } else if (args[argIndex].equalsIgnoreCase("-saveTrainTrees")) {
         // save the training trees to a binary file
         op.trainOptions.trainTreeFile = args[argIndex + 1];
@@ -1492,10 +1567,13 @@ public class LexicalizedParser implements Function<List<? extends HasWord>, Tree
         System.err.println("Usage: must specify a text grammar output path");
       }
     }
+    if (binaryOutputFile != null) {
+      BinaryParserModel.save(lp, binaryOutputFile);
+    }
     if (saveToSerializedFile) {
       if (serializedOutputFileOrUrl != null) {
         lp.saveParserToSerialized(serializedOutputFileOrUrl);
-      } else if (textOutputFileOrUrl == null && testTreebank == null) {
+      } else if (textOutputFileOrUrl == null && binaryOutputFile == null && testTreebank == null) {
         // no saving/parsing request has been specified
         System.err.println("usage: " + "java edu.stanford.nlp.parser.lexparser.LexicalizedParser " + "-train trainFilesPath [fileRange] -saveToSerializedFile serializedParserFilename");
       }
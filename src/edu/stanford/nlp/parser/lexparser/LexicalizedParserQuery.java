@@ -121,6 +121,9 @@ public class LexicalizedParserQuery implements ParserQuery {
         pparser = new IterativeCKYPCFGParser(bg, ug, lex, op, stateIndex, wordIndex, tagIndex);
       } else {
         pparser = new ExhaustivePCFGParser(bg, ug, lex, op, stateIndex, wordIndex, tagIndex);
+        if (op.testOptions.coarseToFine) {
+          pparser.setCoarseGrammarProjection(parser.coarseGrammarProjection());
+        }
       }
     } else {
       pparser = null;
@@ -65,6 +65,23 @@ public class TestOptions implements Serializable {
   /** If true, use faster iterative deepening CKY algorithm. */
   public boolean iterativeCKY = false;
 
+  /**
+   * If true, the exhaustive PCFG parser first parses each sentence with a
+   * coarse grammar over the basic categories of the grammar's states, and
+   * only builds the fine chart items whose coarse projection scores within
+   * coarseToFineThreshold of the best coarse parse.  Faster on long
+   * sentences, at some risk of pruning the best parse.  Not used by
+   * iterativeCKY.
+   */
+  public boolean coarseToFine = false;
+
+  /**
+   * How far below the best coarse parse, as a log probability, a coarse item
+   * may score and still have its fine items built when coarseToFine is set.
+   * Closer to 0 prunes more.
+   */
+  public double coarseToFineThreshold = -10.0;
+
   /**
    * The maximum sentence length (including punctuation, etc.) to parse.
    */
@@ -5,8 +5,14 @@ import edu.stanford.nlp.trees.TreeCoreAnnotations;
 import edu.stanford.nlp.util.*;
 import edu.stanford.nlp.util.logging.Redwood;
 
+import edu.stanford.nlp.util.concurrent.MulticoreWrapper;
+import edu.stanford.nlp.util.concurrent.SharedThreadPool;
+import edu.stanford.nlp.util.concurrent.ThreadsafeProcessor;
+
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
@@ -28,6 +34,11 @@ public class AnnotationPipeline implements Annotator {
   private final List<Annotator> annotators;
   private List<MutableLong> accumulatedTime;
 
+  /** If more than 1, annotate the sentences of a document on this many threads */
+  private int sentenceThreads = 1;
+  /** Executor to annotate sentences on, or null for a thread pool per document */
+  private ExecutorService sentenceExecutor = null;
+
   public AnnotationPipeline(List<Annotator> annotators) {
     this.annotators = annotators;
     if (TIME) {
@@ -50,6 +61,27 @@ public class AnnotationPipeline implements Annotator {
     }
   }
 
+  /**
+   * Makes the pipeline annotate the sentences of each document in
+   * parallel.  Once the sentences of a document have been split, each run
+   * of consecutive {@link SentenceAnnotator}s whose sentences are
+   * independent (see {@link SentenceAnnotator#annotatesSentencesIndependently})
+   * is applied to the sentences on numThreads threads, each sentence going
+   * through all the annotators of the run in order.  When all the sentences are done, the annotators'
+   * document level work is done, and the pipeline carries on with the
+   * next annotator, so that document level annotators such as coreference
+   * see the whole document.  This lets one long document use all the cores.
+   *
+   * @param numThreads The number of threads, or 1 to annotate documents sequentially
+   * @param executor The executor to run the sentences on, such as the
+   *                 {@link SharedThreadPool}, or null to start threads
+   *                 for each document
+   */
+  public void setSentenceThreads(int numThreads, ExecutorService executor) {
+    this.sentenceThreads = numThreads;
+    this.sentenceExecutor = executor;
+  }
+
   /**
    * Run the pipeline on an input annotation.
    * The annotation is modified in place.
@@ -58,6 +90,10 @@ public class AnnotationPipeline implements Annotator {
    */
   @Override
   public void annotate(Annotation annotation) {
+    if (sentenceThreads > 1) {
+      annotateBySentence(annotation);
+      return;
+    }
     Iterator<MutableLong> it = accumulatedTime.iterator();
     Timing t = new Timing();
     for (Annotator annotator : annotators) {
@@ -73,6 +109,81 @@ public class AnnotationPipeline implements Annotator {
     }
   }
 
+  private static boolean annotatesSentencesIndependently(Annotator annotator) {
+    return annotator instanceof SentenceAnnotator && ((SentenceAnnotator) annotator).annotatesSentencesIndependently();
+  }
+
+  /**
+   * Run the pipeline on an input annotation, annotating its sentences in
+   * parallel where possible.  See {@link #setSentenceThreads}.
+   */
+  private void annotateBySentence(final Annotation annotation) {
+    Timing t = new Timing();
+    int i = 0;
+    while (i < annotators.size()) {
+      final List<CoreMap> sentences = annotation.get(CoreAnnotations.SentencesAnnotation.class);
+      if (sentences == null || ! annotatesSentencesIndependently(annotators.get(i))) {
+        t.start();
+        annotators.get(i).annotate(annotation);
+        if (TIME) {
+          accumulatedTime.get(i).incValue((int) t.stop());
+        }
+        i++;
+        continue;
+      }
+
+      // find the run of sentence level annotators starting here
+      int end = i;
+      while (end < annotators.size() && annotatesSentencesIndependently(annotators.get(end))) {
+        end++;
+      }
+      final List<Annotator> run = annotators.subList(i, end);
+      final AtomicLong[] runTime = new AtomicLong[run.size()];
+      for (int j = 0; j < runTime.length; j++) {
+        runTime[j] = new AtomicLong();
+      }
+      ThreadsafeProcessor<CoreMap, CoreMap> processor = new ThreadsafeProcessor<CoreMap, CoreMap>() {
+        @Override
+        public CoreMap process(CoreMap sentence) {
+          for (int j = 0; j < run.size(); j++) {
+            long start = System.currentTimeMillis();
+            ((SentenceAnnotator) run.get(j)).annotateSentence(annotation, sentence);
+            runTime[j].addAndGet(System.currentTimeMillis() - start);
+          }
+          return sentence;
+        }
+
+        @Override
+        public ThreadsafeProcessor<CoreMap, CoreMap> newInstance() {
+          return this;
+        }
+      };
+      MulticoreWrapper<CoreMap, CoreMap> wrapper =
+        new MulticoreWrapper<CoreMap, CoreMap>(sentenceThreads, processor, false, sentenceExecutor);
+      for (CoreMap sentence : sentences) {
+        wrapper.put(sentence);
+        while (wrapper.peek()) {
+          wrapper.poll();
+        }
+      }
+      wrapper.join();
+      while (wrapper.peek()) {
+        wrapper.poll();
+      }
+
+      // barrier: all the sentences are done, so finish off the document
+      for (int j = 0; j < run.size(); j++) {
+        t.start();
+        ((SentenceAnnotator) run.get(j)).finishDocument(annotation);
+        if (TIME) {
+          // time spent on sentences is summed over all threads
+          accumulatedTime.get(i + j).incValue((int) (t.stop() + runTime[j].get()));
+        }
+      }
+      i = end;
+    }
+  }
+
   /**
    * Annotate a collection of input annotations IN PARALLEL, making use of
    * all available cores.
@@ -167,6 +278,25 @@ public class AnnotationPipeline implements Annotator {
     Redwood.Util.threadAndRun(this.getClass().getSimpleName(), threads, numThreads );
   }
 
+  /**
+   * Annotate a collection of input annotations with each annotator running
+   * as a separate stage on its own threads, connected to the next by a
+   * bounded queue, so that the work of different annotators on different
+   * documents overlaps.  See {@link StagedAnnotationExecutor}.
+   *
+   * @param annotations The input annotations to process
+   * @param threadsPerStage The number of threads to give each annotator
+   * @param callback A function to be called when an annotation finishes.
+   *                 The return value of the callback is ignored.
+   * @return The executor used, from which per-stage statistics can be read
+   */
+  public StagedAnnotationExecutor annotateStaged(Iterable<Annotation> annotations, int threadsPerStage,
+                                                 Function<Annotation,Object> callback) {
+    StagedAnnotationExecutor executor = new StagedAnnotationExecutor(annotators, threadsPerStage);
+    executor.annotate(annotations, callback);
+    return executor;
+  }
+
   /** Return the total pipeline annotation time in milliseconds.
    *
    *  @return The total pipeline annotation time in milliseconds
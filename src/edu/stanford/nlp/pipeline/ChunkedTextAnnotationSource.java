@@ -0,0 +1,148 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.io.RuntimeIOException;
+import edu.stanford.nlp.ling.CoreAnnotations;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An {@link AnnotationSource} which reads a text file incrementally and
+ * returns it as a sequence of moderately sized Annotations rather than
+ * as one Annotation holding the whole file.
+ * <br>
+ * The selector is the name of the file to read.  Text is accumulated a
+ * line at a time and a chunk is ended at the first blank line (paragraph
+ * break) after at least <code>chunkSize</code> characters have been read.
+ * If no paragraph break turns up, the chunk is ended at a line break once
+ * it reaches twice that size, so that the memory needed to hold a chunk
+ * does not depend on the size of the file.
+ * <br>
+ * Each chunk gets a {@link CoreAnnotations.DocIDAnnotation} of the form
+ * <code>filename#n</code>.  Character offsets within a chunk are
+ * relative to the start of that chunk.
+ */
+public class ChunkedTextAnnotationSource implements AnnotationSource {
+
+  public static final int DEFAULT_CHUNK_SIZE = 100000;
+
+  private final String encoding;
+  private final int chunkSize;
+
+  public ChunkedTextAnnotationSource(String encoding, int chunkSize) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+    }
+    this.encoding = encoding;
+    this.chunkSize = chunkSize;
+  }
+
+  public ChunkedTextAnnotationSource(String encoding) {
+    this(encoding, DEFAULT_CHUNK_SIZE);
+  }
+
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  @Override
+  public Iterable<Annotation> getAnnotations(final String selector, final int limit) {
+    return new Iterable<Annotation>() {
+      @Override
+      public Iterator<Annotation> iterator() {
+        try {
+          return new ChunkIterator(selector, IOUtils.getBufferedFileReader(selector, encoding), limit);
+        } catch (IOException e) {
+          throw new RuntimeIOException(e);
+        }
+      }
+    };
+  }
+
+  @Override
+  public Iterable<Annotation> getAnnotations(String selector) {
+    return getAnnotations(selector, 0);
+  }
+
+  /**
+   * Returns an iterator over the chunks of text read from the given Reader.
+   * The reader is closed when the last chunk has been returned.
+   *
+   * @param docId Prefix for the DocIDAnnotation of each chunk
+   * @param reader Where to read the text from
+   * @return iterator of chunk annotations
+   */
+  public Iterator<Annotation> chunks(String docId, Reader reader) {
+    BufferedReader br = (reader instanceof BufferedReader) ? (BufferedReader) reader : new BufferedReader(reader);
+    return new ChunkIterator(docId, br, 0);
+  }
+
+  private class ChunkIterator implements Iterator<Annotation> {
+
+    private final String docId;
+    private final BufferedReader reader;
+    private final int limit;
+    private int chunksRead = 0;
+    private Annotation next;
+
+    ChunkIterator(String docId, BufferedReader reader, int limit) {
+      this.docId = docId;
+      this.reader = reader;
+      this.limit = limit;
+      next = readChunk();
+    }
+
+    private Annotation readChunk() {
+      if (limit > 0 && chunksRead >= limit) {
+        IOUtils.closeIgnoringExceptions(reader);
+        return null;
+      }
+      StringBuilder sb = new StringBuilder();
+      try {
+        for (String line; (line = reader.readLine()) != null; ) {
+          sb.append(line).append('\n');
+          if (sb.length() >= 2 * chunkSize ||
+              (sb.length() >= chunkSize && line.trim().isEmpty())) {
+            break;
+          }
+        }
+      } catch (IOException e) {
+        IOUtils.closeIgnoringExceptions(reader);
+        throw new RuntimeIOException(e);
+      }
+      if (sb.length() == 0) {
+        IOUtils.closeIgnoringExceptions(reader);
+        return null;
+      }
+      Annotation chunk = new Annotation(sb.toString());
+      chunk.set(CoreAnnotations.DocIDAnnotation.class, docId + '#' + chunksRead);
+      chunksRead++;
+      return chunk;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public Annotation next() {
+      if (next == null) {
+        throw new NoSuchElementException();
+      }
+      Annotation current = next;
+      next = readChunk();
+      return current;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+}
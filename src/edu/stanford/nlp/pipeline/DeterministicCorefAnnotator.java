@@ -26,6 +26,8 @@ import edu.stanford.nlp.util.Generics;
 import edu.stanford.nlp.util.IntTuple;
 import edu.stanford.nlp.util.Pair;
 import edu.stanford.nlp.util.PropertiesUtils;
+import edu.stanford.nlp.util.concurrent.MulticoreWrapper;
+import edu.stanford.nlp.util.concurrent.ThreadsafeProcessor;
 
 /**
  * Implements the Annotator for the new deterministic coreference resolution system.
@@ -38,9 +40,13 @@ public class DeterministicCorefAnnotator implements Annotator {
 
   private static final boolean VERBOSE = false;
 
+  // arrange() only reads the extractor and the coref system only changes
+  // the document, so both are shared by threads annotating different documents
   private final MentionExtractor mentionExtractor;
   private final SieveCoreferenceSystem corefSystem;
 
+  /** The number of annotations annotated at once by {@link #annotate(Iterable)} */
+  private final int nThreads;
 
   // for backward compatibility
   private final boolean OLD_FORMAT;
@@ -53,6 +59,7 @@ public class DeterministicCorefAnnotator implements Annotator {
       mentionExtractor = new MentionExtractor(corefSystem.dictionaries(), corefSystem.semantics());
       OLD_FORMAT = Boolean.parseBoolean(props.getProperty("oldCorefFormat", "false"));
       allowReparsing = PropertiesUtils.getBool(props, Constants.ALLOW_REPARSING_PROP, Constants.ALLOW_REPARSING);
+      nThreads = PropertiesUtils.getInt(props, Constants.NTHREADS_PROP, PropertiesUtils.getInt(props, "nthreads", 1));
     } catch (Exception e) {
       System.err.println("ERROR: cannot create DeterministicCorefAnnotator!");
       e.printStackTrace();
@@ -186,6 +193,43 @@ public class DeterministicCorefAnnotator implements Annotator {
   }
 
 
+  /**
+   * Annotates each of the annotations, as many at once as
+   * {@link Constants#NTHREADS_PROP} says.
+   */
+  public void annotate(Iterable<Annotation> annotations) {
+    if (nThreads == 1) {
+      for (Annotation annotation : annotations) {
+        annotate(annotation);
+      }
+      return;
+    }
+
+    MulticoreWrapper<Annotation, Annotation> wrapper = new MulticoreWrapper<Annotation, Annotation>(nThreads,
+        new ThreadsafeProcessor<Annotation, Annotation>() {
+          @Override
+          public Annotation process(Annotation annotation) {
+            annotate(annotation);
+            return annotation;
+          }
+
+          @Override
+          public ThreadsafeProcessor<Annotation, Annotation> newInstance() {
+            return this;
+          }
+        });
+    for (Annotation annotation : annotations) {
+      wrapper.put(annotation);
+      while (wrapper.peek()) {
+        wrapper.poll();
+      }
+    }
+    wrapper.join();
+    while (wrapper.peek()) {
+      wrapper.poll();
+    }
+  }
+
   @Override
   public Set<Requirement> requires() {
     return new ArraySet<Requirement>(TOKENIZE_REQUIREMENT, SSPLIT_REQUIREMENT, POS_REQUIREMENT, NER_REQUIREMENT, PARSE_REQUIREMENT);
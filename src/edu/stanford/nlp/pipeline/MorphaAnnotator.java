@@ -22,7 +22,7 @@ import java.util.Set;
  *
  * @author Jenny Finkel
  */
-public class MorphaAnnotator implements Annotator{
+public class MorphaAnnotator implements SentenceAnnotator {
 
   private boolean VERBOSE = false;
 
@@ -46,14 +46,7 @@ public class MorphaAnnotator implements Annotator{
     if (annotation.has(CoreAnnotations.SentencesAnnotation.class)) {
       for (CoreMap sentence :
            annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
-        List<CoreLabel> tokens =
-          sentence.get(CoreAnnotations.TokensAnnotation.class);
-        //System.err.println("Lemmatizing sentence: " + tokens);
-        for (CoreLabel token : tokens) {
-          String text = token.get(CoreAnnotations.TextAnnotation.class);
-          String posTag = token.get(CoreAnnotations.PartOfSpeechAnnotation.class);
-          addLemma(morphology, CoreAnnotations.LemmaAnnotation.class, token, text, posTag);
-        }
+        doOneSentence(morphology, sentence);
       }
     } else {
       throw new RuntimeException("Unable to find words/tokens in: " +
@@ -62,6 +55,33 @@ public class MorphaAnnotator implements Annotator{
   }
 
 
+  @Override
+  public void annotateSentence(Annotation annotation, CoreMap sentence) {
+    // Morphology is not threadsafe, so each sentence gets its own
+    doOneSentence(new Morphology(), sentence);
+  }
+
+  @Override
+  public void finishDocument(Annotation annotation) {
+    // nothing to do
+  }
+
+  @Override
+  public boolean annotatesSentencesIndependently() {
+    return true;
+  }
+
+  private static void doOneSentence(Morphology morphology, CoreMap sentence) {
+    List<CoreLabel> tokens =
+      sentence.get(CoreAnnotations.TokensAnnotation.class);
+    //System.err.println("Lemmatizing sentence: " + tokens);
+    for (CoreLabel token : tokens) {
+      String text = token.get(CoreAnnotations.TextAnnotation.class);
+      String posTag = token.get(CoreAnnotations.PartOfSpeechAnnotation.class);
+      addLemma(morphology, CoreAnnotations.LemmaAnnotation.class, token, text, posTag);
+    }
+  }
+
   private static void addLemma(Morphology morpha,
                         Class<? extends CoreAnnotation<String>> ann,
                         CoreMap map, String word, String tag) {
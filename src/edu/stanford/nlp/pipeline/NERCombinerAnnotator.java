@@ -28,7 +28,7 @@ import java.util.*;
  * @author Jenny Finkel
  * @author Mihai Surdeanu (modified it to work with the new NERClassifierCombiner)
  */
-public class NERCombinerAnnotator implements Annotator {
+public class NERCombinerAnnotator implements SentenceAnnotator {
 
   private final NERClassifierCombiner ner;
 
@@ -125,6 +125,26 @@ public void annotate(Annotation annotation) {
     //timerStop("done.");
   }
 
+  @Override
+  public void annotateSentence(Annotation annotation, CoreMap sentence) {
+    doOneSentence(annotation, sentence);
+  }
+
+  @Override
+  public void finishDocument(Annotation annotation) {
+    this.ner.finalizeAnnotation(annotation);
+  }
+
+  /**
+   * SUTime numbers the time expressions of a document in the order they
+   * are found, in a TimeIndex kept on the document, so with SUTime on the
+   * sentences must be done in order, one at a time.
+   */
+  @Override
+  public boolean annotatesSentencesIndependently() {
+    return ! this.ner.usesSUTime();
+  }
+
   public CoreMap doOneSentence(Annotation annotation, CoreMap sentence) {
     List<CoreLabel> tokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
     List<CoreLabel> output = this.ner.classifySentenceWithGlobalInformation(tokens, annotation, sentence);
@@ -4,6 +4,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
@@ -13,6 +14,7 @@ import edu.stanford.nlp.util.CoreMap;
 import edu.stanford.nlp.util.PropertiesUtils;
 import edu.stanford.nlp.util.Timing;
 import edu.stanford.nlp.util.concurrent.MulticoreWrapper;
+import edu.stanford.nlp.util.concurrent.SharedThreadPool;
 import edu.stanford.nlp.util.concurrent.ThreadsafeProcessor;
 
 /**
@@ -20,7 +22,7 @@ import edu.stanford.nlp.util.concurrent.ThreadsafeProcessor;
  *
  * @author Anna Rafferty
  */
-public class POSTaggerAnnotator implements Annotator {
+public class POSTaggerAnnotator implements SentenceAnnotator {
 
   private final MaxentTagger pos;
 
@@ -28,6 +30,9 @@ public class POSTaggerAnnotator implements Annotator {
 
   private final int nThreads;
 
+  /** Whether to tag on the process-wide {@link SharedThreadPool} */
+  private final boolean sharedThreadPool;
+
   private final boolean reuseTags;
 
   /** Create a tagger annotator using the default English tagger from the models jar
@@ -64,6 +69,7 @@ public class POSTaggerAnnotator implements Annotator {
     this.pos = model;
     this.maxSentenceLength = maxSentenceLength;
     this.nThreads = numThreads;
+    this.sharedThreadPool = false;
     this.reuseTags = false;
   }
 
@@ -76,7 +82,16 @@ public class POSTaggerAnnotator implements Annotator {
     this.pos = loadModel(posLoc, verbose);
     this.maxSentenceLength = PropertiesUtils.getInt(props, annotatorName + ".maxlen", Integer.MAX_VALUE);
     this.nThreads = PropertiesUtils.getInt(props, annotatorName + ".nthreads", PropertiesUtils.getInt(props, "nthreads", 1));
+    this.sharedThreadPool = PropertiesUtils.getBool(props, annotatorName + ".sharedThreadPool", PropertiesUtils.getBool(props, "sharedThreadPool", false));
     this.reuseTags = PropertiesUtils.getBool(props, annotatorName + ".reuseTags", false);
+    int localScoreCacheSize = PropertiesUtils.getInt(props, annotatorName + ".localScoreCacheSize", 0);
+    if (localScoreCacheSize > 0) {
+      pos.setLocalScoreCacheSize(localScoreCacheSize);
+    }
+    String decoding = props.getProperty(annotatorName + ".decoding");
+    if (decoding != null) {
+      pos.setDecoding(decoding);
+    }
   }
 
   private static MaxentTagger loadModel(String loc, boolean verbose) {
@@ -101,7 +116,8 @@ public class POSTaggerAnnotator implements Annotator {
           doOneSentence(sentence);
         }
       } else {
-        MulticoreWrapper<CoreMap, CoreMap> wrapper = new MulticoreWrapper<CoreMap, CoreMap>(nThreads, new POSTaggerProcessor());
+        ExecutorService executor = sharedThreadPool ? SharedThreadPool.getInstance() : null;
+        MulticoreWrapper<CoreMap, CoreMap> wrapper = new MulticoreWrapper<CoreMap, CoreMap>(nThreads, new POSTaggerProcessor(), true, executor);
         for (CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
           wrapper.put(sentence);
           while (wrapper.peek()) {
@@ -118,6 +134,21 @@ public class POSTaggerAnnotator implements Annotator {
     }
   }
 
+  @Override
+  public void annotateSentence(Annotation annotation, CoreMap sentence) {
+    doOneSentence(sentence);
+  }
+
+  @Override
+  public void finishDocument(Annotation annotation) {
+    // nothing to do
+  }
+
+  @Override
+  public boolean annotatesSentencesIndependently() {
+    return true;
+  }
+
   private class POSTaggerProcessor implements ThreadsafeProcessor<CoreMap, CoreMap> {
     @Override
     public CoreMap process(CoreMap sentence) {
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
@@ -26,6 +27,7 @@ import edu.stanford.nlp.util.ReflectionLoading;
 import edu.stanford.nlp.util.RuntimeInterruptedException;
 import edu.stanford.nlp.util.StringUtils;
 import edu.stanford.nlp.util.concurrent.MulticoreWrapper;
+import edu.stanford.nlp.util.concurrent.SharedThreadPool;
 import edu.stanford.nlp.util.concurrent.ThreadsafeProcessor;
 
 /**
@@ -41,7 +43,7 @@ import edu.stanford.nlp.util.concurrent.ThreadsafeProcessor;
  *
  * @author Jenny Finkel
  */
-public class ParserAnnotator implements Annotator {
+public class ParserAnnotator implements SentenceAnnotator {
 
   private final boolean VERBOSE;
   private final boolean BUILD_GRAPHS;
@@ -62,6 +64,9 @@ public class ParserAnnotator implements Annotator {
 
   private final int nThreads;
 
+  /** Whether to parse on the process-wide {@link SharedThreadPool} */
+  private final boolean sharedThreadPool;
+
   private final boolean saveBinaryTrees;
 
   public static final String[] DEFAULT_FLAGS = { "-retainTmpSubcategories" };
@@ -95,6 +100,7 @@ public class ParserAnnotator implements Annotator {
       this.gsf = null;
     }
     this.nThreads = 1;
+    this.sharedThreadPool = false;
     this.saveBinaryTrees = false;
   }
 
@@ -140,6 +146,7 @@ public class ParserAnnotator implements Annotator {
     }
 
     this.nThreads = PropertiesUtils.getInt(props, annotatorName + ".nthreads", PropertiesUtils.getInt(props, "nthreads", 1));
+    this.sharedThreadPool = PropertiesUtils.getBool(props, annotatorName + ".sharedThreadPool", PropertiesUtils.getBool(props, "sharedThreadPool", false));
     boolean usesBinary = StanfordCoreNLP.usesBinaryTrees(props);
     this.saveBinaryTrees = PropertiesUtils.getBool(props, annotatorName + ".binaryTrees", usesBinary);
   }
@@ -163,6 +170,8 @@ public class ParserAnnotator implements Annotator {
             props.getProperty(annotatorName + ".buildgraphs", "true"));
     os.append(annotatorName + ".nthreads:" + 
               props.getProperty(annotatorName + ".nthreads", props.getProperty("nthreads", "")));
+    os.append(annotatorName + ".sharedThreadPool:" +
+              props.getProperty(annotatorName + ".sharedThreadPool", props.getProperty("sharedThreadPool", "false")));
     os.append(annotatorName + ".binaryTrees:" + 
               props.getProperty(annotatorName + ".binaryTrees", "false"));
     return os.toString();
@@ -208,7 +217,9 @@ public class ParserAnnotator implements Annotator {
   public void annotate(Annotation annotation) {
     if (annotation.containsKey(CoreAnnotations.SentencesAnnotation.class)) {
       if (nThreads != 1 || maxParseTime > 0) {
-        MulticoreWrapper<CoreMap, CoreMap> wrapper = new MulticoreWrapper<CoreMap, CoreMap>(nThreads, new ParserAnnotatorProcessor());
+        // a parse timeout interrupts the parsing thread, which is only safe on our own threads
+        ExecutorService executor = (sharedThreadPool && maxParseTime <= 0) ? SharedThreadPool.getInstance() : null;
+        MulticoreWrapper<CoreMap, CoreMap> wrapper = new MulticoreWrapper<CoreMap, CoreMap>(nThreads, new ParserAnnotatorProcessor(), true, executor);
         if (maxParseTime > 0) {
           wrapper.setMaxBlockTime(maxParseTime);
         }
@@ -233,6 +244,27 @@ public class ParserAnnotator implements Annotator {
     }
   }
 
+  @Override
+  public void annotateSentence(Annotation annotation, CoreMap sentence) {
+    doOneSentence(sentence);
+  }
+
+  @Override
+  public void finishDocument(Annotation annotation) {
+    // nothing to do
+  }
+
+  /**
+   * {@inheritDoc}
+   * <br>
+   * Not when parse.maxtime is set, since the time limit relies on
+   * interrupting the parsing threads of {@link #annotate}.
+   */
+  @Override
+  public boolean annotatesSentencesIndependently() {
+    return maxParseTime <= 0;
+  }
+
   private void doOneSentence(CoreMap sentence) {
     final List<CoreLabel> words = sentence.get(CoreAnnotations.TokensAnnotation.class);
     if (VERBOSE) {
@@ -0,0 +1,44 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.util.CoreMap;
+
+/**
+ * An Annotator whose work on a document can be done one sentence at a
+ * time, independently of the other sentences.  This lets an
+ * {@link AnnotationPipeline} annotate the sentences of a single long
+ * document in parallel (see {@link AnnotationPipeline#setSentenceThreads}).
+ * <br>
+ * Running {@link #annotateSentence} on every sentence of a document
+ * followed by {@link #finishDocument} must have the same effect as
+ * {@link Annotator#annotate}.
+ */
+public interface SentenceAnnotator extends Annotator {
+
+  /**
+   * Annotate one sentence of a document.  This may be called for several
+   * sentences of the same document at once from different threads, so it
+   * must be threadsafe, and must only read, not modify, the document and
+   * the other sentences.
+   *
+   * @param annotation The document the sentence belongs to
+   * @param sentence The sentence to annotate
+   */
+  public void annotateSentence(Annotation annotation, CoreMap sentence);
+
+  /**
+   * Do any document level work left once all the sentences of the
+   * document have been annotated.
+   *
+   * @param annotation The document
+   */
+  public void finishDocument(Annotation annotation);
+
+  /**
+   * Whether, as this annotator is set up, {@link #annotateSentence} really
+   * is independent of the other sentences, so that the sentences of a
+   * document may be annotated in parallel.  If not, the pipeline calls
+   * {@link Annotator#annotate} on the whole document instead.
+   */
+  public boolean annotatesSentencesIndependently();
+
+}
@@ -34,7 +34,7 @@ import edu.stanford.nlp.util.CoreMap;
  *
  * @author John Bauer 
  */
-public class SentimentAnnotator implements Annotator {
+public class SentimentAnnotator implements SentenceAnnotator {
   static final String DEFAULT_MODEL = "edu/stanford/nlp/models/sentiment/sentiment.ser.gz";
   String modelPath;
   SentimentModel model;
@@ -58,20 +58,34 @@ public class SentimentAnnotator implements Annotator {
 
   public void annotate(Annotation annotation) {
     if (annotation.containsKey(CoreAnnotations.SentencesAnnotation.class)) {
-      // TODO: parallelize
       List<CoreMap> sentences = annotation.get(CoreAnnotations.SentencesAnnotation.class);
       for (CoreMap sentence : sentences) {
-        Tree binarized = sentence.get(TreeCoreAnnotations.BinarizedTreeAnnotation.class);
-        Tree collapsedUnary = transformer.transformTree(binarized);
-        SentimentCostAndGradient scorer = new SentimentCostAndGradient(model, null);
-        scorer.forwardPropagateTree(collapsedUnary);
-        sentence.set(SentimentCoreAnnotations.AnnotatedTree.class, collapsedUnary);
-        int sentiment = RNNCoreAnnotations.getPredictedClass(collapsedUnary);
-        sentence.set(SentimentCoreAnnotations.ClassName.class, SentimentUtils.sentimentString(model, sentiment));
+        annotateSentence(annotation, sentence);
       }
     } else {
       throw new RuntimeException("unable to find sentences in: " + annotation);
     }
   }
 
+  @Override
+  public void annotateSentence(Annotation annotation, CoreMap sentence) {
+    Tree binarized = sentence.get(TreeCoreAnnotations.BinarizedTreeAnnotation.class);
+    Tree collapsedUnary = transformer.transformTree(binarized);
+    SentimentCostAndGradient scorer = new SentimentCostAndGradient(model, null);
+    scorer.forwardPropagateTree(collapsedUnary);
+    sentence.set(SentimentCoreAnnotations.AnnotatedTree.class, collapsedUnary);
+    int sentiment = RNNCoreAnnotations.getPredictedClass(collapsedUnary);
+    sentence.set(SentimentCoreAnnotations.ClassName.class, SentimentUtils.sentimentString(model, sentiment));
+  }
+
+  @Override
+  public void finishDocument(Annotation annotation) {
+    // nothing to do
+  }
+
+  @Override
+  public boolean annotatesSentencesIndependently() {
+    return true;
+  }
+
 }
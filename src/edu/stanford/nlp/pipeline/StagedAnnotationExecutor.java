@@ -0,0 +1,379 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.util.Function;
+import edu.stanford.nlp.util.Generics;
+import edu.stanford.nlp.util.StringUtils;
+import edu.stanford.nlp.util.Timing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs a sequence of Annotators over a stream of documents as a pipeline
+ * of stages, rather than running every annotator over one document before
+ * starting on the next.  Each annotator gets its own worker threads, and
+ * consecutive stages are connected by bounded queues, so that, for
+ * example, tokenization and tagging of document N+1 proceed while
+ * document N is being parsed.  A slow stage can be given more threads than
+ * the others.  When a queue is full, the stage feeding it blocks, so the
+ * number of documents in flight is bounded by the queue sizes.
+ * <br>
+ * The order of the stages is the order of the annotators.  The constructor
+ * checks it against the declared {@link Annotator.Requirement}s: it is an
+ * error for an annotator to require something which is only satisfied by
+ * an annotator later in the sequence.  Requirements that no annotator in
+ * the sequence satisfies are assumed to be met by the input documents.
+ * <br>
+ * As with {@link AnnotationPipeline#annotate(Iterable, int)}, an annotator
+ * given more than one thread must be safe to call from several threads at
+ * once.  Documents are passed to the callback in the order they finish,
+ * which need not be the input order if any stage has several threads.
+ * <br>
+ * During or after a run, {@link #stageStatistics()} reports, for each
+ * stage, the number of documents processed, the depth of its input queue
+ * and the fraction of its threads' time spent annotating.  The statistics
+ * are reset at the start of each call to annotate.
+ */
+public class StagedAnnotationExecutor {
+
+  /** Marks the end of the input on a queue. */
+  private static final Annotation END_OF_INPUT = new Annotation("");
+
+  private final List<Stage> stages;
+  private final int queueSize;
+
+  /**
+   * Create an executor with the given number of threads for each
+   * annotator.
+   *
+   * @param annotators The annotators, in the order they are to be run
+   * @param threadsPerStage How many threads to give each annotator
+   * @param queueSize The capacity of the queue in front of each stage
+   */
+  public StagedAnnotationExecutor(List<Annotator> annotators, int[] threadsPerStage, int queueSize) {
+    if (annotators.size() != threadsPerStage.length) {
+      throw new IllegalArgumentException("Got " + annotators.size() + " annotators but " + threadsPerStage.length + " thread counts");
+    }
+    if (queueSize < 1) {
+      throw new IllegalArgumentException("queueSize must be positive: " + queueSize);
+    }
+    checkRequirementOrder(annotators);
+    this.queueSize = queueSize;
+    stages = new ArrayList<Stage>(annotators.size());
+    for (int i = 0; i < annotators.size(); i++) {
+      stages.add(new Stage(annotators.get(i), Math.max(threadsPerStage[i], 1)));
+    }
+  }
+
+  /**
+   * Create an executor with the same number of threads for every
+   * annotator, and queues big enough to keep them busy.
+   */
+  public StagedAnnotationExecutor(List<Annotator> annotators, int threadsPerStage) {
+    this(annotators, sameThreads(annotators.size(), threadsPerStage), 2 * Math.max(threadsPerStage, 1));
+  }
+
+  private static int[] sameThreads(int numStages, int threads) {
+    int[] result = new int[numStages];
+    for (int i = 0; i < numStages; i++) {
+      result[i] = threads;
+    }
+    return result;
+  }
+
+  /**
+   * Throws an IllegalArgumentException if some annotator requires a
+   * Requirement that is satisfied only by an annotator after it.
+   */
+  private static void checkRequirementOrder(List<Annotator> annotators) {
+    Set<Annotator.Requirement> satisfiedBefore = Generics.newHashSet();
+    for (int i = 0; i < annotators.size(); i++) {
+      Annotator annotator = annotators.get(i);
+      for (Annotator.Requirement requirement : annotator.requires()) {
+        if (satisfiedBefore.contains(requirement)) {
+          continue;
+        }
+        for (int j = i + 1; j < annotators.size(); j++) {
+          if (annotators.get(j).requirementsSatisfied().contains(requirement)) {
+            String fmt = "annotator \"%s\" requires \"%s\", which is satisfied only by the later annotator \"%s\"";
+            throw new IllegalArgumentException(String.format(fmt, StringUtils.getShortClassName(annotator),
+                                                             requirement, StringUtils.getShortClassName(annotators.get(j))));
+          }
+        }
+      }
+      satisfiedBefore.addAll(annotator.requirementsSatisfied());
+    }
+  }
+
+  /**
+   * Annotate the given documents, passing each one to the callback once
+   * the last stage has finished with it.  The callback is always called
+   * from the calling thread.  This method returns once all the documents
+   * have been annotated.  If an annotator throws an exception or an Error,
+   * the document is dropped, the remaining documents are still processed,
+   * and the first such Throwable is rethrown at the end.
+   *
+   * @param annotations The input annotations to process
+   * @param callback A function to be called when an annotation finishes.
+   *                 The return value of the callback is ignored.
+   */
+  public void annotate(final Iterable<Annotation> annotations, Function<Annotation,Object> callback) {
+    if (stages.isEmpty()) {
+      for (Annotation annotation : annotations) {
+        callback.apply(annotation);
+      }
+      return;
+    }
+    final List<BlockingQueue<Annotation>> queues = new ArrayList<BlockingQueue<Annotation>>(stages.size() + 1);
+    for (int i = 0; i <= stages.size(); i++) {
+      queues.add(new ArrayBlockingQueue<Annotation>(queueSize));
+    }
+    final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < stages.size(); i++) {
+      Stage next = (i + 1 < stages.size()) ? stages.get(i + 1) : null;
+      threads.addAll(stages.get(i).start(queues.get(i), queues.get(i + 1), next, error));
+    }
+
+    // feed the first stage from a separate thread so that this one is free to run the callback
+    Thread feeder = new Thread("StagedAnnotationExecutor input") {
+      @Override
+      public void run() {
+        try {
+          for (Annotation annotation : annotations) {
+            stages.get(0).offered(queues.get(0));
+            queues.get(0).put(annotation);
+          }
+        } catch (Throwable t) {
+          error.compareAndSet(null, t);
+        } finally {
+          putUninterruptibly(queues.get(0), END_OF_INPUT);
+        }
+      }
+    };
+    feeder.start();
+    threads.add(feeder);
+
+    BlockingQueue<Annotation> output = queues.get(stages.size());
+    try {
+      for (Annotation annotation; (annotation = output.take()) != END_OF_INPUT; ) {
+        try {
+          callback.apply(annotation);
+        } catch (Throwable t) {
+          // keep draining the output, or the stages would block
+          error.compareAndSet(null, t);
+        }
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    } catch (InterruptedException e) {
+      for (Thread thread : threads) {
+        thread.interrupt();
+      }
+      throw new RuntimeException(e);
+    }
+    Throwable t = error.get();
+    if (t instanceof RuntimeException) {
+      throw (RuntimeException) t;
+    } else if (t instanceof Error) {
+      throw (Error) t;
+    } else if (t != null) {
+      throw new RuntimeException(t);
+    }
+  }
+
+  /** Annotate the given documents, discarding them when done. */
+  public void annotate(Iterable<Annotation> annotations) {
+    annotate(annotations, new Function<Annotation, Object>() {
+      @Override
+      public Object apply(Annotation in) { return null; }
+    });
+  }
+
+  private static void putUninterruptibly(BlockingQueue<Annotation> queue, Annotation annotation) {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        queue.put(annotation);
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Returns the statistics of each stage, in pipeline order. */
+  public List<Stage> stageStatistics() {
+    return Collections.unmodifiableList(stages);
+  }
+
+  /**
+   * Return a human readable summary of the per-stage statistics, one line
+   * per stage.  This String includes newline characters but does not end
+   * with one.
+   */
+  public String statisticsInformation() {
+    StringBuilder sb = new StringBuilder("Staged annotation statistics:");
+    for (Stage stage : stages) {
+      sb.append('\n').append(stage);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * One annotator together with its worker threads and running statistics.
+   */
+  public static class Stage {
+
+    private final Annotator annotator;
+    private final int numThreads;
+
+    private final AtomicInteger processed = new AtomicInteger();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private final AtomicLong queueDepthSum = new AtomicLong();
+    private final AtomicLong queueDepthSamples = new AtomicLong();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private volatile BlockingQueue<Annotation> input;
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    Stage(Annotator annotator, int numThreads) {
+      this.annotator = annotator;
+      this.numThreads = numThreads;
+    }
+
+    /** Records the depth of the input queue as a document is added to it. */
+    void offered(BlockingQueue<Annotation> queue) {
+      int depth = queue.size();
+      queueDepthSum.addAndGet(depth);
+      queueDepthSamples.incrementAndGet();
+      while (true) {
+        int max = maxQueueDepth.get();
+        if (depth <= max || maxQueueDepth.compareAndSet(max, depth)) {
+          break;
+        }
+      }
+    }
+
+    /**
+     * Start the threads of this stage, taking documents from in and putting
+     * them on out, which is the input queue of the next stage, if any.
+     * The statistics are reset.
+     */
+    List<Thread> start(final BlockingQueue<Annotation> in, final BlockingQueue<Annotation> out,
+                       final Stage next, final AtomicReference<Throwable> error) {
+      input = in;
+      processed.set(0);
+      busyNanos.set(0);
+      queueDepthSum.set(0);
+      queueDepthSamples.set(0);
+      maxQueueDepth.set(0);
+      startNanos = System.nanoTime();
+      endNanos = 0;
+      final AtomicInteger running = new AtomicInteger(numThreads);
+      List<Thread> threads = new ArrayList<Thread>(numThreads);
+      for (int i = 0; i < numThreads; i++) {
+        Thread thread = new Thread(StringUtils.getShortClassName(annotator) + " stage #" + i) {
+          @Override
+          public void run() {
+            try {
+              for (Annotation annotation; (annotation = in.take()) != END_OF_INPUT; ) {
+                long start = System.nanoTime();
+                boolean ok = false;
+                try {
+                  annotator.annotate(annotation);
+                  ok = true;
+                } catch (Throwable t) {
+                  // also Errors such as StackOverflowError, so that this thread keeps
+                  // taking documents and passes on the end of the input
+                  error.compareAndSet(null, t);
+                } finally {
+                  busyNanos.addAndGet(System.nanoTime() - start);
+                  processed.incrementAndGet();
+                }
+                if (ok) {
+                  if (next != null) {
+                    next.offered(out);
+                  }
+                  out.put(annotation);
+                }
+              }
+            } catch (Throwable t) {
+              error.compareAndSet(null, t);
+            } finally {
+              // let the other threads of this stage see the end of the input, and
+              // pass it on once they have all finished
+              if (running.decrementAndGet() == 0) {
+                endNanos = System.nanoTime();
+                putUninterruptibly(out, END_OF_INPUT);
+              } else {
+                putUninterruptibly(in, END_OF_INPUT);
+              }
+            }
+          }
+        };
+        thread.start();
+        threads.add(thread);
+      }
+      return threads;
+    }
+
+    public Annotator annotator() { return annotator; }
+
+    public int numThreads() { return numThreads; }
+
+    /** The number of documents this stage has processed. */
+    public int processed() { return processed.get(); }
+
+    /** The total time spent annotating, in milliseconds, summed over threads. */
+    public long busyMillis() { return busyNanos.get() / 1000000; }
+
+    /** The number of documents currently waiting in front of this stage. */
+    public int queueDepth() {
+      BlockingQueue<Annotation> queue = input;
+      return queue == null ? 0 : queue.size();
+    }
+
+    /** The largest input queue depth seen when a document was added. */
+    public int maxQueueDepth() { return maxQueueDepth.get(); }
+
+    /** The average input queue depth seen when a document was added. */
+    public double averageQueueDepth() {
+      long samples = queueDepthSamples.get();
+      return samples == 0 ? 0.0 : ((double) queueDepthSum.get()) / samples;
+    }
+
+    /**
+     * The fraction of the available thread time, since the stage was
+     * started, that was spent annotating.
+     */
+    public double utilization() {
+      if (startNanos == 0) {
+        return 0.0;
+      }
+      long end = (endNanos == 0) ? System.nanoTime() : endNanos;
+      long elapsed = end - startNanos;
+      return elapsed <= 0 ? 0.0 : ((double) busyNanos.get()) / ((double) elapsed * numThreads);
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s: %d threads, %d docs, %s sec. busy, utilization %.1f%%, queue depth %d (avg %.1f, max %d)",
+                           StringUtils.getShortClassName(annotator), numThreads, processed(),
+                           Timing.toSecondsString(busyMillis()), 100.0 * utilization(),
+                           queueDepth(), averageQueueDepth(), maxQueueDepth());
+    }
+  }
+
+}
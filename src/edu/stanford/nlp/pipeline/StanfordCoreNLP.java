@@ -37,11 +37,22 @@ import edu.stanford.nlp.objectbank.ObjectBank;
 import edu.stanford.nlp.process.PTBTokenizer;
 import edu.stanford.nlp.trees.TreePrint;
 import edu.stanford.nlp.util.*;
+import edu.stanford.nlp.util.concurrent.SharedThreadPool;
 import edu.stanford.nlp.util.logging.Redwood;
 import edu.stanford.nlp.util.logging.StanfordRedwoodConfiguration;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.regex.Pattern;
@@ -248,6 +259,9 @@ public class StanfordCoreNLP extends AnnotationPipeline {
       props = fromClassPath;
     }
     this.properties = props;
+    if (props.containsKey("sharedThreadPool.nthreads")) {
+      SharedThreadPool.setParallelism(PropertiesUtils.getInt(props, "sharedThreadPool.nthreads"));
+    }
     AnnotatorPool pool = getDefaultAnnotatorPool(props);
 
     // now construct the annotators from the given properties in the given order
@@ -281,6 +295,12 @@ public class StanfordCoreNLP extends AnnotationPipeline {
     if (! alreadyAddedAnnoNames.contains(STANFORD_SSPLIT)) {
       System.setProperty(NEWLINE_SPLITTER_PROPERTY, "false");
     }
+
+    int sentenceThreads = PropertiesUtils.getInt(props, "sentenceThreads", 1);
+    if (sentenceThreads > 1) {
+      boolean shared = PropertiesUtils.getBool(props, "sharedThreadPool", false);
+      setSentenceThreads(sentenceThreads, shared ? SharedThreadPool.getInstance() : null);
+    }
   }
 
   /**
@@ -306,9 +326,10 @@ public class StanfordCoreNLP extends AnnotationPipeline {
       private static final long serialVersionUID = 1L;
       @Override
       public Annotator create() {
+        TokenizerAnnotator tokenizer;
         if (Boolean.valueOf(properties.getProperty("tokenize.whitespace",
                           "false"))) {
-          return new WhitespaceTokenizerAnnotator(properties);
+          tokenizer = new WhitespaceTokenizerAnnotator(properties);
         } else {
           String options = properties.getProperty("tokenize.options", PTBTokenizerAnnotator.DEFAULT_OPTIONS);
           boolean keepNewline = Boolean.valueOf(properties.getProperty(NEWLINE_SPLITTER_PROPERTY, "false"));
@@ -321,14 +342,18 @@ public class StanfordCoreNLP extends AnnotationPipeline {
           if (keepNewline) {
             options = "tokenizeNLs," + options;
           }
-          return new PTBTokenizerAnnotator(false, options);
+          tokenizer = new PTBTokenizerAnnotator(false, options);
         }
+        tokenizer.setCompactTokens(Boolean.valueOf(properties.getProperty("tokenize.compact", "false")));
+        return tokenizer;
       }
 
       @Override
       public String signature() {
         // keep track of all relevant properties for this annotator here!
         StringBuilder os = new StringBuilder();
+        os.append("tokenize.compact:" +
+                properties.getProperty("tokenize.compact", "false"));
         os.append("tokenize.whitespace:" +
                 properties.getProperty("tokenize.whitespace", "false"));
         if (Boolean.valueOf(properties.getProperty("tokenize.whitespace",
@@ -569,7 +594,10 @@ public class StanfordCoreNLP extends AnnotationPipeline {
         // keep track of all relevant properties for this annotator here!
         return ("pos.maxlen:" + properties.getProperty("pos.maxlen", "") +
                 "pos.model:" + properties.getProperty("pos.model", DefaultPaths.DEFAULT_POS_MODEL) +
-                "pos.nthreads:" + properties.getProperty("pos.nthreads", properties.getProperty("nthreads", "")));
+                "pos.nthreads:" + properties.getProperty("pos.nthreads", properties.getProperty("nthreads", "")) +
+                "pos.sharedThreadPool:" + properties.getProperty("pos.sharedThreadPool", properties.getProperty("sharedThreadPool", "false")) +
+                "pos.localScoreCacheSize:" + properties.getProperty("pos.localScoreCacheSize", "0") +
+                "pos.decoding:" + properties.getProperty("pos.decoding", "exact"));
       }
     });
 
@@ -1023,6 +1051,7 @@ public class StanfordCoreNLP extends AnnotationPipeline {
     os.println("\tIf annotator \"tokenize\" is defined:");
     os.println("\t\"tokenize.options\" - PTBTokenizer options (see edu.stanford.nlp.process.PTBTokenizer for details)");
     os.println("\t\"tokenize.whitespace\" - If true, just use whitespace tokenization");
+    os.println("\t\"tokenize.compact\" - If true, store token annotations column-wise to save memory on large documents");
 
     os.println();
     os.println("\tIf annotator \"cleanxml\" is defined:");
@@ -1034,6 +1063,8 @@ public class StanfordCoreNLP extends AnnotationPipeline {
     os.println("\tIf annotator \"pos\" is defined:");
     os.println("\t\"pos.maxlen\" - maximum length of sentence to POS tag");
     os.println("\t\"pos.model\" - path towards the POS tagger model");
+    os.println("\t\"pos.localScoreCacheSize\" - number of frequent words whose local feature scores are cached across sentences (default 0)");
+    os.println("\t\"pos.decoding\" - exact, greedy or beam:k; greedy and beam trade a little accuracy for speed (default exact)");
 
     os.println();
     os.println("\tIf annotator \"ner\" is defined:");
@@ -1080,6 +1111,12 @@ public class StanfordCoreNLP extends AnnotationPipeline {
     os.println("\t\"replaceExtension\" - flag to chop off the last extension before adding outputExtension to file");
     os.println("\t\"noClobber\" - don't automatically override (clobber) output files that already exist");
 		os.println("\t\"threads\" - multithread on this number of threads");
+    os.println("\t\"sentenceThreads\" - annotate the sentences of each document in parallel on this number of threads, using the sentence level annotators (pos, lemma, ner, parse, sentiment)");
+    os.println("\t\"sharedThreadPool\" - run the multithreaded annotators (see nthreads, pos.nthreads, parse.nthreads) on one shared pool of threads");
+    os.println("\t\"sharedThreadPool.nthreads\" - maximum number of threads in the shared pool (default: number of processors)");
+    os.println("\t\"streaming\" - read text files in chunks and write output as chunks complete, so memory use does not grow with file size");
+    os.println("\t\"streaming.chunkSize\" - approximate number of characters per chunk in streaming mode (default " + ChunkedTextAnnotationSource.DEFAULT_CHUNK_SIZE + ")");
+    os.println("\t\"streaming.queueSize\" - maximum number of chunks in flight in streaming mode (default twice the number of threads)");
     os.println();
     os.println("If none of the above are present, run the pipeline in an interactive shell (default properties will be loaded from the classpath).");
     os.println("The shell accepts input from stdin and displays the output at stdout.");
@@ -1185,6 +1222,8 @@ public class StanfordCoreNLP extends AnnotationPipeline {
 
     final boolean noClobber = Boolean.parseBoolean(properties.getProperty("noClobber", "false"));
     final boolean randomize = Boolean.parseBoolean(properties.getProperty("randomize", "false"));
+    final boolean streaming = Boolean.parseBoolean(properties.getProperty("streaming", "false"));
+    List<Pair<File,String>> streamingFiles = new ArrayList<Pair<File,String>>();
 
     final MutableInteger totalProcessed = new MutableInteger(0);
     final MutableInteger totalSkipped = new MutableInteger(0);
@@ -1241,6 +1280,11 @@ public class StanfordCoreNLP extends AnnotationPipeline {
       }
 
       final String finalOutputFilename = outputFilename;
+      // in streaming mode, plain text files are read chunk by chunk below rather than slurped
+      if (streaming && ! file.getAbsolutePath().endsWith(".ser.gz")) {
+        streamingFiles.add(new Pair<File,String>(file, finalOutputFilename));
+        continue;
+      }
       //register a task...
       toRun.add(new Runnable(){
         //who's run() method is...
@@ -1365,8 +1409,16 @@ public class StanfordCoreNLP extends AnnotationPipeline {
       log("Randomly shuffling input");
       Collections.shuffle(toRun);
     }
-    log("Ready to process: " + toRun.size() + " files, skipped " + totalSkipped + ", total " + nFiles);
+    log("Ready to process: " + (toRun.size() + streamingFiles.size()) + " files, skipped " + totalSkipped + ", total " + nFiles);
     //--Run Jobs
+    if ( ! streamingFiles.isEmpty()) {
+      if (randomize) {
+        Collections.shuffle(streamingFiles);
+      }
+      processFilesStreaming(streamingFiles, numThreads, outputFormat, extension,
+                            outputSerializerClass, outputSerializerName, continueOnAnnotateError,
+                            totalProcessed, totalErrorAnnotating);
+    }
     if(numThreads == 1){
       for(Runnable r : toRun){ r.run(); }
     } else {
@@ -1376,6 +1428,209 @@ public class StanfordCoreNLP extends AnnotationPipeline {
     log("Skipped " + totalSkipped + " documents, error annotating " + totalErrorAnnotating + " documents");
   }
 
+  /** One chunk of an input file on its way through the streaming pipeline. */
+  private static class StreamedChunk {
+    final File file;
+    final String outputFilename;
+    final int chunkIndex;
+    final boolean last;
+    final Annotation annotation;
+    Throwable error; // set if annotating this chunk failed
+
+    StreamedChunk(File file, String outputFilename, int chunkIndex, boolean last, Annotation annotation) {
+      this.file = file;
+      this.outputFilename = outputFilename;
+      this.chunkIndex = chunkIndex;
+      this.last = last;
+      this.annotation = annotation;
+    }
+  }
+
+  /**
+   * Processes text files without ever holding a whole file in memory.
+   * The calling thread reads each file incrementally with a
+   * {@link ChunkedTextAnnotationSource} and submits each chunk to a pool of
+   * numThreads annotating threads.  The pending results are kept, in input
+   * order, in a bounded queue from which a single writer thread takes them
+   * as they complete and appends them to the output file.  When the queue is
+   * full the reader blocks, so at most about streaming.queueSize chunks are
+   * in memory at any time, regardless of the size of the input files.
+   * <br>
+   * Text and serialized output for all the chunks of a file goes to the
+   * one output file; since XML output must be a single document, each chunk
+   * is written to its own file, numbered before the extension.
+   */
+  private void processFilesStreaming(List<Pair<File,String>> files, int numThreads,
+                                     final OutputFormat outputFormat, final String extension,
+                                     final String outputSerializerClass, final String outputSerializerName,
+                                     final boolean continueOnAnnotateError,
+                                     final MutableInteger totalProcessed, final MutableInteger totalErrorAnnotating) {
+    int chunkSize = PropertiesUtils.getInt(properties, "streaming.chunkSize", ChunkedTextAnnotationSource.DEFAULT_CHUNK_SIZE);
+    int queueSize = PropertiesUtils.getInt(properties, "streaming.queueSize", 2 * numThreads);
+    ChunkedTextAnnotationSource source = new ChunkedTextAnnotationSource(getEncoding(), chunkSize);
+    log("Streaming " + files.size() + " files in chunks of " + chunkSize + " characters, queue size " + queueSize);
+
+    final BlockingQueue<Future<StreamedChunk>> pending = new ArrayBlockingQueue<Future<StreamedChunk>>(Math.max(queueSize, 1));
+    final AtomicReference<Throwable> writerError = new AtomicReference<Throwable>();
+    ExecutorService annotators = Executors.newFixedThreadPool(numThreads);
+
+    Thread writer = new Thread("StanfordCoreNLP writer") {
+      @Override
+      public void run() {
+        OutputStream os = null;
+        AnnotationSerializer outputSerializer = null;
+        try {
+          while (true) {
+            Future<StreamedChunk> future = pending.take();
+            StreamedChunk chunk;
+            try {
+              chunk = future.get();
+            } catch (InterruptedException e) {
+              throw e;
+            } catch (Throwable t) {
+              writerError.compareAndSet(null, (t instanceof ExecutionException) ? t.getCause() : t);
+              continue;  // keep draining so that the reader can finish
+            }
+            if (chunk == null) {
+              break;  // end of input
+            }
+            if (writerError.get() != null) {
+              continue;  // drain so that the reader can finish
+            }
+            try {
+              if (chunk.chunkIndex == 0) {
+                if (outputFormat == OutputFormat.TEXT) {
+                  os = new BufferedOutputStream(new FileOutputStream(chunk.outputFilename));
+                } else if (outputFormat == OutputFormat.SERIALIZED) {
+                  if (outputSerializerClass != null) {
+                    outputSerializer = loadSerializer(outputSerializerClass, outputSerializerName, properties);
+                    os = new BufferedOutputStream(new FileOutputStream(chunk.outputFilename));
+                  } else {
+                    os = new ObjectOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(chunk.outputFilename))));
+                  }
+                }
+              }
+              if (chunk.error != null) {
+                if ( ! continueOnAnnotateError) {
+                  throw new RuntimeException("Error annotating " + chunk.file.getAbsoluteFile() + " chunk " + chunk.chunkIndex, chunk.error);
+                }
+                err("Error annotating " + chunk.file.getAbsoluteFile() + " chunk " + chunk.chunkIndex, chunk.error);
+                totalErrorAnnotating.incValue(1);
+              } else {
+                switch (outputFormat) {
+                case XML: {
+                  String base = chunk.outputFilename.substring(0, chunk.outputFilename.length() - extension.length());
+                  OutputStream fos = new BufferedOutputStream(new FileOutputStream(base + '.' + chunk.chunkIndex + extension));
+                  xmlPrint(chunk.annotation, fos);
+                  fos.close();
+                  break;
+                }
+                case TEXT:
+                  prettyPrint(chunk.annotation, os);
+                  break;
+                case SERIALIZED:
+                  if (outputSerializer != null) {
+                    os = outputSerializer.write(chunk.annotation, os);
+                  } else {
+                    ObjectOutputStream oos = (ObjectOutputStream) os;
+                    oos.writeObject(chunk.annotation);
+                    // don't let the stream keep references to the chunks already written
+                    oos.reset();
+                  }
+                  break;
+                default:
+                  throw new IllegalArgumentException("Unknown output format " + outputFormat);
+                }
+              }
+              if (chunk.last) {
+                if (os != null) {
+                  os.close();
+                  os = null;
+                }
+                totalProcessed.incValue(1);
+                if (totalProcessed.intValue() % 1000 == 0) {
+                  log("Processed " + totalProcessed + " documents");
+                }
+              }
+            } catch (Throwable t) {
+              writerError.compareAndSet(null, t);
+              IOUtils.closeIgnoringExceptions(os);
+              os = null;
+            }
+          }
+        } catch (InterruptedException e) {
+          writerError.compareAndSet(null, e);
+        } finally {
+          IOUtils.closeIgnoringExceptions(os);
+        }
+      }
+    };
+    writer.start();
+
+    boolean endQueued = false;
+    try {
+      for (Pair<File,String> pair : files) {
+        final File file = pair.first();
+        final String outputFilename = pair.second();
+        forceTrack("Streaming file " + file.getAbsolutePath() + " ... writing to " + outputFilename);
+        Iterator<Annotation> chunks = source.getAnnotations(file.getPath()).iterator();
+        if ( ! chunks.hasNext()) {
+          // still write an (empty) output file for an empty input file
+          chunks = Collections.singletonList(new Annotation("")).iterator();
+        }
+        for (int chunkIndex = 0; chunks.hasNext() && writerError.get() == null; chunkIndex++) {
+          Annotation annotation = chunks.next();
+          final StreamedChunk chunk = new StreamedChunk(file, outputFilename, chunkIndex, ! chunks.hasNext(), annotation);
+          pending.put(annotators.submit(new Callable<StreamedChunk>() {
+            @Override
+            public StreamedChunk call() {
+              try {
+                annotate(chunk.annotation);
+              } catch (Throwable t) {
+                // also Errors such as StackOverflowError, so that the writer always gets the chunk back
+                chunk.error = t;
+              }
+              return chunk;
+            }
+          }));
+        }
+        endTrack("Streaming file " + file.getAbsolutePath() + " ... writing to " + outputFilename);
+        if (writerError.get() != null) {
+          break;
+        }
+      }
+      // a future returning null marks the end of the input
+      FutureTask<StreamedChunk> end = new FutureTask<StreamedChunk>(new Callable<StreamedChunk>() {
+        @Override
+        public StreamedChunk call() { return null; }
+      });
+      end.run();
+      pending.put(end);
+      endQueued = true;
+      writer.join();
+    } catch (InterruptedException e) {
+      writer.interrupt();
+      throw new RuntimeException(e);
+    } finally {
+      if ( ! endQueued) {
+        // reading the input failed, and the writer would wait forever for more chunks
+        writer.interrupt();
+      }
+      annotators.shutdown();
+    }
+
+    Throwable t = writerError.get();
+    if (t instanceof RuntimeException) {
+      throw (RuntimeException) t;
+    } else if (t instanceof Error) {
+      throw (Error) t;
+    } else if (t instanceof IOException) {
+      throw new RuntimeIOException((IOException) t);
+    } else if (t != null) {
+      throw new RuntimeException(t);
+    }
+  }
+
   public void processFiles(final Collection<File> files, int numThreads) throws IOException {
     processFiles(null, files, numThreads);
   }
@@ -6,6 +6,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
+import edu.stanford.nlp.ling.CompactTokenList;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.process.Tokenizer;
@@ -31,10 +32,24 @@ public abstract class TokenizerAnnotator implements Annotator {
 
   private final boolean VERBOSE;
 
+  private boolean compactTokens = false;
+
   public TokenizerAnnotator(boolean verbose) {
     VERBOSE = verbose;
   }
 
+  /**
+   * If set, the tokens are stored in a {@link CompactTokenList}, which
+   * takes much less memory for large documents than separate CoreLabels.
+   */
+  public void setCompactTokens(boolean compactTokens) {
+    this.compactTokens = compactTokens;
+  }
+
+  public boolean compactTokens() {
+    return compactTokens;
+  }
+
   /**
    * Abstract: returns a tokenizer
    */
@@ -62,6 +77,9 @@ public abstract class TokenizerAnnotator implements Annotator {
       // for (CoreLabel token: tokens) {
       //   token.set(CoreAnnotations.TextAnnotation.class, token.get(CoreAnnotations.TextAnnotation.class));
       // }
+      if (compactTokens) {
+        tokens = new CompactTokenList(tokens);
+      }
       annotation.set(CoreAnnotations.TokensAnnotation.class, tokens);
       if (VERBOSE) {
         timer.stop("done.");
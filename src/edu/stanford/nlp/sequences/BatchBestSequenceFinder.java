@@ -0,0 +1,120 @@
+package edu.stanford.nlp.sequences;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import edu.stanford.nlp.util.concurrent.MulticoreWrapper;
+import edu.stanford.nlp.util.concurrent.ThreadsafeProcessor;
+
+/**
+ * Finds the best sequences of many SequenceModels in one call, with the
+ * Viterbi algorithm, giving exactly the sequences that
+ * {@link ExactBestSequenceFinder} gives for each.  Rather than allocating
+ * new score and backtrace arrays for every sequence, each thread decodes
+ * its share of the batch in one lattice, sized up front for the longest
+ * sequence of the batch and reused for all the others.
+ * <br>
+ * With more than one thread, the batch is split into contiguous chunks
+ * which are decoded in parallel, each in its own lattice, on a private
+ * thread pool or on a given executor such as the
+ * {@link edu.stanford.nlp.util.concurrent.SharedThreadPool}.
+ * <br>
+ * A BatchBestSequenceFinder keeps no state between calls, so one can be
+ * used from many threads at once.
+ */
+public class BatchBestSequenceFinder {
+
+  /** The number of chunks each thread gets, so that a slow chunk does not hold up the rest. */
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  private final int nThreads;
+  private final ExecutorService executor;
+
+  /** A finder which decodes each batch in the calling thread. */
+  public BatchBestSequenceFinder() {
+    this(1, null);
+  }
+
+  /** A finder which decodes each batch with up to nThreads threads of its own. */
+  public BatchBestSequenceFinder(int nThreads) {
+    this(nThreads, null);
+  }
+
+  /**
+   * A finder which decodes each batch with up to nThreads threads, run on
+   * the given executor, or on a thread pool of its own if executor is null.
+   */
+  public BatchBestSequenceFinder(int nThreads, ExecutorService executor) {
+    if (nThreads < 1) {
+      throw new IllegalArgumentException("nThreads must be at least 1: " + nThreads);
+    }
+    this.nThreads = nThreads;
+    this.executor = executor;
+  }
+
+  /**
+   * Runs the Viterbi algorithm on each of the sequence models.
+   *
+   * @param models The SequenceModels to decode
+   * @return For each model in turn, the int tags of its best sequence,
+   *     including the padding of the windows, as
+   *     {@link ExactBestSequenceFinder#bestSequence(SequenceModel)} returns
+   */
+  public List<int[]> bestSequences(List<? extends SequenceModel> models) {
+    int threads = Math.min(nThreads, models.size());
+    if (threads <= 1) {
+      return decode(models, new ViterbiLattice());
+    }
+
+    int numChunks = Math.min(models.size(), threads * CHUNKS_PER_THREAD);
+    MulticoreWrapper<List<? extends SequenceModel>, List<int[]>> wrapper =
+        new MulticoreWrapper<List<? extends SequenceModel>, List<int[]>>(threads, new BatchProcessor(), true, executor);
+    List<int[]> sequences = new ArrayList<int[]>(models.size());
+    for (int chunk = 0; chunk < numChunks; chunk++) {
+      int start = (int) ((long) models.size() * chunk / numChunks);
+      int end = (int) ((long) models.size() * (chunk + 1) / numChunks);
+      wrapper.put(models.subList(start, end));
+      while (wrapper.peek()) {
+        sequences.addAll(wrapper.poll());
+      }
+    }
+    wrapper.join();
+    while (wrapper.peek()) {
+      sequences.addAll(wrapper.poll());
+    }
+    return sequences;
+  }
+
+  /** Decodes the models one after another in the one lattice, first sized for the longest. */
+  private static List<int[]> decode(List<? extends SequenceModel> models, ViterbiLattice lattice) {
+    int maxPadLength = 0;
+    for (SequenceModel model : models) {
+      maxPadLength = Math.max(maxPadLength, model.length() + model.leftWindow() + model.rightWindow());
+    }
+    lattice.ensureCapacity(maxPadLength);
+    List<int[]> sequences = new ArrayList<int[]>(models.size());
+    for (SequenceModel model : models) {
+      sequences.add(lattice.bestSequence(model, null).first());
+    }
+    return sequences;
+  }
+
+  /** Decodes chunks of a batch, each thread in a lattice of its own. */
+  private static class BatchProcessor implements ThreadsafeProcessor<List<? extends SequenceModel>, List<int[]>> {
+
+    private final ViterbiLattice lattice = new ViterbiLattice();
+
+    @Override
+    public List<int[]> process(List<? extends SequenceModel> models) {
+      return decode(models, lattice);
+    }
+
+    @Override
+    public ThreadsafeProcessor<List<? extends SequenceModel>, List<int[]>> newInstance() {
+      return new BatchProcessor();
+    }
+
+  }
+
+}
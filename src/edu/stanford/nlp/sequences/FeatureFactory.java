@@ -80,6 +80,30 @@ public abstract class FeatureFactory<IN> implements Serializable {
    */
   public abstract Collection<String> getCliqueFeatures(PaddedList<IN> info, int position, Clique clique);
 
+  /**
+   * Adds the indices of the features of a clique to <code>ids</code>,
+   * skipping features which have no index.  These are the indices of the
+   * features {@link #getCliqueFeatures} returns, each as often as its
+   * feature is returned.  This default looks up the full feature strings;
+   * feature factories can override it to find the indices without making
+   * them, using {@link #addAllIds}.
+   *
+   * @param info A PaddedList of the feature-value pairs
+   * @param position The current position to extract features at
+   * @param clique The particular clique for which to extract features
+   * @param lookup Finds the index of each feature
+   * @param ids The indices of the features are added here
+   */
+  public void addCliqueFeatureIds(PaddedList<IN> info, int position, Clique clique,
+                                  FeatureIdLookup lookup, FeatureIdLookup.Ids ids) {
+    for (String feature : getCliqueFeatures(info, position, clique)) {
+      int id = lookup.indexOf(feature);
+      if (id >= 0) {
+        ids.add(id);
+      }
+    }
+  }
+
 
   /** Makes more complete feature names out of partial feature names, by
    *  adding a suffix to the String feature name, adding results to an
@@ -107,6 +131,24 @@ public abstract class FeatureFactory<IN> implements Serializable {
     }
   }
 
+  /** Adds the indices of the features which
+   *  {@link #addAllInterningAndSuffixing} would make from the same
+   *  arguments, without making them.  Features with no index are skipped.
+   *
+   * @param lookup Finds the index of each feature
+   * @param ids The indices of the output features are added here
+   * @param addend The base set of features
+   * @param suffix The suffix added to each feature in the addend set
+   */
+  protected static void addAllIds(FeatureIdLookup lookup, FeatureIdLookup.Ids ids, Collection<String> addend, String suffix) {
+    for (String feat : addend) {
+      int id = lookup.indexOf(feat, suffix);
+      if (id >= 0) {
+        ids.add(id);
+      }
+    }
+  }
+
   /**
    * Convenience methods for subclasses which use CoreLabel.  Gets the
    * word after applying any wordFunction present in the
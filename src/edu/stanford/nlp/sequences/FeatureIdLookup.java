@@ -0,0 +1,147 @@
+package edu.stanford.nlp.sequences;
+
+import java.util.Arrays;
+
+import edu.stanford.nlp.util.Index;
+
+/**
+ * Looks up the indices of features in a feature Index without building
+ * the feature strings.  Feature factories make most features as a base
+ * string plus a clique suffix, as in <code>base|CpC</code>, and this
+ * finds the index of the suffixed feature from the two parts, so the
+ * concatenated string is never made.  It is an open addressing table of
+ * the feature indices, hashed with {@link String#hashCode()}, which can
+ * be computed for the concatenation from the parts.  So it needs only
+ * an int per slot on top of the Index.
+ * <br>
+ * The Index must not change after the lookup is made.  Lookups are
+ * threadsafe.
+ */
+public class FeatureIdLookup {
+
+  private final Index<String> index;
+  private final int size;
+  private final int[] table; // feature index + 1, or 0 for an empty slot
+  private final int mask;
+
+  public FeatureIdLookup(Index<String> index) {
+    this.index = index;
+    this.size = index.size();
+    int capacity = Integer.highestOneBit(Math.max(2 * size, 16) - 1) << 1;
+    table = new int[capacity];
+    mask = capacity - 1;
+    for (int id = 0; id < size; id++) {
+      String feature = index.get(id);
+      int slot = spread(feature.hashCode()) & mask;
+      while (table[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      table[slot] = id + 1;
+    }
+  }
+
+  private static int spread(int hash) {
+    hash ^= (hash >>> 16);
+    hash *= 0x85EBCA6B;
+    return hash ^ (hash >>> 13);
+  }
+
+  /** Whether this lookup was made from the given Index in its current state. */
+  public boolean isLookupFor(Index<String> index) {
+    return this.index == index && size == index.size();
+  }
+
+  /** The index of the feature, or -1 if it is not in the Index. */
+  public int indexOf(String feature) {
+    int slot = spread(feature.hashCode()) & mask;
+    for (int entry; (entry = table[slot]) != 0; slot = (slot + 1) & mask) {
+      if (feature.equals(index.get(entry - 1))) {
+        return entry - 1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * The index of the feature <code>base + '|' + suffix</code>, or -1 if
+   * it is not in the Index.  An empty or null suffix means the feature is
+   * just <code>base</code>, as in
+   * {@link FeatureFactory#addAllInterningAndSuffixing}.
+   */
+  public int indexOf(String base, String suffix) {
+    if (suffix == null || suffix.isEmpty()) {
+      return indexOf(base);
+    }
+    int hash = 31 * base.hashCode() + '|';
+    int suffixLength = suffix.length();
+    for (int i = 0; i < suffixLength; i++) {
+      hash = 31 * hash + suffix.charAt(i);
+    }
+    int baseLength = base.length();
+    int length = baseLength + 1 + suffixLength;
+    int slot = spread(hash) & mask;
+    for (int entry; (entry = table[slot]) != 0; slot = (slot + 1) & mask) {
+      String feature = index.get(entry - 1);
+      if (feature.length() == length && feature.charAt(baseLength) == '|' &&
+          feature.startsWith(base) && feature.regionMatches(baseLength + 1, suffix, 0, suffixLength)) {
+        return entry - 1;
+      }
+    }
+    return -1;
+  }
+
+
+  /**
+   * A growable list of feature indices, which can be cleared and reused
+   * from one clique to the next, so that collecting features makes no
+   * garbage.  Not threadsafe.
+   */
+  public static class Ids {
+
+    private int[] ids = new int[64];
+    private int size; // = 0;
+
+    public void add(int id) {
+      if (size == ids.length) {
+        ids = Arrays.copyOf(ids, 2 * size);
+      }
+      ids[size++] = id;
+    }
+
+    public int size() {
+      return size;
+    }
+
+    public void clear() {
+      size = 0;
+    }
+
+    /**
+     * Removes repeats among the ids added since the list had the given
+     * size, as when the features of a clique are collected in a set.
+     * This may change the order of those ids.
+     */
+    public void removeDuplicatesFrom(int start) {
+      if (size - start < 2) {
+        return;
+      }
+      Arrays.sort(ids, start, size);
+      int unique = start + 1;
+      for (int i = start + 1; i < size; i++) {
+        if (ids[i] != ids[unique - 1]) {
+          ids[unique++] = ids[i];
+        }
+      }
+      size = unique;
+    }
+
+    /** The ids added since the last clear, in increasing order. */
+    public int[] toSortedArray() {
+      int[] sorted = Arrays.copyOf(ids, size);
+      Arrays.sort(sorted);
+      return sorted;
+    }
+
+  }
+
+}
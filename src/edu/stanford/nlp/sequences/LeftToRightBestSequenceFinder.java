@@ -0,0 +1,153 @@
+package edu.stanford.nlp.sequences;
+
+import java.util.Arrays;
+
+/**
+ * Finds a good sequence for a SequenceModel by going left to right and
+ * keeping only the best few partial sequences at each position.  With a
+ * beam size of 1 this is greedy decoding: each tag is chosen given the
+ * tags already chosen to its left.  Larger beams find better sequences
+ * for more time, and do not in general find the best sequence, as
+ * {@link ExactBestSequenceFinder} does, but their cost grows only
+ * linearly in the number of tags at each position rather than as a power
+ * of the window size.
+ * <br>
+ * When the model has no right window, the scores of all the tags at a
+ * position come from one call to
+ * {@link SequenceModel#scoresOf(int[], int)} for each partial sequence,
+ * so greedy decoding scores each position just once.  With a right
+ * window, a position is scored once the tags to its right are chosen, and
+ * all the combinations of tags at the start of the sentence are kept
+ * until the first position can be scored.
+ * <br>
+ * Ties are broken towards the earlier partial sequence and the earlier
+ * possible value, so the result is deterministic.  A finder has no state
+ * of its own, so one instance can be used by any number of threads.
+ */
+public class LeftToRightBestSequenceFinder implements BestSequenceFinder {
+
+  private final int beamSize;
+
+  /** A greedy finder, which keeps just the best partial sequence. */
+  public LeftToRightBestSequenceFinder() {
+    this(1);
+  }
+
+  public LeftToRightBestSequenceFinder(int beamSize) {
+    if (beamSize < 1) {
+      throw new IllegalArgumentException("The beam must hold at least one sequence: " + beamSize);
+    }
+    this.beamSize = beamSize;
+  }
+
+  public int beamSize() {
+    return beamSize;
+  }
+
+  @Override
+  public int[] bestSequence(SequenceModel ts) {
+    int length = ts.length();
+    int leftWindow = ts.leftWindow();
+    int rightWindow = ts.rightWindow();
+    int padLength = length + leftWindow + rightWindow;
+
+    int[][] beam = { new int[padLength] };
+    double[] beamScores = { 0.0 };
+    int beamCount = 1;
+
+    for (int pos = 0; pos < padLength; pos++) {
+      int[] values = ts.getPossibleValues(pos);
+      int scoredPos = pos - rightWindow;
+      boolean scored = scoredPos >= leftWindow;
+
+      int numCandidates = beamCount * values.length;
+      int[] parents = new int[numCandidates];
+      int[] candidateTags = new int[numCandidates];
+      double[] candidateScores = new double[numCandidates];
+      int c = 0;
+      for (int h = 0; h < beamCount; h++) {
+        int[] sequence = beam[h];
+        double[] scores = null;
+        if (scored && rightWindow == 0) {
+          sequence[pos] = values[0];
+          scores = ts.scoresOf(sequence, pos);
+        }
+        for (int v = 0; v < values.length; v++) {
+          double score = beamScores[h];
+          if (scores != null) {
+            score += scores[v];
+          } else if (scored) {
+            sequence[pos] = values[v];
+            score += ts.scoreOf(sequence, scoredPos);
+          }
+          parents[c] = h;
+          candidateTags[c] = values[v];
+          candidateScores[c] = score;
+          c++;
+        }
+      }
+
+      // until the first position is scored, all the candidates tie, so keep them all
+      int keep = scored ? Math.min(beamSize, numCandidates) : numCandidates;
+      int[] best = best(candidateScores, keep);
+      int[][] nextBeam = new int[keep][];
+      double[] nextScores = new double[keep];
+      for (int i = 0; i < keep; i++) {
+        int k = best[i];
+        nextBeam[i] = (keep == beamCount && parents[k] == i) ? beam[i] : Arrays.copyOf(beam[parents[k]], padLength);
+        nextScores[i] = candidateScores[k];
+      }
+      for (int i = 0; i < keep; i++) {
+        nextBeam[i][pos] = candidateTags[best[i]];
+      }
+      beam = nextBeam;
+      beamScores = nextScores;
+      beamCount = keep;
+    }
+    return beam[0];
+  }
+
+  /**
+   * The indices of the keep highest scores, best first, with ties going
+   * to the lower index.  The beams are small, so this is a selection
+   * rather than a sort.
+   */
+  private static int[] best(double[] scores, int keep) {
+    int[] best = new int[keep];
+    if (keep == scores.length) {
+      for (int i = 0; i < keep; i++) {
+        best[i] = i;
+      }
+      if (keep > 1) {
+        insertionSort(best, scores);
+      }
+      return best;
+    }
+    int count = 0;
+    for (int i = 0; i < scores.length; i++) {
+      if (count == keep && scores[i] <= scores[best[count - 1]]) {
+        continue;
+      }
+      int j = (count < keep) ? count++ : count - 1;
+      while (j > 0 && scores[i] > scores[best[j - 1]]) {
+        best[j] = best[j - 1];
+        j--;
+      }
+      best[j] = i;
+    }
+    return best;
+  }
+
+  private static void insertionSort(int[] indices, double[] scores) {
+    for (int i = 1; i < indices.length; i++) {
+      int index = indices[i];
+      int j = i;
+      while (j > 0 && scores[index] > scores[indices[j - 1]]) {
+        indices[j] = indices[j - 1];
+        j--;
+      }
+      indices[j] = index;
+    }
+  }
+
+}
@@ -1021,6 +1021,30 @@ public class SeqClassifierFlags implements Serializable {
 
   public boolean useRandomSeed = false;
   public boolean terminateOnAvgImprovement = false;
+
+  /** Look up CRF test time features by their strings, rather than finding their indices directly. */
+  public boolean stringFeatureLookup = false;
+
+  /**
+   * If non-null, the precision (double, float, short or byte) of compact
+   * CRF weights to use at test time, to save memory.
+   */
+  public String compactWeights = null;
+
+  /**
+   * If non-null, a file of annotated documents with which to update a
+   * loaded CRF classifier by online training, rather than training anew.
+   * Like trainFile, it is not saved with the classifier.
+   */
+  public transient String onlineTrainFile = null;
+
+  /**
+   * The number of threads with which a CRF extracts the features of its
+   * training documents, before optimization.  With 1 or less, the
+   * features are extracted on the calling thread.  Either way, the
+   * feature index and data are the same.
+   */
+  public int multiThreadFeatureExtraction = 1;
   // "ADD VARIABLES ABOVE HERE"
 
   public transient List<String> phraseGazettes = null;
@@ -2524,6 +2548,14 @@ public class SeqClassifierFlags implements Serializable {
         useRandomSeed = Boolean.parseBoolean(val);
       } else if (key.equalsIgnoreCase("terminateOnAvgImprovement")){
         terminateOnAvgImprovement = Boolean.parseBoolean(val);
+      } else if (key.equalsIgnoreCase("stringFeatureLookup")){
+        stringFeatureLookup = Boolean.parseBoolean(val);
+      } else if (key.equalsIgnoreCase("compactWeights")){
+        compactWeights = val;
+      } else if (key.equalsIgnoreCase("onlineTrainFile")){
+        onlineTrainFile = val;
+      } else if (key.equalsIgnoreCase("multiThreadFeatureExtraction")){
+        multiThreadFeatureExtraction = Integer.parseInt(val);
 
         // ADD VALUE ABOVE HERE
       } else if (key.length() > 0 && !key.equals("prop")) {
@@ -0,0 +1,180 @@
+package edu.stanford.nlp.sequences;
+
+import edu.stanford.nlp.util.Pair;
+
+import java.util.Arrays;
+
+/**
+ * The working arrays of the Viterbi algorithm, kept between calls so that
+ * decoding many sequences one after another allocates only when a
+ * sequence is longer, or has more window products at some position, than
+ * any decoded before.  {@link #ensureCapacity(int)} sizes a lattice for
+ * the longest sequence of a batch up front.
+ * <br>
+ * A lattice is not threadsafe; each thread decoding needs its own.
+ */
+class ViterbiLattice {
+
+  private int[][] tags = new int[0][];
+  private int[] tagNum = new int[0];
+  private int[] tempTags = new int[0];
+  private int[] productSizes = new int[0];
+  private double[][] windowScore = new double[0][];
+  private double[][] score = new double[0][];
+  private int[][] trace = new int[0][];
+
+  /** Makes room for sequences of up to padLength positions, including the windows. */
+  void ensureCapacity(int padLength) {
+    if (padLength <= tagNum.length) {
+      return;
+    }
+    tags = new int[padLength][];
+    tagNum = new int[padLength];
+    tempTags = new int[padLength];
+    productSizes = new int[padLength];
+    windowScore = Arrays.copyOf(windowScore, padLength);
+    score = Arrays.copyOf(score, padLength);
+    trace = Arrays.copyOf(trace, padLength);
+  }
+
+  /** Makes room for size products at position pos. */
+  private void ensureProducts(int pos, int size) {
+    if (score[pos] == null || score[pos].length < size) {
+      windowScore[pos] = new double[size];
+      score[pos] = new double[size];
+      trace[pos] = new int[size];
+    }
+  }
+
+  /**
+   * Runs the Viterbi algorithm on the sequence model, as
+   * {@link ExactBestSequenceFinder} does.
+   *
+   * @return The tags of the best sequence, including the padding of the
+   *     windows, and its score
+   */
+  Pair<int[], Double> bestSequence(SequenceModel ts, double[][] linearConstraints) {
+    // Set up tag options
+    int length = ts.length();
+    int leftWindow = ts.leftWindow();
+    int rightWindow = ts.rightWindow();
+    int padLength = length + leftWindow + rightWindow;
+    if (linearConstraints != null && linearConstraints.length != padLength)
+      throw new RuntimeException("linearConstraints.length (" +  linearConstraints.length + ") does not match padLength (" + padLength + ") of SequenceModel" + ", length=="+length+", leftW="+leftWindow+", rightW="+rightWindow);
+    ensureCapacity(padLength);
+    for (int pos = 0; pos < padLength; pos++) {
+      tags[pos] = ts.getPossibleValues(pos);
+      tagNum[pos] = tags[pos].length;
+    }
+
+    // Set up product space sizes
+    Arrays.fill(productSizes, 0, padLength, 0);
+    int curProduct = 1;
+    for (int i = 0; i < leftWindow + rightWindow; i++) {
+      curProduct *= tagNum[i];
+    }
+    for (int pos = leftWindow + rightWindow; pos < padLength; pos++) {
+      if (pos > leftWindow + rightWindow) {
+        curProduct /= tagNum[pos - leftWindow - rightWindow - 1]; // shift off
+      }
+      curProduct *= tagNum[pos]; // shift on
+      productSizes[pos - rightWindow] = curProduct;
+    }
+    for (int pos = 0; pos < padLength; pos++) {
+      ensureProducts(pos, productSizes[pos]);
+    }
+
+    // Score all of each window's options
+    for (int pos = leftWindow; pos < leftWindow + length; pos++) {
+      double[] posScores = windowScore[pos];
+      // scores which scoresOf() below does not reach stay zero, as in a new array
+      Arrays.fill(posScores, 0, productSizes[pos], 0.0);
+      Arrays.fill(tempTags, 0, padLength, tags[0][0]);
+
+      for (int product = 0; product < productSizes[pos]; product++) {
+        int p = product;
+        int shift = 1;
+        for (int curPos = pos + rightWindow; curPos >= pos - leftWindow; curPos--) {
+          tempTags[curPos] = tags[curPos][p % tagNum[curPos]];
+          p /= tagNum[curPos];
+          if (curPos > pos) {
+            shift *= tagNum[curPos];
+          }
+        }
+
+        // Here now you get ts.scoresOf() for all classifications at a position at once, whereas the old code called ts.scoreOf() on each item.
+        // CDM May 2007: The way this is done gives incorrect results if there are repeated values in the values of ts.getPossibleValues(pos) -- in particular if the first value of the array is repeated later.  I tried replacing it with the modulo version, but that only worked for left-to-right, not bidirectional inference, but I still think that if you sorted things out, you should be able to do it with modulos and the result would be conceptually simpler and robust to repeated values.  But in the meantime, I fixed the POS tagger to not give repeated values (which was a bug in the tagger).
+        if (tempTags[pos] == tags[pos][0]) {
+          // get all tags at once
+          double[] scores = ts.scoresOf(tempTags, pos);
+          // fill in the relevant windowScores
+          for (int t = 0; t < tagNum[pos]; t++) {
+            posScores[product + t * shift] = scores[t];
+          }
+        }
+      }
+    }
+
+    // Do forward Viterbi algorithm
+
+    // loop over the classification spot
+    for (int pos = leftWindow; pos < length + leftWindow; pos++) {
+      // loop over window product types
+      for (int product = 0; product < productSizes[pos]; product++) {
+        // check for initial spot
+        if (pos == leftWindow) {
+          // no predecessor type
+          score[pos][product] = windowScore[pos][product];
+          if (linearConstraints != null) {
+            score[pos][product] += linearConstraints[pos][product % tagNum[pos]];
+          }
+          trace[pos][product] = -1;
+        } else {
+          // loop over possible predecessor types
+          score[pos][product] = Double.NEGATIVE_INFINITY;
+          trace[pos][product] = -1;
+          int sharedProduct = product / tagNum[pos + rightWindow];
+          int factor = productSizes[pos] / tagNum[pos + rightWindow];
+          for (int newTagNum = 0; newTagNum < tagNum[pos - leftWindow - 1]; newTagNum++) {
+            int predProduct = newTagNum * factor + sharedProduct;
+            double predScore = score[pos - 1][predProduct] + windowScore[pos][product];
+
+            if (linearConstraints != null) {
+              predScore += linearConstraints[pos][product % tagNum[pos]];
+            }
+
+            if (predScore > score[pos][product]) {
+              score[pos][product] = predScore;
+              trace[pos][product] = predProduct;
+            }
+          }
+        }
+      }
+    }
+
+    // Project the actual tag sequence
+    double bestFinalScore = Double.NEGATIVE_INFINITY;
+    int bestCurrentProduct = -1;
+    for (int product = 0; product < productSizes[leftWindow + length - 1]; product++) {
+      if (score[leftWindow + length - 1][product] > bestFinalScore) {
+        bestCurrentProduct = product;
+        bestFinalScore = score[leftWindow + length - 1][product];
+      }
+    }
+    int lastProduct = bestCurrentProduct;
+    for (int last = padLength - 1; last >= length - 1 && last >= 0; last--) {
+      tempTags[last] = tags[last][lastProduct % tagNum[last]];
+      lastProduct /= tagNum[last];
+    }
+    for (int pos = leftWindow + length - 2; pos >= leftWindow; pos--) {
+      int bestNextProduct = bestCurrentProduct;
+      bestCurrentProduct = trace[pos + 1][bestNextProduct];
+      tempTags[pos - leftWindow] = tags[pos - leftWindow][bestCurrentProduct / (productSizes[pos] / tagNum[pos - leftWindow])];
+    }
+    int[] bestTags = Arrays.copyOf(tempTags, padLength);
+    // don't hold on to the model's arrays
+    Arrays.fill(tags, 0, padLength, null);
+    return new Pair<int[], Double>(bestTags, bestFinalScore);
+  }
+
+}
@@ -0,0 +1,61 @@
+package edu.stanford.nlp.tagger.maxent;
+
+import java.io.IOException;
+import java.util.Properties;
+
+import edu.stanford.nlp.util.StringUtils;
+
+/**
+ * Tags a file with gold tags once in each of several decoding modes and
+ * reports, for each, the words tagged per second and the accuracy, so as
+ * to choose how much accuracy to give up for speed.  See
+ * {@link MaxentTagger#setDecoding(String)} for the modes.
+ * <br>
+ * Usage: <code>java edu.stanford.nlp.tagger.maxent.DecodingEvaluation
+ * -model tagger -testFile file [-modes exact,greedy,beam:4] [-iterations n]</code>
+ * <br>
+ * Other tagger properties, such as <code>-nthreads</code> or
+ * <code>-tagSeparator</code>, are used as for testing a tagger, except
+ * that the tagged sentences are not printed unless
+ * <code>-verboseResults true</code> is given.  The file
+ * is first tagged once in each mode to warm up the JVM; then each mode's
+ * speed is the best of the given number of runs.
+ */
+public class DecodingEvaluation {
+
+  private static final String DEFAULT_MODES = "exact,beam:8,beam:4,beam:2,greedy";
+
+  private DecodingEvaluation() {} // main method only
+
+  public static void main(String[] args) throws IOException {
+    Properties props = StringUtils.argsToProperties(args);
+    if ( ! props.containsKey("verboseResults")) {
+      // the timings should not include printing every sentence
+      props.setProperty("verboseResults", "false");
+    }
+    TaggerConfig config = new TaggerConfig(props);
+    String[] modes = config.getProperty("modes", DEFAULT_MODES).split(",");
+    int iterations = Math.max(1, Integer.parseInt(config.getProperty("iterations", "3")));
+    MaxentTagger tagger = new MaxentTagger(config.getModel(), config);
+
+    for (String mode : modes) {
+      tagger.setDecoding(mode);
+      new TestClassifier(tagger);
+    }
+
+    System.out.printf("%-12s %12s %10s%n", "decoding", "words/sec", "accuracy");
+    for (String mode : modes) {
+      tagger.setDecoding(mode);
+      double bestSeconds = Double.POSITIVE_INFINITY;
+      TestClassifier result = null;
+      for (int iter = 0; iter < iterations; iter++) {
+        long start = System.nanoTime();
+        result = new TestClassifier(tagger);
+        bestSeconds = Math.min(bestSeconds, (System.nanoTime() - start) / 1e9);
+      }
+      System.out.printf("%-12s %12.0f %9.2f%%%n", mode.trim(),
+                        result.getNumWords() / bestSeconds, 100.0 * result.getAccuracy());
+    }
+  }
+
+}
@@ -0,0 +1,117 @@
+package edu.stanford.nlp.tagger.maxent;
+
+import java.util.Map;
+
+/**
+ * The feature weights of one extractor, in primitive arrays, for scoring
+ * at tagging time.  It holds the same information as the extractor's map
+ * in {@link MaxentTagger#fAssociations} together with the lambdas, but
+ * instead of a <code>HashMap</code> entry and an array of feature numbers
+ * over all the tags for each extracted value, there is an open addressing
+ * table of the values and, for each value, just the tags which have a
+ * feature and their weights, stored contiguously.  So looking up a value
+ * reads a few arrays, and scoring it touches only its features.
+ * <br>
+ * The table is a copy: it does not see later changes to the maps or the
+ * lambdas.  It is read only, so one table serves any number of threads.
+ */
+class FeatureAssociationTable {
+
+  private final String[] values;
+  private final int[] slots; // row + 1, or 0 for an empty slot
+  private final int mask;
+  private final int[] rowStarts; // rows + 1 of them
+  private final int[] tags;
+  private final double[] weights;
+
+  /**
+   * @param associations For each extracted value, the number of the
+   *     feature for each tag index, or -1 if there is none
+   * @param lambda The weights of the features
+   */
+  FeatureAssociationTable(Map<String, int[]> associations, double[] lambda) {
+    int rows = associations.size();
+    int entries = 0;
+    for (int[] fNums : associations.values()) {
+      for (int fNum : fNums) {
+        if (fNum > -1) {
+          entries++;
+        }
+      }
+    }
+    values = new String[rows];
+    rowStarts = new int[rows + 1];
+    tags = new int[entries];
+    weights = new double[entries];
+    int capacity = Integer.highestOneBit(Math.max(2 * rows, 16) - 1) << 1;
+    slots = new int[capacity];
+    mask = capacity - 1;
+
+    int row = 0;
+    int entry = 0;
+    for (Map.Entry<String, int[]> association : associations.entrySet()) {
+      String value = association.getKey();
+      values[row] = value;
+      int slot = spread(value.hashCode()) & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = row + 1;
+
+      int[] fNums = association.getValue();
+      for (int tag = 0; tag < fNums.length; tag++) {
+        if (fNums[tag] > -1) {
+          tags[entry] = tag;
+          weights[entry] = lambda[fNums[tag]];
+          entry++;
+        }
+      }
+      row++;
+      rowStarts[row] = entry;
+    }
+  }
+
+  private static int spread(int hash) {
+    hash ^= (hash >>> 16);
+    hash *= 0x85EBCA6B;
+    return hash ^ (hash >>> 13);
+  }
+
+  /** The row of the extracted value, or -1 if it has no features. */
+  int rowOf(String value) {
+    int slot = spread(value.hashCode()) & mask;
+    for (int entry; (entry = slots[slot]) != 0; slot = (slot + 1) & mask) {
+      if (value.equals(values[entry - 1])) {
+        return entry - 1;
+      }
+    }
+    return -1;
+  }
+
+  /** Adds the weight of each feature of the row to the score of its tag, indexed by tag index. */
+  void addWeights(int row, double[] scores) {
+    for (int i = rowStarts[row], end = rowStarts[row + 1]; i < end; i++) {
+      scores[tags[i]] += weights[i];
+    }
+  }
+
+  /**
+   * Adds the weight of each feature of the row to the score of its tag,
+   * where the scores are only for some tags: positions gives the place of
+   * each tag index in scores, or -1 for a tag without a score.
+   */
+  void addWeights(int row, double[] scores, int[] positions) {
+    for (int i = rowStarts[row], end = rowStarts[row + 1]; i < end; i++) {
+      int j = positions[tags[i]];
+      if (j >= 0) {
+        scores[j] += weights[i];
+      }
+    }
+  }
+
+  /** The number of extracted values with features. */
+  int size() {
+    return values.length;
+  }
+
+}
@@ -41,6 +41,9 @@ import edu.stanford.nlp.process.TokenizerFactory;
 import edu.stanford.nlp.process.TransformXML;
 import edu.stanford.nlp.process.*;
 import edu.stanford.nlp.process.PTBTokenizer.PTBTokenizerFactory;
+import edu.stanford.nlp.sequences.BestSequenceFinder;
+import edu.stanford.nlp.sequences.ExactBestSequenceFinder;
+import edu.stanford.nlp.sequences.LeftToRightBestSequenceFinder;
 import edu.stanford.nlp.sequences.PlainTextDocumentReaderAndWriter;
 import edu.stanford.nlp.sequences.PlainTextDocumentReaderAndWriter.OutputStyle;
 import edu.stanford.nlp.tagger.io.TaggedFileRecord;
@@ -51,6 +54,7 @@ import edu.stanford.nlp.util.ReflectionLoading;
 import edu.stanford.nlp.util.Timing;
 import edu.stanford.nlp.util.StringUtils;
 import edu.stanford.nlp.util.XMLUtils;
+import edu.stanford.nlp.util.concurrent.ConcurrentClockCache;
 import edu.stanford.nlp.util.concurrent.MulticoreWrapper;
 import edu.stanford.nlp.util.concurrent.ThreadsafeProcessor;
 
@@ -318,6 +322,14 @@ public class MaxentTagger implements Function<List<? extends HasWord>,ArrayList<
   // For each extractor index, we have a map from possible extracted
   // features to an array which maps from tag number to feature weight index in the lambdas array.
   List<Map<String, int[]>> fAssociations = new ArrayList<Map<String, int[]>>();
+  // The same associations with their weights, in primitive tables for
+  // tagging; made from fAssociations and the lambdas when first needed
+  private transient volatile FeatureAssociationTable[] featureAssociationTables;
+  // The local scores of frequent words, for all sentences and threads, or null
+  private transient volatile ConcurrentClockCache<String, double[]> localScoreCache;
+  // How sentences are decoded: exact, greedy or beam:k
+  private transient volatile String decoding = TaggerConfig.DECODING;
+  private transient volatile BestSequenceFinder bestSequenceFinder = new ExactBestSequenceFinder();
   //PairsHolder pairs = new PairsHolder();
   Extractors extractors;
   Extractors extractorsRare;
@@ -418,6 +430,99 @@ public class MaxentTagger implements Function<List<? extends HasWord>,ArrayList<
     return prob;
   }
 
+  /**
+   * The feature weights for each extractor, common ones and then rare
+   * ones, as in fAssociations, in tables for fast scoring.  They are made
+   * when a model is loaded, or on first use, and must be remade (by
+   * calling {@link #clearFeatureAssociationTables()}) whenever
+   * fAssociations or the lambdas change.
+   */
+  FeatureAssociationTable[] featureAssociationTables() {
+    FeatureAssociationTable[] tables = featureAssociationTables;
+    if (tables == null) {
+      // several threads may build the tables at once; they all build the same thing
+      double[] lambda = getLambdaSolve().lambda;
+      tables = new FeatureAssociationTable[fAssociations.size()];
+      for (int i = 0; i < tables.length; i++) {
+        tables[i] = new FeatureAssociationTable(fAssociations.get(i), lambda);
+      }
+      featureAssociationTables = tables;
+    }
+    return tables;
+  }
+
+  private void clearFeatureAssociationTables() {
+    featureAssociationTables = null;
+    ConcurrentClockCache<String, double[]> cache = localScoreCache;
+    if (cache != null) {
+      cache.clear();
+    }
+  }
+
+  /**
+   * Sets how many words' local feature scores (the scores of the features
+   * which depend only on the word itself) are kept for all the sentences
+   * this tagger tags, on any thread.  Without this cache, they are only
+   * reused within a sentence.  Since a few frequent words make up much of
+   * any text, a cache of some thousands of words saves most of the
+   * scoring of local features.  A size of 0 turns the cache off.  This
+   * can also be set with the localScoreCacheSize property.
+   */
+  public void setLocalScoreCacheSize(int size) {
+    localScoreCache = size > 0 ? new ConcurrentClockCache<String, double[]>(size) : null;
+  }
+
+  /**
+   * The cache of local scores, whose hits, misses and hit rate show how
+   * well it is working, or null if there is none.
+   */
+  public ConcurrentClockCache<String, double[]> getLocalScoreCache() {
+    return localScoreCache;
+  }
+
+  /**
+   * Sets how the tags of a sentence are chosen.  "exact" finds the best
+   * sequence of tags with the Viterbi algorithm, "greedy" chooses each tag
+   * in turn from left to right given the tags already chosen, and
+   * "beam:k" keeps the k best partial sequences from left to right.  With
+   * left context models, such as left3words, the greedy and beam modes
+   * score each word's tags once per partial sequence, so they are much
+   * faster and lose little accuracy.  Models which also look at the tags
+   * to the right gain little from them.  This can also be set with the
+   * decoding property.
+   *
+   * @throws IllegalArgumentException If the mode is not one of these
+   */
+  public void setDecoding(String decoding) {
+    bestSequenceFinder = bestSequenceFinder(decoding);
+    this.decoding = decoding.trim();
+  }
+
+  public String getDecoding() {
+    return decoding;
+  }
+
+  static BestSequenceFinder bestSequenceFinder(String decoding) {
+    String mode = decoding.trim();
+    if (mode.equalsIgnoreCase("exact")) {
+      return new ExactBestSequenceFinder();
+    } else if (mode.equalsIgnoreCase("greedy")) {
+      return new LeftToRightBestSequenceFinder();
+    } else if (mode.toLowerCase().startsWith("beam:")) {
+      try {
+        return new LeftToRightBestSequenceFinder(Integer.parseInt(mode.substring(5).trim()));
+      } catch (NumberFormatException e) {
+        // fall through to the error below
+      }
+    }
+    throw new IllegalArgumentException("Unknown decoding mode " + decoding + "; use exact, greedy or beam:k");
+  }
+
+  /** The finder for the decoding mode, which can be shared by all threads. */
+  BestSequenceFinder bestSequenceFinder() {
+    return bestSequenceFinder;
+  }
+
   // TODO: make these constructors instead of init methods?
   void init(TaggerConfig config) {
     if (initted) return;  // TODO: why not reinit?
@@ -478,6 +583,8 @@ public class MaxentTagger implements Function<List<? extends HasWord>,ArrayList<
 
       if(config.getDefaultScore() >= 0)
         defaultScore = config.getDefaultScore();
+      setLocalScoreCacheSize(config.getLocalScoreCacheSize());
+      setDecoding(config.getDecoding());
     }
 
     // just in case, reset the defaultScores array so it will be
@@ -636,6 +743,7 @@ public class MaxentTagger implements Function<List<? extends HasWord>,ArrayList<
         fAssociation.remove(rule);
       }
     }
+    clearFeatureAssociationTables();
   }
 
   /**
@@ -679,6 +787,7 @@ public class MaxentTagger implements Function<List<? extends HasWord>,ArrayList<
     }
 
     prob = new LambdaSolveTagger(condensedLambda);
+    clearFeatureAssociationTables();
   }
 
   protected void saveModel(String filename) {
@@ -852,6 +961,8 @@ public class MaxentTagger implements Function<List<? extends HasWord>,ArrayList<
       if (VERBOSE) {
         System.err.println(" prob read ");
       }
+      clearFeatureAssociationTables();
+      featureAssociationTables();
       if (printLoading) t.done();
     } catch (IOException e) {
       throw new RuntimeIOException("Unrecoverable error while loading a tagger model", e);
@@ -1138,6 +1249,7 @@ public class MaxentTagger implements Function<List<? extends HasWord>,ArrayList<
     Problem p = new Problem(samples, feats);
     LambdaSolveTagger prob = new LambdaSolveTagger(p, 0.0001, fnumArr);
     maxentTagger.prob = prob;
+    maxentTagger.clearFeatureAssociationTables();
 
     if (config.getSearch().equals("owlqn")) {
       CGRunner runner = new CGRunner(prob, config.getModel(), config.getSigmaSquared());
@@ -1488,6 +1600,9 @@ public class MaxentTagger implements Function<List<? extends HasWord>,ArrayList<
     }
     MaxentTagger tagger = new MaxentTagger(config.getModel(), config);
     tagger.runTagger();
+    if (tagger.getLocalScoreCache() != null) {
+      System.err.println("Local score cache: " + tagger.getLocalScoreCache());
+    }
   }
 
   private static final Pattern formatPattern = Pattern.compile("format=[a-zA-Z]+,");
@@ -1667,23 +1782,11 @@ public class MaxentTagger implements Function<List<? extends HasWord>,ArrayList<
 
 
     if (config.getNThreads() != 1) {
-      MulticoreWrapper<List<? extends HasWord>, List<? extends HasWord>> wrapper = new MulticoreWrapper<List<? extends HasWord>, List<? extends HasWord>>(config.getNThreads(), new SentenceTaggingProcessor(this, outputLemmas));
-      for (List<X> sentence : document) {
-        wrapper.put(sentence);
-        while (wrapper.peek()) {
-          List<? extends HasWord> taggedSentence = wrapper.poll();
-          numWords += taggedSentence.size();
-          outputTaggedSentence(taggedSentence, outputLemmas, outputStyle, outputVerbosity, numSentences, "\n", writer);
-          numSentences++;
-        }
-      }
-      wrapper.join();
-      while (wrapper.peek()) {
-        List<? extends HasWord> taggedSentence = wrapper.poll();
-        numWords += taggedSentence.size();
-        outputTaggedSentence(taggedSentence, outputLemmas, outputStyle, outputVerbosity, numSentences, "\n", writer);
-        numSentences++;
-      }
+      // read, tag and write on separate threads, in bounded memory
+      StreamingTagger streamingTagger = new StreamingTagger(this, config.getNThreads());
+      streamingTagger.tagAndOutput(document, writer, outputStyle, outputLemmas, outputVerbosity);
+      numWords = streamingTagger.numWords();
+      numSentences = streamingTagger.numSentences();
     } else {
       Morphology morpha = (outputLemmas) ? new Morphology() : null;
       for (List<X> sentence : document) {
@@ -1748,9 +1851,21 @@ public class MaxentTagger implements Function<List<? extends HasWord>,ArrayList<
   }
 
   public List<? extends HasWord> tagCoreLabelsOrHasWords(List<? extends HasWord> sentence, Morphology morpha, boolean outputLemmas) {
+    return tagCoreLabelsOrHasWords(sentence, new TestSentence(this), morpha, outputLemmas);
+  }
+
+  /**
+   * As the public method, but tagging with the given TestSentence, so
+   * that one thread can reuse it for many sentences.
+   */
+  List<? extends HasWord> tagCoreLabelsOrHasWords(List<? extends HasWord> sentence, TestSentence testSentence,
+                                                  Morphology morpha, boolean outputLemmas) {
     if (sentence.size() > 0 && sentence.get(0) instanceof CoreLabel) {
       List<CoreLabel> coreLabels = castCoreLabels(sentence);
-      tagCoreLabels(coreLabels);
+      List<TaggedWord> taggedWords = testSentence.tagSentence(coreLabels, false);
+      for (int i = 0, size = coreLabels.size(); i < size; ++i) {
+        coreLabels.get(i).setTag(taggedWords.get(i).tag());
+      }
       if (outputLemmas) {
         // We may want to lemmatize things without using an existing
         // Morphology object, as Morphology objects are not
@@ -1762,8 +1877,7 @@ public class MaxentTagger implements Function<List<? extends HasWord>,ArrayList<
       }
       return coreLabels;
     } else {
-      ArrayList<TaggedWord> taggedSentence = tagSentence(sentence, false);
-      return taggedSentence;
+      return testSentence.tagSentence(sentence, false);
     }
   }
 
@@ -0,0 +1,242 @@
+package edu.stanford.nlp.tagger.maxent;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.process.Morphology;
+import edu.stanford.nlp.sequences.PlainTextDocumentReaderAndWriter.OutputStyle;
+
+/**
+ * Tags a stream of sentences on several threads and writes them out in
+ * their original order.  One thread reads the sentences, which is where
+ * a lazy document, such as a {@link edu.stanford.nlp.process.DocumentPreprocessor},
+ * does its tokenizing and sentence splitting, and gathers them into
+ * batches.  Worker threads each tag and format whole batches, with their
+ * own {@link TestSentence} and {@link Morphology}, and the calling thread
+ * writes the formatted batches in order.
+ * <br>
+ * At most a fixed number of batches are in memory at once, whether being
+ * read, waiting, being tagged, or waiting to be written, so a file of any
+ * size can be tagged in bounded memory.  When a batch is slow to tag, the
+ * reader waits rather than running ahead.
+ * <br>
+ * Compared with putting each sentence through a
+ * {@link edu.stanford.nlp.util.concurrent.MulticoreWrapper}, reading,
+ * tagging and writing all overlap, formatting the output is done by the
+ * workers, and the threads hand over a batch of sentences at a time
+ * rather than one.
+ */
+class StreamingTagger {
+
+  /** Sentences in a batch: enough that handing batches between threads costs little. */
+  static final int DEFAULT_BATCH_SIZE = 64;
+
+  /**
+   * A worker's TestSentence keeps the local scores of every word it has
+   * tagged, which saves rescoring frequent words.  Once it has this many
+   * words, the worker starts a new one, so memory stays bounded.
+   */
+  private static final int MAX_LOCAL_SCORES = 20000;
+
+  private final MaxentTagger tagger;
+  private final int nThreads;
+  private final int batchSize;
+  private final int maxBatches;
+
+  private int numSentences; // = 0;
+  private int numWords; // = 0;
+
+  /**
+   * @param nThreads The number of threads which tag; if 0 or less, the
+   *     number of processors
+   */
+  StreamingTagger(MaxentTagger tagger, int nThreads) {
+    this(tagger, nThreads, DEFAULT_BATCH_SIZE);
+  }
+
+  StreamingTagger(MaxentTagger tagger, int nThreads, int batchSize) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("A batch must hold at least one sentence: " + batchSize);
+    }
+    this.tagger = tagger;
+    this.nThreads = nThreads > 0 ? nThreads : Runtime.getRuntime().availableProcessors();
+    this.batchSize = batchSize;
+    // enough for each worker to have one batch in hand and one waiting,
+    // and for the reader and writer to each have one
+    this.maxBatches = 2 * this.nThreads + 2;
+  }
+
+  /** Some sentences, and once they are tagged, their output or the error tagging them. */
+  private static class Batch {
+    final List<List<? extends HasWord>> sentences;
+    final int firstSentence;
+    final CountDownLatch done = new CountDownLatch(1);
+    volatile String output;
+    volatile int numWords;
+    volatile Throwable error;
+
+    Batch(List<List<? extends HasWord>> sentences, int firstSentence) {
+      this.sentences = sentences;
+      this.firstSentence = firstSentence;
+    }
+  }
+
+  // Marks the end of the batches, for the workers and the writer
+  private static final Batch END = new Batch(null, -1);
+
+  /**
+   * Tags all the sentences of the document and writes them, formatted as
+   * by {@link MaxentTagger#outputTaggedSentence}, to the writer.  Any
+   * error reading or tagging the document is thrown here, once the
+   * sentences before it have been written.
+   */
+  <X extends HasWord> void tagAndOutput(final Iterable<List<X>> document, Writer writer,
+                                        final OutputStyle outputStyle, final boolean outputLemmas,
+                                        final boolean outputVerbosity) throws IOException {
+    final Semaphore room = new Semaphore(maxBatches);
+    final BlockingQueue<Batch> toTag = new ArrayBlockingQueue<Batch>(maxBatches + nThreads);
+    final BlockingQueue<Batch> toWrite = new ArrayBlockingQueue<Batch>(maxBatches + 1);
+
+    List<Thread> threads = new ArrayList<Thread>();
+    threads.add(new Thread("tagger reader") {
+      @Override
+      public void run() {
+        int sentNum = 0;
+        try {
+          Iterator<List<X>> sentences = null;
+          while (true) {
+            room.acquire();
+            List<List<? extends HasWord>> sentenceBatch = new ArrayList<List<? extends HasWord>>(batchSize);
+            Batch batch;
+            try {
+              // the iterator is made here, so that an error making it is also
+              // passed on and the end of the batches is still marked
+              if (sentences == null) {
+                sentences = document.iterator();
+              }
+              while (sentenceBatch.size() < batchSize && sentences.hasNext()) {
+                sentenceBatch.add(sentences.next());
+              }
+              batch = new Batch(sentenceBatch, sentNum);
+            } catch (Throwable e) {
+              // the sentences read so far are tagged and written, then the error is thrown
+              batch = new Batch(sentenceBatch, sentNum);
+              batch.error = e;
+            }
+            if (sentenceBatch.isEmpty() && batch.error == null) {
+              break;
+            }
+            sentNum += sentenceBatch.size();
+            toWrite.put(batch);
+            toTag.put(batch);
+            if (batch.error != null) {
+              break;
+            }
+          }
+          toWrite.put(END);
+          for (int i = 0; i < nThreads; i++) {
+            toTag.put(END);
+          }
+        } catch (InterruptedException e) {
+          // the writer gave up: stop reading
+        }
+      }
+    });
+    for (int i = 0; i < nThreads; i++) {
+      threads.add(new Thread("tagger worker " + i) {
+        @Override
+        public void run() {
+          TestSentence testSentence = new TestSentence(tagger);
+          Morphology morpha = outputLemmas ? new Morphology() : null;
+          try {
+            for (Batch batch; (batch = toTag.take()) != END; ) {
+              tag(batch, testSentence, morpha, outputStyle, outputLemmas, outputVerbosity);
+              batch.done.countDown();
+              if (testSentence.localScores.size() > MAX_LOCAL_SCORES) {
+                testSentence = new TestSentence(tagger);
+              }
+            }
+          } catch (InterruptedException e) {
+            // the writer gave up: stop tagging
+          }
+        }
+      });
+    }
+    for (Thread thread : threads) {
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    try {
+      for (Batch batch; (batch = toWrite.take()) != END; ) {
+        batch.done.await();
+        if (batch.output != null) {
+          writer.write(batch.output);
+        }
+        if (batch.error != null) {
+          throwError(batch.error);
+        }
+        numSentences += batch.sentences.size();
+        numWords += batch.numWords;
+        room.release();
+      }
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    } finally {
+      for (Thread thread : threads) {
+        thread.interrupt();
+      }
+    }
+  }
+
+  private void tag(Batch batch, TestSentence testSentence, Morphology morpha, OutputStyle outputStyle,
+                   boolean outputLemmas, boolean outputVerbosity) {
+    StringWriter output = new StringWriter();
+    int sentNum = batch.firstSentence;
+    int words = 0;
+    try {
+      for (List<? extends HasWord> sentence : batch.sentences) {
+        List<? extends HasWord> tagged = tagger.tagCoreLabelsOrHasWords(sentence, testSentence, morpha, outputLemmas);
+        tagger.outputTaggedSentence(tagged, outputLemmas, outputStyle, outputVerbosity, sentNum, "\n", output);
+        words += sentence.size();
+        sentNum++;
+      }
+    } catch (Throwable t) {
+      if (batch.error == null) {
+        batch.error = t;
+      }
+    }
+    // the sentences tagged before any error are still written
+    batch.output = output.toString();
+    batch.numWords = words;
+  }
+
+  private static void throwError(Throwable error) {
+    if (error instanceof RuntimeException) {
+      throw (RuntimeException) error;
+    } else if (error instanceof Error) {
+      throw (Error) error;
+    }
+    throw new RuntimeException(error);
+  }
+
+  /** The number of sentences written so far. */
+  int numSentences() {
+    return numSentences;
+  }
+
+  /** The number of words written so far. */
+  int numWords() {
+    return numWords;
+  }
+
+}
@@ -63,7 +63,9 @@ public class TaggerConfig extends Properties /* Inherits implementation of Seria
   OUTPUT_FILE = "",
   OUTPUT_FORMAT = "slashTags",
   OUTPUT_FORMAT_OPTIONS = "",
-  NTHREADS = "1";
+  NTHREADS = "1",
+  LOCAL_SCORE_CACHE_SIZE = "0",
+  DECODING = "exact";
 
   public static final String ENCODING_PROPERTY = "encoding",
   TAG_SEPARATOR_PROPERTY = "tagSeparator";
@@ -105,6 +107,8 @@ public class TaggerConfig extends Properties /* Inherits implementation of Seria
     defaultValues.put("outputFormat", OUTPUT_FORMAT);
     defaultValues.put("outputFormatOptions", OUTPUT_FORMAT_OPTIONS);
     defaultValues.put("nthreads", NTHREADS);
+    defaultValues.put("localScoreCacheSize", LOCAL_SCORE_CACHE_SIZE);
+    defaultValues.put("decoding", DECODING);
   }
 
   /**
@@ -256,6 +260,8 @@ public class TaggerConfig extends Properties /* Inherits implementation of Seria
     this.setProperty("outputFormat", props.getProperty("outputFormat", this.getProperty("outputFormat")).trim()); //this isn't something we save from time to time
     this.setProperty("outputFormatOptions", props.getProperty("outputFormatOptions", this.getProperty("outputFormatOptions")).trim()); //this isn't something we save from time to time
     this.setProperty("nthreads", props.getProperty("nthreads", this.getProperty("nthreads", NTHREADS)).trim());
+    this.setProperty("localScoreCacheSize", props.getProperty("localScoreCacheSize", LOCAL_SCORE_CACHE_SIZE).trim()); //this isn't something we save from time to time
+    this.setProperty("decoding", props.getProperty("decoding", DECODING).trim()); //this isn't something we save from time to time
     String sentenceDelimiter = props.getProperty("sentenceDelimiter", this.getProperty("sentenceDelimiter"));
     if (sentenceDelimiter != null) {
       // this isn't something we save from time to time.
@@ -369,6 +375,11 @@ public class TaggerConfig extends Properties /* Inherits implementation of Seria
 
   public int getNThreads() { return Integer.parseInt(getProperty("nthreads")); }
 
+  /** The number of words whose local feature scores are cached across sentences and threads, or 0 for no such cache. */
+  public int getLocalScoreCacheSize() { return Integer.parseInt(getProperty("localScoreCacheSize", LOCAL_SCORE_CACHE_SIZE)); }
+
+  public String getDecoding() { return getProperty("decoding", DECODING); }
+
 
   /** Return a regex of XML elements to tag inside of.  This may return an
    *  empty String, but never null.
@@ -467,6 +478,8 @@ public class TaggerConfig extends Properties /* Inherits implementation of Seria
     pw.println("            outputFormat = " + getProperty("outputFormat"));
     pw.println("     outputFormatOptions = " + getProperty("outputFormatOptions"));
     pw.println("                nthreads = " + getProperty("nthreads"));
+    pw.println("     localScoreCacheSize = " + getProperty("localScoreCacheSize"));
+    pw.println("                decoding = " + getProperty("decoding"));
     pw.flush();
   }
 
@@ -710,6 +723,16 @@ public class TaggerConfig extends Properties /* Inherits implementation of Seria
 
     out.println("# testFile and textFile can use multiple threads to process text.");
     out.println("# nthreads = " + NTHREADS);
+    out.println();
+
+    out.println("# the number of frequent words whose local feature scores are kept");
+    out.println("# for all sentences and threads.  0 keeps them for one sentence only.");
+    out.println("# localScoreCacheSize = " + LOCAL_SCORE_CACHE_SIZE);
+    out.println();
+
+    out.println("# how to choose the tags of a sentence: exact (Viterbi), greedy,");
+    out.println("# or beam:k, keeping the k best partial sequences from left to right");
+    out.println("# decoding = " + DECODING);
   }
 
   public Mode getMode() {
@@ -163,6 +163,12 @@ public class TestClassifier {
     return numRight + numWrong;
   }
 
+  /** The fraction of the words tagged correctly. */
+  double getAccuracy() {
+    int numWords = getNumWords();
+    return numWords == 0 ? 0.0 : (double) numRight / numWords;
+  }
+
   void setDebug(boolean status) {
     writeUnknDict = status;
     writeWords = status;
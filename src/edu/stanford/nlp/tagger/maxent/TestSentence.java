@@ -17,12 +17,12 @@ import edu.stanford.nlp.ling.TaggedWord;
 import edu.stanford.nlp.math.ArrayMath;
 import edu.stanford.nlp.math.SloppyMath;
 import edu.stanford.nlp.sequences.BestSequenceFinder;
-import edu.stanford.nlp.sequences.ExactBestSequenceFinder;
 import edu.stanford.nlp.sequences.SequenceModel;
 import edu.stanford.nlp.tagger.common.TaggerConstants;
 import edu.stanford.nlp.util.ArrayUtils;
 import edu.stanford.nlp.util.Generics;
 import edu.stanford.nlp.util.Pair;
+import edu.stanford.nlp.util.concurrent.ConcurrentClockCache;
 
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
@@ -291,7 +291,7 @@ public class TestSentence implements SequenceModel {
 
 
   /**
-   * Test using (exact Viterbi) TagInference.
+   * Test using TagInference, decoding as the tagger is set to.
    *
    * @return The tagged sentence
    */
@@ -303,9 +303,7 @@ public class TestSentence implements SequenceModel {
   private void runTagInference() {
     this.initializeScorer();
 
-    BestSequenceFinder ti = new ExactBestSequenceFinder();
-      //new BeamBestSequenceFinder(50);
-      //new KBestSequenceFinder()
+    BestSequenceFinder ti = maxentTagger.bestSequenceFinder();
     int[] bestTags = ti.bestSequence(this);
     finalTags = new String[bestTags.length];
     for (int j = 0; j < size; j++) {
@@ -397,7 +395,20 @@ public class TestSentence implements SequenceModel {
     String w = pairs.getWord(h.current);
     double[] lS, lcS;
     if((lS = localScores.get(w)) == null) {
-      lS = getHistories(tags, h, ex.local, rare ? exR.local : null);
+      // Local scores depend only on the word, and so can be shared with
+      // other sentences, unless approximate scoring scores just the
+      // allowed tags and reused tags make those differ from the dictionary's
+      ConcurrentClockCache<String,double[]> cache = maxentTagger.getLocalScoreCache();
+      boolean shareable = cache != null && (originalTags == null || ! maxentTagger.hasApproximateScoring());
+      if (shareable) {
+        lS = cache.get(w);
+      }
+      if (lS == null) {
+        lS = getHistories(tags, h, ex.local, rare ? exR.local : null);
+        if (shareable) {
+          lS = cache.putIfAbsent(w, lS);
+        }
+      }
       localScores.put(w,lS);
     }
     if((lcS = localContextScores[h.current]) == null) {
@@ -418,35 +429,22 @@ public class TestSentence implements SequenceModel {
 
   private double[] getExactHistories(History h, List<Pair<Integer,Extractor>> extractors, List<Pair<Integer,Extractor>> extractorsRare) {
     double[] scores = new double[maxentTagger.ySize];
+    FeatureAssociationTable[] tables = maxentTagger.featureAssociationTables();
     int szCommon = maxentTagger.extractors.size();
 
     for (Pair<Integer,Extractor> e : extractors) {
-      int kf = e.first();
-      Extractor ex = e.second();
-      String val = ex.extract(h);
-      int[] fAssociations = maxentTagger.fAssociations.get(kf).get(val);
-      if (fAssociations != null) {
-        for (int i = 0; i < maxentTagger.ySize; i++) {
-          int fNum = fAssociations[i];
-          if (fNum > -1) {
-            scores[i] += maxentTagger.getLambdaSolve().lambda[fNum];
-          }
-        }
+      FeatureAssociationTable table = tables[e.first()];
+      int row = table.rowOf(e.second().extract(h));
+      if (row >= 0) {
+        table.addWeights(row, scores);
       }
     }
     if (extractorsRare != null) {
       for (Pair<Integer,Extractor> e : extractorsRare) {
-        int kf = e.first();
-        Extractor ex = e.second();
-        String val = ex.extract(h);
-        int[] fAssociations = maxentTagger.fAssociations.get(kf+szCommon).get(val);
-        if (fAssociations != null) {
-          for (int i = 0; i < maxentTagger.ySize; i++) {
-            int fNum = fAssociations[i];
-            if (fNum > -1) {
-              scores[i] += maxentTagger.getLambdaSolve().lambda[fNum];
-            }
-          }
+        FeatureAssociationTable table = tables[e.first() + szCommon];
+        int row = table.rowOf(e.second().extract(h));
+        if (row >= 0) {
+          table.addWeights(row, scores);
         }
       }
     }
@@ -457,39 +455,29 @@ public class TestSentence implements SequenceModel {
   private double[] getApproximateHistories(String[] tags, History h, List<Pair<Integer,Extractor>> extractors, List<Pair<Integer,Extractor>> extractorsRare) {
 
     double[] scores = new double[tags.length];
+    FeatureAssociationTable[] tables = maxentTagger.featureAssociationTables();
     int szCommon = maxentTagger.extractors.size();
 
+    // where each tag index goes in scores; tags has no repeated values
+    int[] positions = new int[maxentTagger.ySize];
+    Arrays.fill(positions, -1);
+    for (int j = 0; j < tags.length; j++) {
+      positions[maxentTagger.tags.getIndex(tags[j])] = j;
+    }
+
     for (Pair<Integer,Extractor> e : extractors) {
-      int kf = e.first();
-      Extractor ex = e.second();
-      String val = ex.extract(h);
-      int[] fAssociations = maxentTagger.fAssociations.get(kf).get(val);
-      if (fAssociations != null) {
-        for (int j = 0; j < tags.length; j++) {
-          String tag = tags[j];
-          int tagIndex = maxentTagger.tags.getIndex(tag);
-          int fNum = fAssociations[tagIndex];
-          if (fNum > -1) {
-            scores[j] += maxentTagger.getLambdaSolve().lambda[fNum];
-          }
-        }
+      FeatureAssociationTable table = tables[e.first()];
+      int row = table.rowOf(e.second().extract(h));
+      if (row >= 0) {
+        table.addWeights(row, scores, positions);
       }
     }
     if (extractorsRare != null) {
       for (Pair<Integer,Extractor> e : extractorsRare) {
-        int kf = e.first();
-        Extractor ex = e.second();
-        String val = ex.extract(h);
-        int[] fAssociations = maxentTagger.fAssociations.get(szCommon+kf).get(val);
-        if (fAssociations != null) {
-          for (int j = 0; j < tags.length; j++) {
-            String tag = tags[j];
-            int tagIndex = maxentTagger.tags.getIndex(tag);
-            int fNum = fAssociations[tagIndex];
-            if (fNum > -1) {
-              scores[j] += maxentTagger.getLambdaSolve().lambda[fNum];
-            }
-          }
+        FeatureAssociationTable table = tables[szCommon + e.first()];
+        int row = table.rowOf(e.second().extract(h));
+        if (row >= 0) {
+          table.addWeights(row, scores, positions);
         }
       }
     }
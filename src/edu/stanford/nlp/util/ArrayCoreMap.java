@@ -1,6 +1,7 @@
 package edu.stanford.nlp.util;
 
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.*;
 
@@ -20,6 +21,15 @@ import edu.stanford.nlp.util.logging.Redwood.RedwoodChannels;
  * </p>
  *
  * <p>
+ * Maps are searched linearly, which for the sizes of typical token and
+ * sentence maps is faster than any hashing (see ArrayCoreMapBenchmark).
+ * Once a map holds more than {@value #LINEAR_SEARCH_MAX} entries, it also
+ * keeps a small open addressing table from the id {@link TypesafeMapKeys}
+ * gives each key to the key's position in the arrays, so that lookups in
+ * very large maps take constant time.
+ * </p>
+ *
+ * <p>
  * Note that like the base classes in the Collections API, this implementation
  * is <em>not thread-safe</em>. For speed reasons, these methods are not
  * synchronized. A synchronized wrapper could be developed by anyone so
@@ -49,6 +59,21 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
   /** Total number of elements actually in keys,values */
   private int size; // = 0;
 
+  /** Maps with at most this many entries are searched without a slot table */
+  static final int LINEAR_SEARCH_MAX = 32;
+
+  /**
+   * Open addressing table, indexed by key id, of the positions of the
+   * keys plus one; 0 marks an empty slot.  Null when the map is small
+   * enough to search linearly (or too large for byte positions).  It is
+   * only ever built by methods which modify the map, so concurrent
+   * readers of an unchanging map never see a table being built.
+   */
+  private transient byte[] slots;
+
+  private static final Class<?>[] EMPTY_KEYS = new Class<?>[0];
+  private static final Object[] EMPTY_VALUES = new Object[0];
+
   /**
    * Default constructor - initializes with default initial annotation
    * capacity of 4.
@@ -64,8 +89,14 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
    * @param capacity Initial capacity of object in key,value pairs
    */
   public ArrayCoreMap(int capacity) {
-    keys = ErasureUtils.uncheckedCast(new Class[capacity]);
-    values = new Object[capacity];
+    if (capacity == 0) {
+      // empty arrays are immutable, so every empty map can share them
+      keys = ErasureUtils.uncheckedCast(EMPTY_KEYS);
+      values = EMPTY_VALUES;
+    } else {
+      keys = ErasureUtils.uncheckedCast(new Class[capacity]);
+      values = new Object[capacity];
+    }
     // size starts at 0
   }
 
@@ -73,10 +104,25 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
    * Copy constructor.
    * @param other The ArrayCoreMap to copy. It may not be null.
    */
+  @SuppressWarnings("unchecked")
   public ArrayCoreMap(ArrayCoreMap other) {
-    size = other.size;
-    keys = Arrays.copyOf(other.keys, size);
-    values = Arrays.copyOf(other.values, size);
+    if (other.size() == other.size) {
+      size = other.size;
+      keys = Arrays.copyOf(other.keys, size);
+      values = Arrays.copyOf(other.values, size);
+    } else {
+      // a subclass keeping some of its entries outside the arrays
+      size = other.size();
+      keys = new Class[size];
+      values = new Object[size];
+      int i = 0;
+      for (Class key : other.keySet()) {
+        keys[i] = key;
+        values[i] = other.get(key);
+        i++;
+      }
+    }
+    rebuildSlots();
   }
 
   /**
@@ -97,6 +143,7 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
       this.values[i] = other.get(key);
       i++;
     }
+    rebuildSlots();
   }
 
   /**
@@ -105,28 +152,68 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
   @Override
   @SuppressWarnings("unchecked")
   public <VALUE> VALUE get(Class<? extends Key<VALUE>> key) {
-    for (int i = 0; i < size; i++) {
-      if (key == keys[i]) {
-        return (VALUE)values[i];
+    int i = indexOf(key);
+    return i < 0 ? null : (VALUE) values[i];
+  }
+
+  /**
+   * Returns the position of the given key in the arrays, or -1 if absent.
+   */
+  private int indexOf(Class<?> key) {
+    byte[] table = slots;
+    if (table == null) {
+      for (int i = 0; i < size; i++) {
+        if (keys[i] == key) {
+          return i;
+        }
+      }
+      return -1;
+    }
+    int mask = table.length - 1;
+    for (int h = TypesafeMapKeys.id(key) & mask; ; h = (h + 1) & mask) {
+      int position = table[h] & 0xff;
+      if (position == 0) {
+        return -1;
+      }
+      if (keys[position - 1] == key) {
+        return position - 1;
       }
     }
-    return null;
   }
 
+  /**
+   * Makes the slot table match the arrays: builds it for a map too large
+   * to search linearly, and drops it for a small one.  The table is at
+   * least twice the size of the map, so there is always an empty slot.
+   */
+  private void rebuildSlots() {
+    if (size <= LINEAR_SEARCH_MAX || size > 255) {
+      slots = null;
+      return;
+    }
+    int length = Integer.highestOneBit(size) << 2;
+    byte[] table = new byte[length];
+    for (int i = 0; i < size; i++) {
+      insertSlot(table, keys[i], i);
+    }
+    slots = table;
+  }
 
+  private static void insertSlot(byte[] table, Class<?> key, int position) {
+    int mask = table.length - 1;
+    int h = TypesafeMapKeys.id(key) & mask;
+    while (table[h] != 0) {
+      h = (h + 1) & mask;
+    }
+    table[h] = (byte) (position + 1);
+  }
 
   /**
    * {@inheritDoc}
    */
   @Override
   public <VALUE> boolean has(Class<? extends Key<VALUE>> key) {
-    for (int i = 0; i < size; i++) {
-      if (keys[i] == key) {
-        return true;
-      }
-    }
-
-    return false;
+    return indexOf(key) >= 0;
   }
 
   /**
@@ -137,12 +224,11 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
   public <VALUE> VALUE set(Class<? extends Key<VALUE>> key, VALUE value) {
 
     // search array for existing value to replace
-    for (int i = 0; i < size; i++) {
-      if (keys[i] == key) {
-        VALUE rv = (VALUE)values[i];
-        values[i] = value;
-        return rv;
-      }
+    int i = indexOf(key);
+    if (i >= 0) {
+      VALUE rv = (VALUE)values[i];
+      values[i] = value;
+      return rv;
     }
     // not found in arrays, add to end ...
 
@@ -162,6 +248,12 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
     values[size] = value;
     size++;
 
+    if (slots != null && size * 2 <= slots.length) {
+      insertSlot(slots, key, size - 1);
+    } else if (size > LINEAR_SEARCH_MAX) {
+      rebuildSlots();
+    }
+
     return null;
   }
 
@@ -214,16 +306,16 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
   public <VALUE> VALUE remove(Class<? extends Key<VALUE>> key) {
 
     Object rv = null;
-    for (int i = 0; i < size; i++) {
-      if (keys[i] == key) {
-        rv = values[i];
-        if (i < size - 1) {
-          System.arraycopy(keys,   i+1, keys,   i, size-(i+1));
-          System.arraycopy(values, i+1, values, i, size-(i+1));
-        }
-        size--;
-        break;
+    int i = indexOf(key);
+    if (i >= 0) {
+      rv = values[i];
+      if (i < size - 1) {
+        System.arraycopy(keys,   i+1, keys,   i, size-(i+1));
+        System.arraycopy(values, i+1, values, i, size-(i+1));
       }
+      size--;
+      // the positions of the later keys have changed
+      rebuildSlots();
     }
     return (VALUE)rv;
   }
@@ -233,12 +325,7 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
    */
   @Override
   public <VALUE> boolean containsKey(Class<? extends Key<VALUE>> key) {
-    for (int i = 0; i < size; i++) {
-      if (keys[i] == key) {
-        return true;
-      }
-    }
-    return false;
+    return indexOf(key) >= 0;
   }
 
 
@@ -495,6 +582,7 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
   }
 
 
+  @SuppressWarnings("unchecked")
   private boolean equals(ArrayCoreMap other) {
     TwoDimensionalMap<CoreMap, CoreMap, Boolean> calledMap = equalsCalled.get();
     boolean createdCalledMap = (calledMap == null);
@@ -518,28 +606,20 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
     calledMap.put(this, other, true);
     calledMap.put(other, this, true);
 
-    if (this.size != other.size) {
+    // other is accessed through its methods rather than its arrays, as
+    // subclasses may keep some entries elsewhere (see CompactTokenList)
+    if (this.size != other.size()) {
       result = false;
     } else {
     for (int i = 0; i < this.size; i++) {
       // test if other contains this key,value pair
-      boolean matched = false;
-      for (int j = 0; j < other.size; j++) {
-        if (this.keys[i] == other.keys[j]) {
-          if ((this.values[i] == null && other.values[j] != null) ||
-              (this.values[i] != null && other.values[j] == null)) {
-            matched = false;
-            break;
-          }
-
-          if ((this.values[i] == null && other.values[j] == null) ||
-              (this.values[i].equals(other.values[j]))) {
-            matched = true;
-            break;
-          }
-        }
+      Class key = this.keys[i];
+      if ( ! other.has(key)) {
+        result = false;
+        break;
       }
-
+      Object otherValue = other.get(key);
+      boolean matched = (this.values[i] == null) ? (otherValue == null) : this.values[i].equals(otherValue);
       if (!matched) {
         result = false;
         break;
@@ -622,6 +702,11 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
     out.defaultWriteObject();
   }
 
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    rebuildSlots();
+  }
+
   // TODO: make prettyLog work in the situation of loops
   // in the object graph
 
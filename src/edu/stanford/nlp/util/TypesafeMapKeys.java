@@ -0,0 +1,36 @@
+package edu.stanford.nlp.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Assigns each key class of a {@link TypesafeMap} a small integer id,
+ * in the order in which the keys are first used.  The ids are dense, so
+ * maps can use them to index or hash their keys without calling
+ * {@link Class#hashCode()}, and they stay fixed for the life of the JVM
+ * (but are not the same from one run to the next, so they should not be
+ * serialized).
+ */
+public class TypesafeMapKeys {
+
+  private static final AtomicInteger nextId = new AtomicInteger();
+
+  private static final ClassValue<Integer> ids = new ClassValue<Integer>() {
+    @Override
+    protected Integer computeValue(Class<?> key) {
+      return nextId.getAndIncrement();
+    }
+  };
+
+  private TypesafeMapKeys() {} // static methods only
+
+  /** Returns the id of the given key class, assigning one if it has none yet. */
+  public static int id(Class<?> key) {
+    return ids.get(key);
+  }
+
+  /** The number of ids assigned so far; all ids are smaller than this. */
+  public static int size() {
+    return nextId.get();
+  }
+
+}
@@ -0,0 +1,172 @@
+package edu.stanford.nlp.util.concurrent;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import edu.stanford.nlp.util.Generics;
+
+/**
+ * A bounded cache which many threads can read and fill at once.  Lookups
+ * go straight to a concurrent hash map without locking.  When the cache is
+ * full, adding an entry evicts another, chosen by the CLOCK algorithm: the
+ * entries sit in a ring which a hand sweeps round, evicting the first
+ * entry which has not been read since the hand last passed it.  This
+ * approximates least recently used eviction, but a read only sets a flag
+ * rather than reordering a list, so readers never contend for a lock.
+ * <br>
+ * The cache counts its hits, misses and evictions.  The counters are
+ * striped over threads, so that counting does not make every reader write
+ * the same memory.
+ * <br>
+ * Values are shared between all the threads which read them, so they
+ * should not be changed once they are in the cache.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class ConcurrentClockCache<K,V> {
+
+  private static final int STRIPES = 16;
+  // longs per stripe: a counter's neighbors in other stripes are a cache line away
+  private static final int STRIDE = 8;
+  private static final int HITS = 0, MISSES = 1, EVICTIONS = 2;
+
+  private static class Entry<K,V> {
+    final K key;
+    final V value;
+    volatile boolean referenced; // = false;
+
+    Entry(K key, V value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+
+  private final int capacity;
+  private final ConcurrentMap<K, Entry<K,V>> map;
+  private final Entry<K,V>[] ring; // guarded by this
+  private int hand; // guarded by this
+  private final AtomicLongArray counts = new AtomicLongArray(STRIPES * STRIDE);
+
+  @SuppressWarnings("unchecked")
+  public ConcurrentClockCache(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("A cache must have room for at least one entry: " + capacity);
+    }
+    this.capacity = capacity;
+    this.map = Generics.newConcurrentHashMap(capacity + capacity / 3 + 1);
+    this.ring = (Entry<K,V>[]) new Entry[capacity];
+  }
+
+  private void count(int counter) {
+    int stripe = (int) (Thread.currentThread().getId() & (STRIPES - 1));
+    counts.incrementAndGet(stripe * STRIDE + counter);
+  }
+
+  private long total(int counter) {
+    long total = 0;
+    for (int stripe = 0; stripe < STRIPES; stripe++) {
+      total += counts.get(stripe * STRIDE + counter);
+    }
+    return total;
+  }
+
+  /** The value cached for the key, or null if there is none. */
+  public V get(K key) {
+    Entry<K,V> entry = map.get(key);
+    if (entry == null) {
+      count(MISSES);
+      return null;
+    }
+    if ( ! entry.referenced) {
+      entry.referenced = true;
+    }
+    count(HITS);
+    return entry.value;
+  }
+
+  /**
+   * Caches the value for the key, unless a value is already cached for
+   * it, evicting another entry if the cache is full.
+   *
+   * @return The value now cached for the key: the given value, or the one
+   *     which was already there
+   */
+  public V putIfAbsent(K key, V value) {
+    Entry<K,V> entry = new Entry<K,V>(key, value);
+    Entry<K,V> previous = map.putIfAbsent(key, entry);
+    if (previous != null) {
+      return previous.value;
+    }
+    synchronized (this) {
+      while (ring[hand] != null) {
+        Entry<K,V> victim = ring[hand];
+        if (victim.referenced) {
+          victim.referenced = false;
+          hand = (hand + 1) % capacity;
+        } else {
+          map.remove(victim.key, victim);
+          count(EVICTIONS);
+          break;
+        }
+      }
+      ring[hand] = entry;
+      hand = (hand + 1) % capacity;
+    }
+    return value;
+  }
+
+  /** Empties the cache.  The statistics are kept. */
+  public synchronized void clear() {
+    for (int i = 0; i < capacity; i++) {
+      if (ring[i] != null) {
+        map.remove(ring[i].key, ring[i]);
+        ring[i] = null;
+      }
+    }
+    hand = 0;
+  }
+
+  /** The maximum number of entries. */
+  public int capacity() {
+    return capacity;
+  }
+
+  /** The number of entries now in the cache. */
+  public int size() {
+    return map.size();
+  }
+
+  public long hits() {
+    return total(HITS);
+  }
+
+  public long misses() {
+    return total(MISSES);
+  }
+
+  public long evictions() {
+    return total(EVICTIONS);
+  }
+
+  /** The fraction of lookups which found a value, or 0 if there have been none. */
+  public double hitRate() {
+    long hits = hits();
+    long lookups = hits + misses();
+    return lookups == 0 ? 0.0 : (double) hits / lookups;
+  }
+
+  /** Sets the hits, misses and evictions back to zero. */
+  public void resetStatistics() {
+    for (int i = 0; i < counts.length(); i++) {
+      counts.set(i, 0);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d of %d entries, %d hits, %d misses (hit rate %.1f%%), %d evictions",
+                         size(), capacity, hits(), misses(), 100.0 * hitRate(), evictions());
+  }
+
+}
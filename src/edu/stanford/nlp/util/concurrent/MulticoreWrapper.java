@@ -9,6 +9,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.PriorityBlockingQueue;
@@ -20,6 +21,11 @@ import java.util.concurrent.TimeUnit;
  * Provides convenient multicore processing for threadsafe objects. Objects that can
  * be wrapped by MulticoreWrapper must implement the ThreadsafeProcessor interface.
  *
+ * By default each wrapper runs its own thread pool, which is shut down by
+ * join().  Alternatively, wrappers can run their jobs on an executor shared
+ * with other components, such as the {@link SharedThreadPool}, in which case
+ * the wrapper merely limits itself to nThreads jobs in the pool at once.
+ *
  * See edu.stanford.nlp.util.concurrent.MulticoreWrapperTest and
  * edu.stanford.nlp.tagger.maxent.documentation.MulticoreWrapperDemo for examples of use.
  *
@@ -44,7 +50,9 @@ public class MulticoreWrapper<I,O> {
   private final boolean orderResults;
 
   private final PriorityBlockingQueue<QueueItem<O>> outputQueue;
-  private final ThreadPoolExecutor threadPool;
+  private final ExecutorService threadPool;
+  // false if the thread pool is shared with other clients, and so must not be shut down
+  private final boolean ownsThreadPool;
   private final ExecutorCompletionService<JobResult<O>> queue;
   private final Queue<Integer> idleProcessors;
   private final List<ThreadsafeProcessor<I,O>> processorList;
@@ -73,19 +81,45 @@ public class MulticoreWrapper<I,O> {
    *                        as they become available.
    */
   public MulticoreWrapper(int numThreads, ThreadsafeProcessor<I,O> processor, boolean orderResults) {
-    nThreads = numThreads <= 0 ? Runtime.getRuntime().availableProcessors() : numThreads;
+    this(numThreads, processor, orderResults, null);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param numThreads -- if less than or equal to 0, then automatically determine the number
+   *                    of threads. Otherwise, the maximum number of jobs this wrapper runs at once.
+   * @param processor
+   * @param orderResults -- If true, return results in the order submitted. Otherwise, return results
+   *                        as they become available.
+   * @param executor -- An executor shared with other clients, which is not shut down by join(),
+   *                    or null to create a thread pool for this wrapper alone.  If this is the
+   *                    {@link SharedThreadPool}, numThreads is capped at its parallelism.
+   */
+  public MulticoreWrapper(int numThreads, ThreadsafeProcessor<I,O> processor, boolean orderResults, ExecutorService executor) {
+    int n = numThreads <= 0 ? Runtime.getRuntime().availableProcessors() : numThreads;
+    if (SharedThreadPool.isSharedPool(executor)) {
+      n = Math.min(n, SharedThreadPool.parallelism());
+    }
+    nThreads = n;
     this.orderResults = orderResults;
     outputQueue = new PriorityBlockingQueue<QueueItem<O>>(10*nThreads);
-    threadPool = (ThreadPoolExecutor) Executors.newFixedThreadPool(nThreads);
+    if (executor == null) {
+      ThreadPoolExecutor pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(nThreads);
+      // Sanity check: Fixed thread pool so prevent timeouts.
+      // Default should be false
+      pool.allowCoreThreadTimeOut(false);
+      threadPool = pool;
+      ownsThreadPool = true;
+    } else {
+      threadPool = executor;
+      ownsThreadPool = false;
+    }
     queue = new ExecutorCompletionService<JobResult<O>>(threadPool);
     processorList = new ArrayList<ThreadsafeProcessor<I,O>>(nThreads);
     idleProcessors = new ConcurrentLinkedQueue<Integer>();
     runningJobs = new HashMap<Integer, Future<JobResult<O>>>();
 
-    // Sanity check: Fixed thread pool so prevent timeouts.
-    // Default should be false
-    threadPool.allowCoreThreadTimeOut(false);
-
     // Setup the processors, one per thread
     processorList.add(processor);
     idleProcessors.add(0);
@@ -108,6 +142,11 @@ public class MulticoreWrapper<I,O> {
    */
   @Override
   public String toString() {
+    if ( ! (threadPool instanceof ThreadPoolExecutor)) {
+      return String.format("shared: %s  running: %d/%d  output_q: %d  idle_q: %d",
+          threadPool, runningJobs.size(), nThreads, outputQueue.size(), idleProcessors.size());
+    }
+    ThreadPoolExecutor threadPool = (ThreadPoolExecutor) this.threadPool;
     return String.format("active: %d/%d  submitted: %d  completed: %d  input_q: %d  output_q: %d  idle_q: %d",
         threadPool.getActiveCount(),
         threadPool.getPoolSize(),
@@ -132,6 +171,13 @@ public class MulticoreWrapper<I,O> {
     if (idleProcessors.peek() == null) blockingGetResult();
     int procId = idleProcessors.poll();
     int itemId = lastSubmittedItemId++;
+    if ( ! ownsThreadPool && SharedThreadPool.isWorkerThread()) {
+      // Already running on a shared pool thread: waiting here for other
+      // shared threads could deadlock the pool, so do the work inline
+      outputQueue.add(new QueueItem<O>(processorList.get(procId).process(item), itemId));
+      idleProcessors.add(procId);
+      return;
+    }
     CallableJob<I,O> job = new CallableJob<I,O>(item, itemId, processorList.get(procId), procId);
     Future<JobResult<O>> future = queue.submit(job);
     runningJobs.put(itemId, future);
@@ -158,10 +204,10 @@ public class MulticoreWrapper<I,O> {
         return;
       }
     } catch (InterruptedException e) {
-      threadPool.shutdownNow();
+      abort();
       throw new RuntimeException(e);
     } catch (ExecutionException e) {
-      threadPool.shutdownNow();
+      abort();
       throw new RuntimeException(e);
     }
 
@@ -185,6 +231,20 @@ public class MulticoreWrapper<I,O> {
     }
   }
 
+  /**
+   * Stops all running jobs after an error.  A shared executor is left
+   * running for its other clients.
+   */
+  private void abort() {
+    if (ownsThreadPool) {
+      threadPool.shutdownNow();
+    } else {
+      for (Future<JobResult<O>> job : runningJobs.values()) {
+        job.cancel(true);
+      }
+    }
+  }
+
   /**
    * Blocks until all active processes finish.
    */
@@ -194,7 +254,9 @@ public class MulticoreWrapper<I,O> {
       while(idleProcessors.size() != nThreads) {
         blockingGetResult();
       }
-      threadPool.shutdown();
+      if (ownsThreadPool) {
+        threadPool.shutdown();
+      }
     }
   }
 
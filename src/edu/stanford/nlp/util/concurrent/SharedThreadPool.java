@@ -0,0 +1,98 @@
+package edu.stanford.nlp.util.concurrent;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * A single, process-wide, work-stealing thread pool which multithreaded
+ * components can share instead of each creating (and tearing down) their
+ * own threads.  The pool has a fixed parallelism, which caps the number of
+ * threads busy on shared work across the whole JVM, so that configuring
+ * several multithreaded annotators does not oversubscribe the cores.
+ * <br>
+ * Clients normally use the pool through a {@link MulticoreWrapper}
+ * constructed with {@link #getInstance()}.  A wrapper never has more jobs
+ * in the pool than its own thread count, which is itself capped at
+ * {@link #parallelism()}; together with the first-in, first-out handling of
+ * submitted jobs, this keeps one client from starving the others.
+ * <br>
+ * The parallelism defaults to the number of available processors and can
+ * be changed with {@link #setParallelism(int)} before the pool is first used.
+ * The pool threads are daemon threads, so the pool never needs shutting down.
+ */
+public class SharedThreadPool {
+
+  private static int parallelism = Runtime.getRuntime().availableProcessors();
+
+  private static ForkJoinPool pool = null;
+
+  private SharedThreadPool() {} // static methods only
+
+  /**
+   * Returns the shared pool, creating it on first use.
+   */
+  public static synchronized ExecutorService getInstance() {
+    if (pool == null) {
+      ForkJoinPool.ForkJoinWorkerThreadFactory factory = new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+          ForkJoinWorkerThread thread = new SharedWorkerThread(pool);
+          thread.setDaemon(true);
+          return thread;
+        }
+      };
+      // asyncMode gives FIFO handling of jobs which are never joined, which is all of ours
+      pool = new ForkJoinPool(parallelism, factory, null, true);
+    }
+    return pool;
+  }
+
+  /**
+   * Sets the maximum number of threads of the shared pool.  Once the pool
+   * has been created its size cannot change, so a different size asked
+   * for then (say by a second pipeline with other properties) only gets a
+   * warning, and the pool keeps running as it is.
+   *
+   * @param numThreads The number of threads, or a value less than or equal to 0
+   *                   for the number of available processors
+   */
+  public static synchronized void setParallelism(int numThreads) {
+    int newParallelism = numThreads <= 0 ? Runtime.getRuntime().availableProcessors() : numThreads;
+    if (pool != null) {
+      if (newParallelism != parallelism) {
+        System.err.println("WARNING: shared thread pool already running with " + parallelism +
+                           " threads; ignoring request for " + newParallelism);
+      }
+      return;
+    }
+    parallelism = newParallelism;
+  }
+
+  /** The maximum number of threads the shared pool will run at once. */
+  public static synchronized int parallelism() {
+    return parallelism;
+  }
+
+  /** Whether the given executor is the shared pool. */
+  public static synchronized boolean isSharedPool(ExecutorService executor) {
+    return executor != null && executor == pool;
+  }
+
+  /**
+   * Whether the current thread is one of the shared pool's threads.
+   * Work submitted to the pool from one of its own threads and then waited
+   * for could deadlock the pool, so such work should be done inline.
+   */
+  public static boolean isWorkerThread() {
+    return Thread.currentThread() instanceof SharedWorkerThread;
+  }
+
+  private static class SharedWorkerThread extends ForkJoinWorkerThread {
+    SharedWorkerThread(ForkJoinPool pool) {
+      super(pool);
+      setName("SharedThreadPool-" + getPoolIndex());
+    }
+  }
+
+}
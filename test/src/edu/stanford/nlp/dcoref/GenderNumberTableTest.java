@@ -0,0 +1,114 @@
+package edu.stanford.nlp.dcoref;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import edu.stanford.nlp.dcoref.Dictionaries.Gender;
+import edu.stanford.nlp.util.Generics;
+
+import junit.framework.TestCase;
+
+public class GenderNumberTableTest extends TestCase {
+
+  private static GenderNumberTable saveAndLoad(Map<List<String>, Gender> genders) throws Exception {
+    File file = File.createTempFile("gender", ".table");
+    file.deleteOnExit();
+    GenderNumberTable.save(genders, file.getPath());
+    assertTrue(GenderNumberTable.isGenderNumberTable(file.getPath()));
+    return GenderNumberTable.load(file.getPath());
+  }
+
+  public void testRoundTrip() throws Exception {
+    Map<List<String>, Gender> genders = Generics.newHashMap();
+    genders.put(Arrays.asList("john"), Gender.MALE);
+    genders.put(Arrays.asList("mary"), Gender.FEMALE);
+    genders.put(Arrays.asList("the", "company"), Gender.NEUTRAL);
+    genders.put(Arrays.asList("dr.", "!"), Gender.MALE);
+    genders.put(Arrays.asList("josé", "garcía"), Gender.MALE);
+    genders.put(Arrays.asList("", "x"), Gender.FEMALE);
+    genders.put(Arrays.asList("x", ""), Gender.NEUTRAL);
+    GenderNumberTable table = saveAndLoad(genders);
+
+    assertEquals(genders.size(), table.size());
+    assertEquals(genders, table);
+    assertEquals(table, genders);
+    for (Map.Entry<List<String>, Gender> entry : genders.entrySet()) {
+      assertTrue(table.containsKey(new ArrayList<String>(entry.getKey())));
+      assertEquals(entry.getValue(), table.get(entry.getKey()));
+    }
+
+    List<String> mention = Arrays.asList("yesterday", "the", "company");
+    assertEquals(Gender.NEUTRAL, table.get(mention.subList(1, 3)));
+    assertNull(table.get(mention.subList(0, 2)));
+    assertNull(table.get(Arrays.asList("the company")));
+    assertNull(table.get(Arrays.asList("the", "company", "")));
+    assertNull(table.get(Arrays.asList("x")));
+    assertNull(table.get(Collections.emptyList()));
+    assertNull(table.get(Arrays.asList(1, 2)));
+    assertNull(table.get("john"));
+    assertFalse(table.containsKey(Arrays.asList("jon")));
+  }
+
+  /**
+   * Lists of one token and of two whose hashes and joined lengths are
+   * the same, so only the char between the tokens tells them apart.
+   */
+  public void testSeparator() throws Exception {
+    List<String> oneToken = Arrays.asList("a\u03a2");
+    List<String> twoTokens = Arrays.asList("a", "");
+    assertEquals(oneToken.hashCode(), twoTokens.hashCode());
+
+    Map<List<String>, Gender> genders = Generics.newHashMap();
+    genders.put(oneToken, Gender.MALE);
+    GenderNumberTable table = saveAndLoad(genders);
+    assertEquals(Gender.MALE, table.get(oneToken));
+    assertNull(table.get(twoTokens));
+    assertFalse(table.containsKey(twoTokens));
+
+    genders.clear();
+    genders.put(twoTokens, Gender.FEMALE);
+    table = saveAndLoad(genders);
+    assertEquals(Gender.FEMALE, table.get(twoTokens));
+    assertNull(table.get(oneToken));
+  }
+
+  public void testEmpty() throws Exception {
+    GenderNumberTable table = saveAndLoad(Collections.<List<String>, Gender>emptyMap());
+    assertEquals(0, table.size());
+    assertTrue(table.isEmpty());
+    assertNull(table.get(Arrays.asList("john")));
+  }
+
+  public void testBadPhrase() throws Exception {
+    Map<List<String>, Gender> genders = Generics.newHashMap();
+    genders.put(Arrays.asList("the company"), Gender.NEUTRAL);
+    try {
+      saveAndLoad(genders);
+      fail("A token with a space cannot be stored");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  public void testFromText() throws Exception {
+    File text = File.createTempFile("gender", ".txt");
+    text.deleteOnExit();
+    PrintWriter out = new PrintWriter(text, "UTF-8");
+    out.println("john\t90 2 1 0");
+    out.println("mary\t1 80 3 0");
+    out.println("the company\t0 1 50 9");
+    out.println("pat\t10 10 1 0");
+    out.close();
+
+    Map<List<String>, Gender> genders = Dictionaries.readGenderNumber(text.getPath());
+    assertEquals(3, genders.size());
+    assertFalse(GenderNumberTable.isGenderNumberTable(text.getPath()));
+    assertEquals(genders, saveAndLoad(genders));
+  }
+
+}
@@ -0,0 +1,123 @@
+package edu.stanford.nlp.dcoref;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.stanford.nlp.dcoref.Dictionaries.Animacy;
+import edu.stanford.nlp.dcoref.Dictionaries.Gender;
+import edu.stanford.nlp.dcoref.Dictionaries.MentionType;
+import edu.stanford.nlp.dcoref.Dictionaries.Number;
+import edu.stanford.nlp.dcoref.sievepasses.ExactStringMatch;
+import edu.stanford.nlp.dcoref.sievepasses.PronounMatch;
+import edu.stanford.nlp.dcoref.sievepasses.RelaxedExactStringMatch;
+import edu.stanford.nlp.dcoref.sievepasses.StrictHeadMatch1;
+import edu.stanford.nlp.dcoref.sievepasses.StrictHeadMatch3;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.util.Generics;
+
+import junit.framework.TestCase;
+
+public class MentionIndexTest extends TestCase {
+
+  private static int nextID = 0;
+
+  /** A mention of words tagged word/TAG, with the head at headPosition. */
+  private static Mention mention(String text, int headPosition, String ner, MentionType type) {
+    List<CoreLabel> span = new ArrayList<CoreLabel>();
+    for (String token : text.split(" ")) {
+      int slash = token.lastIndexOf('/');
+      CoreLabel word = new CoreLabel();
+      word.set(CoreAnnotations.TextAnnotation.class, token.substring(0, slash));
+      word.set(CoreAnnotations.PartOfSpeechAnnotation.class, token.substring(slash + 1));
+      span.add(word);
+    }
+    int id = nextID++;
+    Mention m = new Mention(id, 0, span.size(), null, span);
+    m.headIndex = headPosition;
+    m.headWord = span.get(headPosition);
+    m.headString = m.headWord.get(CoreAnnotations.TextAnnotation.class).toLowerCase();
+    m.nerString = ner;
+    m.mentionType = type;
+    m.number = Number.SINGULAR;
+    m.gender = Gender.UNKNOWN;
+    m.animacy = Animacy.UNKNOWN;
+    m.corefClusterID = id;
+    m.spanToString();
+    return m;
+  }
+
+  private final Mention johnSmith = mention("John/NNP Smith/NNP", 1, "PERSON", MentionType.PROPER);
+  private final Mention company = mention("the/DT company/NN", 1, "O", MentionType.NOMINAL);
+  private final Mention smiths = mention("Smith/NNP 's/POS", 0, "PERSON", MentionType.PROPER);
+  private final Mention acme = mention("Acme/NNP Corp./NNP", 1, "ORGANIZATION", MentionType.PROPER);
+  private final Mention bickford = mention("Mr./NNP Bickford/NNP ,/, a/DT veteran/NN", 1, "PERSON", MentionType.PROPER);
+  private final Mention johnSmith2 = mention("John/NNP Smith/NNP", 1, "PERSON", MentionType.PROPER);
+  private final Mention newCompany = mention("a/DT new/JJ company/NN", 2, "O", MentionType.NOMINAL);
+  private final Mention bickford2 = mention("Mr./NNP Bickford/NNP", 1, "PERSON", MentionType.PROPER);
+
+  private final List<List<Mention>> sentences = Arrays.asList(
+      Arrays.asList(johnSmith, company),
+      Arrays.asList(smiths, acme, bickford),
+      Arrays.asList(johnSmith2, newCompany, bickford2));
+
+  private Map<Integer, CorefCluster> clusters() {
+    Map<Integer, CorefCluster> clusters = Generics.newHashMap();
+    for (List<Mention> sentence : sentences) {
+      for (Mention m : sentence) {
+        clusters.put(m.mentionID, new CorefCluster(m.mentionID, Collections.singleton(m)));
+      }
+    }
+    // the company was found to be Acme Corp.
+    clusters.remove(acme.mentionID);
+    acme.corefClusterID = company.corefClusterID;
+    clusters.put(company.mentionID, new CorefCluster(company.mentionID, Generics.newHashSet(Arrays.asList(company, acme))));
+    return clusters;
+  }
+
+  public void testLookups() {
+    MentionIndex index = new MentionIndex(sentences);
+    assertEquals(Arrays.asList(johnSmith, johnSmith2), index.withSpanOrPossessive("john smith"));
+    assertEquals(Arrays.asList(smiths), index.withSpanOrPossessive("smith"));
+    assertEquals(Arrays.asList(smiths), index.withSpanOrPossessive("smith 's 's"));
+    assertEquals(Collections.<Mention>emptyList(), index.withSpanOrPossessive("jones"));
+
+    assertEquals("Mr. Bickford", index.relaxedSpan(bickford));
+    assertEquals(Arrays.asList(bickford, bickford2), index.withRelaxedSpanOrPossessive("Mr. Bickford"));
+
+    assertEquals(Arrays.asList(company, newCompany), index.withHead("company"));
+    assertEquals(Arrays.asList(acme), index.withNer("ORGANIZATION"));
+    assertEquals(Collections.<Mention>emptyList(), index.withNer("O"));
+    assertEquals(sentences.get(1), index.inSentenceOf(acme));
+
+    BitSet expected = new BitSet();
+    expected.set(0);
+    expected.set(2);
+    assertEquals(expected, index.sentencesOf(Arrays.asList(company, johnSmith2)));
+  }
+
+  public void testCandidateAntecedents() {
+    MentionIndex index = new MentionIndex(sentences);
+    Map<Integer, CorefCluster> clusters = clusters();
+
+    // exact string match finds the mentions with the same strings
+    Set<Mention> candidates = new ExactStringMatch().candidateAntecedents(index, clusters.get(johnSmith2.corefClusterID), clusters);
+    assertEquals(Generics.newHashSet(Arrays.asList(johnSmith, johnSmith2)), candidates);
+    candidates = new RelaxedExactStringMatch().candidateAntecedents(index, clusters.get(bickford2.corefClusterID), clusters);
+    assertEquals(Generics.newHashSet(Arrays.asList(bickford, bickford2)), candidates);
+
+    // head match finds whole clusters with the head, and the nested mentions of the mention's own sentence
+    candidates = new StrictHeadMatch1().candidateAntecedents(index, clusters.get(newCompany.corefClusterID), clusters);
+    assertEquals(Generics.newHashSet(Arrays.asList(company, acme, johnSmith2, newCompany, bickford2)), candidates);
+
+    // sieves whose tests record incompatible pairs test every antecedent
+    assertNull(new StrictHeadMatch3().candidateAntecedents(index, clusters.get(newCompany.corefClusterID), clusters));
+    assertNull(new PronounMatch().candidateAntecedents(index, clusters.get(newCompany.corefClusterID), clusters));
+  }
+
+}
@@ -0,0 +1,102 @@
+package edu.stanford.nlp.ie.crf;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import edu.stanford.nlp.ling.CoreLabel;
+
+import junit.framework.TestCase;
+
+public class CRFClassifierRegistryTest extends TestCase {
+
+  private File model;
+  private List<List<String>> expected;
+
+  @Override
+  protected void setUp() throws Exception {
+    CRFClassifier<CoreLabel> crf = CRFClassifierTest.trainTinyClassifier();
+    model = File.createTempFile("crf", ".ser.gz");
+    model.deleteOnExit();
+    crf.serializeClassifier(model.getPath());
+    expected = new ArrayList<List<String>>();
+    for (String text : CRFClassifierTest.TEST) {
+      expected.add(CRFClassifierTest.answers(crf.classify(CRFClassifierTest.document(text))));
+    }
+  }
+
+  @Override
+  protected void tearDown() {
+    CRFClassifierRegistry.clear();
+  }
+
+  public void testSharedAndFrozen() throws Exception {
+    CRFClassifier<CoreLabel> crf = CRFClassifierRegistry.getClassifier(model.getPath());
+    assertSame(crf, CRFClassifierRegistry.getClassifier(model.getPath()));
+    assertSame(crf, CRFClassifierRegistry.getClassifier(model.getPath(), new Properties()));
+    assertTrue(crf.isFrozen());
+    try {
+      crf.scaleWeights(2.0);
+      fail("A frozen classifier should not change");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    // still usable after the failed change
+    assertEquals(expected.get(0), CRFClassifierTest.answers(crf.classify(CRFClassifierTest.document(CRFClassifierTest.TEST[0]))));
+
+    Properties props = new Properties();
+    props.setProperty("compactWeights", "float");
+    CRFClassifier<CoreLabel> compact = CRFClassifierRegistry.getClassifier(model.getPath(), props);
+    assertNotSame(crf, compact);
+    assertNotNull(compact.compactWeights);
+    assertTrue(CRFClassifierRegistry.isLoaded(model.getPath(), props));
+
+    CRFClassifierRegistry.remove(model.getPath(), props);
+    assertFalse(CRFClassifierRegistry.isLoaded(model.getPath(), props));
+    assertNotSame(compact, CRFClassifierRegistry.getClassifier(model.getPath(), props));
+  }
+
+  public void testMissingModel() throws Exception {
+    String path = model.getPath() + ".missing";
+    try {
+      CRFClassifierRegistry.getClassifier(path);
+      fail("Loading a missing model should fail");
+    } catch (Exception e) {
+      // expected
+    }
+    assertFalse(CRFClassifierRegistry.isLoaded(path, null));
+  }
+
+  /** Many threads classifying with the one shared classifier get the answers of a private one. */
+  public void testThreads() throws Exception {
+    final CRFClassifier<CoreLabel> crf = CRFClassifierRegistry.getClassifier(model.getPath());
+    final List<Throwable> failures = new ArrayList<Throwable>();
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            for (int iter = 0; iter < 50; iter++) {
+              for (int i = 0; i < CRFClassifierTest.TEST.length; i++) {
+                List<String> answers = CRFClassifierTest.answers(crf.classify(CRFClassifierTest.document(CRFClassifierTest.TEST[i])));
+                assertEquals(expected.get(i), answers);
+              }
+            }
+          } catch (Throwable e) {
+            synchronized (failures) {
+              failures.add(e);
+            }
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertTrue(failures.toString(), failures.isEmpty());
+  }
+
+}
@@ -0,0 +1,379 @@
+package edu.stanford.nlp.ie.crf;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.util.Triple;
+
+import junit.framework.TestCase;
+
+public class CRFClassifierTest extends TestCase {
+
+  private static final String[] TRAIN = {
+    "John/PERSON Smith/PERSON lives/O in/O Paris/LOCATION ./O",
+    "Mary/PERSON works/O for/O Acme/ORGANIZATION Corp./ORGANIZATION in/O London/LOCATION ./O",
+    "The/O company/O Acme/ORGANIZATION hired/O John/PERSON ./O",
+    "Paris/LOCATION and/O London/LOCATION are/O cities/O ./O",
+    "Smith/PERSON met/O Mary/PERSON Jones/PERSON in/O Berlin/LOCATION ./O",
+    "Globex/ORGANIZATION opened/O an/O office/O in/O Berlin/LOCATION ./O",
+  };
+
+  static final String[] TEST = {
+    "Mary/PERSON Smith/PERSON moved/O to/O Berlin/LOCATION ./O",
+    "John/PERSON Jones/PERSON works/O for/O Globex/ORGANIZATION in/O Paris/LOCATION ./O",
+    "Acme/ORGANIZATION Corp./ORGANIZATION hired/O Bob/PERSON ./O",
+  };
+
+  /** Makes a document of words with gold answers from tokens of the form word/answer. */
+  static List<CoreLabel> document(String text) {
+    List<CoreLabel> document = new ArrayList<CoreLabel>();
+    for (String token : text.split(" ")) {
+      int slash = token.lastIndexOf('/');
+      CoreLabel label = new CoreLabel();
+      label.setWord(token.substring(0, slash));
+      label.setValue(label.word());
+      label.set(CoreAnnotations.TextAnnotation.class, label.word());
+      label.set(CoreAnnotations.AnswerAnnotation.class, token.substring(slash + 1));
+      label.set(CoreAnnotations.GoldAnswerAnnotation.class, token.substring(slash + 1));
+      document.add(label);
+    }
+    return document;
+  }
+
+  static Properties tinyProperties() {
+    Properties props = new Properties();
+    props.setProperty("useClassFeature", "true");
+    props.setProperty("useWord", "true");
+    props.setProperty("useNGrams", "true");
+    props.setProperty("noMidNGrams", "true");
+    props.setProperty("maxNGramLeng", "4");
+    props.setProperty("usePrev", "true");
+    props.setProperty("useNext", "true");
+    props.setProperty("useSequences", "true");
+    props.setProperty("usePrevSequences", "true");
+    props.setProperty("maxLeft", "1");
+    props.setProperty("useTypeSeqs", "true");
+    props.setProperty("useTypeSeqs2", "true");
+    props.setProperty("useTypeySequences", "true");
+    props.setProperty("wordShape", "chris2useLC");
+    props.setProperty("useDisjunctive", "true");
+    return props;
+  }
+
+  /** Trains a small CRFClassifier on a few sentences, for tests of the classifier machinery. */
+  static CRFClassifier<CoreLabel> trainTinyClassifier(Properties props) {
+    CRFClassifier<CoreLabel> crf = new CRFClassifier<CoreLabel>(props);
+    List<List<CoreLabel>> documents = new ArrayList<List<CoreLabel>>();
+    for (String text : TRAIN) {
+      documents.add(document(text));
+    }
+    crf.train(documents);
+    return crf;
+  }
+
+  static CRFClassifier<CoreLabel> trainTinyClassifier() {
+    return trainTinyClassifier(tinyProperties());
+  }
+
+  static List<String> answers(List<CoreLabel> document) {
+    List<String> answers = new ArrayList<String>();
+    for (CoreLabel label : document) {
+      answers.add(label.get(CoreAnnotations.AnswerAnnotation.class));
+    }
+    return answers;
+  }
+
+  /** Finding feature indices directly must give exactly the data that looking up feature strings does. */
+  public void testFeatureIdLookup() {
+    CRFClassifier<CoreLabel> crf = trainTinyClassifier();
+    for (String text : TEST) {
+      List<CoreLabel> document = document(text);
+      crf.flags.stringFeatureLookup = false;
+      Triple<int[][][], int[], double[][][]> fast = crf.documentToDataAndLabels(document);
+      crf.flags.stringFeatureLookup = true;
+      Triple<int[][][], int[], double[][][]> slow = crf.documentToDataAndLabels(document);
+      assertTrue(fast.first()[0][0].length > 10);
+      assertTrue(fast.first()[1][1].length > 0);
+      assertTrue(Arrays.deepEquals(slow.first(), fast.first()));
+      assertTrue(Arrays.equals(slow.second(), fast.second()));
+
+      crf.flags.stringFeatureLookup = false;
+      List<String> fastAnswers = answers(crf.classify(document(text)));
+      crf.flags.stringFeatureLookup = true;
+      List<String> slowAnswers = answers(crf.classify(document(text)));
+      assertEquals(slowAnswers, fastAnswers);
+    }
+    crf.flags.stringFeatureLookup = false;
+    assertEquals(Arrays.asList("PERSON", "PERSON", "O", "O", "LOCATION", "O"), answers(crf.classify(document(TEST[0]))));
+  }
+
+  private static List<List<String>> classifyAll(CRFClassifier<CoreLabel> crf) {
+    List<List<String>> answers = new ArrayList<List<String>>();
+    for (String text : TEST) {
+      answers.add(answers(crf.classify(document(text))));
+    }
+    return answers;
+  }
+
+  public void testCompactWeights() throws Exception {
+    CRFClassifier<CoreLabel> crf = trainTinyClassifier();
+    List<List<String>> expected = classifyAll(crf);
+    int numWeights = crf.getNumWeights();
+    double[][] weights = crf.weights;
+
+    File file = File.createTempFile("crf", ".ser.gz");
+    file.deleteOnExit();
+    crf.serializeClassifier(file.getPath());
+    for (CompactWeights.Precision precision : CompactWeights.Precision.values()) {
+      Properties props = new Properties();
+      props.setProperty("compactWeights", precision.toString().toLowerCase());
+      CRFClassifier<CoreLabel> compact = new CRFClassifier<CoreLabel>(props);
+      compact.loadClassifier(file, props);
+      assertNull(compact.weights);
+      assertEquals(precision, compact.compactWeights.precision());
+      assertEquals(numWeights, compact.getNumWeights());
+      assertEquals(expected, classifyAll(compact));
+
+      double tolerance = precision == CompactWeights.Precision.DOUBLE ? 0.0 : 1e-2;
+      for (int f = 0; f < weights.length; f++) {
+        for (int l = 0; l < weights[f].length; l++) {
+          double max = 0.0;
+          for (double w : weights[f]) {
+            max = Math.max(max, Math.abs(w));
+          }
+          assertEquals(weights[f][l], compact.compactWeights.get(f, l), tolerance * max + 1e-7);
+        }
+      }
+
+      // the compact weights are saved with the classifier, and CRFClassifierFloat loads them too
+      File compactFile = File.createTempFile("crf", ".ser.gz");
+      compactFile.deleteOnExit();
+      compact.serializeClassifier(compactFile.getPath());
+      CRFClassifier<CoreLabel> reloaded = new CRFClassifierFloat<CoreLabel>(new Properties());
+      reloaded.loadClassifier(compactFile);
+      assertEquals(precision, reloaded.compactWeights.precision());
+      assertEquals(expected, classifyAll(reloaded));
+    }
+  }
+
+  /** Retraining a classifier with compacted weights must test with and save the new weights. */
+  public void testRetrainCompacted() throws Exception {
+    CRFClassifier<CoreLabel> crf = trainTinyClassifier();
+    crf.compactWeights(CompactWeights.Precision.FLOAT);
+    String text = "Zorblax/ORGANIZATION hired/O John/PERSON in/O Quito/LOCATION ./O";
+    List<String> before = answers(crf.classify(document(text)));
+    assertFalse(before.get(0).equals("ORGANIZATION") && before.get(4).equals("LOCATION"));
+
+    List<List<CoreLabel>> documents = documents(MORE_TRAIN);
+    documents.addAll(documents(TRAIN));
+    crf.train(documents);
+    assertNull(crf.compactWeights);
+    List<String> after = answers(crf.classify(document(text)));
+    assertEquals("ORGANIZATION", after.get(0));
+    assertEquals("LOCATION", after.get(4));
+
+    File file = File.createTempFile("crf", ".ser.gz");
+    file.deleteOnExit();
+    crf.serializeClassifier(file.getPath());
+    CRFClassifier<CoreLabel> reloaded = CRFClassifier.getClassifier(file);
+    assertTrue(Arrays.deepEquals(crf.weights, reloaded.weights));
+    assertEquals(after, answers(reloaded.classify(document(text))));
+  }
+
+  public void testExpandWeights() {
+    CRFClassifier<CoreLabel> crf = trainTinyClassifier();
+    List<List<String>> expected = classifyAll(crf);
+    double[][] weights = crf.weights;
+    crf.compactWeights(CompactWeights.Precision.DOUBLE);
+    assertEquals(expected, classifyAll(crf));
+    crf.scaleWeights(1.0);
+    assertNull(crf.compactWeights);
+    assertTrue(Arrays.deepEquals(weights, crf.weights));
+    assertEquals(expected, classifyAll(crf));
+  }
+
+  public void testClassifyBatch() {
+    CRFClassifier<CoreLabel> crf = trainTinyClassifier();
+    List<List<String>> expected = classifyAll(crf);
+    for (int nThreads = 1; nThreads <= 2; nThreads++) {
+      List<List<CoreLabel>> documents = new ArrayList<List<CoreLabel>>();
+      for (String text : TEST) {
+        List<CoreLabel> document = document(text);
+        for (CoreLabel label : document) {
+          label.remove(CoreAnnotations.AnswerAnnotation.class);
+        }
+        documents.add(document);
+        documents.add(new ArrayList<CoreLabel>());
+      }
+      crf.classifyBatch(documents, nThreads);
+      for (int i = 0; i < TEST.length; i++) {
+        assertEquals(expected.get(i), answers(documents.get(2 * i)));
+        assertTrue(documents.get(2 * i + 1).isEmpty());
+      }
+    }
+  }
+
+  /** Batches decode with the classifier's own inference type, and leave its flags alone. */
+  public void testClassifyBatchInferenceType() {
+    CRFClassifier<CoreLabel> crf = trainTinyClassifier();
+    crf.flags.inferenceType = null;
+    crf.freeze();
+    List<List<CoreLabel>> documents = documents(TEST);
+    crf.classifyBatch(documents, 2);
+    assertNull(crf.flags.inferenceType);
+
+    crf.flags.inferenceType = "Beam";
+    List<List<String>> expected = classifyAll(crf);
+    documents = documents(TEST);
+    crf.classifyBatch(documents, 2);
+    assertEquals("Beam", crf.flags.inferenceType);
+    for (int i = 0; i < TEST.length; i++) {
+      assertEquals(expected.get(i), answers(documents.get(i)));
+    }
+  }
+
+  private static final String[] MORE_TRAIN = {
+    "Zorblax/ORGANIZATION hired/O Mary/PERSON in/O Quito/LOCATION ./O",
+    "Mary/PERSON works/O for/O Zorblax/ORGANIZATION in/O Quito/LOCATION ./O",
+    "Zorblax/ORGANIZATION opened/O an/O office/O in/O Quito/LOCATION ./O",
+  };
+
+  private static List<List<CoreLabel>> documents(String[] texts) {
+    List<List<CoreLabel>> documents = new ArrayList<List<CoreLabel>>();
+    for (String text : texts) {
+      documents.add(document(text));
+    }
+    return documents;
+  }
+
+  public void testTrainOnline() throws Exception {
+    CRFClassifier<CoreLabel> trained = trainTinyClassifier();
+    File file = File.createTempFile("crf", ".ser.gz");
+    file.deleteOnExit();
+    trained.serializeClassifier(file.getPath());
+    CRFClassifier<CoreLabel> crf = CRFClassifier.getClassifier(file);
+    List<String> oldFeatures = new ArrayList<String>(crf.featureIndex.objectsList());
+    double[][] oldWeights = crf.weights;
+    crf.flags.SGDPasses = 10;
+
+    // the old training documents go along with the new ones, so that it does not forget them
+    List<List<CoreLabel>> documents = documents(MORE_TRAIN);
+    documents.addAll(documents(TRAIN));
+    crf.trainOnline(documents);
+    // new features go after the old ones, which keep their indices
+    assertTrue(crf.featureIndex.size() > oldFeatures.size());
+    assertEquals(oldFeatures, crf.featureIndex.objectsList().subList(0, oldFeatures.size()));
+    assertEquals(crf.featureIndex.size(), crf.weights.length);
+    assertTrue(crf.featureIndex.contains("Quito-WORD|C"));
+    for (int i = 0; i < crf.weights.length; i++) {
+      int expectedLength = (i < oldWeights.length) ? oldWeights[i].length : crf.labelIndices.get(crf.map[i]).size();
+      assertEquals(expectedLength, crf.weights[i].length);
+    }
+    String text = "Zorblax/ORGANIZATION hired/O John/PERSON in/O Quito/LOCATION ./O";
+    List<String> before = answers(trained.classify(document(text)));
+    List<String> after = answers(crf.classify(document(text)));
+    assertFalse(before.get(0).equals("ORGANIZATION") && before.get(4).equals("LOCATION"));
+    assertEquals("ORGANIZATION", after.get(0));
+    assertEquals("LOCATION", after.get(4));
+    assertEquals(Arrays.asList("PERSON", "PERSON", "O", "O", "LOCATION", "O"), answers(crf.classify(document(TEST[0]))));
+
+    try {
+      crf.trainOnline(documents(new String[] { "Zorblax/COMPANY hired/O Mary/PERSON ./O" }));
+      fail("A new class should not be accepted");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  /** A model saved after online training must not train itself again whenever it is loaded. */
+  /** A bad document after a good one leaves the classifier as it was, and still able to classify. */
+  public void testTrainOnlineBadDocument() throws Exception {
+    CRFClassifier<CoreLabel> crf = trainTinyClassifier();
+    List<String> expected = answers(crf.classify(document(TEST[1])));
+    int numFeatures = crf.featureIndex.size();
+    boolean locked = crf.featureIndex.isLocked();
+    try {
+      crf.trainOnline(documents(new String[] { MORE_TRAIN[0], "Zorblax/COMPANY hired/O Mary/PERSON ./O" }));
+      fail("A new class should not be accepted");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    assertEquals(numFeatures, crf.featureIndex.size());
+    assertEquals(locked, crf.featureIndex.isLocked());
+    assertFalse(crf.featureIndex.contains("Quito-WORD|C"));
+    assertEquals(numFeatures, crf.weights.length);
+    assertEquals(expected, answers(crf.classify(document(TEST[1]))));
+
+    // a document is put back in order when it is found to be bad
+    Properties props = tinyProperties();
+    props.setProperty("useReverse", "true");
+    props.setProperty("useObservedSequencesOnly", "true");
+    crf = trainTinyClassifier(props);
+    numFeatures = crf.featureIndex.size();
+    List<CoreLabel> unseen = document("Quito/LOCATION John/PERSON ./O");
+    try {
+      crf.trainOnline(Arrays.asList(document(MORE_TRAIN[0]), unseen));
+      fail("An unseen sequence of classes should not be accepted");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    assertEquals("Quito", unseen.get(0).word());
+    assertEquals(numFeatures, crf.featureIndex.size());
+    assertEquals(numFeatures, crf.weights.length);
+    assertEquals(5, answers(crf.classify(document(TEST[2]))).size());
+  }
+
+  public void testOnlineTrainFileNotSaved() throws Exception {
+    CRFClassifier<CoreLabel> crf = trainTinyClassifier();
+    crf.flags.onlineTrainFile = "more.train";
+    File file = File.createTempFile("crf", ".ser.gz");
+    file.deleteOnExit();
+    crf.serializeClassifier(file.getPath());
+    assertNull(CRFClassifier.getClassifier(file).flags.onlineTrainFile);
+  }
+
+  /** Extracting features on several threads must give the same features and data as on one. */
+  public void testMultiThreadFeatureExtraction() {
+    List<List<CoreLabel>> documents = new ArrayList<List<CoreLabel>>();
+    for (int i = 0; i < 5; i++) {
+      documents.addAll(documents(TRAIN));
+      documents.addAll(documents(MORE_TRAIN));
+      documents.addAll(documents(TEST));
+    }
+    String[][] options = {
+      {},
+      { "removeBackgroundSingletonFeatures", "true" },
+      { "removeBackgroundSingletonFeatures", "true", "featureCountThresh", "2" },
+      { "useReverse", "true", "featureCountThresh", "3" },
+    };
+    for (String[] option : options) {
+      Properties props = tinyProperties();
+      for (int i = 0; i < option.length; i += 2) {
+        props.setProperty(option[i], option[i + 1]);
+      }
+      CRFClassifier<CoreLabel> sequential = new CRFClassifier<CoreLabel>(props);
+      sequential.makeAnswerArraysAndTagIndex(documents);
+      Triple<int[][][][], int[][], double[][][][]> expected = sequential.documentsToDataAndLabels(documents);
+
+      props.setProperty("multiThreadFeatureExtraction", "3");
+      CRFClassifier<CoreLabel> parallel = new CRFClassifier<CoreLabel>(props);
+      parallel.makeAnswerArraysAndTagIndex(documents);
+      Triple<int[][][][], int[][], double[][][][]> actual = parallel.documentsToDataAndLabels(documents);
+
+      assertTrue(sequential.featureIndex.size() > 100);
+      assertEquals(sequential.featureIndex.objectsList(), parallel.featureIndex.objectsList());
+      assertTrue(Arrays.equals(sequential.map, parallel.map));
+      assertEquals(sequential.classIndex.objectsList(), parallel.classIndex.objectsList());
+      assertEquals(sequential.labelIndices.toString(), parallel.labelIndices.toString());
+      assertTrue(Arrays.deepEquals(expected.first(), actual.first()));
+      assertTrue(Arrays.deepEquals(expected.second(), actual.second()));
+      assertEquals(answers(documents.get(0)), answers(document(TRAIN[0])));
+    }
+  }
+
+}
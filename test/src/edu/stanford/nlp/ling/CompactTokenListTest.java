@@ -0,0 +1,175 @@
+package edu.stanford.nlp.ling;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+import edu.stanford.nlp.util.CoreMap;
+
+import junit.framework.TestCase;
+
+public class CompactTokenListTest extends TestCase {
+
+  private static CoreLabel token(String word, int begin, int index) {
+    CoreLabel label = new CoreLabel();
+    label.setWord(word);
+    label.setValue(word);
+    label.setBeginPosition(begin);
+    label.setEndPosition(begin + word.length());
+    label.setIndex(index);
+    label.set(CoreAnnotations.ShapeAnnotation.class, "x");
+    return label;
+  }
+
+  private static List<CoreLabel> tokens() {
+    List<CoreLabel> tokens = new ArrayList<CoreLabel>();
+    tokens.add(token("the", 0, 1));
+    tokens.add(token("cat", 4, 2));
+    tokens.add(token("the", 8, 3));
+    return tokens;
+  }
+
+  public void testViewsMatchOriginals() {
+    List<CoreLabel> original = tokens();
+    CompactTokenList compact = new CompactTokenList(original);
+    assertEquals(original.size(), compact.size());
+    for (int i = 0; i < original.size(); i++) {
+      CoreLabel token = compact.get(i);
+      assertEquals(original.get(i).word(), token.word());
+      assertEquals(original.get(i).beginPosition(), token.beginPosition());
+      assertEquals(original.get(i).index(), token.index());
+      assertEquals("x", token.get(CoreAnnotations.ShapeAnnotation.class));
+      assertEquals(original.get(i).keySet(), token.keySet());
+      assertEquals(original.get(i), token);
+      assertEquals(token, original.get(i));
+      assertEquals(original.get(i).hashCode(), token.hashCode());
+      assertEquals(original.get(i).toString(), token.toString());
+      assertSame(token, compact.get(i));
+    }
+    // "the" and "x" are each stored once; "x" is not in a column
+    assertSame(compact.get(0).word(), compact.get(2).word());
+    assertEquals(2, compact.internedStringCount());
+  }
+
+  /** equals, hashCode and the short strings work from the columns and the view's own map */
+  public void testContentsWithoutCopy() {
+    List<CoreLabel> original = tokens();
+    CompactTokenList compact = new CompactTokenList(original);
+    for (int i = 0; i < original.size(); i++) {
+      original.get(i).setTag("NN");
+      compact.get(i).setTag("NN");
+      original.get(i).set(CoreAnnotations.LemmaAnnotation.class, null);
+      compact.get(i).set(CoreAnnotations.LemmaAnnotation.class, null);
+      CoreLabel token = compact.get(i);
+      assertEquals(original.get(i), token);
+      assertEquals(token, original.get(i));
+      assertEquals(original.get(i).hashCode(), token.hashCode());
+      // the columns come first, so the fields are in the order of keySet()
+      CoreLabel copy = new CoreLabel((CoreMap) token);
+      assertEquals(copy.toShortString(), token.toShortString());
+      assertEquals(copy.toShortString('|', "Word", "Shape", "Lemma"), token.toShortString('|', "Word", "Shape", "Lemma"));
+      assertEquals(copy.toShorterString(), token.toShorterString());
+      assertEquals(copy.toShorterString("Index", "PartOfSpeech"), token.toShorterString("Index", "PartOfSpeech"));
+    }
+    // same word, different offsets and index
+    assertFalse(compact.get(0).equals(compact.get(2)));
+    assertFalse(compact.get(0).equals(original.get(2)));
+    compact.get(1).setTag("VB");
+    assertFalse(compact.get(1).equals(original.get(1)));
+    assertFalse(original.get(1).equals(compact.get(1)));
+    compact.get(1).set(CoreAnnotations.ShapeAnnotation.class, "xx");
+    compact.get(1).setTag("NN");
+    assertFalse(compact.get(1).equals(original.get(1)));
+    compact.get(1).set(CoreAnnotations.ShapeAnnotation.class, "x");
+    assertEquals(original.get(1), compact.get(1));
+  }
+
+  public void testSetAndRemove() {
+    CompactTokenList compact = new CompactTokenList(tokens());
+    CoreLabel token = compact.get(1);
+    assertNull(token.tag());
+    assertFalse(token.has(CoreAnnotations.PartOfSpeechAnnotation.class));
+    token.setTag("NN");
+    assertEquals("NN", token.tag());
+    assertNull(compact.get(0).tag());
+
+    assertEquals("NN", token.remove(CoreAnnotations.PartOfSpeechAnnotation.class));
+    assertFalse(token.has(CoreAnnotations.PartOfSpeechAnnotation.class));
+
+    // null values are kept as present keys, as in any CoreMap
+    token.set(CoreAnnotations.LemmaAnnotation.class, null);
+    assertTrue(token.has(CoreAnnotations.LemmaAnnotation.class));
+    assertNull(token.lemma());
+    token.setLemma("cat");
+    assertEquals("cat", token.lemma());
+    assertEquals(7, token.size());
+
+    token.set(CoreAnnotations.IndexAnnotation.class, 5);
+    assertEquals(5, token.index());
+    token.remove(CoreAnnotations.IndexAnnotation.class);
+    assertEquals(-1, token.index());
+  }
+
+  public void testAppendAndReplace() {
+    CompactTokenList compact = new CompactTokenList(2);
+    for (CoreLabel token : tokens()) {
+      compact.add(token);
+    }
+    compact.add(token("sat", 12, 4));
+    assertEquals(4, compact.size());
+    assertEquals("sat", compact.get(3).word());
+
+    CoreLabel first = compact.get(0);
+    compact.set(0, token("a", 0, 1));
+    assertSame(first, compact.get(0));
+    assertEquals("a", first.word());
+    try {
+      compact.add(0, token("b", 0, 0));
+      fail("Expected insertion to be unsupported");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  public void testSerialization() throws Exception {
+    CompactTokenList compact = new CompactTokenList(tokens());
+    List<CoreLabel> sublist = new ArrayList<CoreLabel>(compact.subList(1, 3));
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(compact);
+    out.writeObject(sublist);
+    out.close();
+    ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    List<CoreLabel> readTokens = (List<CoreLabel>) in.readObject();
+    List<CoreLabel> readSublist = (List<CoreLabel>) in.readObject();
+    assertEquals(CoreLabel.class, readTokens.get(0).getClass());
+    assertEquals(compact, readTokens);
+    // token identity between the two lists is kept
+    assertSame(readTokens.get(1), readSublist.get(0));
+  }
+
+  public void testPipeline() {
+    Properties props = new Properties();
+    props.setProperty("annotators", "tokenize,ssplit");
+    props.setProperty("tokenize.compact", "true");
+    StanfordCoreNLP pipeline = new StanfordCoreNLP(props);
+    Annotation annotation = new Annotation("The cat sat.  The dog ran.");
+    pipeline.annotate(annotation);
+    List<CoreLabel> tokens = annotation.get(CoreAnnotations.TokensAnnotation.class);
+    assertTrue(tokens instanceof CompactTokenList);
+    List<CoreMap> sentences = annotation.get(CoreAnnotations.SentencesAnnotation.class);
+    assertEquals(2, sentences.size());
+    CoreLabel dog = sentences.get(1).get(CoreAnnotations.TokensAnnotation.class).get(1);
+    assertEquals("dog", dog.word());
+    assertSame(tokens.get(5), dog);
+    assertEquals(18, dog.beginPosition());
+  }
+
+}
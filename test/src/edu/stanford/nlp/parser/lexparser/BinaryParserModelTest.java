@@ -0,0 +1,58 @@
+package edu.stanford.nlp.parser.lexparser;
+
+import java.io.File;
+
+import edu.stanford.nlp.trees.MemoryTreebank;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.Treebank;
+
+import junit.framework.TestCase;
+
+public class BinaryParserModelTest extends TestCase {
+
+  private static final String[] TRAIN_TREES = {
+    "(ROOT (S (NP (DT The) (NN cat)) (VP (VBD sat) (PP (IN on) (NP (DT the) (NN mat)))) (. .)))",
+    "(ROOT (S (NP (DT A) (NN dog)) (VP (VBD saw) (NP (DT the) (NN cat))) (. .)))",
+    "(ROOT (S (NP (PRP He)) (VP (VBD ate) (NP (DT an) (NN apple)) (PP (IN with) (NP (DT a) (NN fork)))) (. .)))",
+    "(ROOT (S (NP (DT The) (JJ big) (NN dog)) (VP (VBD ran)) (. .)))",
+    "(ROOT (S (NP (NNP John)) (VP (VBZ likes) (NP (NNS apples))) (. .)))",
+    "(ROOT (S (NP (NP (DT The) (NN cat)) (PP (IN on) (NP (DT the) (NN mat)))) (VP (VBD saw) (NP (NP (DT a) (NN dog)) (PP (IN with) (NP (DT an) (NN apple))))) (. .)))",
+  };
+
+  static LexicalizedParser trainTinyParser() {
+    Treebank treebank = new MemoryTreebank();
+    for (String tree : TRAIN_TREES) {
+      treebank.add(Tree.valueOf(tree));
+    }
+    Options op = new Options();
+    op.doDep = false;
+    op.doPCFG = true;
+    return LexicalizedParser.trainFromTreebank(treebank, op);
+  }
+
+  public void testRoundTrip() throws Exception {
+    LexicalizedParser parser = trainTinyParser();
+    File file = File.createTempFile("parser", ".bin");
+    file.deleteOnExit();
+    BinaryParserModel.save(parser, file.getPath());
+    assertTrue(BinaryParserModel.isBinaryModel(file.getPath()));
+
+    LexicalizedParser loaded = LexicalizedParser.loadModel(file.getPath());
+    assertEquals(parser.stateIndex.objectsList(), loaded.stateIndex.objectsList());
+    assertEquals(parser.wordIndex.objectsList(), loaded.wordIndex.objectsList());
+    assertEquals(parser.tagIndex.objectsList(), loaded.tagIndex.objectsList());
+    assertEquals(parser.bg.numRules(), loaded.bg.numRules());
+    assertEquals(parser.ug.numRules(), loaded.ug.numRules());
+    for (BinaryRule rule : parser.bg) {
+      assertEquals(rule.score(), (float) loaded.bg.scoreRule(rule));
+    }
+    // the lexicon refers to the loaded indices rather than copies of them
+    assertSame(loaded.wordIndex, ((BaseLexicon) loaded.lex).wordIndex);
+
+    String sentence = "The dog saw a cat .";
+    assertEquals(parser.parse(sentence).toString(), loaded.parse(sentence).toString());
+    assertFalse(BinaryParserModel.isBinaryModel(new File(file.getParentFile(), "no-such-parser").getPath()));
+    file.delete();
+  }
+
+}
@@ -0,0 +1,60 @@
+package edu.stanford.nlp.parser.lexparser;
+
+import java.util.List;
+
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.ling.Sentence;
+import edu.stanford.nlp.trees.Tree;
+
+import junit.framework.TestCase;
+
+public class CoarseToFineTest extends TestCase {
+
+  private static final String[] SENTENCES = {
+    "The dog saw a cat .",
+    "He ate the apple with a fork .",
+    "John likes the big cat .",
+    "A cat sat on the mat with the dog .",
+  };
+
+  public void testProjection() {
+    LexicalizedParser parser = BinaryParserModelTest.trainTinyParser();
+    CoarseGrammarProjection projection = new CoarseGrammarProjection(parser.bg, parser.ug, parser.stateIndex, parser.getOp().langpack());
+    assertTrue(projection.numCoarseStates() < parser.stateIndex.size());
+    for (int state = 0; state < parser.stateIndex.size(); state++) {
+      String fine = parser.stateIndex.get(state);
+      String coarse = projection.coarseStateIndex().get(projection.project(state));
+      assertTrue(fine + " projected to " + coarse, fine.startsWith(coarse));
+    }
+    // each coarse rule scores at least as well as any fine rule projecting onto it
+    for (BinaryRule rule : parser.bg) {
+      BinaryRule coarse = new BinaryRule(projection.project(rule.parent), projection.project(rule.leftChild), projection.project(rule.rightChild));
+      assertTrue(projection.targetBG().scoreRule(coarse) >= rule.score);
+    }
+  }
+
+  public void testLooseThresholdKeepsBestParse() {
+    LexicalizedParser parser = BinaryParserModelTest.trainTinyParser();
+    String[] unpruned = new String[SENTENCES.length];
+    for (int i = 0; i < SENTENCES.length; i++) {
+      unpruned[i] = parser.parse(SENTENCES[i]).toString();
+    }
+    parser.setOptionFlags("-coarseToFineThreshold", "-100");
+    for (int i = 0; i < SENTENCES.length; i++) {
+      assertEquals(unpruned[i], parser.parse(SENTENCES[i]).toString());
+    }
+  }
+
+  public void testTightThresholdStillParses() {
+    LexicalizedParser parser = BinaryParserModelTest.trainTinyParser();
+    parser.setOptionFlags("-coarseToFineThreshold", "0");
+    for (String sentence : SENTENCES) {
+      List<HasWord> words = Sentence.toWordList(sentence.split(" "));
+      ParserQuery query = parser.parserQuery();
+      assertTrue(query.parse(words));
+      Tree tree = query.getBestParse();
+      assertEquals(words.size(), tree.yield().size());
+    }
+  }
+
+}
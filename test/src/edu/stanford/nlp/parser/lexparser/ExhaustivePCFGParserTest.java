@@ -0,0 +1,58 @@
+package edu.stanford.nlp.parser.lexparser;
+
+import java.util.List;
+
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.ling.Sentence;
+
+import junit.framework.TestCase;
+
+public class ExhaustivePCFGParserTest extends TestCase {
+
+  private static final String SHORT = "The dog saw a cat .";
+  private static final String LONG = "The cat on the mat saw a dog with an apple with a fork .";
+
+  private static List<HasWord> words(String sentence) {
+    return Sentence.toWordList(sentence.split(" "));
+  }
+
+  private static int numCells(int length) {
+    // one more for the boundary symbol
+    return (length + 1) * (length + 2) / 2;
+  }
+
+  /** Parses of a sentence should not depend on what the query parsed before it. */
+  public void testChartReuse() {
+    LexicalizedParser parser = BinaryParserModelTest.trainTinyParser();
+    String shortParse = parser.parse(SHORT).toString();
+    String longParse = parser.parse(LONG).toString();
+
+    LexicalizedParserQuery query = parser.lexicalizedParserQuery();
+    for (int i = 0; i < 2; i++) {
+      assertTrue(query.parse(words(LONG)));
+      assertEquals(longParse, query.getBestParse().toString());
+      assertTrue(query.parse(words(SHORT)));
+      assertEquals(shortParse, query.getBestParse().toString());
+    }
+    // only the cells of the short sentence are left in use
+    ExhaustivePCFGParser pcfg = (ExhaustivePCFGParser) query.getPCFGParser();
+    assertTrue(pcfg.numMaterializedCells() <= numCells(words(SHORT).size()));
+  }
+
+  public void testPrunedCellsNotAllocated() {
+    LexicalizedParser parser = BinaryParserModelTest.trainTinyParser();
+    String longParse = parser.parse(LONG).toString();
+    LexicalizedParserQuery query = parser.lexicalizedParserQuery();
+    assertTrue(query.parse(words(LONG)));
+    int exhaustiveCells = ((ExhaustivePCFGParser) query.getPCFGParser()).numMaterializedCells();
+    assertTrue(exhaustiveCells <= numCells(words(LONG).size()));
+
+    parser.setOptionFlags("-coarseToFineThreshold", "-5");
+    query = parser.lexicalizedParserQuery();
+    assertTrue(query.parse(words(LONG)));
+    assertEquals(longParse, query.getBestParse().toString());
+    int prunedCells = ((ExhaustivePCFGParser) query.getPCFGParser()).numMaterializedCells();
+    assertTrue(prunedCells + " cells with pruning, " + exhaustiveCells + " without", prunedCells < exhaustiveCells);
+  }
+
+}
@@ -0,0 +1,51 @@
+package edu.stanford.nlp.parser.lexparser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.ling.Sentence;
+import edu.stanford.nlp.trees.Tree;
+
+import junit.framework.TestCase;
+
+public class LexicalizedParserTest extends TestCase {
+
+  private static final String[] SENTENCES = {
+    "The dog saw a cat .",
+    "The cat on the mat saw a dog with an apple with a fork .",
+    "He ate .",
+    // the tiny grammar cannot parse this, so it gets an X tree
+    "The cat on the mat with a fork saw a dog with an apple on the mat .",
+    "John likes the big cat .",
+    "A cat sat on the mat with the dog .",
+    "The dog saw a cat .",
+  };
+
+  public void testParseMultiple() {
+    LexicalizedParser parser = BinaryParserModelTest.trainTinyParser();
+    List<List<HasWord>> sentences = new ArrayList<List<HasWord>>();
+    List<String> expected = new ArrayList<String>();
+    for (String sentence : SENTENCES) {
+      List<HasWord> words = Sentence.toWordList(sentence.split(" "));
+      sentences.add(words);
+      expected.add(parser.parse(words).toString());
+    }
+    assertTrue(expected.get(3).startsWith("(X "));
+
+    List<String> serial = new ArrayList<String>();
+    for (Tree tree : parser.parseMultiple(sentences)) {
+      serial.add(tree.toString());
+    }
+    assertEquals(expected, serial);
+
+    for (int threads = 1; threads <= 3; threads++) {
+      List<String> parallel = new ArrayList<String>();
+      for (Tree tree : parser.parseMultiple(sentences, threads)) {
+        parallel.add(tree.toString());
+      }
+      assertEquals(expected, parallel);
+    }
+  }
+
+}
@@ -0,0 +1,94 @@
+package edu.stanford.nlp.pipeline;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.util.CoreMap;
+
+import junit.framework.TestCase;
+
+public class AnnotationPipelineTest extends TestCase {
+
+  /** Tags each token with its sentence's index; counts finished and whole documents. */
+  private static class SentenceIndexAnnotator implements SentenceAnnotator {
+    final boolean independent;
+    int finished = 0;
+    int wholeDocuments = 0;
+
+    SentenceIndexAnnotator(boolean independent) {
+      this.independent = independent;
+    }
+
+    @Override
+    public void annotate(Annotation annotation) {
+      wholeDocuments++;
+      for (CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
+        annotateSentence(annotation, sentence);
+      }
+      finishDocument(annotation);
+    }
+
+    @Override
+    public void annotateSentence(Annotation annotation, CoreMap sentence) {
+      String index = String.valueOf(sentence.get(CoreAnnotations.SentenceIndexAnnotation.class));
+      for (CoreLabel token : sentence.get(CoreAnnotations.TokensAnnotation.class)) {
+        token.setTag(index);
+      }
+    }
+
+    @Override
+    public synchronized void finishDocument(Annotation annotation) {
+      finished++;
+    }
+
+    @Override
+    public boolean annotatesSentencesIndependently() {
+      return independent;
+    }
+
+    @Override
+    public Set<Requirement> requirementsSatisfied() { return Collections.singleton(POS_REQUIREMENT); }
+
+    @Override
+    public Set<Requirement> requires() { return TOKENIZE_AND_SSPLIT; }
+  }
+
+  private static void annotate(SentenceIndexAnnotator tagger) {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      text.append("This is sentence ").append(i).append(". ");
+    }
+    AnnotationPipeline pipeline = new AnnotationPipeline();
+    pipeline.addAnnotator(new PTBTokenizerAnnotator(false));
+    pipeline.addAnnotator(new WordsToSentencesAnnotator(false));
+    pipeline.addAnnotator(tagger);
+    pipeline.setSentenceThreads(4, null);
+
+    Annotation annotation = new Annotation(text.toString());
+    pipeline.annotate(annotation);
+    List<CoreMap> sentences = annotation.get(CoreAnnotations.SentencesAnnotation.class);
+    assertEquals(200, sentences.size());
+    for (int i = 0; i < sentences.size(); i++) {
+      for (CoreLabel token : sentences.get(i).get(CoreAnnotations.TokensAnnotation.class)) {
+        assertEquals(String.valueOf(i), token.tag());
+      }
+    }
+    assertEquals(1, tagger.finished);
+  }
+
+  public void testSentenceThreads() {
+    SentenceIndexAnnotator tagger = new SentenceIndexAnnotator(true);
+    annotate(tagger);
+    assertEquals(0, tagger.wholeDocuments);
+  }
+
+  public void testDependentSentences() {
+    SentenceIndexAnnotator tagger = new SentenceIndexAnnotator(false);
+    annotate(tagger);
+    assertEquals(1, tagger.wholeDocuments);
+  }
+
+}
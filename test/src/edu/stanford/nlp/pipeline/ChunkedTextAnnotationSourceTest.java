@@ -0,0 +1,95 @@
+package edu.stanford.nlp.pipeline;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.ling.CoreAnnotations;
+
+import junit.framework.TestCase;
+
+public class ChunkedTextAnnotationSourceTest extends TestCase {
+
+  private static List<Annotation> chunks(String text, int chunkSize) {
+    ChunkedTextAnnotationSource source = new ChunkedTextAnnotationSource("utf-8", chunkSize);
+    List<Annotation> result = new ArrayList<Annotation>();
+    for (Iterator<Annotation> it = source.chunks("doc", new StringReader(text)); it.hasNext(); ) {
+      result.add(it.next());
+    }
+    return result;
+  }
+
+  public void testBreaksAtParagraphs() {
+    String text = "aaaa aaaa\naaaa\n\nbbbb bbbb\n\ncccc\n";
+    List<Annotation> result = chunks(text, 10);
+    assertEquals(3, result.size());
+    assertEquals("aaaa aaaa\naaaa\n\n", result.get(0).toString());
+    assertEquals("bbbb bbbb\n\n", result.get(1).toString());
+    assertEquals("cccc\n", result.get(2).toString());
+    assertEquals("doc#0", result.get(0).get(CoreAnnotations.DocIDAnnotation.class));
+    assertEquals("doc#2", result.get(2).get(CoreAnnotations.DocIDAnnotation.class));
+  }
+
+  public void testSmallInputIsOneChunk() {
+    String text = "aaaa\n\nbbbb\n";
+    List<Annotation> result = chunks(text, 1000);
+    assertEquals(1, result.size());
+    assertEquals(text, result.get(0).toString());
+    assertEquals(0, chunks("", 1000).size());
+  }
+
+  public void testLongParagraphIsSplitAtLines() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 20; i++) {
+      sb.append("0123456789\n");
+    }
+    List<Annotation> result = chunks(sb.toString(), 20);
+    StringBuilder joined = new StringBuilder();
+    for (Annotation chunk : result) {
+      assertTrue(chunk.toString().length() <= 44);
+      joined.append(chunk.toString());
+    }
+    assertEquals(sb.toString(), joined.toString());
+  }
+
+  public void testStreamingProcessFiles() throws Exception {
+    File dir = File.createTempFile("streaming", "");
+    assertTrue(dir.delete());
+    assertTrue(dir.mkdir());
+    File input = new File(dir, "input.txt");
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 50; i++) {
+      sb.append("This is paragraph number ").append(i).append(".  It has two sentences.\n\n");
+    }
+    IOUtils.writeStringToFile(sb.toString(), input.getPath(), "utf-8");
+
+    Properties props = new Properties();
+    props.setProperty("annotators", "tokenize,ssplit");
+    props.setProperty("outputFormat", "text");
+    props.setProperty("outputDirectory", dir.getPath());
+    props.setProperty("streaming", "true");
+    props.setProperty("streaming.chunkSize", "200");
+    StanfordCoreNLP pipeline = new StanfordCoreNLP(props);
+    List<File> files = new ArrayList<File>();
+    files.add(input);
+    pipeline.processFiles(files, 3);
+
+    File output = new File(dir, "input.txt.out");
+    String result = IOUtils.slurpFile(output);
+    // chunks are written in input order
+    int last = -1;
+    for (int i = 0; i < 50; i++) {
+      int pos = result.indexOf("paragraph number " + i + ".");
+      assertTrue(pos > last);
+      last = pos;
+    }
+    output.delete();
+    input.delete();
+    dir.delete();
+  }
+
+}
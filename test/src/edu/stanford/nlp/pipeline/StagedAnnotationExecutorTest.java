@@ -0,0 +1,123 @@
+package edu.stanford.nlp.pipeline;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.util.Function;
+
+import junit.framework.TestCase;
+
+public class StagedAnnotationExecutorTest extends TestCase {
+
+  /** Appends its name to the DocID, checking that the previous stage has run. */
+  private static class AppendingAnnotator implements Annotator {
+    private final String name;
+    private final Set<Requirement> requires;
+    private final Set<Requirement> satisfies;
+
+    AppendingAnnotator(String name, Set<Requirement> requires, Set<Requirement> satisfies) {
+      this.name = name;
+      this.requires = requires;
+      this.satisfies = satisfies;
+    }
+
+    @Override
+    public void annotate(Annotation annotation) {
+      String soFar = annotation.get(CoreAnnotations.DocIDAnnotation.class);
+      annotation.set(CoreAnnotations.DocIDAnnotation.class, (soFar == null ? "" : soFar) + name);
+    }
+
+    @Override
+    public Set<Requirement> requirementsSatisfied() { return satisfies; }
+
+    @Override
+    public Set<Requirement> requires() { return requires; }
+  }
+
+  private static final Set<Annotator.Requirement> NONE = Collections.emptySet();
+
+  private static List<Annotator> annotators() {
+    return Arrays.<Annotator>asList(
+        new AppendingAnnotator("a", NONE, Collections.singleton(Annotator.TOKENIZE_REQUIREMENT)),
+        new AppendingAnnotator("b", Collections.singleton(Annotator.TOKENIZE_REQUIREMENT), Collections.singleton(Annotator.SSPLIT_REQUIREMENT)),
+        new AppendingAnnotator("c", Annotator.TOKENIZE_AND_SSPLIT, NONE));
+  }
+
+  public void testAllDocumentsPassThroughAllStages() {
+    List<Annotation> docs = new ArrayList<Annotation>();
+    for (int i = 0; i < 100; i++) {
+      docs.add(new Annotation("doc " + i));
+    }
+    final List<Annotation> finished = Collections.synchronizedList(new ArrayList<Annotation>());
+    StagedAnnotationExecutor executor = new StagedAnnotationExecutor(annotators(), new int[] { 1, 3, 2 }, 4);
+    executor.annotate(docs, new Function<Annotation, Object>() {
+      @Override
+      public Object apply(Annotation in) {
+        finished.add(in);
+        return null;
+      }
+    });
+    assertEquals(100, finished.size());
+    for (Annotation doc : docs) {
+      assertEquals("abc", doc.get(CoreAnnotations.DocIDAnnotation.class));
+    }
+    for (StagedAnnotationExecutor.Stage stage : executor.stageStatistics()) {
+      assertEquals(100, stage.processed());
+      assertEquals(0, stage.queueDepth());
+      assertTrue(stage.maxQueueDepth() <= 4);
+    }
+  }
+
+  /** An Error in one document drops that document only, and is thrown at the end. */
+  public void testErrorInStage() {
+    List<Annotation> docs = new ArrayList<Annotation>();
+    for (int i = 0; i < 100; i++) {
+      docs.add(new Annotation("doc " + i));
+    }
+    List<Annotator> annotators = new ArrayList<Annotator>(annotators());
+    annotators.set(1, new AppendingAnnotator("b", Collections.singleton(Annotator.TOKENIZE_REQUIREMENT), Collections.singleton(Annotator.SSPLIT_REQUIREMENT)) {
+      @Override
+      public void annotate(Annotation annotation) {
+        if (annotation.get(CoreAnnotations.TextAnnotation.class).endsWith("7")) {
+          throw new StackOverflowError();
+        }
+        super.annotate(annotation);
+      }
+    });
+    final List<Annotation> finished = Collections.synchronizedList(new ArrayList<Annotation>());
+    StagedAnnotationExecutor executor = new StagedAnnotationExecutor(annotators, new int[] { 1, 2, 1 }, 2);
+    try {
+      executor.annotate(docs, new Function<Annotation, Object>() {
+        @Override
+        public Object apply(Annotation in) {
+          finished.add(in);
+          return null;
+        }
+      });
+      fail("The error in the second stage should be thrown");
+    } catch (StackOverflowError e) {
+      // expected
+    }
+    assertEquals(90, finished.size());
+    for (Annotation doc : finished) {
+      assertEquals("abc", doc.get(CoreAnnotations.DocIDAnnotation.class));
+    }
+    assertEquals(100, executor.stageStatistics().get(1).processed());
+  }
+
+  public void testRequirementOrderIsChecked() {
+    List<Annotator> annotators = new ArrayList<Annotator>(annotators());
+    Collections.reverse(annotators);
+    try {
+      new StagedAnnotationExecutor(annotators, 1);
+      fail("Expected the requirement order to be rejected");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+}
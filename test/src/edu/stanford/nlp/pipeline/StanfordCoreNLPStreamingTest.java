@@ -0,0 +1,113 @@
+package edu.stanford.nlp.pipeline;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Set;
+
+import edu.stanford.nlp.io.RuntimeIOException;
+
+import junit.framework.TestCase;
+
+public class StanfordCoreNLPStreamingTest extends TestCase {
+
+  /** Throws a StackOverflowError on any chunk with the word BOOM in it. */
+  public static class FailingAnnotator implements Annotator {
+    public FailingAnnotator(String name, Properties props) { }
+
+    @Override
+    public void annotate(Annotation annotation) {
+      if (annotation.get(edu.stanford.nlp.ling.CoreAnnotations.TextAnnotation.class).contains("BOOM")) {
+        throw new StackOverflowError("BOOM");
+      }
+    }
+
+    @Override
+    public Set<Requirement> requirementsSatisfied() { return Collections.emptySet(); }
+
+    @Override
+    public Set<Requirement> requires() { return TOKENIZE_AND_SSPLIT; }
+  }
+
+  private static File inputFile() throws Exception {
+    File input = File.createTempFile("streaming", ".txt");
+    input.deleteOnExit();
+    PrintWriter out = new PrintWriter(input, "UTF-8");
+    for (int i = 0; i < 200; i++) {
+      out.println((i == 50) ? "This sentence goes BOOM." : "This is sentence " + i + ".");
+      out.println();
+    }
+    out.close();
+    return input;
+  }
+
+  private static StanfordCoreNLP pipeline(File outputDirectory, boolean continueOnAnnotateError) {
+    Properties props = new Properties();
+    props.setProperty("annotators", "tokenize, ssplit, fail");
+    props.setProperty(StanfordCoreNLP.CUSTOM_ANNOTATOR_PREFIX + "fail", FailingAnnotator.class.getName());
+    props.setProperty("streaming", "true");
+    props.setProperty("streaming.chunkSize", "100");
+    props.setProperty("streaming.queueSize", "1");
+    props.setProperty("outputFormat", "text");
+    props.setProperty("outputDirectory", outputDirectory.getPath());
+    props.setProperty("continueOnAnnotateError", Boolean.toString(continueOnAnnotateError));
+    return new StanfordCoreNLP(props);
+  }
+
+  private static File outputDirectory() throws Exception {
+    File dir = File.createTempFile("streaming", "");
+    assertTrue(dir.delete());
+    assertTrue(dir.mkdir());
+    dir.deleteOnExit();
+    return dir;
+  }
+
+  /** An Error in one chunk must stop the run with that error, not hang the reader. */
+  public void testErrorInChunk() throws Exception {
+    File input = inputFile();
+    File dir = outputDirectory();
+    try {
+      pipeline(dir, false).processFiles(Collections.singletonList(input), 2);
+      fail("The error annotating a chunk should be thrown");
+    } catch (RuntimeException e) {
+      assertTrue(e.getCause() instanceof StackOverflowError);
+    }
+    for (File f : dir.listFiles()) {
+      f.deleteOnExit();
+    }
+  }
+
+  /** An error reading the input must be thrown, and must not leave the writer thread waiting. */
+  public void testErrorReadingInput() throws Exception {
+    File input = inputFile();
+    File missing = new File(input.getPath() + ".missing");
+    File dir = outputDirectory();
+    try {
+      pipeline(dir, true).processFiles(Arrays.asList(input, missing), 1);
+      fail("The error reading the input should be thrown");
+    } catch (RuntimeIOException e) {
+      // expected
+    }
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getName().equals("StanfordCoreNLP writer")) {
+        thread.join(10000);
+        assertFalse(thread.isAlive());
+      }
+    }
+    for (File f : dir.listFiles()) {
+      f.deleteOnExit();
+    }
+  }
+
+  public void testContinueOnErrorInChunk() throws Exception {
+    File input = inputFile();
+    File dir = outputDirectory();
+    pipeline(dir, true).processFiles(Collections.singletonList(input), 2);
+    File output = new File(dir, input.getName() + ".out");
+    output.deleteOnExit();
+    assertTrue(output.length() > 0);
+  }
+
+}
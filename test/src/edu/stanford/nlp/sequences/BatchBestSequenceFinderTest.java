@@ -0,0 +1,146 @@
+package edu.stanford.nlp.sequences;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class BatchBestSequenceFinderTest extends TestCase {
+
+  /**
+   * A sequence model with random scores for each tag given each tag in its
+   * window, and a boundary tag at the padding positions.
+   */
+  static class RandomSequenceModel implements SequenceModel {
+
+    private final int length;
+    private final int leftWindow;
+    private final int rightWindow;
+    private final int numTags;
+    private final int[] tags;
+    private final int[] boundary;
+    // [pos][offset in window][windowTag * numTags + tag]
+    private final double[][][] weights;
+
+    RandomSequenceModel(int length, int leftWindow, int rightWindow, int numTags, Random random) {
+      this.length = length;
+      this.leftWindow = leftWindow;
+      this.rightWindow = rightWindow;
+      this.numTags = numTags;
+      tags = new int[numTags];
+      for (int t = 0; t < numTags; t++) {
+        tags[t] = t;
+      }
+      boundary = new int[] { numTags };
+      int window = leftWindow + rightWindow + 1;
+      weights = new double[leftWindow + length][window][(numTags + 1) * numTags];
+      for (double[][] posWeights : weights) {
+        for (double[] offsetWeights : posWeights) {
+          for (int i = 0; i < offsetWeights.length; i++) {
+            offsetWeights[i] = random.nextGaussian();
+          }
+        }
+      }
+    }
+
+    @Override
+    public int length() {
+      return length;
+    }
+
+    @Override
+    public int leftWindow() {
+      return leftWindow;
+    }
+
+    @Override
+    public int rightWindow() {
+      return rightWindow;
+    }
+
+    @Override
+    public int[] getPossibleValues(int pos) {
+      if (pos < leftWindow || pos >= leftWindow + length) {
+        return boundary;
+      }
+      return tags;
+    }
+
+    @Override
+    public double scoreOf(int[] sequence, int pos) {
+      double score = 0.0;
+      for (int k = 0; k < leftWindow + rightWindow + 1; k++) {
+        score += weights[pos][k][sequence[pos - leftWindow + k] * numTags + sequence[pos]];
+      }
+      return score;
+    }
+
+    @Override
+    public double[] scoresOf(int[] sequence, int pos) {
+      double[] scores = new double[numTags];
+      int tag = sequence[pos];
+      for (int t = 0; t < numTags; t++) {
+        sequence[pos] = t;
+        scores[t] = scoreOf(sequence, pos);
+      }
+      sequence[pos] = tag;
+      return scores;
+    }
+
+    @Override
+    public double scoreOf(int[] sequence) {
+      double score = 0.0;
+      for (int pos = leftWindow; pos < leftWindow + length; pos++) {
+        score += scoreOf(sequence, pos);
+      }
+      return score;
+    }
+
+  }
+
+  private static List<SequenceModel> randomModels(int num, int leftWindow, int rightWindow, Random random) {
+    List<SequenceModel> models = new ArrayList<SequenceModel>();
+    for (int i = 0; i < num; i++) {
+      models.add(new RandomSequenceModel(1 + random.nextInt(30), leftWindow, rightWindow, 2 + random.nextInt(4), random));
+    }
+    return models;
+  }
+
+  private static void assertSameAsExact(List<? extends SequenceModel> models, List<int[]> sequences) {
+    assertEquals(models.size(), sequences.size());
+    ExactBestSequenceFinder exact = new ExactBestSequenceFinder();
+    for (int i = 0; i < models.size(); i++) {
+      assertTrue("Sequence " + i + " differs", Arrays.equals(exact.bestSequence(models.get(i)), sequences.get(i)));
+    }
+  }
+
+  public void testSameAsExact() {
+    Random random = new Random(1234);
+    int[][] windows = { {1, 0}, {2, 0}, {1, 1}, {2, 2} };
+    for (int[] window : windows) {
+      List<SequenceModel> models = randomModels(60, window[0], window[1], random);
+      assertSameAsExact(models, new BatchBestSequenceFinder().bestSequences(models));
+      assertSameAsExact(models, new BatchBestSequenceFinder(3).bestSequences(models));
+    }
+  }
+
+  /** Models with different windows and possible values can share a batch, reusing one lattice. */
+  public void testMixedBatch() {
+    List<SequenceModel> models = new ArrayList<SequenceModel>();
+    models.add(new BestSequenceFinderTest.TestSequenceModel1());
+    models.add(new BestSequenceFinderTest.TestSequenceModel2());
+    models.add(new BestSequenceFinderTest.TestSequenceModel3());
+    models.addAll(randomModels(10, 1, 1, new Random(42)));
+    models.add(new BestSequenceFinderTest.TestSequenceModel1());
+    List<int[]> sequences = new BatchBestSequenceFinder().bestSequences(models);
+    assertSameAsExact(models, sequences);
+    for (int i = 0; i < 3; i++) {
+      BestSequenceFinderTest.TestSequenceModel model = (BestSequenceFinderTest.TestSequenceModel) models.get(i);
+      assertTrue(Arrays.equals(model.correctAnswers(), sequences.get(i)));
+    }
+    assertTrue(new BatchBestSequenceFinder(2).bestSequences(new ArrayList<SequenceModel>()).isEmpty());
+  }
+
+}
@@ -1,6 +1,7 @@
 package edu.stanford.nlp.sequences;
 
 import java.util.Arrays;
+import java.util.Random;
 
 import junit.framework.TestCase;
 
@@ -367,6 +368,55 @@ public class BestSequenceFinderTest extends TestCase {
     // runSequenceFinder(tsm2, bsf);
   }
 
+  public void testLeftToRightBestSequenceFinder() {
+    // a beam bigger than the number of sequences prunes nothing, so finds the best one
+    BestSequenceFinder wide = new LeftToRightBestSequenceFinder(100000);
+    BestSequenceFinder greedy = new LeftToRightBestSequenceFinder();
+    TestSequenceModel[] models = { new TestSequenceModel1(), new TestSequenceModel2(), new TestSequenceModel3() };
+    for (TestSequenceModel tsm : models) {
+      runSequenceFinder(tsm, wide);
+      runPossibleValuesChecker(tsm, greedy);
+    }
+
+    Random random = new Random(17);
+    ExactBestSequenceFinder exact = new ExactBestSequenceFinder();
+    int[][] windows = { {1, 0}, {2, 0}, {1, 1}, {2, 1} };
+    for (int[] window : windows) {
+      for (int i = 0; i < 20; i++) {
+        SequenceModel model = new BatchBestSequenceFinderTest.RandomSequenceModel(1 + random.nextInt(5), window[0], window[1], 2 + random.nextInt(2), random);
+        int[] best = exact.bestSequence(model);
+        assertTrue(Arrays.equals(best, wide.bestSequence(model)));
+        double greedyScore = model.scoreOf(greedy.bestSequence(model));
+        assertTrue(greedyScore <= model.scoreOf(best) + 1e-9);
+        assertTrue(Arrays.equals(greedy.bestSequence(model), greedy.bestSequence(model)));
+      }
+    }
+  }
+
+  /** Greedy decoding of a left context model picks each tag by its score given the tags before it. */
+  public void testGreedyDecoding() {
+    Random random = new Random(5);
+    for (int i = 0; i < 20; i++) {
+      SequenceModel model = new BatchBestSequenceFinderTest.RandomSequenceModel(1 + random.nextInt(20), 2, 0, 4, random);
+      int[] expected = new int[model.length() + model.leftWindow()];
+      for (int pos = 0; pos < expected.length; pos++) {
+        int[] values = model.getPossibleValues(pos);
+        expected[pos] = values[0];
+        if (pos >= model.leftWindow()) {
+          double[] scores = model.scoresOf(expected, pos);
+          int best = 0;
+          for (int v = 1; v < values.length; v++) {
+            if (scores[v] > scores[best]) {
+              best = v;
+            }
+          }
+          expected[pos] = values[best];
+        }
+      }
+      assertTrue(Arrays.equals(expected, new LeftToRightBestSequenceFinder(1).bestSequence(model)));
+    }
+  }
+
   /** For a sequence sampler, we just check that the returned values are
    *  valid values. We don't test the sampling distribution.
    */
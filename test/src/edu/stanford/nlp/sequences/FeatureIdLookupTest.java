@@ -0,0 +1,71 @@
+package edu.stanford.nlp.sequences;
+
+import java.util.Arrays;
+
+import edu.stanford.nlp.util.HashIndex;
+import edu.stanford.nlp.util.Index;
+
+import junit.framework.TestCase;
+
+public class FeatureIdLookupTest extends TestCase {
+
+  private static final String[] FEATURES = {
+    "john-WORD|C", "john-WORD", "Xx-TYPE|C", "PREV-WORD|CpC", "", "|C", "a|b|C", "Aa", "BB",
+  };
+
+  public void testIndexOf() {
+    Index<String> index = new HashIndex<String>();
+    for (String feature : FEATURES) {
+      index.add(feature);
+    }
+    FeatureIdLookup lookup = new FeatureIdLookup(index);
+    assertTrue(lookup.isLookupFor(index));
+    for (int i = 0; i < FEATURES.length; i++) {
+      assertEquals(i, lookup.indexOf(FEATURES[i]));
+    }
+    // "Aa" and "BB" have the same hash code
+    assertEquals("Aa".hashCode(), "BB".hashCode());
+    assertEquals(7, lookup.indexOf("Aa"));
+    assertEquals(8, lookup.indexOf("BB"));
+
+    assertEquals(0, lookup.indexOf("john-WORD", "C"));
+    assertEquals(1, lookup.indexOf("john-WORD", ""));
+    assertEquals(1, lookup.indexOf("john-WORD", null));
+    assertEquals(3, lookup.indexOf("PREV-WORD", "CpC"));
+    assertEquals(5, lookup.indexOf("", "C"));
+    assertEquals(6, lookup.indexOf("a|b", "C"));
+    assertEquals(6, lookup.indexOf("a", "b|C"));
+    assertEquals(-1, lookup.indexOf("john-WORD", "CpC"));
+    assertEquals(-1, lookup.indexOf("mary-WORD", "C"));
+    assertEquals(-1, lookup.indexOf("mary-WORD"));
+
+    index.add("mary-WORD|C");
+    assertFalse(lookup.isLookupFor(index));
+  }
+
+  public void testIds() {
+    FeatureIdLookup.Ids ids = new FeatureIdLookup.Ids();
+    for (int i = 0; i < 100; i++) {
+      ids.add(99 - i);
+    }
+    int start = ids.size();
+    ids.add(5);
+    ids.add(3);
+    ids.add(5);
+    ids.add(3);
+    ids.removeDuplicatesFrom(start);
+    assertEquals(102, ids.size());
+    int[] sorted = ids.toSortedArray();
+    assertEquals(102, sorted.length);
+    assertEquals(3, sorted[3]);
+    assertEquals(3, sorted[4]);
+    assertEquals(5, sorted[7]);
+    assertEquals(99, sorted[101]);
+
+    ids.clear();
+    ids.add(2);
+    ids.add(1);
+    assertTrue(Arrays.equals(new int[] { 1, 2 }, ids.toSortedArray()));
+  }
+
+}
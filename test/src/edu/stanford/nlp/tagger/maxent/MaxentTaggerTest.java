@@ -0,0 +1,203 @@
+package edu.stanford.nlp.tagger.maxent;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.ling.Sentence;
+import edu.stanford.nlp.ling.TaggedWord;
+
+import junit.framework.TestCase;
+
+public class MaxentTaggerTest extends TestCase {
+
+  private static final String[][] WORDS = {
+    { "the", "a", "this", "every" },                        // DT
+    { "big", "red", "old", "small", "happy" },              // JJ
+    { "dog", "cat", "man", "house", "car", "city", "tree" }, // NN
+    { "sees", "likes", "walks", "finds", "builds" },        // VBZ
+    { "in", "near", "with" },                               // IN
+  };
+  private static final String[] TAGS = { "DT", "JJ", "NN", "VBZ", "IN" };
+
+  private static String tagged(Random random, int kind) {
+    String[] words = WORDS[kind];
+    return words[random.nextInt(words.length)] + '_' + TAGS[kind];
+  }
+
+  /** Writes sentences like the_DT big_JJ dog_NN sees_VBZ a_DT cat_NN ._. for training. */
+  private static File trainingFile() throws Exception {
+    File file = File.createTempFile("tagger", ".txt");
+    file.deleteOnExit();
+    Random random = new Random(1);
+    PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "utf-8"));
+    for (int i = 0; i < 300; i++) {
+      List<String> sentence = new ArrayList<String>();
+      sentence.add(tagged(random, 0));
+      if (random.nextBoolean()) {
+        sentence.add(tagged(random, 1));
+      }
+      sentence.add(tagged(random, 2));
+      sentence.add(tagged(random, 3));
+      sentence.add(tagged(random, 0));
+      sentence.add(tagged(random, 2));
+      if (random.nextInt(5) < 2) {
+        sentence.add(tagged(random, 4));
+        sentence.add(tagged(random, 0));
+        sentence.add(tagged(random, 2));
+      }
+      sentence.add("._.");
+      StringBuilder line = new StringBuilder();
+      for (String word : sentence) {
+        line.append(word).append(' ');
+      }
+      out.println(line.toString().trim());
+    }
+    out.close();
+    return file;
+  }
+
+  /** Trains a small tagger on simple made up sentences and saves it, returning the model file. */
+  static File trainTinyTaggerModel() throws Exception {
+    File model = File.createTempFile("tagger", ".tagger");
+    model.deleteOnExit();
+    new File(model.getPath() + ".props").deleteOnExit();
+    MaxentTagger.main(new String[] { "-train", "-model", model.getPath(), "-trainFile", trainingFile().getPath(),
+                                     "-arch", "left3words,naacl2003unknowns", "-search", "qn", "-tagSeparator", "_" });
+    return model;
+  }
+
+  static MaxentTagger trainTinyTagger(Properties props) throws Exception {
+    return new MaxentTagger(trainTinyTaggerModel().getPath(), props, false);
+  }
+
+  static MaxentTagger trainTinyTagger() throws Exception {
+    return trainTinyTagger(new Properties());
+  }
+
+  static List<String> tags(List<TaggedWord> sentence) {
+    List<String> tags = new ArrayList<String>();
+    for (TaggedWord word : sentence) {
+      tags.add(word.tag());
+    }
+    return tags;
+  }
+
+  static List<HasWord> sentence(String text) {
+    return Sentence.toWordList(text.split(" "));
+  }
+
+  public void testTagging() throws Exception {
+    MaxentTagger tagger = trainTinyTagger();
+    assertEquals(Arrays.asList("DT", "JJ", "NN", "VBZ", "DT", "NN", "."),
+                 tags(tagger.tagSentence(sentence("the big dog sees a cat ."))));
+    // unknown words go through the rare word features
+    assertEquals(Arrays.asList("DT", "NN", "VBZ", "DT", "NN", "."),
+                 tags(tagger.tagSentence(sentence("a cat finds the fridge ."))));
+  }
+
+  /** The tables must give each extracted value exactly the weights of its features in fAssociations. */
+  public void testFeatureAssociationTables() throws Exception {
+    MaxentTagger tagger = trainTinyTagger();
+    FeatureAssociationTable[] tables = tagger.featureAssociationTables();
+    assertSame(tables, tagger.featureAssociationTables());
+    assertEquals(tagger.fAssociations.size(), tables.length);
+    double[] lambda = tagger.getLambdaSolve().lambda;
+    for (int i = 0; i < tables.length; i++) {
+      Map<String, int[]> associations = tagger.fAssociations.get(i);
+      assertEquals(associations.size(), tables[i].size());
+      for (Map.Entry<String, int[]> entry : associations.entrySet()) {
+        int row = tables[i].rowOf(entry.getKey());
+        assertTrue(row >= 0);
+        double[] expected = new double[tagger.ySize];
+        for (int tag = 0; tag < tagger.ySize; tag++) {
+          if (entry.getValue()[tag] > -1) {
+            expected[tag] += lambda[entry.getValue()[tag]];
+          }
+        }
+        double[] scores = new double[tagger.ySize];
+        tables[i].addWeights(row, scores);
+        assertTrue(Arrays.equals(expected, scores));
+
+        // scores for just the last two tags, in reverse order
+        int[] positions = new int[tagger.ySize];
+        Arrays.fill(positions, -1);
+        positions[tagger.ySize - 1] = 0;
+        positions[tagger.ySize - 2] = 1;
+        double[] someScores = new double[2];
+        tables[i].addWeights(row, someScores, positions);
+        assertEquals(expected[tagger.ySize - 1], someScores[0]);
+        assertEquals(expected[tagger.ySize - 2], someScores[1]);
+      }
+      assertEquals(-1, tables[i].rowOf("not an extracted value"));
+    }
+  }
+
+  public void testLocalScoreCache() throws Exception {
+    File model = trainTinyTaggerModel();
+    String[] texts = { "the big dog sees a cat .", "a cat finds the fridge .", "every old man walks near the house ." };
+    for (String approximate : new String[] { "false", "true" }) {
+      Properties props = new Properties();
+      props.setProperty("approximate", approximate);
+      MaxentTagger plain = new MaxentTagger(model.getPath(), props, false);
+      assertNull(plain.getLocalScoreCache());
+      props.setProperty("localScoreCacheSize", "5");
+      MaxentTagger cached = new MaxentTagger(model.getPath(), props, false);
+      assertEquals(5, cached.getLocalScoreCache().capacity());
+
+      for (int iter = 0; iter < 3; iter++) {
+        for (String text : texts) {
+          assertEquals(tags(plain.tagSentence(sentence(text))), tags(cached.tagSentence(sentence(text))));
+        }
+      }
+      assertTrue(cached.getLocalScoreCache().hits() > 0);
+      assertTrue(cached.getLocalScoreCache().evictions() > 0);
+      assertTrue(cached.getLocalScoreCache().size() <= 5);
+
+      // scores made with a reused tag must not be shared through the cache
+      List<HasWord> sentence = sentence("the dog sees a cat .");
+      ((CoreLabel) sentence.get(1)).setTag("VBZ");
+      assertEquals(tags(plain.tagSentence(sentence, true)), tags(cached.tagSentence(sentence, true)));
+      assertEquals(tags(plain.tagSentence(sentence("the dog sees a cat ."))), tags(cached.tagSentence(sentence("the dog sees a cat ."))));
+    }
+  }
+
+  public void testDecoding() throws Exception {
+    File model = trainTinyTaggerModel();
+    MaxentTagger exact = new MaxentTagger(model.getPath(), new Properties(), false);
+    assertEquals("exact", exact.getDecoding());
+    Properties props = new Properties();
+    props.setProperty("decoding", "greedy");
+    MaxentTagger tagger = new MaxentTagger(model.getPath(), props, false);
+    assertEquals("greedy", tagger.getDecoding());
+
+    String[] texts = { "the big dog sees a cat .", "a cat finds the fridge .", "every old man walks near the house ." };
+    for (String decoding : new String[] { "greedy", "beam:1", "beam:3", " BEAM: 20 ", "exact" }) {
+      tagger.setDecoding(decoding);
+      for (String text : texts) {
+        assertEquals(tags(exact.tagSentence(sentence(text))), tags(tagger.tagSentence(sentence(text))));
+      }
+    }
+    assertEquals("exact", tagger.getDecoding());
+
+    for (String decoding : new String[] { "beam", "beam:0", "beam:x", "fast" }) {
+      try {
+        tagger.setDecoding(decoding);
+        fail("Decoding mode " + decoding + " should not be accepted");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+    assertEquals("exact", tagger.getDecoding());
+  }
+
+}
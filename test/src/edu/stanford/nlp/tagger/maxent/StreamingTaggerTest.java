@@ -0,0 +1,120 @@
+package edu.stanford.nlp.tagger.maxent;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.sequences.PlainTextDocumentReaderAndWriter.OutputStyle;
+
+import junit.framework.TestCase;
+
+public class StreamingTaggerTest extends TestCase {
+
+  private static final String[] TEXTS = {
+    "the big dog sees a cat .", "a cat finds the fridge .", "every old man walks near the house .",
+    "this car likes a tree .", "the city builds a small house with a dog ."
+  };
+
+  private static List<List<HasWord>> document(int numSentences) {
+    List<List<HasWord>> document = new ArrayList<List<HasWord>>();
+    for (int i = 0; i < numSentences; i++) {
+      document.add(MaxentTaggerTest.sentence(TEXTS[i % TEXTS.length]));
+    }
+    return document;
+  }
+
+  private static String tagOneByOne(MaxentTagger tagger, List<List<HasWord>> document, OutputStyle style) {
+    StringWriter expected = new StringWriter();
+    int sentNum = 0;
+    for (List<HasWord> sentence : document) {
+      tagger.outputTaggedSentence(tagger.tagSentence(sentence), false, style, false, sentNum++, "\n", expected);
+    }
+    return expected.toString();
+  }
+
+  public void testSameAsOneByOne() throws Exception {
+    MaxentTagger tagger = MaxentTaggerTest.trainTinyTagger();
+    List<List<HasWord>> document = document(101);
+    for (OutputStyle style : new OutputStyle[] { OutputStyle.SLASH_TAGS, OutputStyle.XML }) {
+      String expected = tagOneByOne(tagger, document, style);
+      for (int batchSize : new int[] { 1, 7, 1000 }) {
+        StreamingTagger streamingTagger = new StreamingTagger(tagger, 3, batchSize);
+        StringWriter output = new StringWriter();
+        streamingTagger.tagAndOutput(document, output, style, false, false);
+        assertEquals(expected, output.toString());
+        assertEquals(101, streamingTagger.numSentences());
+      }
+    }
+
+    StreamingTagger streamingTagger = new StreamingTagger(tagger, 2);
+    StringWriter output = new StringWriter();
+    streamingTagger.tagAndOutput(new ArrayList<List<HasWord>>(), output, OutputStyle.SLASH_TAGS, false, false);
+    assertEquals("", output.toString());
+    assertEquals(0, streamingTagger.numWords());
+  }
+
+  /** An error reading the document is thrown once the sentences before it are written. */
+  public void testReadError() throws Exception {
+    MaxentTagger tagger = MaxentTaggerTest.trainTinyTagger();
+    final List<List<HasWord>> document = document(10);
+    Iterable<List<HasWord>> failing = new Iterable<List<HasWord>>() {
+      @Override
+      public Iterator<List<HasWord>> iterator() {
+        final Iterator<List<HasWord>> sentences = document.iterator();
+        return new Iterator<List<HasWord>>() {
+          int read = 0;
+
+          @Override
+          public boolean hasNext() {
+            return true;
+          }
+
+          @Override
+          public List<HasWord> next() {
+            if (read++ == 5) {
+              throw new IllegalStateException("bad input");
+            }
+            return sentences.next();
+          }
+
+          @Override
+          public void remove() {
+            throw new UnsupportedOperationException();
+          }
+        };
+      }
+    };
+
+    StringWriter output = new StringWriter();
+    try {
+      new StreamingTagger(tagger, 2, 2).tagAndOutput(failing, output, OutputStyle.SLASH_TAGS, false, false);
+      fail("The reading error should be thrown");
+    } catch (IllegalStateException e) {
+      assertEquals("bad input", e.getMessage());
+    }
+    assertEquals(tagOneByOne(tagger, document.subList(0, 5), OutputStyle.SLASH_TAGS), output.toString());
+  }
+
+  /** An error opening the document is thrown rather than leaving the caller waiting. */
+  public void testIteratorError() throws Exception {
+    MaxentTagger tagger = MaxentTaggerTest.trainTinyTagger();
+    Iterable<List<HasWord>> failing = new Iterable<List<HasWord>>() {
+      @Override
+      public Iterator<List<HasWord>> iterator() {
+        throw new IllegalStateException("cannot open");
+      }
+    };
+
+    StringWriter output = new StringWriter();
+    try {
+      new StreamingTagger(tagger, 2, 2).tagAndOutput(failing, output, OutputStyle.SLASH_TAGS, false, false);
+      fail("The error opening the document should be thrown");
+    } catch (IllegalStateException e) {
+      assertEquals("cannot open", e.getMessage());
+    }
+    assertEquals("", output.toString());
+  }
+
+}
@@ -291,4 +291,46 @@ public class ArrayCoreMapTest extends TestCase {
     assertEquals("fozzle", boff.get(CoreAnnotations.LemmaAnnotation.class));
   }
 
+  @SuppressWarnings("unchecked")
+  public void testLargeMap() throws Exception {
+    Class[] keys = CoreAnnotations.class.getClasses();
+    int n = ArrayCoreMap.LINEAR_SEARCH_MAX * 2;
+    assertTrue(keys.length > n + 1);
+    ArrayCoreMap map = new ArrayCoreMap();
+    for (int i = 0; i < n; i++) {
+      assertNull(map.set(keys[i], "v" + i));
+    }
+    for (int i = 0; i < n; i++) {
+      assertEquals("v" + i, map.get(keys[i]));
+    }
+    assertFalse(map.has(keys[n]));
+    assertEquals("v3", map.set(keys[3], "w3"));
+    assertEquals(n, map.size());
+
+    assertEquals("v0", map.remove(keys[0]));
+    assertNull(map.get(keys[0]));
+    assertEquals("w3", map.get(keys[3]));
+    assertEquals("v" + (n - 1), map.get(keys[n - 1]));
+
+    ArrayCoreMap copy = new ArrayCoreMap(map);
+    assertEquals(map, copy);
+    assertEquals("w3", copy.get(keys[3]));
+
+    java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+    java.io.ObjectOutputStream out = new java.io.ObjectOutputStream(bytes);
+    out.writeObject(map);
+    out.close();
+    ArrayCoreMap read = (ArrayCoreMap) new java.io.ObjectInputStream(new java.io.ByteArrayInputStream(bytes.toByteArray())).readObject();
+    assertEquals(map, read);
+    assertEquals("v" + (n - 1), read.get(keys[n - 1]));
+    assertNull(read.get(keys[0]));
+
+    // shrinking back below the threshold goes back to linear search
+    for (int i = 1; i < n - 1; i++) {
+      map.remove(keys[i]);
+    }
+    assertEquals(1, map.size());
+    assertEquals("v" + (n - 1), map.get(keys[n - 1]));
+  }
+
 }
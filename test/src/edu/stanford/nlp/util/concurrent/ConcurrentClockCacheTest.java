@@ -0,0 +1,87 @@
+package edu.stanford.nlp.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class ConcurrentClockCacheTest extends TestCase {
+
+  public void testGetAndPut() {
+    ConcurrentClockCache<String, Integer> cache = new ConcurrentClockCache<String, Integer>(10);
+    assertNull(cache.get("a"));
+    assertEquals(Integer.valueOf(1), cache.putIfAbsent("a", 1));
+    assertEquals(Integer.valueOf(1), cache.putIfAbsent("a", 2));
+    assertEquals(Integer.valueOf(1), cache.get("a"));
+    assertEquals(1, cache.size());
+    assertEquals(1, cache.hits());
+    assertEquals(1, cache.misses());
+    assertEquals(0.5, cache.hitRate());
+
+    cache.resetStatistics();
+    assertEquals(0, cache.hits());
+    assertEquals(0.0, cache.hitRate());
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertNull(cache.get("a"));
+  }
+
+  /** Entries which are read survive; the ones never read since the last sweep are evicted. */
+  public void testEviction() {
+    ConcurrentClockCache<Integer, Integer> cache = new ConcurrentClockCache<Integer, Integer>(4);
+    for (int i = 0; i < 4; i++) {
+      cache.putIfAbsent(i, i);
+    }
+    cache.get(0);
+    cache.get(2);
+    cache.putIfAbsent(4, 4);
+    assertEquals(4, cache.size());
+    assertEquals(1, cache.evictions());
+    assertNull(cache.get(1));
+    assertNotNull(cache.get(0));
+    assertNotNull(cache.get(2));
+    assertNotNull(cache.get(4));
+
+    for (int i = 5; i < 100; i++) {
+      cache.putIfAbsent(i, i);
+      assertTrue(cache.size() <= 4);
+    }
+    assertEquals(Integer.valueOf(99), cache.get(99));
+  }
+
+  public void testThreads() throws Exception {
+    final ConcurrentClockCache<Integer, Integer> cache = new ConcurrentClockCache<Integer, Integer>(50);
+    final List<Throwable> failures = new ArrayList<Throwable>();
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      final int seed = t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            for (int i = 0; i < 20000; i++) {
+              int key = (i * 31 + seed) % 200;
+              Integer value = cache.get(key);
+              if (value == null) {
+                value = cache.putIfAbsent(key, key * 2);
+              }
+              assertEquals(key * 2, value.intValue());
+            }
+          } catch (Throwable e) {
+            synchronized (failures) {
+              failures.add(e);
+            }
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertTrue(failures.toString(), failures.isEmpty());
+    assertTrue(cache.size() <= 50);
+    assertEquals(80000, cache.hits() + cache.misses());
+  }
+
+}
@@ -65,6 +65,37 @@ public class MulticoreWrapperTest extends TestCase {
     assertEquals(nItems, nReturned);
   }
   
+  public void testSharedPool() {
+    // two wrappers running on the same pool at once
+    MulticoreWrapper<Integer,Integer> first = new MulticoreWrapper<Integer,Integer>(4, new DelayedIdentityFunction(), true, SharedThreadPool.getInstance());
+    MulticoreWrapper<Integer,Integer> second = new MulticoreWrapper<Integer,Integer>(4, new DelayedIdentityFunction(), true, SharedThreadPool.getInstance());
+    int firstReturned = 0;
+    int secondReturned = 0;
+    final int nItems = 200;
+    for (int i = 0; i < nItems; ++i) {
+      first.put(i);
+      second.put(i);
+      while (first.peek()) {
+        assertEquals(firstReturned++, (int) first.poll());
+      }
+      while (second.peek()) {
+        assertEquals(secondReturned++, (int) second.poll());
+      }
+    }
+    first.join();
+    second.join();
+    while (first.peek()) {
+      assertEquals(firstReturned++, (int) first.poll());
+    }
+    while (second.peek()) {
+      assertEquals(secondReturned++, (int) second.poll());
+    }
+    assertEquals(nItems, firstReturned);
+    assertEquals(nItems, secondReturned);
+    // the shared pool is still usable after join()
+    assertFalse(SharedThreadPool.getInstance().isShutdown());
+  }
+
   /**
    * Sleeps for some random interval up to 3ms, then returns the input id.
    * 
@@ -0,0 +1,19 @@
+package edu.stanford.nlp.util.concurrent;
+
+import java.util.concurrent.ExecutorService;
+
+import junit.framework.TestCase;
+
+public class SharedThreadPoolTest extends TestCase {
+
+  /** Asking for another size once the pool is running keeps the running pool. */
+  public void testSetParallelismOnceRunning() {
+    ExecutorService pool = SharedThreadPool.getInstance();
+    int parallelism = SharedThreadPool.parallelism();
+    SharedThreadPool.setParallelism(parallelism + 1);
+    assertEquals(parallelism, SharedThreadPool.parallelism());
+    assertSame(pool, SharedThreadPool.getInstance());
+    assertTrue(SharedThreadPool.isSharedPool(pool));
+  }
+
+}